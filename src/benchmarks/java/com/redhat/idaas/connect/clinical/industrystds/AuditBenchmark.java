@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Message;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.spi.Language;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The direct:auditing header copy and String body the audit topic used to get, against the
+ * AuditEvent the AuditTapProcessor builds and the bytes AuditEventSerializer writes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuditBenchmark {
+  private static final String[][] COPIED = {
+      {"processingtype", "processingtype"}, {"industrystd", "industrystd"}, {"component", "componentname"},
+      {"messagetrigger", "messagetrigger"}, {"processname", "processname"}, {"auditdetails", "auditdetails"},
+      {"camelID", "camelID"}, {"exchangeID", "exchangeID"}, {"internalMsgID", "internalMsgID"},
+      {"bodyData", "bodyData"}};
+
+  @Param({"true", "false"})
+  public boolean includeBody;
+
+  private DefaultCamelContext context;
+  private Exchange exchange;
+  private byte[] body;
+  private Expression processedDate;
+  private Expression processedTime;
+  private RouteMetadata metadata;
+
+  @Setup
+  public void setup() throws Exception {
+    context = new DefaultCamelContext();
+    context.start();
+    exchange = new DefaultExchange(context);
+    body = Hl7Samples.bytes("ADT");
+    exchange.getIn().setBody(body);
+    exchange.setProperty(Exchange.CHARSET_NAME, "iso-8859-1");
+
+    // the properties the routes set before wireTap("direct:auditing")
+    exchange.setProperty("processingtype", RouteMetadata.PROCESSING_TYPE);
+    exchange.setProperty("industrystd", "HL7");
+    exchange.setProperty("componentname", "hl7Admissions");
+    exchange.setProperty("messagetrigger", "ADT");
+    exchange.setProperty("processname", RouteMetadata.PROCESS_NAME);
+    exchange.setProperty("auditdetails", "ADT message received");
+    exchange.setProperty("camelID", context.getName());
+    exchange.setProperty("exchangeID", exchange.getExchangeId());
+    exchange.setProperty("internalMsgID", exchange.getIn().getMessageId());
+    exchange.setProperty("bodyData", Hl7Samples.ADT_A01);
+
+    Language simple = context.resolveLanguage("simple");
+    processedDate = simple.createExpression("${date:now:yyyy-MM-dd}");
+    processedTime = simple.createExpression("${date:now:HH:mm:ss:SSS}");
+    metadata = new RouteMetadata("hl7Admissions", AuditEvent.IndustryStandard.HL7, "ADT",
+        "MCTN_MMS_ADT", "ADT message received");
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    context.stop();
+  }
+
+  @Benchmark
+  public Object headerCopy() {
+    // wireTap copies the exchange, then the headers are set one step at a time
+    Exchange copy = exchange.copy();
+    Message in = copy.getIn();
+    in.setHeader("messageprocesseddate", processedDate.evaluate(copy, Object.class));
+    in.setHeader("messageprocessedtime", processedTime.evaluate(copy, Object.class));
+    for (String[] header : COPIED) {
+      in.setHeader(header[0], copy.getProperty(header[1]));
+    }
+    String value = in.getBody(String.class);
+    // what the kafka endpoint's StringSerializer sent
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Object auditEvent() {
+    AuditEvent event = AuditEvent.builder()
+        .processingType(RouteMetadata.PROCESSING_TYPE)
+        .industryStandard(metadata.getIndustryStandard())
+        .messageTrigger(metadata.getMessageTrigger())
+        .component(metadata.getRouteId())
+        .processName(RouteMetadata.PROCESS_NAME)
+        .auditDetails(metadata.getReceivedDetails())
+        .camelId(context.getName())
+        .exchangeId(exchange.getExchangeId())
+        .internalMsgId(exchange.getIn().getMessageId())
+        .body(body, includeBody)
+        .build();
+    return AuditEventSerializer.encode(event);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * convertBodyTo(String.class) on the decoded MLLP bytes, against reading the bytes as they are
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyConversionBenchmark {
+
+  @Param({"ADT", "ORU"})
+  public String message;
+
+  private DefaultCamelContext context;
+  private Exchange exchange;
+
+  @Setup
+  public void setup() throws Exception {
+    context = new DefaultCamelContext();
+    context.start();
+    exchange = new DefaultExchange(context);
+    exchange.setProperty(Exchange.CHARSET_NAME, "iso-8859-1");
+    exchange.getIn().setBody(Hl7Samples.bytes(message));
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    context.stop();
+  }
+
+  @Benchmark
+  public Object convertBodyToString() {
+    // the body stays byte[] so every call pays for the conversion
+    return exchange.getIn().getBody(String.class);
+  }
+
+  @Benchmark
+  public Object bodyAsBytes() {
+    return exchange.getIn().getBody(byte[].class);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+/*
+ * What the body log step costs an HL7 route at a sample rate of 1, with the default
+ * max-bytes and mask fields: off is the route without the step, sync writes through the
+ * appender on the route thread as a plain console appender does, async queues the event to
+ * the AsyncAppender of logback.xml (neverBlock, events past a full queue are dropped). The
+ * appenders write to a stream that discards the bytes, after writeMicros as a console piped
+ * to a slow log collector would take. The share of the bodies actually written is printed
+ * after each run. Four route threads by default, as the MLLP handler threads, change with -t.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class BodyLogBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Logging {
+    @Param({"off", "sync", "async"})
+    public String appender;
+
+    @Param({"0", "100"})
+    public long writeMicros;
+
+    private ch.qos.logback.classic.Logger logger;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private BodyLogProcessor bodyLog;
+
+    @Setup
+    public void setup() {
+      LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+      logger = loggerContext.getLogger(BodyLogProcessor.class);
+      logger.detachAndStopAllAppenders();
+      logger.setAdditive(false);
+      logger.setLevel(Level.INFO);
+      PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+      encoder.setContext(loggerContext);
+      encoder.setPattern("%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n");
+      encoder.start();
+      OutputStreamAppender<ILoggingEvent> sink = new OutputStreamAppender<>();
+      sink.setContext(loggerContext);
+      sink.setEncoder(encoder);
+      sink.setOutputStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+          written.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+          if (writeMicros > 0) {
+            LockSupport.parkNanos(writeMicros * 1000);
+          }
+          events.increment();
+          written.add(len);
+        }
+      });
+      sink.start();
+      Appender<ILoggingEvent> appender = sink;
+      if ("async".equals(this.appender)) {
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(loggerContext);
+        async.setQueueSize(8192);
+        async.setDiscardingThreshold(0);
+        async.setNeverBlock(true);
+        async.addAppender(sink);
+        async.start();
+        appender = async;
+      }
+      logger.addAppender(appender);
+      BodyLogSettings settings = new BodyLogSettings();
+      bodyLog = "off".equals(this.appender) ? null
+          : new BodyLogProcessor(Collections.emptyMap(), 1, settings.getMaxBytes(), settings.getMaskFields());
+    }
+
+    @TearDown
+    public void tearDown() {
+      logger.detachAndStopAllAppenders();
+      System.out.println();
+      System.out.println(appender + ": " + (bodyLog == null ? 0 : bodyLog.getLoggedCount()) + " bodies logged, "
+          + events.sum() + " written, " + written.sum() + " bytes");
+    }
+  }
+
+  @Param({"ADT", "ORU_LARGE"})
+  public String message;
+
+  private DefaultCamelContext context;
+  private RouteMetadata metadata;
+  private byte[] body;
+
+  @Setup
+  public void setup() throws Exception {
+    context = new DefaultCamelContext();
+    context.start();
+    metadata = new RouteMetadata("hl7Admissions", AuditEvent.IndustryStandard.HL7, "ADT",
+        "MCTN_MMS_ADT", "ADT message received");
+    body = Hl7Samples.bytes(message);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    context.stop();
+  }
+
+  @Benchmark
+  public Object bodyLogStep(Logging logging) throws Exception {
+    Exchange exchange = new DefaultExchange(context);
+    exchange.setProperty(RouteMetadata.EXCHANGE_PROPERTY, metadata);
+    exchange.setProperty(Exchange.CHARSET_NAME, "iso-8859-1");
+    exchange.getIn().setBody(body);
+    if (logging.bodyLog != null) {
+      logging.bodyLog.process(exchange);
+    }
+    return exchange.getIn().getBody();
+  }
+}
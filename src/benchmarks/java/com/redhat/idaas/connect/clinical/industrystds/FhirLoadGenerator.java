@@ -0,0 +1,428 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * End to end FHIR load generator. Opens keep-alive HTTP connections to the /idaas/<resource>
+ * routes, posts a resource on each at a target rate and records the response latency with
+ * HdrHistogram. Without --host it starts the application in process with InMemoryKafka, so it
+ * runs without a broker, and reports how many container threads served the load.
+ *
+ * Blocking against async ingest, with a 20 ms Kafka stand-in and 2000 clients:
+ *
+ *  mvn -Pbenchmarks compile exec:java -Dexec.mainClass=com.redhat.idaas.connect.clinical.industrystds.FhirLoadGenerator \
+ *      -Dexec.args="--clients=2000 --rate=20000 --kafka-settings.linger-ms=20"
+ *  ... -Dexec.args="--clients=2000 --rate=20000 --kafka-settings.linger-ms=20 --fhir-settings.async-ingest=true
+ *      --fhir-settings.max-in-flight=5000 --server.tomcat.max-threads=16"
+ *
+ *  --host=<host>             drive an instance that is already running instead of starting one
+ *  --kafka=broker            start it against the kafka-settings brokers instead of InMemoryKafka
+ *  --port=8080
+ *  --paths=patient           resource paths under /idaas/ to spread the clients over
+ *  --clients=200             connections, each sending a request and waiting for its response
+ *  --rate=1000               target requests per second over all clients, 0 = as fast as responses return
+ *  --warmup=10               seconds sent before measuring
+ *  --duration=60             seconds measured
+ *  --resource=<file>         JSON body to post, default a small Patient
+ *  --report=target/fhir-load-report.txt
+ *
+ * Any other argument is passed to the application, e.g. --fhir-settings.async-ingest=true.
+ *
+ * Latency is measured from when a request was due to be sent, as in MllpLoadGenerator, so a
+ * server that stops reading connections shows up in the latency rather than in a lower rate.
+ */
+public final class FhirLoadGenerator {
+  private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+  private static final String PATIENT = "{\"resourceType\":\"Patient\",\"active\":true,"
+      + "\"name\":[{\"use\":\"official\",\"family\":\"Chalmers\",\"given\":[\"Peter\",\"James\"]}],"
+      + "\"gender\":\"male\",\"birthDate\":\"1974-12-25\"}";
+
+  private final Map<String, String> options;
+  private final List<String> applicationArgs;
+
+  private FhirLoadGenerator(Map<String, String> options, List<String> applicationArgs) {
+    this.options = options;
+    this.applicationArgs = applicationArgs;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>();
+    List<String> applicationArgs = new ArrayList<>();
+    for (String arg : args) {
+      String name = arg.startsWith("--") && arg.indexOf('=') > 2 ? arg.substring(2, arg.indexOf('=')) : null;
+      if (name != null && isOption(name)) {
+        options.put(name, arg.substring(arg.indexOf('=') + 1));
+      } else {
+        applicationArgs.add(arg);
+      }
+    }
+    new FhirLoadGenerator(options, applicationArgs).run();
+  }
+
+  private static boolean isOption(String name) {
+    switch (name) {
+      case "host":
+      case "kafka":
+      case "port":
+      case "paths":
+      case "clients":
+      case "rate":
+      case "warmup":
+      case "duration":
+      case "resource":
+      case "report":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void run() throws Exception {
+    String host = options.get("host");
+    ConfigurableApplicationContext application = host == null ? startApplication() : null;
+    try {
+      generate(host != null ? host : "localhost", application);
+    } finally {
+      if (application != null) {
+        application.close();
+      }
+    }
+  }
+
+  private void generate(String host, ConfigurableApplicationContext application) throws Exception {
+    int port = Integer.parseInt(options.getOrDefault("port", "8080"));
+    List<String> paths = Arrays.asList(options.getOrDefault("paths", "patient").split(","));
+    int clients = Integer.parseInt(options.getOrDefault("clients", "200"));
+    double rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+    long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "10"));
+    long durationSeconds = Long.parseLong(options.getOrDefault("duration", "60"));
+    byte[] body = options.containsKey("resource")
+        ? Files.readAllBytes(Paths.get(options.get("resource"))) : PATIENT.getBytes(StandardCharsets.UTF_8);
+
+    long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+    long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+    long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+    long intervalNanos = rate > 0 ? (long) (clients * 1_000_000_000d / rate) : 0;
+
+    List<Client> workers = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < clients; i++) {
+      String path = paths.get(i % paths.size()).trim();
+      Client client = new Client(host, port, request(host, port, path, body), path,
+          startNanos + (intervalNanos / clients) * i, intervalNanos, measureStartNanos, endNanos);
+      workers.add(client);
+      // the clients mostly wait on their socket, a small stack lets thousands of them run
+      Thread thread = new Thread(null, client, "fhir-load-" + i, 256 * 1024);
+      threads.add(thread);
+      thread.start();
+    }
+    System.out.printf("Posting to %s:%d %s over %d clients at %s req/s, %ds warm-up, %ds measured%n",
+        host, port, paths, clients, rate > 0 ? String.valueOf(rate) : "max", warmupSeconds, durationSeconds);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Map<String, String> report = new LinkedHashMap<>();
+    report.put("target", application != null ? "embedded" : host);
+    report.put("paths", String.join(",", paths));
+    report.put("clients", String.valueOf(clients));
+    report.put("rate.target", rate > 0 ? String.valueOf(rate) : "max");
+    report.put("warmup.seconds", String.valueOf(warmupSeconds));
+    report.put("duration.seconds", String.valueOf(durationSeconds));
+    report.put("body.bytes", String.valueOf(body.length));
+    report.put("cpus", String.valueOf(Runtime.getRuntime().availableProcessors()));
+    report.put("java.version", System.getProperty("java.version"));
+    if (application != null) {
+      FhirSettings fhirSettings = application.getBean(FhirSettings.class);
+      report.put("async.ingest", String.valueOf(fhirSettings.isAsyncIngest()));
+      report.put("max.in.flight", String.valueOf(fhirSettings.getMaxInFlight()));
+      // the container pool only grows, its size after the run is the most threads the load needed
+      String serverThreads = "-" + port + "-exec-";
+      report.put("server.threads", String.valueOf(Thread.getAllStackTraces().keySet().stream()
+          .filter(thread -> thread.getName().startsWith("http-nio-") && thread.getName().contains(serverThreads))
+          .count()));
+    }
+
+    Histogram latency = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    Histogram service = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    Map<Integer, Long> statuses = new TreeMap<>();
+    long errors = 0;
+    long lastAnswerNanos = measureStartNanos;
+    for (Client client : workers) {
+      lastAnswerNanos = Math.max(lastAnswerNanos, client.lastAnswerNanos);
+      latency.add(client.latency);
+      service.add(client.service);
+      client.statuses.forEach((status, count) -> statuses.merge(status, count, Long::sum));
+      errors += client.errors;
+    }
+    report.put("requests.answered", String.valueOf(latency.getTotalCount()));
+    statuses.forEach((status, count) -> report.put("status." + status, String.valueOf(count)));
+    report.put("errors", String.valueOf(errors));
+    // an overloaded server answers the measured requests after the duration, the rate is over the time it took
+    double elapsedSeconds = Math.max(durationSeconds, (lastAnswerNanos - measureStartNanos) / 1e9);
+    report.put("elapsed.seconds", String.format("%.1f", elapsedSeconds));
+    report.put("throughput.per.second", String.format("%.1f", statuses.getOrDefault(200, 0L) / elapsedSeconds));
+    putPercentiles(report, "latency.us", latency);
+    putPercentiles(report, "service.us", service);
+
+    Path reportPath = Paths.get(options.getOrDefault("report", "target/fhir-load-report.txt"));
+    writeReport(report, latency, reportPath);
+  }
+
+  private ConfigurableApplicationContext startApplication() {
+    String[] args = applicationArgs.toArray(new String[0]);
+    if ("broker".equals(options.get("kafka"))) {
+      return SpringApplication.run(Application.class, args);
+    }
+    return InMemoryKafka.run(new InMemoryKafka(), args);
+  }
+
+  private static byte[] request(String host, int port, String path, byte[] body) {
+    byte[] head = ("POST /idaas/" + path + " HTTP/1.1\r\n"
+        + "Host: " + host + ":" + port + "\r\n"
+        + "Content-Type: application/fhir+json\r\n"
+        + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    byte[] request = Arrays.copyOf(head, head.length + body.length);
+    System.arraycopy(body, 0, request, head.length, body.length);
+    return request;
+  }
+
+  private static void putPercentiles(Map<String, String> report, String prefix, Histogram histogram) {
+    report.put(prefix + ".p50", String.valueOf(histogram.getValueAtPercentile(50)));
+    report.put(prefix + ".p90", String.valueOf(histogram.getValueAtPercentile(90)));
+    report.put(prefix + ".p99", String.valueOf(histogram.getValueAtPercentile(99)));
+    report.put(prefix + ".p99.9", String.valueOf(histogram.getValueAtPercentile(99.9)));
+    report.put(prefix + ".max", String.valueOf(histogram.getMaxValue()));
+  }
+
+  private static void writeReport(Map<String, String> report, Histogram latency, Path path) throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    StringBuilder text = new StringBuilder("# iDAAS FHIR load report\n");
+    report.forEach((key, value) -> text.append(key).append('=').append(value).append('\n'));
+    Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+    System.out.print(text);
+
+    String name = path.getFileName().toString();
+    Path distribution = path.resolveSibling(
+        (name.endsWith(".txt") ? name.substring(0, name.length() - 4) : name) + ".hgrm");
+    try (PrintStream out = new PrintStream(distribution.toFile(), "UTF-8")) {
+      // values are in microseconds, reported in milliseconds
+      latency.outputPercentileDistribution(out, 1000.0);
+    }
+    System.out.println("Report written to " + path + ", latency distribution to " + distribution);
+  }
+
+  /*
+   * One keep-alive HTTP connection, posting a request and reading its response before the next one
+   */
+  private static final class Client implements Runnable {
+    private final String host;
+    private final int port;
+    private final byte[] request;
+    private final String path;
+    private final long firstSendNanos;
+    private final long intervalNanos;
+    private final long measureStartNanos;
+    private final long endNanos;
+    private final Histogram latency = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    private final Histogram service = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    private final Map<Integer, Long> statuses = new TreeMap<>();
+    private final StringBuilder line = new StringBuilder(128);
+    private long errors;
+    private long lastAnswerNanos;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    Client(String host, int port, byte[] request, String path, long firstSendNanos, long intervalNanos,
+           long measureStartNanos, long endNanos) {
+      this.host = host;
+      this.port = port;
+      this.request = request;
+      this.path = path;
+      this.firstSendNanos = firstSendNanos;
+      this.intervalNanos = intervalNanos;
+      this.measureStartNanos = measureStartNanos;
+      this.endNanos = endNanos;
+    }
+
+    @Override
+    public void run() {
+      long next = firstSendNanos;
+      while (true) {
+        long due;
+        if (intervalNanos > 0) {
+          due = next;
+          next += intervalNanos;
+          if (due >= endNanos) {
+            break;
+          }
+          long wait;
+          while ((wait = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+          }
+        } else {
+          due = Math.max(System.nanoTime(), firstSendNanos);
+          if (due >= endNanos) {
+            break;
+          }
+          LockSupport.parkNanos(due - System.nanoTime());
+        }
+        boolean measured = due >= measureStartNanos;
+        try {
+          connect();
+          long sent = System.nanoTime();
+          out.write(request);
+          out.flush();
+          int status = readResponse();
+          long done = System.nanoTime();
+          if (measured) {
+            latency.recordValue(Math.min(HIGHEST_LATENCY_MICROS, (done - due) / 1000));
+            service.recordValue(Math.min(HIGHEST_LATENCY_MICROS, (done - sent) / 1000));
+            statuses.merge(status, 1L, Long::sum);
+            lastAnswerNanos = done;
+          }
+        } catch (IOException e) {
+          if (measured) {
+            errors++;
+          }
+          disconnect();
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+      }
+      disconnect();
+    }
+
+    private void connect() throws IOException {
+      if (socket == null) {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(60));
+        in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream());
+      }
+    }
+
+    private void disconnect() {
+      if (socket != null) {
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // already gone
+        }
+        socket = null;
+      }
+    }
+
+    /*
+     * Reads one response, fixed length or chunked, and returns its status. A response that
+     * closes the connection closes it here as well.
+     */
+    private int readResponse() throws IOException {
+      String statusLine = readLine();
+      if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12) {
+        throw new IOException("Not an HTTP response from /idaas/" + path + ": " + statusLine);
+      }
+      int status = Integer.parseInt(statusLine.substring(9, 12));
+      long length = -1;
+      boolean chunked = false;
+      boolean close = false;
+      String header;
+      while (!(header = readLine()).isEmpty()) {
+        String lower = header.toLowerCase();
+        if (lower.startsWith("content-length:")) {
+          length = Long.parseLong(header.substring(15).trim());
+        } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+          chunked = true;
+        } else if (lower.startsWith("connection:") && lower.contains("close")) {
+          close = true;
+        }
+      }
+      if (chunked) {
+        long chunk;
+        while ((chunk = Long.parseLong(readLine().split(";")[0].trim(), 16)) > 0) {
+          skip(chunk);
+          readLine();
+        }
+        // trailers
+        while (!readLine().isEmpty()) {
+          // none expected
+        }
+      } else if (length > 0) {
+        skip(length);
+      }
+      if (close) {
+        disconnect();
+      }
+      return status;
+    }
+
+    private String readLine() throws IOException {
+      line.setLength(0);
+      int b;
+      while ((b = in.read()) != '\n') {
+        if (b < 0) {
+          throw new EOFException("Connection closed mid response");
+        }
+        if (b != '\r') {
+          line.append((char) b);
+        }
+      }
+      return line.toString();
+    }
+
+    private void skip(long bytes) throws IOException {
+      while (bytes > 0) {
+        long skipped = in.skip(bytes);
+        if (skipped <= 0) {
+          if (in.read() < 0) {
+            throw new EOFException("Connection closed mid body");
+          }
+          skipped = 1;
+        }
+        bytes -= skipped;
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.validation.FhirValidator;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.hl7.fhir.r4.hapi.ctx.DefaultProfileValidationSupport;
+import org.hl7.fhir.r4.hapi.validation.FhirInstanceValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Throughput of a FHIR route's validation step in each mode, on a valid Patient and on one
+ * with a bad code and date. off is the route without the step, sampled validates the default
+ * 1% of the messages. hapi is the baseline FhirResourceValidator replaced: HAPI's FhirValidator
+ * with a FhirInstanceValidator over the same definitions, which builds a new worker context for
+ * every resource. The validator is shared by all benchmark threads as it is by the routes,
+ * run with -t to see it under concurrent requests. The HAPI validator takes tens of thousands of
+ * resources before it is fully compiled, hence the long warmup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FhirValidationBenchmark {
+
+  static final String PATIENT = "{\"resourceType\":\"Patient\",\"id\":\"example\","
+      + "\"identifier\":[{\"use\":\"usual\",\"type\":{\"coding\":[{\"system\":\"http://terminology.hl7.org/CodeSystem/v2-0203\",\"code\":\"MR\"}]},"
+      + "\"system\":\"urn:oid:1.2.36.146.595.217.0.1\",\"value\":\"12345\",\"assigner\":{\"display\":\"Acme Healthcare\"}}],"
+      + "\"active\":true,"
+      + "\"name\":[{\"use\":\"official\",\"family\":\"Chalmers\",\"given\":[\"Peter\",\"James\"]},{\"use\":\"usual\",\"given\":[\"Jim\"]}],"
+      + "\"telecom\":[{\"system\":\"phone\",\"value\":\"(03) 5555 6473\",\"use\":\"work\",\"rank\":1},"
+      + "{\"system\":\"phone\",\"value\":\"(03) 3410 5613\",\"use\":\"mobile\",\"rank\":2}],"
+      + "\"gender\":\"male\",\"birthDate\":\"1974-12-25\",\"deceasedBoolean\":false,"
+      + "\"address\":[{\"use\":\"home\",\"type\":\"both\",\"line\":[\"534 Erewhon St\"],\"city\":\"PleasantVille\","
+      + "\"district\":\"Rainbow\",\"state\":\"Vic\",\"postalCode\":\"3999\",\"period\":{\"start\":\"1974-12-25\"}}],"
+      + "\"contact\":[{\"relationship\":[{\"coding\":[{\"system\":\"http://terminology.hl7.org/CodeSystem/v2-0131\",\"code\":\"N\"}]}],"
+      + "\"name\":{\"family\":\"du Marché\",\"given\":[\"Bénédicte\"]},\"gender\":\"female\"}],"
+      + "\"managingOrganization\":{\"reference\":\"Organization/1\"}}";
+
+  static final String PATIENT_INVALID = PATIENT
+      .replace("\"gender\":\"male\"", "\"gender\":\"unknown-code\"")
+      .replace("\"birthDate\":\"1974-12-25\"", "\"birthDate\":\"25/12/1974\"");
+
+  @State(Scope.Benchmark)
+  public static class Validator {
+    private FhirResourceValidator validator;
+    private FhirValidator hapiValidator;
+
+    @Setup
+    public void setup() {
+      validator = new FhirResourceValidator(Arrays.asList("Patient"));
+      hapiValidator = FhirContext.forR4().newValidator();
+      hapiValidator.registerValidatorModule(new FhirInstanceValidator(new DefaultProfileValidationSupport()));
+    }
+  }
+
+  @Param({"off", "sampled", "strict", "hapi"})
+  public String mode;
+
+  @Param({"valid", "invalid"})
+  public String resource;
+
+  private DefaultCamelContext context;
+  private byte[] body;
+  private FhirValidationProcessor validation;
+  private FhirValidator hapiValidator;
+
+  @Setup
+  public void setup(Validator shared) throws Exception {
+    context = new DefaultCamelContext();
+    context.start();
+    body = ("valid".equals(resource) ? PATIENT : PATIENT_INVALID).getBytes(StandardCharsets.UTF_8);
+    if ("hapi".equals(mode)) {
+      hapiValidator = shared.hapiValidator;
+      return;
+    }
+    FhirValidationProcessor.Mode stepMode = FhirValidationProcessor.Mode.valueOf(mode.toUpperCase());
+    FhirSettings defaults = new FhirSettings();
+    validation = stepMode == FhirValidationProcessor.Mode.OFF ? null
+        : new FhirValidationProcessor(shared.validator, stepMode, defaults.getValidationSampleRate());
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    context.stop();
+  }
+
+  @Benchmark
+  public Object validationStep() throws Exception {
+    Exchange exchange = new DefaultExchange(context);
+    exchange.getIn().setBody(body);
+    if (validation != null) {
+      validation.process(exchange);
+    } else if (hapiValidator != null) {
+      exchange.getIn().setHeader("valid", hapiValidator.validateWithResult(new String(body, StandardCharsets.UTF_8))
+          .isSuccessful());
+    }
+    return exchange.getIn().getBody();
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The duplicate cache of the MLLP routes filled to half its max-entries, with and without the
+ * Bloom filter: the fingerprint of an ADT message, the lookup of a new message (the common
+ * case), of a resend, and the add after the send. The cache is shared by all benchmark
+ * threads as it is by the routes, run with -t to see it under concurrent connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Hl7DedupBenchmark {
+
+  @Param({"10000", "1000000"})
+  public int maxEntries;
+
+  @Param({"false", "true"})
+  public boolean bloomFilter;
+
+  private Hl7DuplicateCache cache;
+  private long[] present;
+  private Hl7View view;
+
+  @Setup
+  public void setup() {
+    DedupSettings settings = new DedupSettings();
+    settings.setMaxEntries(maxEntries);
+    settings.setBloomFilter(bloomFilter);
+    cache = new Hl7DuplicateCache(settings);
+    SplittableRandom random = new SplittableRandom(42);
+    present = new long[maxEntries / 2];
+    for (int i = 0; i < present.length; i++) {
+      present[i] = random.nextLong() | 1L;
+      cache.add(present[i]);
+    }
+    view = new Hl7View(Hl7Samples.bytes("ADT"));
+  }
+
+  @State(Scope.Thread)
+  public static class Keys {
+    private final SplittableRandom random = new SplittableRandom();
+  }
+
+  @Benchmark
+  public long fingerprint() {
+    return Hl7DuplicateCache.fingerprint(view);
+  }
+
+  @Benchmark
+  public boolean containsNew(Keys keys) {
+    return cache.contains(keys.random.nextLong() | 1L);
+  }
+
+  @Benchmark
+  public boolean containsResend(Keys keys) {
+    return cache.contains(present[keys.random.nextInt(present.length)]);
+  }
+
+  @Benchmark
+  public void add(Keys keys) {
+    cache.add(keys.random.nextLong() | 1L);
+  }
+}
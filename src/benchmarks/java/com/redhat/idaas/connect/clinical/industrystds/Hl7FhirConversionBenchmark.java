@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.parser.DefaultModelClassFactory;
+import ca.uhn.hl7v2.parser.ParserConfiguration;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.parser.UnexpectedSegmentBehaviourEnum;
+import ca.uhn.hl7v2.validation.impl.ValidationContextFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Messages per second through the HL7 to FHIR conversion, over a reused Hl7View as on the
+ * routes. pipeParser is only the HAPI parse of the same message, what a conversion on the HAPI
+ * model would cost before reading a field. What the conversion produces is checked by
+ * Hl7FhirConverterTest against its golden files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Hl7FhirConversionBenchmark {
+
+  @Param({"ADT", "ORU", "ORU_LARGE", "VXU"})
+  public String message;
+
+  private String text;
+  private byte[] bytes;
+  private Hl7FhirConverter converter;
+  private Hl7View view;
+  private PipeParser pipeParser;
+
+  @Setup
+  public void setup() throws Exception {
+    converter = Hl7FhirMappings.compile(Hl7FhirMappings.messageTypes(), ZoneId.of("America/New_York"));
+    text = Hl7Samples.message(message);
+    bytes = Hl7Samples.bytes(message);
+    view = new Hl7View();
+    // same parser setup as the camel-hl7 converter
+    ParserConfiguration parserConfiguration = new ParserConfiguration();
+    parserConfiguration.setDefaultObx2Type("ST");
+    parserConfiguration.setInvalidObx2Type("ST");
+    parserConfiguration.setUnexpectedSegmentBehaviour(UnexpectedSegmentBehaviourEnum.ADD_INLINE);
+    HapiContext hapiContext = new DefaultHapiContext(parserConfiguration, ValidationContextFactory.noValidation(),
+        new DefaultModelClassFactory());
+    pipeParser = hapiContext.getPipeParser();
+  }
+
+  @Benchmark
+  public List<Hl7FhirConverter.Resource> convert() throws Exception {
+    return converter.convert(view.reset(bytes, 0, bytes.length, StandardCharsets.ISO_8859_1));
+  }
+
+  @Benchmark
+  public Object pipeParser() throws Exception {
+    return pipeParser.parse(text);
+  }
+}
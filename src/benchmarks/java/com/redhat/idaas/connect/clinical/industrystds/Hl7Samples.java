@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Representative HL7 v2 messages for the benchmarks, shaped like the iDAAS test data
+ */
+final class Hl7Samples {
+
+  static final String ADT_A01 =
+      "MSH|^~\\&|MMS|DH|LABADT|DH|201301011226||ADT^A01|HL7MSG00001|P|2.5|||AL|NE|USA|8859/1\r"
+      + "EVN|A01|201301011223||||201301011223\r"
+      + "PID|1||MRN12345^5^M11^ADT1^MR^MCTN~123456789^^^USSSA^SS||EVERYMAN^ADAM^A^III||19610615|M||C|"
+      + "2222 HOME STREET^^GREENSBORO^NC^27401-1020|GL|(555) 555-2004|(555)555-2004||S||PATID12345001^2^M10^ADT1^AN^A|"
+      + "444333333|987654^NC\r"
+      + "NK1|1|NUCLEAR^NELDA^W|SPO^SPOUSE||||NK^NEXT OF KIN\r"
+      + "PV1|1|I|2000^2012^01||||004777^ATTEND^AARON^A|||SUR||||ADM|A0|||||||||||||||||||||||||200007010800\r"
+      + "PV2|||^ABDOMINAL PAIN\r"
+      + "OBX|1|NM|^Body Height||1.80|m^Meter^ISO+|||||F\r"
+      + "OBX|2|NM|^Body Weight||79|kg^Kilogram^ISO+|||||F\r"
+      + "AL1|1||^ASPIRIN\r"
+      + "DG1|1||786.50^CHEST PAIN, UNSPECIFIED^I9|||A\r"
+      + "IN1|1|MEDICARE|3|MEDICARE|||||||Cartwright^Jake^^^Mr.||||||||||||||||||||||||||||||||||||||999-99-9999\r";
+
+  static final String ORU_R01 =
+      "MSH|^~\\&|GHH LAB|ELAB-3|GHH OE|BLDG4|200202150930||ORU^R01|CNTRL-3456|P|2.5\r"
+      + "PID|||555-44-4444||EVERYWOMAN^EVE^E^^^^L|JONES|19620320|F|||153 FERNWOOD DR.^^STATESVILLE^OH^35292"
+      + "||(206)3345232|(206)752-121||||AC555444444||67-A4335^OH^20030520\r"
+      + "OBR|1|845439^GHH OE|1045813^GHH LAB|15545^GLUCOSE|||200202150730|||||||||555-55-5555^PRIMARY^PATRICIA P^^^^MD^^|||||||||F||||||444-44-4444^HIPPOCRATES^HOWARD H^^^^MD\r"
+      + "OBX|1|SN|1554-5^GLUCOSE^POST 12H CFST:MCNC:PT:SER/PLAS:QN||^182|mg/dl|70_105|H|||F\r"
+      + "OBX|2|NM|2345-7^GLUCOSE^LN||95|mg/dL|70-99||||F|||200202150730\r"
+      + "OBX|3|NM|2951-2^SODIUM^LN||140|mmol/L|136-145||||F|||200202150730\r"
+      + "OBX|4|NM|2823-3^POTASSIUM^LN||4.1|mmol/L|3.5-5.1||||F|||200202150730\r"
+      + "OBX|5|NM|2075-0^CHLORIDE^LN||101|mmol/L|98-107||||F|||200202150730\r"
+      + "NTE|1||Specimen received in good condition.\r";
+
+  static final String VXU_V04 =
+      "MSH|^~\\&|MYEHR|DCS|MYIIS|MYIIS|20150624084727-0400||VXU^V04^VXU_V04|NIST-IZ-001.00|P|2.5.1|||ER|AL\r"
+      + "PID|1||PL0001^^^MIA^MR||JONES^GEORGE^M^JR^^^L|MILLER^MARTHA^G^^^^M|20140227|M||2106-3^White^CDCREC|"
+      + "1234 W FIRST ST^^BEAVERTON^OR^97005^USA^P||^PRN^PH^^^503^5555555\r"
+      + "ORC|RE||197023^CMC|||||||^Clerk^Myron\r"
+      + "RXA|0|1|20150624|20150624|08^Hep B, adolescent or pediatric^CVX|0.5|mL^mL^UCUM||00^New immunization record^NIP001|"
+      + "7832-1^Lemon^Mike^A|^^^NIST-Clinic-1||||H52432A|20160710|MSD^Merck and Co^MVX|||CP|A\r"
+      + "RXR|C28161^Intramuscular^NCIT|LA^Left Arm^HL70163\r"
+      + "RXA|0|1|201506240930|201506240930|03^MMR^CVX|999|||00^New immunization record^NIP001||||||M175I|20161201|"
+      + "MSD^Merck and Co^MVX|||CP|A\r";
+
+  // a cumulative lab report, ORU_R01 with 500 results
+  static final String ORU_LARGE = largeOru(500);
+
+  private Hl7Samples() {
+  }
+
+  static String message(String type) {
+    switch (type) {
+      case "ORU":
+        return ORU_R01;
+      case "ORU_LARGE":
+        return ORU_LARGE;
+      case "VXU":
+        return VXU_V04;
+      default:
+        return ADT_A01;
+    }
+  }
+
+  static byte[] bytes(String type) {
+    return message(type).getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  /*
+   * The message in its MLLP frame, as it arrives on the socket
+   */
+  static byte[] framed(String type) {
+    byte[] message = bytes(type);
+    byte[] frame = new byte[message.length + 3];
+    frame[0] = 0x0b;
+    System.arraycopy(message, 0, frame, 1, message.length);
+    frame[frame.length - 2] = 0x1c;
+    frame[frame.length - 1] = 0x0d;
+    return frame;
+  }
+
+  private static String largeOru(int results) {
+    StringBuilder message = new StringBuilder(ORU_R01.substring(0, ORU_R01.indexOf("OBX|")));
+    for (int i = 1; i <= results; i++) {
+      message.append("OBX|").append(i).append("|NM|2345-7^GLUCOSE^LN||").append(70 + i % 50)
+          .append("|mg/dL|70-99|").append(i % 7 == 0 ? "H" : "").append("|||F|||200202150730\r");
+      if (i % 25 == 0) {
+        message.append("NTE|").append(i / 25).append("||Result reviewed, see prior \\T\\ repeat on request.\r");
+      }
+    }
+    return message.toString();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.DefaultModelClassFactory;
+import ca.uhn.hl7v2.parser.ParserConfiguration;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.parser.UnexpectedSegmentBehaviourEnum;
+import ca.uhn.hl7v2.util.Terser;
+import ca.uhn.hl7v2.validation.impl.ValidationContextFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Reading MSH-9.1, MSH-10 and PID-3.1 through a HAPI PipeParser parse and Terser against
+ * the Hl7View over the raw bytes, new per message and reset onto it. hl7ViewEverySegment
+ * reads a field of every segment, the most a view ever indexes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Hl7ViewBenchmark {
+
+  @Param({"ADT", "ORU", "ORU_LARGE"})
+  public String message;
+
+  private String text;
+  private byte[] bytes;
+  private PipeParser pipeParser;
+  private Hl7View view;
+
+  @Setup
+  public void setup() {
+    text = Hl7Samples.message(message);
+    bytes = Hl7Samples.bytes(message);
+    // same parser setup as the camel-hl7 converter
+    ParserConfiguration parserConfiguration = new ParserConfiguration();
+    parserConfiguration.setDefaultObx2Type("ST");
+    parserConfiguration.setInvalidObx2Type("ST");
+    parserConfiguration.setUnexpectedSegmentBehaviour(UnexpectedSegmentBehaviourEnum.ADD_INLINE);
+    HapiContext hapiContext = new DefaultHapiContext(parserConfiguration, ValidationContextFactory.noValidation(),
+        new DefaultModelClassFactory());
+    pipeParser = hapiContext.getPipeParser();
+    view = new Hl7View();
+  }
+
+  @Benchmark
+  public void pipeParser(Blackhole blackhole) throws Exception {
+    Message parsed = pipeParser.parse(text);
+    Terser terser = new Terser(parsed);
+    blackhole.consume(terser.get("/MSH-9-1"));
+    blackhole.consume(terser.get("/MSH-10"));
+    blackhole.consume(terser.get("/.PID-3-1"));
+  }
+
+  @Benchmark
+  public void hl7View(Blackhole blackhole) {
+    readFields(new Hl7View(bytes), blackhole);
+  }
+
+  @Benchmark
+  public void hl7ViewReused(Blackhole blackhole) {
+    readFields(view.reset(bytes, 0, bytes.length, StandardCharsets.ISO_8859_1), blackhole);
+  }
+
+  @Benchmark
+  public int hl7ViewEverySegment() {
+    Hl7View reused = view.reset(bytes, 0, bytes.length, StandardCharsets.ISO_8859_1);
+    int length = 0;
+    for (int s = 0, count = reused.segmentCount(); s < count; s++) {
+      length += reused.field(s, 3).length();
+    }
+    return length;
+  }
+
+  private static void readFields(Hl7View view, Blackhole blackhole) {
+    blackhole.consume(view.field(0, 9).component(1).toString());
+    blackhole.consume(view.field(0, 10).toString());
+    blackhole.consume(view.field("PID", 3).repetition(1).component(1).toString());
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * The Kafka of the offline load tests: a producer factory for KafkaProducerPool that hands out
+ * InMemoryProducers, so the platform runs without a broker. The load generators start the
+ * platform with it in process, the startup timer launches main, which is the platform with it.
+ *
+ * Only the benchmarks have it, the platform itself always sends to its brokers.
+ */
+public final class InMemoryKafka implements KafkaProducerPool.ProducerFactory {
+  private final List<InMemoryProducer<?, ?>> producers = new CopyOnWriteArrayList<>();
+
+  public static void main(String[] args) {
+    run(new InMemoryKafka(), args);
+  }
+
+  /*
+   * Starts the platform with its producers from the given stand-in
+   */
+  static ConfigurableApplicationContext run(InMemoryKafka kafka, String... args) {
+    return new SpringApplicationBuilder(Application.class)
+        .initializers(context -> context.getBeanFactory().registerSingleton("inMemoryKafka", kafka))
+        .run(args);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Producer<?, ?> create(Map<String, Object> config) {
+    ProducerConfig producerConfig = new ProducerConfig(config);
+    InMemoryProducer<?, ?> producer = new InMemoryProducer<>(String.valueOf(config.get(ProducerConfig.CLIENT_ID_CONFIG)),
+        producerConfig.getConfiguredInstance(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, Serializer.class),
+        producerConfig.getConfiguredInstance(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, Serializer.class),
+        // linger.ms is an int or a long depending on the client version
+        ((Number) producerConfig.values().get(ProducerConfig.LINGER_MS_CONFIG)).longValue());
+    producers.add(producer);
+    return producer;
+  }
+
+  /*
+   * Records acknowledged so far by each producer, by client id
+   */
+  Map<String, Long> recordCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (InMemoryProducer<?, ?> producer : producers) {
+      counts.merge(producer.getClientId(), producer.getRecordCount(), Long::sum);
+    }
+    return counts;
+  }
+
+  /*
+   * Serialized key and value bytes acknowledged so far by each producer, by client id
+   */
+  Map<String, Long> byteCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (InMemoryProducer<?, ?> producer : producers) {
+      counts.merge(producer.getClientId(), producer.getByteCount(), Long::sum);
+    }
+    return counts;
+  }
+}
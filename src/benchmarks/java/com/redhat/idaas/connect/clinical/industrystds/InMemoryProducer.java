@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Kafka stand-in for offline load tests, created by InMemoryKafka. Records are serialized like
+ * the real producer does and acknowledged from a completion thread every linger.ms, so route
+ * callbacks run off the sending thread as they would against a broker. Nothing is kept once
+ * a record is acknowledged.
+ */
+final class InMemoryProducer<K, V> extends MockProducer<K, V> {
+  private static final Logger log = LoggerFactory.getLogger(InMemoryProducer.class);
+
+  private final String clientId;
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valueSerializer;
+  private final long lingerMs;
+  private final Thread completer;
+  private final AtomicLong records = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private volatile boolean running = true;
+
+  InMemoryProducer(String clientId, Serializer<K> keySerializer, Serializer<V> valueSerializer, long lingerMs) {
+    super(false, keySerializer, valueSerializer);
+    this.clientId = clientId;
+    this.keySerializer = keySerializer;
+    this.valueSerializer = valueSerializer;
+    this.lingerMs = Math.max(1, lingerMs);
+    this.completer = new Thread(this::completeLoop, "idaas-kafka-in-memory-" + clientId);
+    this.completer.setDaemon(true);
+    this.completer.start();
+  }
+
+  @Override
+  public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+    int size = 0;
+    if (record.key() != null && keySerializer != null) {
+      size += keySerializer.serialize(record.topic(), record.key()).length;
+    }
+    if (record.value() != null && valueSerializer != null) {
+      size += valueSerializer.serialize(record.topic(), record.value()).length;
+    }
+    Future<RecordMetadata> future = super.send(record, callback);
+    records.incrementAndGet();
+    bytes.addAndGet(size);
+    return future;
+  }
+
+  String getClientId() {
+    return clientId;
+  }
+
+  long getRecordCount() {
+    return records.get();
+  }
+
+  long getByteCount() {
+    return bytes.get();
+  }
+
+  @Override
+  public void close() {
+    close(0, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void close(long timeout, TimeUnit unit) {
+    running = false;
+    completer.interrupt();
+    completeAll();
+    super.close(timeout, unit);
+    log.info("In-memory Kafka producer acknowledged {} records, {} bytes", records.get(), bytes.get());
+  }
+
+  private void completeLoop() {
+    while (running) {
+      try {
+        Thread.sleep(lingerMs);
+      } catch (InterruptedException e) {
+        return;
+      }
+      completeAll();
+    }
+  }
+
+  private synchronized void completeAll() {
+    // sends hold the same monitor, so nothing lands between the last completion and the clear
+    while (completeNext()) {
+      // keep completing
+    }
+    clear();
+  }
+}
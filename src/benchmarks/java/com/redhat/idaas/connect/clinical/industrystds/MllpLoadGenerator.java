@@ -0,0 +1,613 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * End to end MLLP load generator. Opens connections to the MLLP ports, replays an HL7 corpus at a
+ * target rate and records the ACK latency with HdrHistogram. Without --host it starts the
+ * application in process with InMemoryKafka, so it runs without a broker.
+ *
+ *  mvn -Pbenchmarks compile exec:java -Dexec.args="--connections=16 --rate=2000 --duration=60"
+ *
+ *  --host=<host>             drive an instance that is already running instead of starting one
+ *  --kafka=broker            start it against the kafka-settings brokers instead of InMemoryKafka
+ *  --ports=10001-10008       ports to spread the connections over, default the mllp-settings routes
+ *  --connections=8           connections, opened round robin over the ports
+ *  --rate=1000               target messages per second over all connections, 0 = as fast as ACKs return
+ *  --warmup=10               seconds sent before measuring
+ *  --duration=60             seconds measured
+ *  --corpus=<dir or file>    HL7 messages, one or more per file, default the built in ADT and ORU samples
+ *  --report=target/mllp-load-report.txt
+ *  --shutdown-after=<seconds> closes the application that many seconds into the measurement,
+ *                            under load, and reports what its shutdown drained
+ *
+ * Any other argument is passed to the application, e.g. --spool-settings.enabled=false.
+ *
+ * Latency is measured from when a message was due to be sent, so a stalled connection counts
+ * the messages queued up behind it. The report only holds settings and results in a fixed order
+ * so reports from two builds can be diffed, the full distribution goes to a .hgrm file next to it.
+ * An embedded run also reports the threads behind the listeners and in the whole JVM, the heap
+ * peak and the collections while measuring, and the records and bytes given to Kafka.
+ *
+ * With --shutdown-after the connections keep sending while the application shuts down. Every
+ * message ACKed with an AA must then be among the records given to Kafka, the report counts
+ * those that are not (lost) and the records given to Kafka whose ACK never arrived (sent
+ * again by a real sender).
+ */
+public final class MllpLoadGenerator {
+  private static final byte START_BLOCK = 0x0b;
+  private static final byte END_BLOCK = 0x1c;
+  private static final byte CARRIAGE_RETURN = 0x0d;
+  private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+  private final Map<String, String> options;
+  private final List<String> applicationArgs;
+  // the Kafka stand-in of an embedded application, null against a broker
+  private InMemoryKafka inMemoryKafka;
+
+  private MllpLoadGenerator(Map<String, String> options, List<String> applicationArgs) {
+    this.options = options;
+    this.applicationArgs = applicationArgs;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>();
+    List<String> applicationArgs = new ArrayList<>();
+    for (String arg : args) {
+      String name = arg.startsWith("--") && arg.indexOf('=') > 2 ? arg.substring(2, arg.indexOf('=')) : null;
+      if (name != null && isOption(name)) {
+        options.put(name, arg.substring(arg.indexOf('=') + 1));
+      } else {
+        applicationArgs.add(arg);
+      }
+    }
+    new MllpLoadGenerator(options, applicationArgs).run();
+  }
+
+  private static boolean isOption(String name) {
+    switch (name) {
+      case "host":
+      case "kafka":
+      case "ports":
+      case "connections":
+      case "rate":
+      case "warmup":
+      case "duration":
+      case "corpus":
+      case "report":
+      case "shutdown-after":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void run() throws Exception {
+    String host = options.get("host");
+    ConfigurableApplicationContext application = host == null ? startApplication() : null;
+    try {
+      generate(host != null ? host : "localhost", application);
+    } finally {
+      if (application != null) {
+        application.close();
+      }
+    }
+  }
+
+  private void generate(String host, ConfigurableApplicationContext application) throws Exception {
+    // port -> trigger, the trigger is only known when the route table is at hand
+    Map<Integer, String> ports = new LinkedHashMap<>();
+    if (application != null) {
+      for (IngestRouteSettings route : application.getBean(MllpSettings.class).getRoutes()) {
+        ports.put(route.getPort(), route.getTrigger());
+      }
+    }
+    if (options.containsKey("ports") || ports.isEmpty()) {
+      ports.clear();
+      for (int port : parsePorts(options.getOrDefault("ports", "10001-10008"))) {
+        ports.put(port, null);
+      }
+    }
+
+    int connections = Integer.parseInt(options.getOrDefault("connections", "8"));
+    double rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+    long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "10"));
+    long durationSeconds = Long.parseLong(options.getOrDefault("duration", "60"));
+    List<CorpusMessage> corpus = loadCorpus(options.get("corpus"));
+
+    long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+    long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+    long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+    long intervalNanos = rate > 0 ? (long) (connections * 1_000_000_000d / rate) : 0;
+    String runId = Long.toString(System.currentTimeMillis() / 1000 % 1_679_616, 36);
+
+    List<Integer> portList = new ArrayList<>(ports.keySet());
+    List<Connection> workers = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < connections; i++) {
+      int port = portList.get(i % portList.size());
+      Connection connection = new Connection(host, port, messagesFor(corpus, ports.get(port)),
+          "L" + runId + i + "-", startNanos + (intervalNanos / connections) * i, intervalNanos,
+          measureStartNanos, endNanos);
+      workers.add(connection);
+      Thread thread = new Thread(connection, "mllp-load-" + i);
+      threads.add(thread);
+      thread.start();
+    }
+    System.out.printf("Sending to %s ports %s over %d connections at %s msg/s, %ds warm-up, %ds measured%n",
+        host, portList, connections, rate > 0 ? String.valueOf(rate) : "max", warmupSeconds, durationSeconds);
+    Shutdown shutdown = null;
+    if (application != null && options.containsKey("shutdown-after")) {
+      shutdown = new Shutdown(application,
+          measureStartNanos + TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("shutdown-after"))));
+      shutdown.start();
+    }
+    // heap and collections of the measured seconds only, not of the start and the warm-up
+    TimeUnit.NANOSECONDS.sleep(Math.max(0, measureStartNanos - System.nanoTime()));
+    List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP).collect(Collectors.toList());
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    long gcCountStart = gcCount();
+    long gcMillisStart = gcMillis();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long heapPeak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    long gcCount = gcCount() - gcCountStart;
+    long gcMillis = gcMillis() - gcMillisStart;
+
+    if (shutdown != null) {
+      shutdown.join();
+    }
+
+    Map<String, Long> kafkaRecords = new TreeMap<>();
+    Map<String, Long> kafkaBytes = new TreeMap<>();
+    if (inMemoryKafka != null) {
+      // let the stand-in acknowledge what is still lingering before counting it
+      Thread.sleep(1000);
+      kafkaRecords = inMemoryKafka.recordCounts();
+      kafkaBytes = inMemoryKafka.byteCounts();
+    }
+
+    Map<String, String> report = new LinkedHashMap<>();
+    report.put("target", application != null ? "embedded" : host);
+    report.put("ports", portList.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    report.put("connections", String.valueOf(connections));
+    report.put("rate.target", rate > 0 ? String.valueOf(rate) : "max");
+    report.put("warmup.seconds", String.valueOf(warmupSeconds));
+    report.put("duration.seconds", String.valueOf(durationSeconds));
+    report.put("corpus.messages", String.valueOf(corpus.size()));
+    report.put("cpus", String.valueOf(Runtime.getRuntime().availableProcessors()));
+    report.put("java.version", System.getProperty("java.version"));
+    if (application != null) {
+      // event loop and handler threads behind the listeners, and all threads of the process
+      report.put("mllp.threads", String.valueOf(Thread.getAllStackTraces().keySet().stream()
+          .filter(thread -> thread.getName().contains("Netty") || thread.getName().startsWith("idaas-mllp-"))
+          .count()));
+      report.put("jvm.threads", String.valueOf(ManagementFactory.getThreadMXBean().getThreadCount()));
+      // the sum of each pool's own peak, an upper bound of the heap in use at any one time
+      report.put("heap.peak.mb", String.valueOf(heapPeak / (1024 * 1024)));
+      report.put("gc.collections", String.valueOf(gcCount));
+      report.put("gc.millis", String.valueOf(gcMillis));
+    }
+
+    Histogram latency = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    Histogram service = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    Map<String, Long> acks = new TreeMap<>();
+    long errors = 0;
+    Map<Integer, Histogram> portLatency = new TreeMap<>();
+    for (Connection connection : workers) {
+      latency.add(connection.latency);
+      service.add(connection.service);
+      portLatency.computeIfAbsent(connection.port, port -> new Histogram(HIGHEST_LATENCY_MICROS, 3))
+          .add(connection.latency);
+      connection.acks.forEach((code, count) -> acks.merge(code, count, Long::sum));
+      errors += connection.errors;
+    }
+    report.put("messages.acked", String.valueOf(latency.getTotalCount()));
+    for (String code : new String[] {"AA", "AE", "AR"}) {
+      report.put("acks." + code, String.valueOf(acks.getOrDefault(code, 0L)));
+    }
+    acks.keySet().stream().filter(code -> !code.matches("AA|AE|AR"))
+        .forEach(code -> report.put("acks." + code, String.valueOf(acks.get(code))));
+    report.put("errors", String.valueOf(errors));
+    report.put("throughput.per.second", String.format("%.1f", latency.getTotalCount() / (double) durationSeconds));
+    putPercentiles(report, "latency.us", latency);
+    putPercentiles(report, "service.us", service);
+    portLatency.forEach((port, histogram) -> {
+      report.put("port." + port + ".messages", String.valueOf(histogram.getTotalCount()));
+      putPercentiles(report, "port." + port + ".latency.us", histogram);
+    });
+    kafkaRecords.forEach((clientId, count) -> report.put("kafka.records." + clientId, String.valueOf(count)));
+    kafkaBytes.forEach((clientId, bytes) -> report.put("kafka.bytes." + clientId, String.valueOf(bytes)));
+    if (shutdown != null) {
+      // over the whole run, the warm-up included
+      long accepted = workers.stream().mapToLong(connection -> connection.accepted).sum();
+      long delivered = kafkaRecords.getOrDefault(shutdown.ingestClientId, 0L);
+      report.put("shutdown.after.seconds", options.get("shutdown-after"));
+      report.put("shutdown.millis", String.valueOf(shutdown.millis));
+      ShutdownCoordinator.Report drain = shutdown.coordinator.getReport();
+      if (drain != null) {
+        report.put("shutdown.drain.millis", String.valueOf(drain.getMillis()));
+        report.put("shutdown.drain.exchanges.in.flight", String.valueOf(drain.getExchangesInFlight()));
+        report.put("shutdown.drain.exchanges.left", String.valueOf(drain.getExchangesLeft()));
+        report.put("shutdown.drain.conversions.left", String.valueOf(drain.getConversionsLeft()));
+        report.put("shutdown.drain.audit.left", String.valueOf(drain.getAuditEventsLeft()));
+        report.put("shutdown.drain.producers.flushed", String.valueOf(drain.isProducersFlushed()));
+        report.put("shutdown.drain.connections.paused", String.valueOf(drain.getConnectionsPaused()));
+      }
+      report.put("shutdown.messages.accepted", String.valueOf(accepted));
+      report.put("shutdown.accepted.not.delivered", String.valueOf(Math.max(0, accepted - delivered)));
+      report.put("shutdown.delivered.not.accepted", String.valueOf(Math.max(0, delivered - accepted)));
+    }
+
+    Path reportPath = Paths.get(options.getOrDefault("report", "target/mllp-load-report.txt"));
+    writeReport(report, latency, reportPath);
+  }
+
+  private ConfigurableApplicationContext startApplication() {
+    String[] args = applicationArgs.toArray(new String[0]);
+    if ("broker".equals(options.get("kafka"))) {
+      return SpringApplication.run(Application.class, args);
+    }
+    inMemoryKafka = new InMemoryKafka();
+    return InMemoryKafka.run(inMemoryKafka, args);
+  }
+
+  /*
+   * Closes the application at a given time, while the connections keep sending
+   */
+  private static final class Shutdown extends Thread {
+    private final ConfigurableApplicationContext application;
+    private final long atNanos;
+    private final ShutdownCoordinator coordinator;
+    private final String ingestClientId;
+    private long millis;
+
+    Shutdown(ConfigurableApplicationContext application, long atNanos) {
+      super("mllp-load-shutdown");
+      this.application = application;
+      this.atNanos = atNanos;
+      this.coordinator = application.getBean(ShutdownCoordinator.class);
+      this.ingestClientId = application.getBean(KafkaSettings.class).getClientId();
+    }
+
+    @Override
+    public void run() {
+      LockSupport.parkNanos(atNanos - System.nanoTime());
+      System.out.println("Closing the application under load");
+      long start = System.nanoTime();
+      application.close();
+      millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+  }
+
+  private static long gcCount() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+  }
+
+  private static long gcMillis() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+  }
+
+  private static void putPercentiles(Map<String, String> report, String prefix, Histogram histogram) {
+    report.put(prefix + ".p50", String.valueOf(histogram.getValueAtPercentile(50)));
+    report.put(prefix + ".p90", String.valueOf(histogram.getValueAtPercentile(90)));
+    report.put(prefix + ".p99", String.valueOf(histogram.getValueAtPercentile(99)));
+    report.put(prefix + ".p99.9", String.valueOf(histogram.getValueAtPercentile(99.9)));
+    report.put(prefix + ".max", String.valueOf(histogram.getMaxValue()));
+  }
+
+  private static void writeReport(Map<String, String> report, Histogram latency, Path path) throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    StringBuilder text = new StringBuilder("# iDAAS MLLP load report\n");
+    report.forEach((key, value) -> text.append(key).append('=').append(value).append('\n'));
+    Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+    System.out.print(text);
+
+    String name = path.getFileName().toString();
+    Path distribution = path.resolveSibling(
+        (name.endsWith(".txt") ? name.substring(0, name.length() - 4) : name) + ".hgrm");
+    try (PrintStream out = new PrintStream(distribution.toFile(), "UTF-8")) {
+      // values are in microseconds, reported in milliseconds
+      latency.outputPercentileDistribution(out, 1000.0);
+    }
+    System.out.println("Report written to " + path + ", latency distribution to " + distribution);
+  }
+
+  private static List<Integer> parsePorts(String value) {
+    List<Integer> ports = new ArrayList<>();
+    for (String part : value.split(",")) {
+      String[] range = part.trim().split("-");
+      int first = Integer.parseInt(range[0]);
+      int last = range.length > 1 ? Integer.parseInt(range[1]) : first;
+      for (int port = first; port <= last; port++) {
+        ports.add(port);
+      }
+    }
+    return ports;
+  }
+
+  private static List<CorpusMessage> loadCorpus(String location) throws IOException {
+    List<CorpusMessage> corpus = new ArrayList<>();
+    if (location == null) {
+      corpus.add(CorpusMessage.parse(Hl7Samples.ADT_A01));
+      corpus.add(CorpusMessage.parse(Hl7Samples.ORU_R01));
+      return corpus;
+    }
+    List<Path> files;
+    File root = new File(location);
+    if (root.isDirectory()) {
+      try (Stream<Path> walk = Files.walk(root.toPath())) {
+        files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+      }
+    } else {
+      files = new ArrayList<>();
+      files.add(root.toPath());
+    }
+    for (Path file : files) {
+      String text = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1)
+          .replace("\r\n", "\r").replace('\n', '\r');
+      // a file can hold several messages, each starts at an MSH segment
+      for (String message : text.split("\r(?=MSH)")) {
+        if (message.trim().startsWith("MSH")) {
+          corpus.add(CorpusMessage.parse(message.trim()));
+        }
+      }
+    }
+    if (corpus.isEmpty()) {
+      throw new IllegalArgumentException("No HL7 messages found in " + location);
+    }
+    return corpus;
+  }
+
+  private static List<CorpusMessage> messagesFor(List<CorpusMessage> corpus, String trigger) {
+    List<CorpusMessage> matching = corpus.stream()
+        .filter(message -> message.trigger.equals(trigger))
+        .collect(Collectors.toList());
+    return matching.isEmpty() ? corpus : matching;
+  }
+
+  /*
+   * A corpus message split around MSH-10, so every send gets its own control id
+   */
+  private static final class CorpusMessage {
+    private final String trigger;
+    private final byte[] head;
+    private final byte[] tail;
+
+    private CorpusMessage(String trigger, byte[] head, byte[] tail) {
+      this.trigger = trigger;
+      this.head = head;
+      this.tail = tail;
+    }
+
+    static CorpusMessage parse(String message) {
+      String text = message.endsWith("\r") ? message : message + "\r";
+      int segmentEnd = text.indexOf('\r');
+      if (!text.startsWith("MSH") || segmentEnd < 8) {
+        throw new IllegalArgumentException("Not an HL7 message: " + text.substring(0, Math.min(40, text.length())));
+      }
+      char fieldSeparator = text.charAt(3);
+      // MSH-1 is the separator itself, so MSH-n starts after the (n - 1)th separator
+      int[] starts = new int[12];
+      int field = 1;
+      for (int i = 3; i < segmentEnd && field < 11; i++) {
+        if (text.charAt(i) == fieldSeparator) {
+          starts[++field] = i + 1;
+        }
+      }
+      if (field < 10) {
+        throw new IllegalArgumentException("MSH has no control id (MSH-10)");
+      }
+      if (field == 10) {
+        // MSH-10 is the last field
+        starts[11] = segmentEnd + 1;
+      }
+      String messageType = text.substring(starts[9], starts[10] - 1);
+      int component = messageType.indexOf(text.charAt(4));
+      return new CorpusMessage(component < 0 ? messageType : messageType.substring(0, component),
+          text.substring(0, starts[10]).getBytes(StandardCharsets.ISO_8859_1),
+          text.substring(starts[11] - 1).getBytes(StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  /*
+   * One MLLP connection, sending a message and waiting for its ACK before the next one
+   */
+  private static final class Connection implements Runnable {
+    private final String host;
+    private final int port;
+    private final List<CorpusMessage> messages;
+    private final String idPrefix;
+    private final long firstSendNanos;
+    private final long intervalNanos;
+    private final long measureStartNanos;
+    private final long endNanos;
+    private final Histogram latency = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    private final Histogram service = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    private final Map<String, Long> acks = new TreeMap<>();
+    private final ByteArrayOutputStream ack = new ByteArrayOutputStream(256);
+    private long errors;
+    // AAs over the whole run, the warm-up included
+    private long accepted;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    Connection(String host, int port, List<CorpusMessage> messages, String idPrefix, long firstSendNanos,
+               long intervalNanos, long measureStartNanos, long endNanos) {
+      this.host = host;
+      this.port = port;
+      this.messages = messages;
+      this.idPrefix = idPrefix;
+      this.firstSendNanos = firstSendNanos;
+      this.intervalNanos = intervalNanos;
+      this.measureStartNanos = measureStartNanos;
+      this.endNanos = endNanos;
+    }
+
+    @Override
+    public void run() {
+      long next = firstSendNanos;
+      long sequence = 0;
+      while (true) {
+        long due;
+        if (intervalNanos > 0) {
+          due = next;
+          next += intervalNanos;
+          if (due >= endNanos) {
+            break;
+          }
+          long wait;
+          while ((wait = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+          }
+        } else {
+          due = Math.max(System.nanoTime(), firstSendNanos);
+          if (due >= endNanos) {
+            break;
+          }
+          LockSupport.parkNanos(due - System.nanoTime());
+        }
+        boolean measured = due >= measureStartNanos;
+        CorpusMessage message = messages.get((int) (sequence % messages.size()));
+        String controlId = idPrefix + sequence++;
+        try {
+          connect();
+          long sent = System.nanoTime();
+          out.write(START_BLOCK);
+          out.write(message.head);
+          out.write(controlId.getBytes(StandardCharsets.ISO_8859_1));
+          out.write(message.tail);
+          out.write(END_BLOCK);
+          out.write(CARRIAGE_RETURN);
+          out.flush();
+          String code = readAckCode();
+          long done = System.nanoTime();
+          if ("AA".equals(code)) {
+            accepted++;
+          }
+          if (measured) {
+            latency.recordValue(Math.min(HIGHEST_LATENCY_MICROS, (done - due) / 1000));
+            service.recordValue(Math.min(HIGHEST_LATENCY_MICROS, (done - sent) / 1000));
+            acks.merge(code, 1L, Long::sum);
+          }
+        } catch (IOException e) {
+          if (measured) {
+            errors++;
+          }
+          disconnect();
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+          // the messages due while backing off are not sent, they count as errors as well
+          while (intervalNanos > 0 && next < Math.min(System.nanoTime(), endNanos)) {
+            if (next >= measureStartNanos) {
+              errors++;
+            }
+            next += intervalNanos;
+            sequence++;
+          }
+        }
+      }
+      disconnect();
+    }
+
+    private void connect() throws IOException {
+      if (socket == null) {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(30));
+        in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream());
+      }
+    }
+
+    private void disconnect() {
+      if (socket != null) {
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // already gone
+        }
+        socket = null;
+      }
+    }
+
+    /*
+     * Reads one MLLP frame and returns MSA-1, or the frame start when there is no MSA
+     */
+    private String readAckCode() throws IOException {
+      ack.reset();
+      int previous = -1;
+      while (true) {
+        int b = in.read();
+        if (b < 0) {
+          throw new EOFException("Connection closed before the ACK");
+        }
+        if (previous == END_BLOCK && b == CARRIAGE_RETURN) {
+          break;
+        }
+        if (b != START_BLOCK && b != END_BLOCK) {
+          ack.write(b);
+        }
+        previous = b;
+      }
+      String text = new String(ack.toByteArray(), StandardCharsets.ISO_8859_1);
+      int msa = text.indexOf("\rMSA");
+      if (msa < 0 || text.length() < msa + 7) {
+        return "NO_MSA";
+      }
+      return text.substring(msa + 5, msa + 7);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * What the per route metrics add to an HL7 route: attaching the metadata alone, against
+ * attaching it with RouteMeters and recording the Kafka ack and reply steps on a Prometheus
+ * registry. Run with -t to see the cost with several route threads sharing the meters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMetricsBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Meters {
+    private PrometheusMeterRegistry registry;
+    private RouteMetadata metadata;
+    private RouteMeters routeMeters;
+
+    @Setup
+    public void setup() {
+      registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+      metadata = new RouteMetadata("hl7Admissions", AuditEvent.IndustryStandard.HL7, "ADT",
+          "MCTN_MMS_ADT", "ADT message received");
+      routeMeters = new RouteMeters(registry, metadata);
+    }
+  }
+
+  private DefaultCamelContext context;
+  private Exchange exchange;
+  private byte[] body;
+  private byte[] ack;
+  private RouteMetricsProcessor kafkaAck;
+  private RouteMetricsProcessor reply;
+
+  @Setup
+  public void setup() throws Exception {
+    context = new DefaultCamelContext();
+    context.start();
+    exchange = new DefaultExchange(context);
+    body = Hl7Samples.bytes("ADT");
+    ack = "MSH|^~\\&|LABADT|DH|MMS|DH|20200529||ACK^A01|1|P|2.5\rMSA|AA|HL7MSG00001\r"
+        .getBytes(StandardCharsets.ISO_8859_1);
+    kafkaAck = new RouteMetricsProcessor(RouteMetricsProcessor.Stage.KAFKA_ACK);
+    reply = new RouteMetricsProcessor(RouteMetricsProcessor.Stage.REPLY);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    context.stop();
+  }
+
+  @Benchmark
+  public Object withoutMetrics(Meters meters) {
+    exchange.getIn().setBody(body);
+    exchange.setProperty(RouteMetadata.EXCHANGE_PROPERTY, meters.metadata);
+    exchange.setProperty(Exchange.CHARSET_NAME, "iso-8859-1");
+    exchange.getIn().setBody(ack);
+    return exchange;
+  }
+
+  @Benchmark
+  public Object withMetrics(Meters meters) throws Exception {
+    exchange.getIn().setBody(body);
+    exchange.setProperty(RouteMetadata.EXCHANGE_PROPERTY, meters.metadata);
+    exchange.setProperty(Exchange.CHARSET_NAME, "iso-8859-1");
+    meters.routeMeters.received(exchange);
+    kafkaAck.process(exchange);
+    exchange.getIn().setBody(ack);
+    reply.process(exchange);
+    return exchange;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Object withMetricsContended(Meters meters) throws Exception {
+    return withMetrics(meters);
+  }
+}
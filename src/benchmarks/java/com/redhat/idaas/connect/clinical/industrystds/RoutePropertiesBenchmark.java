@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.builder.ExpressionBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.spi.Language;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The setProperty constant/simple chain every route used to run on receive, against attaching
+ * the RouteMetadata the routes share now
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutePropertiesBenchmark {
+
+  private DefaultCamelContext context;
+  private Exchange exchange;
+  private String[] names;
+  private Expression[] expressions;
+  private RouteMetadata metadata;
+
+  @Setup
+  public void setup() throws Exception {
+    context = new DefaultCamelContext();
+    context.start();
+    exchange = new DefaultExchange(context);
+    exchange.setFromRouteId("hl7Admissions");
+    exchange.getIn().setBody(Hl7Samples.ADT_A01);
+
+    Language simple = context.resolveLanguage("simple");
+    names = new String[] {"processingtype", "appname", "industrystd", "messagetrigger", "componentname",
+        "processname", "camelID", "exchangeID", "internalMsgID", "bodyData", "auditdetails"};
+    expressions = new Expression[] {
+        ExpressionBuilder.constantExpression("data"),
+        ExpressionBuilder.constantExpression("iDAAS-ConnectClinical-IndustryStd"),
+        ExpressionBuilder.constantExpression("HL7"),
+        ExpressionBuilder.constantExpression("ADT"),
+        simple.createExpression("${routeId}"),
+        ExpressionBuilder.constantExpression("Input"),
+        simple.createExpression("${camelId}"),
+        simple.createExpression("${exchangeId}"),
+        simple.createExpression("${id}"),
+        simple.createExpression("${body}"),
+        ExpressionBuilder.constantExpression("ADT message received")};
+    metadata = new RouteMetadata("hl7Admissions", AuditEvent.IndustryStandard.HL7, "ADT",
+        "MCTN_MMS_ADT", "ADT message received");
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    context.stop();
+  }
+
+  @Benchmark
+  public Object setPropertyChain() {
+    // what .setProperty(name).constant()/.simple() evaluates per step
+    for (int i = 0; i < names.length; i++) {
+      exchange.setProperty(names[i], expressions[i].evaluate(exchange, Object.class));
+    }
+    return exchange.getProperties();
+  }
+
+  @Benchmark
+  public Object routeMetadata() {
+    exchange.setProperty(RouteMetadata.EXCHANGE_PROPERTY, metadata);
+    exchange.setProperty(Exchange.CHARSET_NAME, "iso-8859-1");
+    return exchange.getProperties();
+  }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/*
+ * Startup timer. Launches the platform in a JVM of its own, as it is deployed, and measures
+ * from the launch when it can take traffic:
+ *
+ *  - listeners.ms     every MLLP port accepts connections
+ *  - first.ack.ms     every MLLP port answered its first message, an ADT sent on each as soon
+ *                     as the port accepts, and first.ack.latency.ms the slowest of those ACKs
+ *  - first.fhir.ms    a FHIR route answered a POST with a 2xx, first.fhir.latency.ms that request
+ *  - ready.ms         /actuator/health on the management port answers UP, the readiness probe
+ *  - ready.ack.latency.ms  an HL7 2.3 ADT sent on a new connection to the first port once ready,
+ *                     the first message a pod taken into service gets
+ *
+ *  mvn -Pbenchmarks compile exec:java -Dexec.mainClass=com.redhat.idaas.connect.clinical.industrystds.StartupTimer \
+ *      -Dexec.args="--runs=5 --startup-settings.fast-start=true"
+ *
+ *  --runs=3                  launches, the report has each run and the median
+ *  --java-options=<options>  JVM options of the launched platform, e.g. -XX:SharedArchiveFile=<archive>
+ *  --classpath=<classpath>   classpath of the launched platform, default this JVM's
+ *  --kafka=broker            launch it against the kafka-settings brokers instead of InMemoryKafka
+ *  --ports=10001-10008       MLLP ports to time
+ *  --fhir-path=patient       FHIR route to time, under /idaas/
+ *  --management-port=8081
+ *  --timeout=120             seconds a launch gets before it counts as failed
+ *  --report=target/startup-report.txt
+ *
+ * Any other argument is passed to the platform. It is launched with InMemoryKafka.main unless
+ * --kafka=broker, so the timer runs without a broker, and with spool-settings.enabled off unless
+ * given so the runs start alike. The platform's output goes to target/startup-<run>.log.
+ */
+public final class StartupTimer {
+  private static final byte START_BLOCK = 0x0b;
+  private static final byte END_BLOCK = 0x1c;
+  private static final byte CARRIAGE_RETURN = 0x0d;
+  private static final String PATIENT = "{\"resourceType\":\"Patient\",\"active\":true,"
+      + "\"name\":[{\"use\":\"official\",\"family\":\"Chalmers\",\"given\":[\"Peter\",\"James\"]}],"
+      + "\"gender\":\"male\",\"birthDate\":\"1974-12-25\"}";
+  private static final long PROBE_INTERVAL_MILLIS = 50;
+
+  private final Map<String, String> options;
+  private final List<String> applicationArgs;
+
+  private StartupTimer(Map<String, String> options, List<String> applicationArgs) {
+    this.options = options;
+    this.applicationArgs = applicationArgs;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>();
+    List<String> applicationArgs = new ArrayList<>();
+    for (String arg : args) {
+      String name = arg.startsWith("--") && arg.indexOf('=') > 2 ? arg.substring(2, arg.indexOf('=')) : null;
+      if (name != null && isOption(name)) {
+        options.put(name, arg.substring(arg.indexOf('=') + 1));
+      } else {
+        applicationArgs.add(arg);
+      }
+    }
+    new StartupTimer(options, applicationArgs).run();
+  }
+
+  private static boolean isOption(String name) {
+    switch (name) {
+      case "runs":
+      case "java-options":
+      case "classpath":
+      case "kafka":
+      case "ports":
+      case "fhir-path":
+      case "management-port":
+      case "timeout":
+      case "report":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void run() throws Exception {
+    int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+    List<Integer> ports = parsePorts(options.getOrDefault("ports", "10001-10008"));
+    Path reportPath = Paths.get(options.getOrDefault("report", "target/startup-report.txt"));
+    List<Timings> results = new ArrayList<>();
+    for (int run = 1; run <= runs; run++) {
+      Timings timings = launch(run, ports, reportPath.resolveSibling("startup-" + run + ".log"));
+      System.out.printf("Run %d: listeners %d ms, first ACK %d ms (%d ms latency), first FHIR %d ms, ready %d ms"
+          + " (ACK after %d ms)%n", run, timings.listeners, timings.firstAck, timings.firstAckLatency, timings.firstFhir,
+          timings.ready, timings.readyAckLatency);
+      results.add(timings);
+    }
+
+    Map<String, String> report = new LinkedHashMap<>();
+    report.put("runs", String.valueOf(runs));
+    report.put("ports", ports.toString());
+    report.put("java.options", options.getOrDefault("java-options", ""));
+    report.put("application.args", String.join(" ", applicationArgs));
+    report.put("cpus", String.valueOf(Runtime.getRuntime().availableProcessors()));
+    report.put("java.version", System.getProperty("java.version"));
+    putMedian(report, "listeners.ms", results, timings -> timings.listeners);
+    putMedian(report, "first.ack.ms", results, timings -> timings.firstAck);
+    putMedian(report, "first.ack.latency.ms", results, timings -> timings.firstAckLatency);
+    putMedian(report, "first.fhir.ms", results, timings -> timings.firstFhir);
+    putMedian(report, "first.fhir.latency.ms", results, timings -> timings.firstFhirLatency);
+    putMedian(report, "ready.ms", results, timings -> timings.ready);
+    putMedian(report, "ready.ack.latency.ms", results, timings -> timings.readyAckLatency);
+
+    if (reportPath.getParent() != null) {
+      Files.createDirectories(reportPath.getParent());
+    }
+    StringBuilder text = new StringBuilder("# iDAAS startup report\n");
+    report.forEach((key, value) -> text.append(key).append('=').append(value).append('\n'));
+    Files.write(reportPath, text.toString().getBytes(StandardCharsets.UTF_8));
+    System.out.print(text);
+    System.out.println("Report written to " + reportPath);
+  }
+
+  /*
+   * One launch, timed until every probe succeeded, then stopped as a pod is
+   */
+  private Timings launch(int run, List<Integer> ports, Path log) throws Exception {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    String javaOptions = options.getOrDefault("java-options", "").trim();
+    if (!javaOptions.isEmpty()) {
+      command.addAll(Arrays.asList(javaOptions.split("\\s+")));
+    }
+    command.add("-cp");
+    command.add(options.getOrDefault("classpath", System.getProperty("java.class.path")));
+    command.add("broker".equals(options.get("kafka")) ? Application.class.getName() : InMemoryKafka.class.getName());
+    command.addAll(applicationArgs);
+    if (applicationArgs.stream().noneMatch(arg -> arg.startsWith("--spool-settings.enabled="))) {
+      command.add("--spool-settings.enabled=false");
+    }
+    if (log.getParent() != null) {
+      Files.createDirectories(log.getParent());
+    }
+    long timeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("timeout", "120")));
+    String fhirPath = options.getOrDefault("fhir-path", "patient");
+    int managementPort = Integer.parseInt(options.getOrDefault("management-port", "8081"));
+
+    for (int port : ports) {
+      if (status("http://localhost:" + managementPort + "/actuator/health", null) != 0 || isListening(port)) {
+        throw new IOException("The platform is already running, the timer launches its own");
+      }
+    }
+
+    long launched = System.nanoTime();
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    long deadline = launched + timeoutNanos;
+    Timings timings = new Timings();
+    try {
+      List<Probe> probes = new ArrayList<>();
+      for (int port : ports) {
+        probes.add(new Probe(() -> firstAck(port, launched, deadline)));
+      }
+      Probe fhir = new Probe(() -> firstFhir("http://localhost:8080/idaas/" + fhirPath, launched, deadline));
+      Probe ready = new Probe(() -> ready("http://localhost:" + managementPort + "/actuator/health", launched, deadline));
+      probes.add(fhir);
+      probes.add(ready);
+      for (Probe probe : probes) {
+        probe.start();
+      }
+      for (Probe probe : probes) {
+        probe.join();
+        if (probe.failure != null) {
+          throw new IOException("Run " + run + " failed, see " + log, probe.failure);
+        }
+      }
+      for (Probe probe : probes.subList(0, ports.size())) {
+        timings.listeners = Math.max(timings.listeners, probe.result[0]);
+        timings.firstAck = Math.max(timings.firstAck, probe.result[1]);
+        timings.firstAckLatency = Math.max(timings.firstAckLatency, probe.result[2]);
+      }
+      timings.firstFhir = fhir.result[1];
+      timings.firstFhirLatency = fhir.result[2];
+      timings.ready = ready.result[1];
+      timings.readyAckLatency = readyAck(ports.get(0), deadline);
+    } finally {
+      process.destroy();
+      if (!process.waitFor(60, TimeUnit.SECONDS)) {
+        process.destroyForcibly().waitFor();
+      }
+    }
+    return timings;
+  }
+
+  /*
+   * Connects as soon as the port accepts and sends one ADT: ms to the connection, to the ACK
+   * and the ACK's latency
+   */
+  private static long[] firstAck(int port, long launched, long deadline) throws Exception {
+    Socket socket;
+    // a socket whose connect failed is closed, each attempt takes a new one
+    while ((socket = connect(port)) == null) {
+      await(deadline, "port " + port);
+    }
+    try {
+      long connected = System.nanoTime();
+      socket.setSoTimeout((int) TimeUnit.NANOSECONDS.toMillis(Math.max(1, deadline - connected)));
+      OutputStream out = socket.getOutputStream();
+      out.write(Hl7Samples.framed("ADT"));
+      out.flush();
+      String ack = readFrame(new BufferedInputStream(socket.getInputStream()));
+      long acked = System.nanoTime();
+      if (!ack.contains("MSA|AA")) {
+        throw new IOException("Port " + port + " did not accept the message: " + ack);
+      }
+      return new long[] {millis(connected - launched), millis(acked - launched), millis(acked - connected)};
+    } finally {
+      socket.close();
+    }
+  }
+
+  /*
+   * One HL7 2.3 ADT, a version the first ACK probes did not send: the ACK's latency
+   */
+  private static long readyAck(int port, long deadline) throws Exception {
+    byte[] message = Hl7Samples.message("ADT").replace("|P|2.5|", "|P|2.3|").getBytes(StandardCharsets.ISO_8859_1);
+    try (Socket socket = connect(port)) {
+      if (socket == null) {
+        throw new IOException("Port " + port + " closed once ready");
+      }
+      socket.setSoTimeout((int) TimeUnit.NANOSECONDS.toMillis(Math.max(1, deadline - System.nanoTime())));
+      long sent = System.nanoTime();
+      OutputStream out = socket.getOutputStream();
+      out.write(START_BLOCK);
+      out.write(message);
+      out.write(END_BLOCK);
+      out.write(CARRIAGE_RETURN);
+      out.flush();
+      String ack = readFrame(new BufferedInputStream(socket.getInputStream()));
+      if (!ack.contains("MSA|AA")) {
+        throw new IOException("Port " + port + " did not accept the message: " + ack);
+      }
+      return millis(System.nanoTime() - sent);
+    }
+  }
+
+  /*
+   * Posts a Patient until a 2xx comes back, 404 until the route is up: ms to that response and its latency
+   */
+  private static long[] firstFhir(String url, long launched, long deadline) throws Exception {
+    byte[] body = PATIENT.getBytes(StandardCharsets.UTF_8);
+    while (true) {
+      long sent = System.nanoTime();
+      int status = status(url, body);
+      long answered = System.nanoTime();
+      if (status >= 200 && status < 300) {
+        return new long[] {0, millis(answered - launched), millis(answered - sent)};
+      }
+      await(deadline, url);
+    }
+  }
+
+  private static long[] ready(String url, long launched, long deadline) throws Exception {
+    while (status(url, null) != 200) {
+      await(deadline, url);
+    }
+    return new long[] {0, millis(System.nanoTime() - launched), 0};
+  }
+
+  /*
+   * The response status, 0 when the server does not answer yet
+   */
+  private static int status(String url, byte[] body) {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+      connection.setConnectTimeout(1000);
+      connection.setReadTimeout(60000);
+      if (body != null) {
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/fhir+json");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(body);
+        }
+      }
+      int status = connection.getResponseCode();
+      InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      if (in != null) {
+        while (in.read() >= 0) {
+          // drained so the connection can be reused
+        }
+        in.close();
+      }
+      return status;
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static boolean isListening(int port) throws IOException {
+    Socket socket = connect(port);
+    if (socket == null) {
+      return false;
+    }
+    socket.close();
+    return true;
+  }
+
+  /*
+   * A connection to the port, null while nothing listens on it
+   */
+  private static Socket connect(int port) {
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress("localhost", port), 1000);
+      return socket;
+    } catch (IOException e) {
+      try {
+        socket.close();
+      } catch (IOException closing) {
+        // not connected
+      }
+      return null;
+    }
+  }
+
+  private static String readFrame(InputStream in) throws IOException {
+    StringBuilder frame = new StringBuilder();
+    int b;
+    while ((b = in.read()) != START_BLOCK) {
+      if (b < 0) {
+        throw new IOException("Connection closed before the ACK");
+      }
+    }
+    while ((b = in.read()) != END_BLOCK) {
+      if (b < 0) {
+        throw new IOException("Connection closed inside the ACK");
+      }
+      frame.append((char) b);
+    }
+    if (in.read() != CARRIAGE_RETURN) {
+      throw new IOException("ACK frame not ended by a carriage return");
+    }
+    return frame.toString();
+  }
+
+  private static void await(long deadline, String what) throws Exception {
+    if (System.nanoTime() > deadline) {
+      throw new IOException("Timed out waiting for " + what);
+    }
+    Thread.sleep(PROBE_INTERVAL_MILLIS);
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static void putMedian(Map<String, String> report, String key, List<Timings> results,
+                                ToLongFunction<Timings> value) {
+    List<Long> values = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      long v = value.applyAsLong(results.get(i));
+      values.add(v);
+      report.put("run." + (i + 1) + "." + key, String.valueOf(v));
+    }
+    Collections.sort(values);
+    report.put(key, String.valueOf(values.get(values.size() / 2)));
+  }
+
+  private static List<Integer> parsePorts(String ports) {
+    List<Integer> parsed = new ArrayList<>();
+    for (String part : ports.split(",")) {
+      String[] range = part.trim().split("-");
+      int from = Integer.parseInt(range[0]);
+      int to = range.length > 1 ? Integer.parseInt(range[1]) : from;
+      for (int port = from; port <= to; port++) {
+        parsed.add(port);
+      }
+    }
+    return parsed;
+  }
+
+  private interface Measurement {
+    long[] measure() throws Exception;
+  }
+
+  private static final class Probe extends Thread {
+    private final Measurement measurement;
+    private long[] result;
+    private Exception failure;
+
+    Probe(Measurement measurement) {
+      this.measurement = measurement;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        result = measurement.measure();
+      } catch (Exception e) {
+        failure = e;
+      }
+    }
+  }
+
+  private static final class Timings {
+    private long listeners;
+    private long firstAck;
+    private long firstAckLatency;
+    private long firstFhir;
+    private long firstFhirLatency;
+    private long ready;
+    private long readyAckLatency;
+  }
+}
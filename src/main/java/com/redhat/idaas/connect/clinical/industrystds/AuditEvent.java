@@ -0,0 +1,314 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+ * One entry on the opsMgmt_PlatformTransactions topic
+ *
+ * Replaces the twelve String headers the auditing route used to copy from the exchange.
+ * The industry standard is an enum and the trigger, processing type, process name,
+ * component and details are interned against WELL_KNOWN_VALUES, so the common values
+ * go on the wire as a one byte code. The clinical payload is referenced by its length
+ * and a 64 bit hash and is only carried when the audit settings ask for it.
+ *
+ * See AuditEventSerializer for the wire layout.
+ */
+public final class AuditEvent {
+
+  public enum IndustryStandard {
+    UNKNOWN, HL7, FHIR;
+
+    static IndustryStandard of(String value) {
+      if (value != null) {
+        for (IndustryStandard standard : values()) {
+          if (standard.name().equalsIgnoreCase(value)) {
+            return standard;
+          }
+        }
+      }
+      return UNKNOWN;
+    }
+  }
+
+  /*
+   * Interned values, see AuditEventSerializer for how they map to wire codes.
+   * Only ever append to this list, existing codes are already on the broker.
+   */
+  static final String[] WELL_KNOWN_VALUES = {
+      // processing types and process names
+      "data", "Input", "Response", "ACK Processed",
+      // HL7 triggers
+      "ADT", "ORM", "ORU", "RDE", "MFN", "MDM", "SCH", "VXU",
+      // FHIR resources
+      "AdverseEvent", "AllergyIntollerance", "Appointment", "AppointmentResponse", "CarePlan", "CareTeam",
+      "ClinicalImpression", "CodeSystem", "Communication", "Condition", "Consent", "DetectedIssue", "Device",
+      "DeviceRequest", "DeviceUseStatement", "DiagnosticResult", "EffectEvidenceSynthesis", "Encounter",
+      "EpisodeOfCare", "Evidence", "EvidenceVariable", "Goal", "HealthcareService", "ImagingStudy", "Location",
+      "Measure", "MeasureReport", "MedicationAdministration", "MedicationRequest", "Observation", "Order",
+      "Organization", "OrganizationAffiliation", "Patient", "Person", "Practitioner", "Procedure",
+      "Questionaire", "QuestionaireResponse", "ResearchDefinition", "ResearchElementDefinition", "ResearchStudy",
+      "ResearchSubject", "Schedule", "ServiceRequest", "Specimen", "Substance", "SupplyDelivery", "SupplyRequest",
+      "TestReport", "TestScript", "VerificationResult"
+  };
+  static final Map<String, Integer> WELL_KNOWN_CODES = new HashMap<>();
+
+  static {
+    for (int i = 0; i < WELL_KNOWN_VALUES.length; i++) {
+      WELL_KNOWN_CODES.put(WELL_KNOWN_VALUES[i], i + 1);
+    }
+  }
+
+  private final long timestamp;
+  private final IndustryStandard industryStandard;
+  private final String messageTrigger;
+  private final String processingType;
+  private final String processName;
+  private final String component;
+  private final String auditDetails;
+  private final String camelId;
+  private final String exchangeId;
+  private final String internalMsgId;
+  private final int bodyLength;
+  private final long bodyHash;
+  private final byte[] body;
+
+  private AuditEvent(Builder builder) {
+    this.timestamp = builder.timestamp;
+    this.industryStandard = builder.industryStandard;
+    this.messageTrigger = builder.messageTrigger;
+    this.processingType = builder.processingType;
+    this.processName = builder.processName;
+    this.component = builder.component;
+    this.auditDetails = builder.auditDetails;
+    this.camelId = builder.camelId;
+    this.exchangeId = builder.exchangeId;
+    this.internalMsgId = builder.internalMsgId;
+    this.bodyLength = builder.bodyLength;
+    this.bodyHash = builder.bodyHash;
+    this.body = builder.body;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /*
+   * 64 bit FNV-1a, a cheap stable reference to the payload so audit consumers can match
+   * an audit entry to the message on the data topic without the payload being repeated
+   */
+  public static long hash(byte[] data) {
+    long hash = 0xcbf29ce484222325L;
+    if (data != null) {
+      for (byte b : data) {
+        hash ^= (b & 0xff);
+        hash *= 0x100000001b3L;
+      }
+    }
+    return hash;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public IndustryStandard getIndustryStandard() {
+    return industryStandard;
+  }
+
+  public String getMessageTrigger() {
+    return messageTrigger;
+  }
+
+  public String getProcessingType() {
+    return processingType;
+  }
+
+  public String getProcessName() {
+    return processName;
+  }
+
+  public String getComponent() {
+    return component;
+  }
+
+  public String getAuditDetails() {
+    return auditDetails;
+  }
+
+  public String getCamelId() {
+    return camelId;
+  }
+
+  public String getExchangeId() {
+    return exchangeId;
+  }
+
+  public String getInternalMsgId() {
+    return internalMsgId;
+  }
+
+  public int getBodyLength() {
+    return bodyLength;
+  }
+
+  public long getBodyHash() {
+    return bodyHash;
+  }
+
+  /*
+   * Null unless the event was built with the payload included
+   */
+  public byte[] getBody() {
+    return body;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof AuditEvent)) {
+      return false;
+    }
+    AuditEvent that = (AuditEvent) other;
+    return timestamp == that.timestamp
+        && bodyLength == that.bodyLength
+        && bodyHash == that.bodyHash
+        && industryStandard == that.industryStandard
+        && Objects.equals(messageTrigger, that.messageTrigger)
+        && Objects.equals(processingType, that.processingType)
+        && Objects.equals(processName, that.processName)
+        && Objects.equals(component, that.component)
+        && Objects.equals(auditDetails, that.auditDetails)
+        && Objects.equals(camelId, that.camelId)
+        && Objects.equals(exchangeId, that.exchangeId)
+        && Objects.equals(internalMsgId, that.internalMsgId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(timestamp, industryStandard, messageTrigger, exchangeId, bodyHash);
+  }
+
+  @Override
+  public String toString() {
+    return "AuditEvent[" + industryStandard + " " + messageTrigger + " " + processName + " '" + auditDetails
+        + "' exchange " + exchangeId + ", body " + bodyLength + " bytes #" + Long.toHexString(bodyHash) + "]";
+  }
+
+  public static final class Builder {
+    private long timestamp = System.currentTimeMillis();
+    private IndustryStandard industryStandard = IndustryStandard.UNKNOWN;
+    private String messageTrigger;
+    private String processingType;
+    private String processName;
+    private String component;
+    private String auditDetails;
+    private String camelId;
+    private String exchangeId;
+    private String internalMsgId;
+    private int bodyLength;
+    private long bodyHash = hash(null);
+    private byte[] body;
+
+    private Builder() {
+    }
+
+    public Builder timestamp(long timestamp) {
+      this.timestamp = timestamp;
+      return this;
+    }
+
+    public Builder industryStandard(IndustryStandard industryStandard) {
+      this.industryStandard = industryStandard == null ? IndustryStandard.UNKNOWN : industryStandard;
+      return this;
+    }
+
+    public Builder industryStandard(String industryStandard) {
+      this.industryStandard = IndustryStandard.of(industryStandard);
+      return this;
+    }
+
+    public Builder messageTrigger(String messageTrigger) {
+      this.messageTrigger = messageTrigger;
+      return this;
+    }
+
+    public Builder processingType(String processingType) {
+      this.processingType = processingType;
+      return this;
+    }
+
+    public Builder processName(String processName) {
+      this.processName = processName;
+      return this;
+    }
+
+    public Builder component(String component) {
+      this.component = component;
+      return this;
+    }
+
+    public Builder auditDetails(String auditDetails) {
+      this.auditDetails = auditDetails;
+      return this;
+    }
+
+    public Builder camelId(String camelId) {
+      this.camelId = camelId;
+      return this;
+    }
+
+    public Builder exchangeId(String exchangeId) {
+      this.exchangeId = exchangeId;
+      return this;
+    }
+
+    public Builder internalMsgId(String internalMsgId) {
+      this.internalMsgId = internalMsgId;
+      return this;
+    }
+
+    /*
+     * Records the payload reference, the bytes themselves are only kept when include is true
+     */
+    public Builder body(byte[] body, boolean include) {
+      this.bodyLength = body == null ? 0 : body.length;
+      this.bodyHash = hash(body);
+      this.body = include ? body : null;
+      return this;
+    }
+
+    /*
+     * Used when decoding, where length and hash come off the wire
+     */
+    Builder bodyReference(int bodyLength, long bodyHash, byte[] body) {
+      this.bodyLength = bodyLength;
+      this.bodyHash = bodyHash;
+      this.body = body;
+      return this;
+    }
+
+    public AuditEvent build() {
+      return new AuditEvent(this);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/*
+ * Reads the layout written by AuditEventSerializer, for consumers of opsMgmt_PlatformTransactions
+ */
+public class AuditEventDeserializer implements Deserializer<AuditEvent> {
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+  }
+
+  @Override
+  public AuditEvent deserialize(String topic, byte[] data) {
+    return data == null ? null : decode(data);
+  }
+
+  @Override
+  public void close() {
+  }
+
+  public static AuditEvent decode(byte[] data) {
+    try {
+      Input in = new Input(data);
+      int version = in.readByte();
+      if (version != AuditEventSerializer.FORMAT_VERSION) {
+        throw new SerializationException("Unsupported audit event format version " + version);
+      }
+      int flags = in.readByte();
+      AuditEvent.IndustryStandard[] standards = AuditEvent.IndustryStandard.values();
+      int standard = in.readByte();
+      AuditEvent.Builder builder = AuditEvent.builder()
+          .industryStandard(standard < standards.length ? standards[standard] : AuditEvent.IndustryStandard.UNKNOWN)
+          .timestamp(in.readVarLong())
+          .messageTrigger(in.readToken())
+          .processingType(in.readToken())
+          .processName(in.readToken())
+          .component(in.readToken())
+          .auditDetails(in.readToken())
+          .camelId(in.readString());
+      String exchangeId = in.readString();
+      builder.exchangeId(exchangeId);
+      if ((flags & AuditEventSerializer.FLAG_INTERNAL_ID_IS_EXCHANGE_ID) != 0) {
+        builder.internalMsgId(exchangeId);
+      } else {
+        builder.internalMsgId(in.readString());
+      }
+      int bodyLength = (int) in.readVarLong();
+      long bodyHash = in.readLong();
+      byte[] body = (flags & AuditEventSerializer.FLAG_BODY) != 0 ? in.readBytes(bodyLength) : null;
+      return builder.bodyReference(bodyLength, bodyHash, body).build();
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new SerializationException("Truncated audit event of " + data.length + " bytes");
+    }
+  }
+
+  private static final class Input {
+    private final byte[] data;
+    private int position;
+
+    Input(byte[] data) {
+      this.data = data;
+    }
+
+    int readByte() {
+      return data[position++] & 0xFF;
+    }
+
+    long readVarLong() {
+      long value = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    long readLong() {
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | readByte();
+      }
+      return value;
+    }
+
+    byte[] readBytes(int length) {
+      if (position + length > data.length) {
+        throw new ArrayIndexOutOfBoundsException(position + length);
+      }
+      byte[] bytes = new byte[length];
+      System.arraycopy(data, position, bytes, 0, length);
+      position += length;
+      return bytes;
+    }
+
+    String readToken() {
+      int code = (int) readVarLong();
+      if (code == 0) {
+        return null;
+      }
+      if (code == 1) {
+        return readString();
+      }
+      if (code - 2 >= AuditEvent.WELL_KNOWN_VALUES.length) {
+        throw new SerializationException("Unknown interned audit value " + code);
+      }
+      return AuditEvent.WELL_KNOWN_VALUES[code - 2];
+    }
+
+    String readString() {
+      int length = (int) readVarLong();
+      if (length == 0) {
+        return null;
+      }
+      byte[] bytes = readBytes(length - 1);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
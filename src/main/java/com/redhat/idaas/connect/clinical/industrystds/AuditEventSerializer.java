@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/*
+ * Compact binary encoding of an AuditEvent for the opsMgmt_PlatformTransactions topic
+ *
+ *  byte     format version (1)
+ *  byte     flags: 0x01 body included, 0x02 internalMsgId equals exchangeId
+ *  byte     industry standard ordinal
+ *  varlong  timestamp, epoch millis
+ *  token    message trigger, processing type, process name, component, audit details
+ *  string   camel id, exchange id, internal message id (absent when flag 0x02 is set)
+ *  varint   body length
+ *  long     body hash, big endian
+ *  bytes    body, only when flag 0x01 is set
+ *
+ * A token is a varint: 0 = null, 1 = a string follows, n >= 2 = AuditEvent.WELL_KNOWN_VALUES[n - 2].
+ * A string is a varint of its UTF-8 length + 1 (0 = null) followed by the bytes.
+ */
+public class AuditEventSerializer implements Serializer<AuditEvent> {
+  static final byte FORMAT_VERSION = 1;
+  static final int FLAG_BODY = 0x01;
+  static final int FLAG_INTERNAL_ID_IS_EXCHANGE_ID = 0x02;
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+  }
+
+  @Override
+  public byte[] serialize(String topic, AuditEvent event) {
+    return event == null ? null : encode(event);
+  }
+
+  @Override
+  public void close() {
+  }
+
+  public static byte[] encode(AuditEvent event) {
+    byte[] body = event.getBody();
+    boolean sameIds = event.getInternalMsgId() != null && event.getInternalMsgId().equals(event.getExchangeId());
+    int flags = (body != null ? FLAG_BODY : 0) | (sameIds ? FLAG_INTERNAL_ID_IS_EXCHANGE_ID : 0);
+
+    Output out = new Output(96 + (body != null ? body.length : 0));
+    out.writeByte(FORMAT_VERSION);
+    out.writeByte(flags);
+    out.writeByte(event.getIndustryStandard().ordinal());
+    out.writeVarLong(event.getTimestamp());
+    out.writeToken(event.getMessageTrigger());
+    out.writeToken(event.getProcessingType());
+    out.writeToken(event.getProcessName());
+    out.writeToken(event.getComponent());
+    out.writeToken(event.getAuditDetails());
+    out.writeString(event.getCamelId());
+    out.writeString(event.getExchangeId());
+    if (!sameIds) {
+      out.writeString(event.getInternalMsgId());
+    }
+    out.writeVarLong(event.getBodyLength());
+    out.writeLong(event.getBodyHash());
+    if (body != null) {
+      out.writeBytes(body);
+    }
+    return out.toByteArray();
+  }
+
+  private static final class Output {
+    private byte[] buffer;
+    private int position;
+
+    Output(int initialCapacity) {
+      buffer = new byte[initialCapacity];
+    }
+
+    void writeByte(int value) {
+      ensure(1);
+      buffer[position++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+      ensure(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    void writeLong(long value) {
+      ensure(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeBytes(byte[] bytes) {
+      ensure(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    void writeToken(String value) {
+      if (value == null) {
+        writeVarLong(0);
+        return;
+      }
+      Integer code = AuditEvent.WELL_KNOWN_CODES.get(value);
+      if (code != null) {
+        writeVarLong(code + 1);
+      } else {
+        writeVarLong(1);
+        writeString(value);
+      }
+    }
+
+    void writeString(String value) {
+      if (value == null) {
+        writeVarLong(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarLong(bytes.length + 1L);
+      writeBytes(bytes);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensure(int needed) {
+      if (position + needed > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + needed));
+      }
+    }
+  }
+}
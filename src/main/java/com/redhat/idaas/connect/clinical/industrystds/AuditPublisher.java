@@ -0,0 +1,285 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ObjLongConsumer;
+
+/*
+ * Asynchronous audit pipeline
+ *
+ * Routes push AuditEvents into a bounded lock-free ring buffer and return straight away.
+ * A small fixed set of writer threads drain the buffer in batches and hand them to a pooled
+ * Kafka producer tuned for the audit topic (linger / batch size), so auditing never runs
+ * a synchronous Kafka send on an MLLP or servlet thread. When the buffer is full the
+ * configured overflow policy decides between dropping, blocking briefly or spilling to disk.
+ */
+@Component
+public class AuditPublisher implements SmartLifecycle {
+  private static final Logger log = LoggerFactory.getLogger(AuditPublisher.class);
+  // start before and stop after the Camel context so nothing routed is left unaudited
+  private static final int PHASE = Integer.MAX_VALUE - 100;
+
+  private final AuditSettings settings;
+  private final KafkaSettings kafkaSettings;
+  private final KafkaProducerPool producerPool;
+  private final AuditRingBuffer<AuditEvent> buffer;
+  private final LongAdder queued = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder spilled = new LongAdder();
+  private final LongAdder flushed = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final List<Thread> writers = new ArrayList<>();
+  private volatile boolean running;
+  private volatile ObjLongConsumer<AuditEvent> deliveryListener;
+  private Producer<byte[], AuditEvent> producer;
+  private AuditSpillFile spillFile;
+
+  public AuditPublisher(AuditSettings settings, KafkaSettings kafkaSettings, KafkaProducerPool producerPool) {
+    this.settings = settings;
+    this.kafkaSettings = kafkaSettings;
+    this.producerPool = producerPool;
+    this.buffer = new AuditRingBuffer<>(settings.getCapacity());
+  }
+
+  /*
+   * Called on the route thread, never does I/O unless the overflow policy is SPILL and the buffer is full
+   */
+  public void publish(AuditEvent event) {
+    if (buffer.offer(event)) {
+      queued.increment();
+      return;
+    }
+    switch (settings.getOverflow()) {
+      case BLOCK:
+        if (offerWithin(event, TimeUnit.MILLISECONDS.toNanos(settings.getBlockTimeoutMs()))) {
+          queued.increment();
+          return;
+        }
+        break;
+      case SPILL:
+        if (spillFile != null && spillFile.append(event)) {
+          spilled.increment();
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    dropped.increment();
+  }
+
+  public long getQueuedCount() {
+    return queued.sum();
+  }
+
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  public long getSpilledCount() {
+    return spilled.sum();
+  }
+
+  public long getFlushedCount() {
+    return flushed.sum();
+  }
+
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  public int getBufferedCount() {
+    return buffer.size();
+  }
+
+  /*
+   * Told of every event Kafka acknowledged, with the millis since the event was raised, on the producer thread
+   */
+  public void setDeliveryListener(ObjLongConsumer<AuditEvent> deliveryListener) {
+    this.deliveryListener = deliveryListener;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    producer = producerPool.acquire(producerConfig());
+    if (settings.getOverflow() == AuditSettings.OverflowPolicy.SPILL) {
+      try {
+        spillFile = new AuditSpillFile(settings.getSpillDirectory());
+      } catch (IOException e) {
+        log.warn("Audit spill directory {} is not usable, overflowing events will be dropped", settings.getSpillDirectory(), e);
+      }
+    }
+    running = true;
+    for (int i = 0; i < Math.max(1, settings.getWriterThreads()); i++) {
+      Thread writer = new Thread(this::drain, "idaas-audit-writer-" + i);
+      writer.setDaemon(true);
+      writer.start();
+      writers.add(writer);
+    }
+    log.info("Audit pipeline started: topic {}, buffer {}, {} writer(s), overflow {}",
+        settings.getTopic(), buffer.capacity(), writers.size(), settings.getOverflow());
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    for (Thread writer : writers) {
+      LockSupport.unpark(writer);
+      try {
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    writers.clear();
+    // the pool closes the producer once everything has stopped
+    if (!producerPool.flush(producer)) {
+      log.warn("Audit events still unacknowledged by Kafka after the flush timeout");
+    }
+    if (spillFile != null) {
+      try {
+        spillFile.close();
+      } catch (IOException e) {
+        log.warn("Unable to close audit spill file", e);
+      }
+    }
+    log.info("Audit pipeline stopped: queued {}, flushed {}, failed {}, dropped {}, spilled {}, left in buffer {}",
+        getQueuedCount(), getFlushedCount(), getFailedCount(), getDroppedCount(), getSpilledCount(), getBufferedCount());
+  }
+
+  @Override
+  public void stop(Runnable callback) {
+    stop();
+    callback.run();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return true;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  private void drain() {
+    int batchSize = Math.max(1, settings.getDrainBatchSize());
+    long idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, settings.getLingerMs()));
+    List<AuditEvent> batch = new ArrayList<>(batchSize);
+    while (running || buffer.size() > 0) {
+      if (buffer.drainTo(batch, batchSize) == 0) {
+        if (!replaySpill()) {
+          LockSupport.parkNanos(idleNanos);
+        }
+        continue;
+      }
+      for (AuditEvent event : batch) {
+        send(event);
+      }
+      batch.clear();
+    }
+  }
+
+  private boolean replaySpill() {
+    if (spillFile == null || !spillFile.hasPending() || !running) {
+      return false;
+    }
+    try {
+      int replayed = spillFile.replay(this::send);
+      if (replayed > 0) {
+        log.info("Replayed {} spilled audit events", replayed);
+      }
+      return replayed > 0;
+    } catch (IOException e) {
+      log.warn("Unable to replay audit spill files", e);
+      return false;
+    }
+  }
+
+  private void send(AuditEvent event) {
+    try {
+      producer.send(new ProducerRecord<>(settings.getTopic(), event), (metadata, exception) -> {
+        if (exception == null) {
+          flushed.increment();
+          ObjLongConsumer<AuditEvent> listener = deliveryListener;
+          if (listener != null) {
+            listener.accept(event, System.currentTimeMillis() - event.getTimestamp());
+          }
+        } else {
+          failed.increment();
+          log.debug("Audit event was not delivered to {}", settings.getTopic(), exception);
+        }
+      });
+    } catch (RuntimeException e) {
+      failed.increment();
+      log.debug("Audit event was not handed to the producer", e);
+    }
+  }
+
+  private boolean offerWithin(AuditEvent event, long timeoutNanos) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    while (System.nanoTime() < deadline) {
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+      if (buffer.offer(event)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * The kafka-settings producer config with the audit overrides, brokers default to kafka-settings
+   */
+  private Map<String, Object> producerConfig() {
+    Map<String, Object> config = kafkaSettings.producerConfig();
+    if (settings.getBrokers() != null) {
+      config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, settings.getBrokers());
+    }
+    config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AuditEventSerializer.class.getName());
+    config.put(ProducerConfig.LINGER_MS_CONFIG, String.valueOf(settings.getLingerMs()));
+    config.put(ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(settings.getBatchSizeBytes()));
+    config.put(ProducerConfig.CLIENT_ID_CONFIG, "idaas-audit");
+    return config;
+  }
+}
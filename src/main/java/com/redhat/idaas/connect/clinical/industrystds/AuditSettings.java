@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+ * Audit pipeline settings, bound from the audit-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "audit-settings")
+public class AuditSettings {
+
+  /*
+   * What to do with an audit event when the ring buffer is full
+   *  DROP  - discard it and count it as dropped, never holds up the route
+   *  BLOCK - wait up to blockTimeoutMs for room, then drop
+   *  SPILL - append it to a local spill file that is replayed once the buffer drains
+   */
+  public enum OverflowPolicy {
+    DROP, BLOCK, SPILL
+  }
+
+  private String topic = "opsMgmt_PlatformTransactions";
+  // null uses the kafka-settings brokers
+  private String brokers;
+  // ring buffer slots, rounded up to a power of two
+  private int capacity = 8192;
+  private int writerThreads = 1;
+  // events a writer takes off the buffer per pass
+  private int drainBatchSize = 256;
+  // producer linger.ms and batch.size for the audit topic
+  private int lingerMs = 20;
+  private int batchSizeBytes = 131072;
+  private OverflowPolicy overflow = OverflowPolicy.DROP;
+  private long blockTimeoutMs = 50;
+  private String spillDirectory = "data/audit-spill";
+  // carry the clinical payload in the audit event, by default only its length and hash are sent
+  private boolean includeBody = false;
+
+  public String getTopic() {
+    return topic;
+  }
+
+  public void setTopic(String topic) {
+    this.topic = topic;
+  }
+
+  public String getBrokers() {
+    return brokers;
+  }
+
+  public void setBrokers(String brokers) {
+    this.brokers = brokers;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void setCapacity(int capacity) {
+    this.capacity = capacity;
+  }
+
+  public int getWriterThreads() {
+    return writerThreads;
+  }
+
+  public void setWriterThreads(int writerThreads) {
+    this.writerThreads = writerThreads;
+  }
+
+  public int getDrainBatchSize() {
+    return drainBatchSize;
+  }
+
+  public void setDrainBatchSize(int drainBatchSize) {
+    this.drainBatchSize = drainBatchSize;
+  }
+
+  public int getLingerMs() {
+    return lingerMs;
+  }
+
+  public void setLingerMs(int lingerMs) {
+    this.lingerMs = lingerMs;
+  }
+
+  public int getBatchSizeBytes() {
+    return batchSizeBytes;
+  }
+
+  public void setBatchSizeBytes(int batchSizeBytes) {
+    this.batchSizeBytes = batchSizeBytes;
+  }
+
+  public OverflowPolicy getOverflow() {
+    return overflow;
+  }
+
+  public void setOverflow(OverflowPolicy overflow) {
+    this.overflow = overflow;
+  }
+
+  public long getBlockTimeoutMs() {
+    return blockTimeoutMs;
+  }
+
+  public void setBlockTimeoutMs(long blockTimeoutMs) {
+    this.blockTimeoutMs = blockTimeoutMs;
+  }
+
+  public String getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  public void setSpillDirectory(String spillDirectory) {
+    this.spillDirectory = spillDirectory;
+  }
+
+  public boolean isIncludeBody() {
+    return includeBody;
+  }
+
+  public void setIncludeBody(boolean includeBody) {
+    this.includeBody = includeBody;
+  }
+}
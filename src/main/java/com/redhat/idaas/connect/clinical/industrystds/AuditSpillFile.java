@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+ * Overflow file for the audit ring buffer.
+ *
+ * Events that do not fit in the buffer are appended to the active spill file in their
+ * AuditEventSerializer encoding, each prefixed with its length. When the
+ * writers go idle the active file is closed and every closed file is replayed oldest first
+ * and deleted. Files left behind by a previous run are picked up on the first replay.
+ */
+final class AuditSpillFile implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(AuditSpillFile.class);
+  private static final String PREFIX = "audit-spill-";
+  private static final String SUFFIX = ".bin";
+
+  private final Path directory;
+  private DataOutputStream out;
+  private long sequence;
+  private volatile boolean pending;
+
+  AuditSpillFile(String directory) throws IOException {
+    this.directory = Paths.get(directory);
+    Files.createDirectories(this.directory);
+    this.pending = !listSpillFiles().isEmpty();
+  }
+
+  synchronized boolean append(AuditEvent event) {
+    try {
+      if (out == null) {
+        Path file = directory.resolve(String.format("%s%013d-%06d%s", PREFIX, System.currentTimeMillis(), sequence++, SUFFIX));
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+      }
+      byte[] encoded = AuditEventSerializer.encode(event);
+      out.writeInt(encoded.length);
+      out.write(encoded);
+      pending = true;
+      return true;
+    } catch (IOException e) {
+      log.warn("Unable to spill audit event to {}", directory, e);
+      return false;
+    }
+  }
+
+  boolean hasPending() {
+    return pending;
+  }
+
+  /*
+   * Closes the active file and hands every spilled event to the sink, returns the count
+   */
+  synchronized int replay(Consumer<AuditEvent> sink) throws IOException {
+    closeActive();
+    pending = false;
+    int replayed = 0;
+    for (Path file : listSpillFiles()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        for (;;) {
+          int length;
+          try {
+            length = in.readInt();
+          } catch (EOFException end) {
+            break;
+          }
+          byte[] encoded = new byte[length];
+          in.readFully(encoded);
+          sink.accept(AuditEventDeserializer.decode(encoded));
+          replayed++;
+        }
+      } catch (EOFException truncated) {
+        log.warn("Audit spill file {} ends in a partial record, the partial record was skipped", file);
+      }
+      Files.delete(file);
+    }
+    return replayed;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closeActive();
+  }
+
+  private void closeActive() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+  }
+
+  private List<Path> listSpillFiles() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    // the zero padded timestamp and sequence keep name order equal to spill order
+    Collections.sort(files);
+    return files;
+  }
+}
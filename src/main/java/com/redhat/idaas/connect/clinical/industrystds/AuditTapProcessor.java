@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+/*
+ * Builds the AuditEvent for a route from its RouteMetadata and the exchange ids and hands
+ * it to the AuditPublisher. It only reads the exchange, so one instance per stage is
+ * shared by every route and runs inline on the route thread.
+ */
+public class AuditTapProcessor implements Processor {
+
+  public enum Stage {
+    // the inbound message, before it is sent to its topic
+    RECEIVED,
+    // the acknowledgement returned to the sender
+    ACK
+  }
+
+  private final AuditPublisher publisher;
+  private final boolean includeBody;
+  private final Stage stage;
+
+  public AuditTapProcessor(AuditPublisher publisher, boolean includeBody, Stage stage) {
+    this.publisher = publisher;
+    this.includeBody = includeBody;
+    this.stage = stage;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    RouteMetadata metadata = RouteMetadata.of(exchange);
+    if (metadata == null) {
+      return;
+    }
+    String exchangeId = exchange.getExchangeId();
+    AuditEvent event = AuditEvent.builder()
+        .processingType(RouteMetadata.PROCESSING_TYPE)
+        .industryStandard(metadata.getIndustryStandard())
+        .messageTrigger(metadata.getMessageTrigger())
+        .component(metadata.getRouteId())
+        .processName(RouteMetadata.PROCESS_NAME)
+        .auditDetails(stage == Stage.ACK ? RouteMetadata.ACK_DETAILS : metadata.getReceivedDetails())
+        .camelId(exchange.getContext().getName())
+        .exchangeId(exchangeId)
+        .internalMsgId(exchange.getIn().getMessageId())
+        .body(exchange.getIn().getBody(byte[].class), includeBody)
+        .build();
+    publisher.publish(event);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Route step logging a sample of the message bodies at INFO, shared by all the routes and
+ * direct:logging. The share logged is looked up by the route id of the RouteMetadata.
+ *
+ * Only the first max-bytes of a body are decoded and logged, on one line with the segment
+ * terminators and line breaks written as \r and \n. In HL7 bodies the mask fields are
+ * written as *** when they have a value. The logger goes to an AsyncAppender that drops
+ * events rather than block when its queue is full (logback.xml), so the routes never
+ * wait on the console.
+ */
+public class BodyLogProcessor implements Processor {
+  private static final Logger log = LoggerFactory.getLogger(BodyLogProcessor.class);
+  private static final String MASK = "***";
+  private static final int MSH = segmentId("MSH".toCharArray(), 0);
+
+  private final Map<String, Double> routeSampleRates;
+  private final double sampleRate;
+  private final int maxBytes;
+  // masked fields by segment, the segment id packed in an int
+  private final int[] maskSegments;
+  private final boolean[][] maskFields;
+  private final LongAdder logged = new LongAdder();
+  private final LongAdder truncated = new LongAdder();
+
+  public BodyLogProcessor(Map<String, Double> routeSampleRates, double sampleRate, int maxBytes, List<String> maskFields) {
+    this.routeSampleRates = routeSampleRates;
+    this.sampleRate = sampleRate;
+    this.maxBytes = maxBytes;
+    this.maskSegments = new int[maskFields.size()];
+    this.maskFields = new boolean[maskFields.size()][];
+    int segments = 0;
+    for (String spec : maskFields) {
+      int dash = spec.indexOf('-');
+      int field;
+      try {
+        field = dash == 3 ? Integer.parseInt(spec.substring(4)) : -1;
+      } catch (NumberFormatException e) {
+        field = -1;
+      }
+      if (field < 1) {
+        throw new IllegalArgumentException("Mask field " + spec + " is not SEG-n");
+      }
+      int segment = segmentId(spec.toCharArray(), 0);
+      int slot = 0;
+      while (slot < segments && maskSegments[slot] != segment) {
+        slot++;
+      }
+      if (slot == segments) {
+        maskSegments[segments++] = segment;
+        this.maskFields[slot] = new boolean[field + 1];
+      } else if (this.maskFields[slot].length <= field) {
+        boolean[] grown = new boolean[field + 1];
+        System.arraycopy(this.maskFields[slot], 0, grown, 0, this.maskFields[slot].length);
+        this.maskFields[slot] = grown;
+      }
+      this.maskFields[slot][field] = true;
+    }
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+    RouteMetadata metadata = RouteMetadata.of(exchange);
+    String routeId = metadata == null ? exchange.getFromRouteId() : metadata.getRouteId();
+    Double routeRate = routeId == null ? null : routeSampleRates.get(routeId);
+    double rate = routeRate != null ? routeRate : sampleRate;
+    if (rate <= 0 || rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+      return;
+    }
+    Object body = exchange.getIn().getBody();
+    String window;
+    int length;
+    if (body instanceof byte[]) {
+      byte[] bytes = (byte[]) body;
+      length = bytes.length;
+      String charset = exchange.getProperty(Exchange.CHARSET_NAME, String.class);
+      window = new String(bytes, 0, Math.min(length, maxBytes),
+          charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset));
+    } else {
+      String text = body instanceof String ? (String) body : exchange.getIn().getBody(String.class);
+      length = text == null ? 0 : text.length();
+      window = text == null ? "" : text.substring(0, Math.min(length, maxBytes));
+    }
+    logged.increment();
+    if (length > maxBytes) {
+      truncated.increment();
+      log.info("Route {} {} message, {} bytes, first {}: [{}]", routeId,
+          metadata == null ? null : metadata.getMessageTrigger(), length, maxBytes, render(window));
+    } else {
+      log.info("Route {} {} message, {} bytes: [{}]", routeId,
+          metadata == null ? null : metadata.getMessageTrigger(), length, render(window));
+    }
+  }
+
+  /*
+   * The window on one line, HL7 fields masked. The field separator is read from MSH-1,
+   * the field count starts again on each segment. Runs of plain text are copied whole.
+   */
+  String render(String text) {
+    char[] chars = text.toCharArray();
+    int length = chars.length;
+    StringBuilder out = new StringBuilder(length + 16);
+    boolean hl7 = maskSegments.length > 0 && length > 3 && segmentId(chars, 0) == MSH;
+    char separator = hl7 ? chars[3] : 0;
+    boolean[] fields = null;
+    int field = 0;
+    boolean segmentStart = true;
+    // start of the chars not yet copied
+    int run = 0;
+    int i = 0;
+    while (i < length) {
+      char c = chars[i];
+      if (c == '\r' || c == '\n') {
+        out.append(chars, run, i - run).append(c == '\r' ? "\\r" : "\\n");
+        run = ++i;
+        segmentStart = true;
+        continue;
+      }
+      if (hl7 && segmentStart) {
+        segmentStart = false;
+        fields = null;
+        if (i + 3 < length && chars[i + 3] == separator) {
+          int segment = segmentId(chars, i);
+          for (int slot = 0; slot < maskSegments.length; slot++) {
+            if (maskSegments[slot] == segment) {
+              fields = maskFields[slot];
+            }
+          }
+          // MSH-1 is the separator itself, the next field is MSH-2
+          field = segment == MSH ? 1 : 0;
+        }
+      }
+      i++;
+      if (fields != null && c == separator && ++field < fields.length && fields[field]) {
+        // the whole field, repetitions and components included
+        int end = i;
+        while (end < length && chars[end] != separator && chars[end] != '\r' && chars[end] != '\n') {
+          end++;
+        }
+        if (end > i) {
+          out.append(chars, run, i - run).append(MASK);
+          run = end;
+          i = end;
+        }
+      }
+    }
+    return out.append(chars, run, length - run).toString();
+  }
+
+  public long getLoggedCount() {
+    return logged.sum();
+  }
+
+  public long getTruncatedCount() {
+    return truncated.sum();
+  }
+
+  private static int segmentId(char[] chars, int offset) {
+    return (chars[offset] & 0xff) << 16 | (chars[offset + 1] & 0xff) << 8 | chars[offset + 2] & 0xff;
+  }
+}
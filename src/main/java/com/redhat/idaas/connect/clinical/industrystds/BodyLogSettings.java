@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Message body logging, bound from the body-log-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "body-log-settings")
+public class BodyLogSettings {
+
+  // when true every ingest route logs a sample of its bodies, direct:logging logs whatever is sent to it
+  private boolean enabled = false;
+
+  // share of the messages logged, a route can set its own log-sample-rate
+  private double sampleRate = 0.01;
+
+  // bodies are cut to their first max-bytes
+  private int maxBytes = 1024;
+
+  // HL7 fields (SEG-n) logged as *** when they have a value, FHIR bodies are only truncated
+  private List<String> maskFields = new ArrayList<>(Arrays.asList(
+      "PID-5", "PID-6", "PID-7", "PID-9", "PID-11", "PID-13", "PID-14", "PID-19", "PID-20",
+      "NK1-2", "NK1-4", "NK1-5", "NK1-6", "GT1-3", "GT1-5", "GT1-6", "GT1-12", "IN1-16", "IN1-19"));
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  public void setSampleRate(double sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes(int maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public List<String> getMaskFields() {
+    return maskFields;
+  }
+
+  public void setMaskFields(List<String> maskFields) {
+    this.maskFields = maskFields;
+  }
+
+  public double sampleRate(IngestRouteSettings route) {
+    return route.getLogSampleRate() != null ? route.getLogSampleRate() : sampleRate;
+  }
+}
@@ -16,91 +16,279 @@
  */
 package com.redhat.idaas.connect.clinical.industrystds;
 
-import ca.uhn.fhir.store.IAuditDataStore;
-import org.apache.camel.ExchangePattern;
-import org.apache.camel.LoggingLevel;
+import io.netty.channel.EventLoopGroup;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ThreadPoolRejectedPolicy;
 import org.apache.camel.builder.RouteBuilder;
-import org.apache.camel.component.hl7.HL7;
+import org.apache.camel.builder.ThreadPoolProfileBuilder;
+import org.apache.camel.spi.ThreadPoolProfile;
+import org.apache.camel.model.RouteDefinition;
 import org.apache.camel.component.hl7.HL7MLLPNettyDecoderFactory;
 import org.apache.camel.component.hl7.HL7MLLPNettyEncoderFactory;
-import org.apache.camel.component.kafka.KafkaComponent;
-import org.apache.camel.component.kafka.KafkaConstants;
-import org.apache.camel.component.kafka.KafkaEndpoint;
+import org.apache.camel.component.netty4.NettyComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 //import org.springframework.jms.connection.JmsTransactionManager;
 //import javax.jms.ConnectionFactory;
 import org.springframework.stereotype.Component;
-import sun.util.calendar.BaseCalendar;
-import java.time.LocalDate;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 @Component
 public class CamelConfiguration extends RouteBuilder {
   private static final Logger log = LoggerFactory.getLogger(CamelConfiguration.class);
+  private static final String HL7_CHARSET = "iso-8859-1";
+
+  @Autowired
+  private AuditPublisher auditPublisher;
+  @Autowired
+  private AuditSettings auditSettings;
+  @Autowired
+  private MllpSettings mllpSettings;
+  @Autowired
+  private FhirSettings fhirSettings;
+  @Autowired
+  private KafkaProducerPool producerPool;
+  @Autowired
+  private SpoolSettings spoolSettings;
+  @Autowired
+  private MessageSpool messageSpool;
+  @Autowired
+  private IngestMetrics ingestMetrics;
+  @Autowired
+  private FhirResourceValidator fhirValidator;
+  @Autowired
+  private FhirAdmissionControl admissionControl;
+  @Autowired
+  private DedupSettings dedupSettings;
+  @Autowired
+  private Hl7DuplicateCache duplicateCache;
+  @Autowired
+  private MllpEventLoops mllpEventLoops;
+  @Autowired
+  private MllpConnections mllpConnections;
+  @Autowired
+  private ClaimCheckSettings claimCheckSettings;
+  @Autowired
+  private ContentStore contentStore;
+  @Autowired
+  private StartupSettings startupSettings;
+  @Autowired
+  private WarmUp warmUp;
+  @Autowired
+  private LazyServletRoutes lazyRoutes;
+  @Autowired
+  private Hl7FhirSettings hl7FhirSettings;
+  @Autowired
+  private BodyLogSettings bodyLogSettings;
+  @Autowired
+  private ShutdownCoordinator shutdownCoordinator;
 
   @Bean
   private HL7MLLPNettyEncoderFactory hl7Encoder() {
     HL7MLLPNettyEncoderFactory encoder = new HL7MLLPNettyEncoderFactory();
-    encoder.setCharset("iso-8859-1");
+    encoder.setCharset(HL7_CHARSET);
     //encoder.setConvertLFtoCR(true);
     return encoder;
   }
   @Bean
-  private HL7MLLPNettyDecoderFactory hl7Decoder() {
+  private HL7MLLPNettyDecoderFactory hl7Decoder(MllpSettings mllpSettings) {
     HL7MLLPNettyDecoderFactory decoder = new HL7MLLPNettyDecoderFactory();
-    decoder.setCharset("iso-8859-1");
+    decoder.setCharset(HL7_CHARSET);
+    // Zero copy keeps the frame as the byte[] copied once out of the Netty buffer,
+    // the String is only built if a step asks for it
+    decoder.setProduceString(!mllpSettings.isZeroCopy());
     return decoder;
   }
+
+  /*
+   * The shared MLLP event loops, by name for the listener URIs. MllpEventLoops shuts them down.
+   */
+  @Bean(destroyMethod = "")
+  private EventLoopGroup mllpBossGroup(MllpEventLoops eventLoops) {
+    return eventLoops.getBossGroup();
+  }
+  @Bean(destroyMethod = "")
+  private EventLoopGroup mllpWorkerGroup(MllpEventLoops eventLoops) {
+    return eventLoops.getWorkerGroup();
+  }
   @Bean
-  private KafkaEndpoint kafkaEndpoint(){
-    KafkaEndpoint kafkaEndpoint = new KafkaEndpoint();
-    return kafkaEndpoint;
+  private MllpIdleTimeout mllpIdleTimeout(MllpSettings mllpSettings) {
+    return new MllpIdleTimeout(mllpSettings.getIdleTimeoutSeconds());
   }
+
+  /*
+   * The servlet behind the FHIR routes, at camel.component.servlet.mapping.context-path,
+   * async capable so fhir-settings.async-ingest can release the request threads
+   */
   @Bean
-  private KafkaComponent kafkaComponent(KafkaEndpoint kafkaEndpoint){
-    KafkaComponent kafka = new KafkaComponent();
-    return kafka;
+  private ServletRegistrationBean<FhirIngestServlet> camelServlet(FhirSettings fhirSettings,
+      StartupSettings startupSettings, LazyServletRoutes lazyRoutes,
+      @Value("${camel.component.servlet.mapping.context-path:/idaas/*}") String contextPath) {
+    ServletRegistrationBean<FhirIngestServlet> registration = new ServletRegistrationBean<>(
+        new FhirIngestServlet(fhirSettings.isAsyncIngest(), fhirSettings.getAsyncTimeoutMs(),
+            fhirSettings.getRetryAfterSeconds(), startupSettings.isFastStart() ? lazyRoutes : null), contextPath);
+    // the name the servlet component looks its consumers up by
+    registration.setName("CamelServlet");
+    registration.setAsyncSupported(true);
+    registration.setLoadOnStartup(1);
+    return registration;
   }
 
   /*
-   * Kafka implementation based upon https://camel.apache.org/components/latest/kafka-component.html
+   * Kafka sends go through the shared producer from KafkaProducerPool, configured from the
+   * kafka-settings block, instead of a kafka:// endpoint per route
    *
    */
   @Override
   public void configure() throws Exception {
+    checkRouteTables(mllpSettings, fhirSettings);
 
     /*
      * Audit
      *
-     * Direct component within platform to ensure we can centralize logic
-     * There are some values we will need to set within every route
-     * We are doing this to ensure we dont need to build a series of beans
-     * and we keep the processing as lightweight as possible
+     * Shared processors used by every route to centralize the auditing logic.
+     * The route constants come from the RouteMetadata attached to the exchange,
+     * so no per route auditing properties need to be set.
+     *
+     * The AuditEvent is only queued here, AuditPublisher batches it to the
+     * opsMgmt_PlatformTransactions topic on its own writer threads, so routes
+     * call these inline rather than through a wireTap
      *
      */
-    from("direct:auditing")
-        .setHeader("messageprocesseddate").simple("${date:now:yyyy-MM-dd}")
-        .setHeader("messageprocessedtime").simple("${date:now:HH:mm:ss:SSS}")
-        .setHeader("processingtype").exchangeProperty("processingtype")
-        .setHeader("industrystd").exchangeProperty("industrystd")
-        .setHeader("component").exchangeProperty("componentname")
-        .setHeader("messagetrigger").exchangeProperty("messagetrigger")
-        .setHeader("processname").exchangeProperty("processname")
-        .setHeader("auditdetails").exchangeProperty("auditdetails")
-        .setHeader("camelID").exchangeProperty("camelID")
-        .setHeader("exchangeID").exchangeProperty("exchangeID")
-        .setHeader("internalMsgID").exchangeProperty("internalMsgID")
-        .setHeader("bodyData").exchangeProperty("bodyData")
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=opsMgmt_PlatformTransactions&brokers=localhost:9092")
-    ;
+    Processor auditReceived = new AuditTapProcessor(auditPublisher, auditSettings.isIncludeBody(), AuditTapProcessor.Stage.RECEIVED);
+    Processor auditAck = new AuditTapProcessor(auditPublisher, auditSettings.isIncludeBody(), AuditTapProcessor.Stage.ACK);
+    // ACK built from the MSH bytes, String bodies are kept when zero copy is off
+    Hl7AckProcessor hl7Ack = new Hl7AckProcessor(HL7_CHARSET, !mllpSettings.isZeroCopy());
+    ingestMetrics.bindAckFallbacks(hl7Ack);
+    // loads the HAPI model classes of each version before the first message needs them
+    for (String version : startupSettings.getWarmUpHl7Versions()) {
+      warmUp.add("HL7 " + version + " ACK", () -> hl7Ack.warmUp(version));
+    }
+
+    /*
+     * Metrics
+     *
+     * Each route counts and times its messages on prebuilt RouteMeters, started when the
+     * metadata is attached and recorded once Kafka acknowledged and once the reply is ready
+     */
+    Processor metricsKafkaAck = new RouteMetricsProcessor(RouteMetricsProcessor.Stage.KAFKA_ACK);
+    Processor metricsReply = new RouteMetricsProcessor(RouteMetricsProcessor.Stage.REPLY);
+
     /*
-    *  Logging
-    */
+     * Send to topic
+     *
+     * The topic, and for HL7 the record key (PID-3 by default), come from the route metadata. With the spool enabled messages are appended
+     * to the local write-ahead spool and the route replies once they are on disk, otherwise
+     * they go straight to the shared producer. With async-ack the MLLP routes continue on their
+     * handler thread once the send completes and answer AE on failure.
+     */
+    // the FHIR routes with async-ingest continue here, off the producer's network thread and the spool's sync thread
+    ExecutorService sendContinuations = getContext().getExecutorServiceManager()
+        .newDefaultThreadPool(this, "SendContinuations");
+    // with async-ingest a failed send still fails the request
+    Processor kafkaSend = sendProcessor(fhirSettings.isAsyncIngest(), sendContinuations);
+    Processor hl7KafkaSend = sendProcessor(mllpSettings.isAsyncAck(), sendContinuations);
+    Processor hl7InFlight = new MllpInFlightLimiter(mllpSettings.getMaxInFlightPerConnection(), mllpConnections);
+    if (mllpSettings.getHandlerThreads() > 0) {
+      // the pool the MLLP route steps run on, shared by all the listeners
+      getContext().getComponent("netty4", NettyComponent.class).setMaximumPoolSize(mllpSettings.getHandlerThreads());
+    }
+
+    /*
+     * Duplicates
+     *
+     * With dedup-settings.enabled an HL7 message whose MSH-4 and MSH-10 were already delivered
+     * within the ttl is ACKed again and not resent, the fingerprint is recorded after the send
+     */
+    Processor dedupCheck = new Hl7DedupProcessor(duplicateCache, Hl7DedupProcessor.Stage.CHECK, hl7Ack);
+    Processor dedupRecord = new Hl7DedupProcessor(duplicateCache, Hl7DedupProcessor.Stage.RECORD, hl7Ack);
+    if (dedupSettings.isEnabled()) {
+      ingestMetrics.bindDedup(duplicateCache);
+    }
+
+    /*
+     * Claim-check
+     *
+     * With claim-check-settings.enabled, OBX-5 documents over the threshold go to the local
+     * ContentStore and the message is audited and sent with a reference to them instead
+     */
+    Processor claimCheck = new ClaimCheckProcessor(contentStore, claimCheckSettings.getThresholdBytes(), hl7Ack);
+    if (claimCheckSettings.isEnabled()) {
+      String retrievalPath = claimCheckSettings.getRetrievalPath();
+      String retrievalToken = claimCheckSettings.getRetrievalToken();
+      if (retrievalPath == null || retrievalPath.isEmpty() || retrievalToken == null || retrievalToken.isEmpty()) {
+        throw new IllegalStateException("claim-check-settings.enabled needs a retrieval-path and a retrieval-token,"
+            + " the reference pointers could not be resolved without them");
+      }
+      ingestMetrics.bindClaimCheck(contentStore);
+      ContentRetrievalProcessor retrieval = new ContentRetrievalProcessor(contentStore, retrievalToken);
+      ingestMetrics.bindContentRetrieval(retrieval);
+
+      /*
+       * Claim-check content
+       * -------------------
+       * <hostname>:8080/idaas/content/<id> answers the document a reference pointer points to,
+       * to consumers sending the retrieval token
+       */
+      from("servlet://" + retrievalPath + "?matchOnUriPrefix=true&httpMethodRestrict=GET")
+          .routeId("claimCheckContent")
+          .process(retrieval);
+    }
+
+    /*
+     * HL7 to FHIR
+     *
+     * With hl7-fhir-settings.enabled, ADT, ORU and VXU messages Kafka accepted are converted to
+     * FHIR resources, sent to the topics of the FHIR routes below without holding the ACK
+     */
+    // resource type -> topic, filled once the FHIR routes are built
+    Map<String, String> hl7FhirTopics = new HashMap<>();
+    Hl7FhirProcessor hl7Fhir = null;
+    if (hl7FhirSettings.isEnabled()) {
+      ZoneId zone = hl7FhirSettings.getTimeZone().isEmpty() ? ZoneId.systemDefault() : ZoneId.of(hl7FhirSettings.getTimeZone());
+      // one thread each, a full queue aborts and the processor then converts on the route thread
+      ThreadPoolProfile workerProfile = new ThreadPoolProfileBuilder("Hl7FhirWorkers").poolSize(1).maxPoolSize(1)
+          .maxQueueSize(Math.max(1, hl7FhirSettings.getQueueCapacity() / Math.max(1, hl7FhirSettings.getWorkerThreads())))
+          .rejectedPolicy(ThreadPoolRejectedPolicy.Abort).build();
+      List<ExecutorService> hl7FhirWorkers = new ArrayList<>();
+      for (int i = 0; i < Math.max(1, hl7FhirSettings.getWorkerThreads()); i++) {
+        hl7FhirWorkers.add(getContext().getExecutorServiceManager().newThreadPool(this, "Hl7FhirWorker-" + i, workerProfile));
+      }
+      hl7Fhir = new Hl7FhirProcessor(Hl7FhirMappings.compile(hl7FhirSettings.getMessageTypes(), zone), hl7FhirTopics,
+          entrySender(), hl7FhirWorkers);
+      ingestMetrics.bindHl7Fhir(hl7Fhir);
+      shutdownCoordinator.bindHl7Fhir(hl7Fhir);
+    }
+
+    /*
+     *  Logging
+     *
+     *  With body-log-settings.enabled every route logs a sample of its bodies, cut to max-bytes
+     *  and with the HL7 mask fields hidden, through the async appender of logback.xml.
+     *  Otherwise a route can still log its bodies with the same step:
+     *  .to("direct:logging")
+     */
+    // route id -> share of the bodies logged, filled as the routes are built
+    Map<String, Double> logSampleRates = new HashMap<>();
+    BodyLogProcessor bodyLog = new BodyLogProcessor(logSampleRates, bodyLogSettings.getSampleRate(),
+        bodyLogSettings.getMaxBytes(), bodyLogSettings.getMaskFields());
+    ingestMetrics.bindBodyLog(bodyLog);
     from("direct:logging")
-        .log(LoggingLevel.INFO, log, "HL7 Admissions Message: [${body}]")
-        //To invoke Logging
-        //.to("direct:logging")
+        .process(bodyLog)
     ;
 
     /*
@@ -111,2316 +299,233 @@ public class CamelConfiguration extends RouteBuilder {
 	 *  For leveraging HL7 based files:
 	 *  from("file:src/data-in/hl7v2/adt?delete=true?noop=true")
 	 *
-     *   Simple language reference
-     *   https://camel.apache.org/components/latest/languages/simple-language.html
-     *
+	 *  One MLLP listener per entry of mllp-settings.routes (trigger -> port -> topic)
+	 *  and, with mllp-settings.unified-port, one more taking every trigger of the table,
+	 *  dispatched on MSH-9 to the metadata of the trigger's route
+	 *
      */
-	  // ADT
-	  from("netty4:tcp://0.0.0.0:10001?sync=true&decoder=#hl7Decoder&encoder=#hl7Encoder")
-          .routeId("hl7Admissions")
-          .convertBodyTo(String.class)
-          // set Auditing Properties
-          .setProperty("processingtype").constant("data")
-          .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-          .setProperty("industrystd").constant("HL7")
-          .setProperty("messagetrigger").constant("ADT")
-          .setProperty("componentname").simple("${routeId}")
-          .setProperty("processname").constant("Input")
-          .setProperty("camelID").simple("${camelId}")
-          .setProperty("exchangeID").simple("${exchangeId}")
-          .setProperty("internalMsgID").simple("${id}")
-          .setProperty("bodyData").simple("${body}")
-          .setProperty("auditdetails").constant("ADT message received")
+    // listener -> step attaching the route metadata
+    Map<RouteDefinition, Processor> hl7Listeners = new LinkedHashMap<>();
+    Hl7TriggerDispatcher dispatcher = new Hl7TriggerDispatcher(HL7_CHARSET, hl7Ack);
+    for (IngestRouteSettings route : mllpSettings.getRoutes()) {
+      RouteMetadata metadata = RouteMetadata.forHl7(route, mllpSettings.getKafkaKeyFields());
+      logSampleRates.put(metadata.getRouteId(), bodyLogSettings.sampleRate(route));
+      // body stays as the raw MLLP bytes, the charset is used if a step needs the String
+      Processor attach = attachMetadata(metadata, ingestMetrics.forRoute(metadata), HL7_CHARSET);
+      hl7Listeners.put(from(mllpListenerUri(route.getPort())).routeId(metadata.getRouteId()), attach);
+      if (mllpSettings.getUnifiedPort() != null && !dispatcher.register(route.getTrigger(), attach)) {
+        log.warn("Trigger {} has more than one MLLP route, the unified listener sends it to the first", route.getTrigger());
+      }
+    }
+    if (mllpSettings.getUnifiedPort() != null) {
+      hl7Listeners.put(from(mllpListenerUri(mllpSettings.getUnifiedPort())).routeId(mllpSettings.getUnifiedRouteId()), dispatcher);
+      ingestMetrics.bindHl7Dispatch(dispatcher);
+    }
+    for (Map.Entry<RouteDefinition, Processor> listener : hl7Listeners.entrySet()) {
+      RouteDefinition hl7Route = listener.getKey();
+      if (mllpSettings.isAsyncAck()) {
+        // bound the frames a connection can have waiting on Kafka
+        hl7Route.process(hl7InFlight);
+      }
+      hl7Route.process(listener.getValue());
+      if (dedupSettings.isEnabled()) {
+        hl7Route.process(dedupCheck);
+      }
+      if (claimCheckSettings.isEnabled()) {
+        hl7Route.process(claimCheck);
+      }
+      if (bodyLogSettings.isEnabled()) {
+        // after the claim-check, a large document is logged as its pointer
+        hl7Route.process(bodyLog);
+      }
+      hl7Route
           // iDAAS DataHub Processing
-          .wireTap("direct:auditing")
+          .process(auditReceived)
           // Send to Topic
-          .convertBodyTo(String.class).to("kafka://localhost:9092?topic=MCTN_MMS_ADT&brokers=localhost:9092")
-          //Response to HL7 Message Sent Built by platform
-          .transform(HL7.ack())
-          // This would enable persistence of the ACK
-          .convertBodyTo(String.class)
-          .setProperty("bodyData").simple("${body}")
-          .setProperty("processingtype").constant("data")
-          .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-          .setProperty("industrystd").constant("HL7")
-          .setProperty("messagetrigger").constant("ADT")
-          .setProperty("componentname").simple("${routeId}")
-          .setProperty("camelID").simple("${camelId}")
-          .setProperty("exchangeID").simple("${exchangeId}")
-          .setProperty("internalMsgID").simple("${id}")
-          .setProperty("processname").constant("Input")
-          .setProperty("auditdetails").constant("ACK Processed")
+          .process(hl7KafkaSend)
+          .process(metricsKafkaAck);
+      if (hl7Fhir != null) {
+        hl7Route.process(hl7Fhir);
+      }
+      if (dedupSettings.isEnabled()) {
+        hl7Route.process(dedupRecord);
+      }
+      hl7Route
+          //Response to HL7 Message Sent Built by platform, without parsing the message
+          .process(hl7Ack)
+          .process(metricsReply)
           // iDAAS DataHub Processing
-          .wireTap("direct:auditing")
-
-    ;
-
-    // ORM
-    from("netty4:tcp://0.0.0.0:10002?sync=true&decoder=#hl7Decoder&encoder=#hl7Encoder")
-        .routeId("hl7Orders")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("ORM")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("ORM message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send to Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=MCTN_MMS_ORM&brokers=localhost:9092")
-        //Response to HL7 Message Sent Built by platform
-        .transform(HL7.ack())
-        // This would enable persistence of the ACK
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("ORM")
-        .setProperty("componentname").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ACK Processed")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-    ;
-
-    // ORU
-    from("netty4:tcp://0.0.0.0:10003?sync=true&decoder=#hl7Decoder&encoder=#hl7Encoder")
-        .routeId("hl7Results")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("ORU")
-        .setProperty("componentname").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ORU message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send to Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=MCTN_MMS_ORU&brokers=localhost:9092")
-        //Response to HL7 Message Sent Built by platform
-        .transform(HL7.ack())
-        // This would enable persistence of the ACK
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("ORU")
-        .setProperty("componentname").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ACK Processed")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-    ;
-
-    // RDE
-    from("netty4:tcp://0.0.0.0:10004?sync=true&decoder=#hl7Decoder&encoder=#hl7Encoder")
-        .routeId("hl7Pharmacy")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("RDE")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("RDE message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send to Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=MCTN_MMS_RDE&brokers=localhost:9092")
-        //Response to HL7 Message Sent Built by platform
-        .transform(HL7.ack())
-        // This would enable persistence of the ACK
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("RDE")
-        .setProperty("componentname").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ACK Processed")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-    ;
-
-    // MFN
-    from("netty4:tcp://0.0.0.0:10005?sync=true&decoder=#hl7Decoder&encoder=#hl7Encoder")
-        .routeId("hl7MasterFiles")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("MFN")
-        .setProperty("component").simple("{$routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("MFN message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send to Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=MCTN_MMS_MFN&brokers=localhost:9092")
-        //Response to HL7 Message Sent Built by platform
-        .transform(HL7.ack())
-        // This would enable persistence of the ACK
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("MFN")
-        .setProperty("componentname").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ACK Processed")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-    ;
-
-    // MDM
-    from("netty4:tcp://0.0.0.0:10006?sync=true&decoder=#hl7Decoder&encoder=#hl7Encoder")
-         .routeId("hl7MasterDocs")
-         .convertBodyTo(String.class)
-         // set Auditing Properties
-         .setProperty("processingtype").constant("data")
-         .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-         .setProperty("industrystd").constant("HL7")
-         .setProperty("messagetrigger").constant("MDM")
-         .setProperty("component").simple("${routeId}")
-         .setProperty("camelID").simple("${camelId}")
-         .setProperty("exchangeID").simple("${exchangeId}")
-         .setProperty("internalMsgID").simple("${id}")
-         .setProperty("bodyData").simple("${body}")
-         .setProperty("processname").constant("Input")
-         .setProperty("auditdetails").constant("MDM message received")
-         // iDAAS DataHub Processing
-         .wireTap("direct:auditing")
-         //Send To Topic
-         .convertBodyTo(String.class).to("kafka://localhost:9092?topic=MCTN_MMS_MDM&brokers=localhost:9092")
-         //Response to HL7 Message Sent Built by platform
-         .transform(HL7.ack())
-         // This would enable persistence of the ACK
-         .convertBodyTo(String.class)
-         .setProperty("processingtype").constant("data")
-         .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-         .setProperty("industrystd").constant("HL7")
-         .setProperty("messagetrigger").constant("MDM")
-         .setProperty("componentname").simple("${routeId}")
-         .setProperty("camelID").simple("${camelId}")
-         .setProperty("exchangeID").simple("${exchangeId}")
-         .setProperty("internalMsgID").simple("${id}")
-         .setProperty("bodyData").simple("${body}")
-         .setProperty("processname").constant("Input")
-         .setProperty("auditdetails").constant("ACK Processed")
-         // iDAAS DataHub Processing
-         .wireTap("direct:auditing")
-    ;
-
-    // SCH
-    from("netty4:tcp://0.0.0.0:10007?sync=true&decoder=#hl7Decoder&encoder=#hl7Encoder")
-        .routeId("hl7Schedule")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("SCH")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("SCH message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=MCTN_MMS_SCH&brokers=localhost:9092")
-        //Response to HL7 Message Sent Built by platform
-        .transform(HL7.ack())
-        // This would enable persistence of the ACK
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("SCH")
-        .setProperty("componentname").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ACK Processed")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-    ;
-
-    // VXU
-    from("netty4:tcp://0.0.0.0:10008?sync=true&decoder=#hl7Decoder&encoder=#hl7Encoder")
-        .routeId("hl7Vaccination")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("VXU")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("VXU message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=MCTN_MMS_VXU&brokers=localhost:9092")
-        //Response to HL7 Message Sent Built by platform
-        .transform(HL7.ack())
-        // This would enable persistence of the ACK
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("HL7")
-        .setProperty("messagetrigger").constant("VXU")
-        .setProperty("componentname").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ACK Processed")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-    ;
+          .process(auditAck)
+      ;
+    }
 
     /*
      *  FHIR
      *  ----
      * these will be accessible within the integration when started the default is
      * <hostname>:8080/idaas/<resource>
-     * FHIR Resources:
-     *  CodeSystem,DiagnosticResult,Encounter,EpisodeOfCare,Immunization,MedicationRequest
-     *  MedicationAdminstration,Observation,Order,Patient,Procedure,Schedule
+     * One servlet route per entry of fhir-settings.routes (resource -> path -> topic)
+     * Routes with validation sampled or strict check the resource against R4 before the send
+     * Requests past the in-flight limits or with the Kafka buffer full are answered 429 first
+     * With startup-settings.fast-start a route is only added on the first request to its path
+     *
+     * To invoke an external FHIR server after the topic, add to the route:
+     *  .setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
+     *  .to("jetty:http://localhost:8090/fhir-server/api/v4/<resource>?bridgeEndpoint=true&exchangePattern=InOut")
      */
+    // resource type -> topic, for the Bundle route
+    Map<String, String> fhirTopics = new HashMap<>();
+    ingestMetrics.bindFhirAdmissionControl(admissionControl);
+    for (IngestRouteSettings route : fhirSettings.getRoutes()) {
+      RouteMetadata metadata = RouteMetadata.forFhir(route);
+      logSampleRates.put(metadata.getRouteId(), bodyLogSettings.sampleRate(route));
+      fhirTopics.put(metadata.getMessageTrigger(), metadata.getTopic());
+      FhirAdmissionProcessor admission = new FhirAdmissionProcessor(admissionControl, route.getMaxInFlight());
+      ingestMetrics.bindFhirAdmission(metadata.getRouteId(), admission);
+      FhirValidationProcessor.Mode validation = fhirSettings.validationMode(route);
+      FhirValidationProcessor validationStep = validation == FhirValidationProcessor.Mode.OFF ? null
+          : new FhirValidationProcessor(fhirValidator, validation, fhirSettings.getValidationSampleRate());
+      if (validationStep != null) {
+        ingestMetrics.bindFhirValidation(metadata.getRouteId(), validationStep);
+      }
+      // meters and admission are bound now either way, the route itself may wait for its first request
+      Processor attach = attachMetadata(metadata, ingestMetrics.forRoute(metadata), null);
+      // a new builder each time, a route that failed to be added is built again on the next request
+      Supplier<RouteBuilder> fhirRoutes = () -> new RouteBuilder() {
+        @Override
+        public void configure() {
+          RouteDefinition fhirRoute = from("servlet://" + RouteMetadata.fhirPath(route))
+              .routeId(metadata.getRouteId())
+              // before the body is read, a rejected request costs no more than its 429
+              .process(admission)
+              // read the request once, the audit hash and the producer share the bytes
+              .convertBodyTo(byte[].class)
+              .process(attach)
+              // iDAAS DataHub Processing
+              .process(auditReceived);
+          if (bodyLogSettings.isEnabled()) {
+            fhirRoute.process(bodyLog);
+          }
+          if (validationStep != null) {
+            fhirRoute.process(validationStep);
+          }
+          fhirRoute
+              // Send To Topic
+              .process(kafkaSend)
+              .process(metricsKafkaAck)
+              .process(failUndelivered())
+              .process(metricsReply)
+          ;
+        }
+      };
+      if (startupSettings.isFastStart()) {
+        lazyRoutes.add(RouteMetadata.fhirPath(route), fhirRoutes);
+      } else {
+        includeRoutes(fhirRoutes.get());
+      }
+    }
+
+    hl7FhirTopics.putAll(fhirTopics);
+    hl7FhirTopics.putAll(hl7FhirSettings.getTopics());
 
-    from("servlet://adverseevent")
-        .routeId("FHIRAdverseEvent")
-        // set Auditing Properties
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("AdverseEvent")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Adverse Event message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_AdverseEvent&brokers=localhost:9092")
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/adverseevents?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("adverseevents")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("adverseevents FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
+    /*
+     * FHIR Bundle
+     * -----------
+     * <hostname>:8080/idaas/bundle splits transaction / batch Bundles and sends every entry to the
+     * topic of its resource route above, answering with one batch-response Bundle
+     */
+    if (fhirSettings.getBundlePath() != null && !fhirSettings.getBundlePath().isEmpty()) {
+      RouteMetadata metadata = RouteMetadata.forFhirBundle();
+      FhirBundleSplitter bundleSplitter = new FhirBundleSplitter(fhirTopics, entrySender(),
+          fhirSettings.getBundleMaxInFlight(), fhirSettings.getBundleSendTimeoutMs());
+      ingestMetrics.bindBundleSplitter(bundleSplitter);
+      FhirAdmissionProcessor admission = new FhirAdmissionProcessor(admissionControl, null);
+      ingestMetrics.bindFhirAdmission(metadata.getRouteId(), admission);
+      RouteDefinition bundleRoute = from("servlet://" + fhirSettings.getBundlePath())
+          .routeId(metadata.getRouteId())
+          .process(admission)
+          .convertBodyTo(byte[].class)
+          .process(attachMetadata(metadata, ingestMetrics.forRoute(metadata), null))
+          // iDAAS DataHub Processing
+          .process(auditReceived);
+      if (bodyLogSettings.isEnabled()) {
+        bundleRoute.process(bodyLog);
+      }
+      bundleRoute
+          // Split To Topics
+          .process(bundleSplitter)
+          .process(metricsKafkaAck)
+          .process(metricsReply)
       ;
-    from("servlet://alergyintollerance")
-        .routeId("FHIRAllergyIntollerance")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("messagetrigger").constant("AllergyIntollerance")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Allergy Intollerance message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_AllergyIntellorance&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/allergyintollerance?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("allergyintollerance")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("allergyintollerance FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")// Invoke External FHIR Server
-    ;
-    from("servlet://appointment")
-         .routeId("FHIRAppointment")
-         .convertBodyTo(String.class)
-         // set Auditing Properties
-         .setProperty("processingtype").constant("data")
-         .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-         .setProperty("industrystd").constant("FHIR")
-         .setProperty("messagetrigger").constant("Appointment")
-         .setProperty("component").simple("${routeId}")
-         .setProperty("camelID").simple("${camelId}")
-         .setProperty("exchangeID").simple("${exchangeId}")
-         .setProperty("internalMsgID").simple("${id}")
-         .setProperty("bodyData").simple("${body}")
-         .setProperty("processname").constant("Input")
-         .setProperty("auditdetails").constant("Appointment message received")
-         // iDAAS DataHub Processing
-         .wireTap("direct:auditing")
-         // Send To Topic
-         .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Appointment&brokers=localhost:9092")
-         //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-         //.to("jetty:http://localhost:8090/fhir-server/api/v4/appointment?bridgeEndpoint=true&exchangePattern=InOut")
-         //Process Response
-         //.convertBodyTo(String.class)
-         // set Auditing Properties
-         //.setProperty("processingtype").constant("data")
-         //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-         //.setProperty("industrystd").constant("FHIR")
-         //.setProperty("messagetrigger").constant("appointment")
-         //.setProperty("component").simple("${routeId}")
-         //.setProperty("processname").constant("Response")
-         //.setProperty("camelID").simple("${camelId}")
-         //.setProperty("exchangeID").simple("${exchangeId}")
-         //.setProperty("internalMsgID").simple("${id}")
-         //.setProperty("bodyData").simple("${body}")
-         //.setProperty("auditdetails").constant("appointment FHIR response message received")
-         // iDAAS DataHub Processing
-         //.wireTap("direct:auditing")// Invoke External FHIR Server
-    ;
-    from("servlet://appointmentresponse")
-        .routeId("FHIRAppointmentResponse")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("AppointmentResponse")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Appointment Response message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_AppointmentResponse&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/appointmentresponse?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("appointmentresponse")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("appointmentresponse FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")// Invoke External FHIR Server
-    ;
-    from("servlet://careplan")
-        .routeId("FHIRCarePlan")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("CarePlan")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("CarePlan message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_CarePlan&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/careplan?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("careplan")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("careplan FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")// Invoke External FHIR Server
-    ;
-    from("servlet://careteam")
-        .routeId("FHIRCareTeam")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("CareTeam")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("CareTeam message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_CareTeam&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/careteam?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("careteam")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("careteam FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")// Invoke External FHIR Server
-        // Send To Topic
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://codesystem")
-        .routeId("FHIRCodeSystem")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("CodeSystem")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("CodeSystem message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_CodeSystem&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/codesystem?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("codesystem")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("codesystem FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://consent")
-        .routeId("FHIRConsent")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Consent")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Consent message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Consent&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/consent?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("consent")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("consent FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://clincialimpression")
-        .routeId("FHIRCodeSystem")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ClinicalImpression")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ClinicalImpression message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_ClinicalImpression&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/clinicalimpression?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("clinicalimpression")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("clinicalimpression FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://communication")
-        .routeId("FHIRCommunication")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Communication")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Communication message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Communication&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/communication?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("communication")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("communication FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://condition")
-        .routeId("FHIRCondition")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Condition")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Condition message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Condition&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/communication?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("condition")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("condition FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://detectedissue")
-        .routeId("FHIRDetectedIssue")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DetectedIssue")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Detected Issue message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_DetectedIssue&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/detectedissue?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("detectedissue")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("detectedissue FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://device")
-        .routeId("FHIRDevice")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Device")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Device message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Device&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/device?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("device")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("device FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://devicerequest")
-        .routeId("FHIRDeviceRequest")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DeviceRequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Device Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_DeviceRequest&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/devicerequest?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("devicerequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("devicerequest FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://deviceusestatement")
-        .routeId("FHIRDeviceUseStatement")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DeviceUseStatement")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Device Use Statement message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_DeviceUseStatement&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/deviceusestatement?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("deviceusestatement")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("deviceusestatement FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://diagnosticresult")
-        .routeId("FHIRDiagnosticResult")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DiagnosticResult")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("DiagnosticResult message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_DeviceResult&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/deviceresult?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("deviceresult")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("deviceresult FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://effectevidencesynthesis")
-        .routeId("FHIREffectEvidenceSynthesis")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("EffectEvidenceSynthesis")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Effect Evidence Synthesis message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_EffectEvidenceSynthesis&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/effectevidencesynthesis?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("effectevidencesynthesis")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("effectevidencesynthesis FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://encounter")
-        .routeId("FHIREncounter")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Encounter")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Encounter message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Encounter&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/encounter?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("encounter")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("encounter FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://episodeofcare")
-        .routeId("FHIREpisodeOfCare")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("EpisodeOfCare")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("EpisodeOfCare message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_EpisodeOfCare&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/episodeofcare?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("episodeofcare")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("episodeofcare FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://evidence")
-        .routeId("FHIREvidence")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Evidence")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Evidence message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Evidence&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/evidence?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("evidence")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("evidence FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://evidencevariable")
-        .routeId("FHIREvidenceVariable")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("EvidenceVariable")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Evidence Variable message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_EvidenceVariable&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/evidencevariable?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("evidencevariable")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("evidencevariable FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://goal")
-        .routeId("FHIRGoal")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Goal")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Goal message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Goal&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/goal?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("goal")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("goal FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://healthcareservice")
-        .routeId("FHIRHealthcareService")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("HealthcareService")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("HealthcareService message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_HealthcareService&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/healthcareservice?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("healthcareservice")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("healthcareservice FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://imagingstudy")
-        .routeId("FHIRImagingStudy")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ImagingStudy")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Imaging Study message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_ImagingStudy&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/imagingstudy?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("imagingstudy")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("imagingstudy FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://location")
-        .routeId("FHIRLocation")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Location")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Location message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Location&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/location?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("location")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("location FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://measure")
-        .routeId("FHIRMeasure")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Measure")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Measure message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Measure&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/measure?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("measure")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("measure FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://measurereport")
-        .routeId("FHIRMeasureReport")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("MeasureReport")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Measure Report message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_MeasureReport&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/measurereport?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("measurereport")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("measurereport FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://medicationrequest")
-        .routeId("FHIRMedicationRequest")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("MedicationRequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Medication Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_MedicationRequest&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/medicationrequest?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("medicationrequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("meedicationrequest FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://medicationadministration")
-        .routeId("FHIRMedicationAdministration")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("MedicationAdministration")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Medication Statement message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_MedicationAdministration&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/medicationadministration?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("medicationadministration")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("medicationadministration FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://observation")
-        .routeId("FHIRObservation")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Observation")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Observation message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Observation&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/observation?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("observation")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("observation FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://order")
-        .routeId("FHIROrder")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Order")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Order message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Order&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/order?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("order")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("order FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://organization")
-        .routeId("FHIROrganization")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Organization")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Organization message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Organization&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/organization?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("organization")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("organization FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://organizationaffiliation")
-        .routeId("FHIROrganizationAffiliation")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("OrganizationAffiliation")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Organization Affiliation message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_OrganizationAffiliation&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/organizationaffiliation?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("organizationaffiliation")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("organizationaffiliation FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://patient")
-        .routeId("FHIRPatient")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Patient")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Patient message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Patient&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/patient?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("patient")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("patient FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://person")
-        .routeId("FHIRPerson")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Person")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Person message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Person&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/person?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("person")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("person FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://practitioner")
-        .routeId("FHIRPractitioner")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Practitioner")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("Practitioner message received")
-        .setProperty("bodyData").simple("${body}")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Practitioner&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/practitioner?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("practitioner")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("practitioner FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://procedure")
-        .routeId("FHIRProcedure")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Procedure")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Procedure message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvr_Procedure&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/procedure?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("procedure")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("procedure FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://questionaire")
-        .routeId("FHIRQuestionaire")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Questionaire")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Questionaire message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvrQuestionaire&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/questionaire?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("questionaire")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("questionaire FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://questionaireresponse")
-        .routeId("FHIRQuestionaireResponse")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("QuestionaireResponse")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Questionaire Response message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIRSvrQuestionaireResponse&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/questionaireresponse?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("questionaireresponse")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("questionaireresponse FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://researchelementdefinition")
-        .routeId("FHIRResearchElementhDefinition")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ResearchElementDefinition")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Research Element Definition message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_ResearchElementhDefinition&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/researchelementhdefinition?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("researchelementhdefinition")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("researchelementhdefinition FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://researchdefinition")
-        .routeId("FHIRResearchDefinition")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ResearchDefinition")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Research Definition message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_ResearchDefinition&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/researchdefinition?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("researchdefinition")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("researchdefinition FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://researchstudy")
-        .routeId("FHIRResearchStudy")
-        .convertBodyTo(String.class)
-         // set Auditing Properties
-         .setProperty("processingtype").constant("data")
-         .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-         .setProperty("industrystd").constant("FHIR")
-         .setProperty("messagetrigger").constant("ResearchStudy")
-         .setProperty("component").simple("${routeId}")
-         .setProperty("camelID").simple("${camelId}")
-         .setProperty("exchangeID").simple("${exchangeId}")
-         .setProperty("processname").constant("Input")
-         .setProperty("internalMsgID").simple("${id}")
-         .setProperty("bodyData").simple("${body}")
-         .setProperty("processname").constant("Input")
-         .setProperty("auditdetails").constant("Research Study message received")
-         // iDAAS DataHub Processing
-         .wireTap("direct:auditing")
-         // Send To Topic
-         .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_ResearchStudy&brokers=localhost:9092")
-         //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-         //.to("jetty:http://localhost:8090/fhir-server/api/v4/researchstudy?bridgeEndpoint=true&exchangePattern=InOut")
-         //Process Response
-         //.convertBodyTo(String.class)
-         // set Auditing Properties
-         //.setProperty("processingtype").constant("data")
-         //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-         //.setProperty("industrystd").constant("FHIR")
-         //.setProperty("messagetrigger").constant("researchstudy")
-         //.setProperty("component").simple("${routeId}")
-         //.setProperty("processname").constant("Response")
-         //.setProperty("camelID").simple("${camelId}")
-         //.setProperty("exchangeID").simple("${exchangeId}")
-         //.setProperty("internalMsgID").simple("${id}")
-         //.setProperty("bodyData").simple("${body}")
-         //.setProperty("auditdetails").constant("researchstudy FHIR response message received")
-         // iDAAS DataHub Processing
-         //.wireTap("direct:auditing")
-    ;
-    from("servlet://researchsubject")
-        .routeId("FHIRResearchSubject")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ResearchSubject")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Research Subject message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_ResearchSubject&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/researchsubject?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("researchsubject")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("researchsubject FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://schedule")
-        .routeId("FHIRSchedule")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Schedule")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Schedule message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_Schedule&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/schedule?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("schedule")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("schedule FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://servicerequest")
-        .routeId("FHIRServiceRequest")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ServiceRequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Service Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_ServiceRequest&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/servicerequest?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("servicerequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("servicerequest FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://specimen")
-        .routeId("FHIRSpecimen")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Specimen")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Specimen message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_Specimen&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/specimen?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("specimen")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("specimen FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://substance")
-        .routeId("FHIRSubstance")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Substance")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Substance message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_Sustance&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/substance?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("substance")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("substance FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://supplydelivery")
-        .routeId("FHIRSupplyDelivery")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("SupplyDelivery")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Supply Delivery message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_SupplyDelivery&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/supplydelivery?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("supplydelivery")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("supplydelivery FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://supplyrequest")
-        .routeId("FHIRSupplyRequest")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("SupplyRequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Supply Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_SupplyRequest&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/supplydelivery?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("supplyrequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("supplyrequest FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://testreport")
-        .routeId("FHIRTestReport")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("TestReport")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Test Report message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_TestReport&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/testreport?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("testreport")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("testreport FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://testscript")
-        .routeId("FHIRTestScript")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("TestScript")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Test Script message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_TestScript&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/testscript?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("testscript")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("testscript FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://verificationresult")
-        .routeId("FHIRVerificationResult")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-ConnectClinical-IndustryStd")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("VerificationResult")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Verification Result message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to("kafka://localhost:9092?topic=FHIR_VerificationResult&brokers=localhost:9092")
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/verificationresult?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-ConnectFinancial-IndustryStd")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("verificationresult")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("verificationresult FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
+    }
+    log.info("Built {} MLLP and {} FHIR ingest routes from the route tables",
+        hl7Listeners.size(), fhirSettings.getRoutes().size());
+  }
+
+  /*
+   * The route tables only come from the configuration, a platform started without them would
+   * listen on nothing
+   */
+  static void checkRouteTables(MllpSettings mllpSettings, FhirSettings fhirSettings) {
+    if (mllpSettings.getRoutes().isEmpty() && fhirSettings.getRoutes().isEmpty()) {
+      throw new IllegalStateException("mllp-settings.routes and fhir-settings.routes are both empty,"
+          + " is the classpath application.yml loaded? spring.config.location replaces it, spring.config.additional-location adds to it");
+    }
+  }
+
+  private Processor sendProcessor(boolean async, Executor continuations) {
+    if (spoolSettings.isEnabled()) {
+      return new SpoolSendProcessor(messageSpool, async, continuations);
+    }
+    return new KafkaSendProcessor(producerPool.ingestProducer(), async, continuations);
+  }
+
+  /*
+   * MLLP listener on the shared event loops, with the socket options from mllp-settings
+   */
+  private String mllpListenerUri(int port) {
+    StringBuilder uri = new StringBuilder("netty4:tcp://0.0.0.0:").append(port)
+        .append("?sync=true&encoders=#hl7Encoder")
+        .append("&bossGroup=#mllpBossGroup&workerGroup=#mllpWorkerGroup")
+        .append("&nativeTransport=").append(mllpEventLoops.isNativeTransport())
+        .append("&usingExecutorService=").append(mllpSettings.getHandlerThreads() > 0)
+        .append("&backlog=").append(mllpSettings.getBacklog())
+        .append("&tcpNoDelay=").append(mllpSettings.isTcpNoDelay())
+        .append("&receiveBufferSize=").append(mllpSettings.getReceiveBufferSize());
+    // the connection tracker first, so a shutdown can drain every connection, and the idle timer
+    // in front of the frame decoder so it sees every read
+    uri.append(mllpSettings.getIdleTimeoutSeconds() > 0
+        ? "&decoders=#mllpConnections,#mllpIdleTimeout,#hl7Decoder" : "&decoders=#mllpConnections,#hl7Decoder");
+    return uri.toString();
+  }
+
+  private FhirBundleSplitter.Sender entrySender() {
+    if (spoolSettings.isEnabled()) {
+      return FhirBundleSplitter.Sender.spool(messageSpool);
+    }
+    return FhirBundleSplitter.Sender.kafka(producerPool.ingestProducer());
+  }
+
+  /*
+   * Fails the exchange of a message the asynchronous send could not deliver, which the
+   * blocking send does itself
+   */
+  private static Processor failUndelivered() {
+    return exchange -> {
+      Exception failure = KafkaSendProcessor.deliveryFailure(exchange);
+      if (failure != null) {
+        throw failure;
+      }
+    };
+  }
+
+  private static Processor attachMetadata(RouteMetadata metadata, RouteMeters meters, String charset) {
+    return exchange -> {
+      exchange.setProperty(RouteMetadata.EXCHANGE_PROPERTY, metadata);
+      if (charset != null) {
+        exchange.setProperty(Exchange.CHARSET_NAME, charset);
+      }
+      meters.received(exchange);
+    };
   }
-}
\ No newline at end of file
+}
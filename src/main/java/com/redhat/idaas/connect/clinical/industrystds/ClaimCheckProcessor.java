@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/*
+ * HL7 route step, before the audit and the send, moving large encapsulated documents to the
+ * ContentStore. Every OBX whose OBX-2 is ED and whose first OBX-5 repetition is longer than
+ * the threshold has the document of that ED stored, decoded from Base64 or Hex as it is streamed
+ * in, and the repetition replaced by a reference pointer: OBX-2 becomes RP and OBX-5 <id>^iDAAS^
+ * <type of data>^<data subtype>, the two last copied from the ED. The id is the SHA-256 of the
+ * decoded document. Further repetitions of a repeating OBX-5 stay in the message as they are.
+ * Documents in another encoding, or whose data is not valid for it, are left in the message.
+ *
+ * A message no larger than the threshold can not hold such a document and is left alone
+ * without being scanned. When the store fails the message is answered with an AE and not sent,
+ * so the sender retries it.
+ */
+public class ClaimCheckProcessor implements Processor {
+  private static final byte[] REFERENCE_POINTER = "RP".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] POINTER_APPLICATION = "iDAAS".getBytes(StandardCharsets.US_ASCII);
+
+  private final ContentStore store;
+  private final int thresholdBytes;
+  private final Processor ack;
+
+  public ClaimCheckProcessor(ContentStore store, int thresholdBytes, Processor ack) {
+    this.store = store;
+    this.thresholdBytes = thresholdBytes;
+    this.ack = ack;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    byte[] body = exchange.getIn().getBody(byte[].class);
+    if (body == null || body.length <= thresholdBytes) {
+      return;
+    }
+    Hl7View view = Hl7View.of(exchange);
+    // in message order
+    List<Replacement> replacements = new ArrayList<>();
+    int length = body.length;
+    try {
+      for (int segment = view.segmentIndex("OBX"); segment >= 0; segment = view.segmentIndex("OBX", segment + 1)) {
+        // only the first repetition is checked and replaced, the others are kept
+        Hl7View.Slice value = view.field(segment, 5).repetition(1);
+        if (value.length() <= thresholdBytes || !view.field(segment, 2).contentEquals("ED")) {
+          continue;
+        }
+        InputStream document = document(body, value);
+        if (document == null) {
+          continue;
+        }
+        String id = store.store(document);
+        byte[] pointer = pointer(id, view, value);
+        Hl7View.Slice type = view.field(segment, 2);
+        replacements.add(new Replacement(type.start(), type.end(), REFERENCE_POINTER));
+        replacements.add(new Replacement(value.start(), value.end(), pointer));
+        length += REFERENCE_POINTER.length - type.length() + pointer.length - value.length();
+      }
+    } catch (IOException e) {
+      KafkaSendProcessor.deliveryFailed(exchange, e);
+      ack.process(exchange);
+      RouteMeters.replied(exchange);
+      exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+      return;
+    }
+    if (replacements.isEmpty()) {
+      return;
+    }
+    byte[] checked = new byte[length];
+    int from = 0;
+    int to = 0;
+    for (Replacement replacement : replacements) {
+      System.arraycopy(body, from, checked, to, replacement.start - from);
+      to += replacement.start - from;
+      System.arraycopy(replacement.bytes, 0, checked, to, replacement.bytes.length);
+      to += replacement.bytes.length;
+      from = replacement.end;
+    }
+    System.arraycopy(body, from, checked, to, body.length - from);
+    exchange.getIn().setBody(checked);
+    // the view indexed the old body, the next step to need one builds it over the new
+    exchange.removeProperty(Hl7View.EXCHANGE_PROPERTY);
+  }
+
+  /*
+   * The decoded ED data (component 5) read from the message, null when the ED encoding
+   * (component 4) is neither Base64 nor Hex or the data is not valid for it
+   */
+  private static InputStream document(byte[] body, Hl7View.Slice ed) {
+    Hl7View.Slice encoding = ed.component(4);
+    Hl7View.Slice data = ed.component(5);
+    InputStream encoded = new ByteArrayInputStream(body, data.start(), data.length());
+    if (encoding.contentEquals("Base64")) {
+      return isBase64(body, data.start(), data.end()) ? Base64.getDecoder().wrap(encoded) : null;
+    }
+    if (encoding.contentEquals("Hex")) {
+      return isHex(body, data.start(), data.end()) ? new HexInputStream(encoded) : null;
+    }
+    return null;
+  }
+
+  // the Base64 alphabet with at most two padding characters at the end, which also leaves out escapes
+  private static boolean isBase64(byte[] bytes, int from, int to) {
+    int end = to;
+    for (int padding = 0; padding < 2 && end > from && bytes[end - 1] == '='; padding++) {
+      end--;
+    }
+    if ((end - from) % 4 == 1) {
+      return false;
+    }
+    for (int i = from; i < end; i++) {
+      byte c = bytes[i];
+      if ((c < 'A' || c > 'Z') && (c < 'a' || c > 'z') && (c < '0' || c > '9') && c != '+' && c != '/') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isHex(byte[] bytes, int from, int to) {
+    if ((to - from) % 2 != 0) {
+      return false;
+    }
+    for (int i = from; i < to; i++) {
+      if (Character.digit(bytes[i], 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] pointer(String id, Hl7View view, Hl7View.Slice document) {
+    // ED is source application ^ type of data ^ data subtype ^ encoding ^ data
+    Hl7View.Slice type = document.component(2);
+    Hl7View.Slice subtype = document.component(3);
+    byte componentSeparator = view.componentSeparator();
+    byte[] buffer = view.buffer();
+    byte[] pointer = new byte[id.length() + 1 + POINTER_APPLICATION.length + 1 + type.length() + 1 + subtype.length()];
+    int at = 0;
+    for (int i = 0; i < id.length(); i++) {
+      pointer[at++] = (byte) id.charAt(i);
+    }
+    pointer[at++] = componentSeparator;
+    System.arraycopy(POINTER_APPLICATION, 0, pointer, at, POINTER_APPLICATION.length);
+    at += POINTER_APPLICATION.length;
+    pointer[at++] = componentSeparator;
+    System.arraycopy(buffer, type.start(), pointer, at, type.length());
+    at += type.length();
+    pointer[at++] = componentSeparator;
+    System.arraycopy(buffer, subtype.start(), pointer, at, subtype.length());
+    return pointer;
+  }
+
+  /*
+   * Decodes hex digit pairs, the input was checked to be an even number of hex digits
+   */
+  private static final class HexInputStream extends InputStream {
+    private final InputStream in;
+
+    private HexInputStream(InputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int high = in.read();
+      if (high < 0) {
+        return -1;
+      }
+      return Character.digit(high, 16) << 4 | Character.digit(in.read(), 16);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int count = 0;
+      int value;
+      while (count < length && (value = read()) >= 0) {
+        buffer[offset + count++] = (byte) value;
+      }
+      return count == 0 && length > 0 ? -1 : count;
+    }
+  }
+
+  private static final class Replacement {
+    private final int start;
+    private final int end;
+    private final byte[] bytes;
+
+    private Replacement(int start, int end, byte[] bytes) {
+      this.start = start;
+      this.end = end;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+ * Claim-check settings for large embedded documents, bound from the claim-check-settings
+ * block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "claim-check-settings")
+public class ClaimCheckSettings {
+
+  /*
+   * When true the HL7 routes move every OBX-5 encapsulated document (OBX-2 ED) larger than
+   * threshold-bytes to the content store, and the message sent to Kafka and the audit carries
+   * a reference pointer (OBX-2 RP) to it instead
+   */
+  private boolean enabled = false;
+
+  private int thresholdBytes = 256 * 1024;
+
+  // should be a persistent volume, the references in Kafka only resolve as long as this directory lives
+  private String directory = "data/content";
+
+  // documents are stored in chunks of this size, a chunk shared by two documents is stored once
+  private int chunkSizeBytes = 1024 * 1024;
+
+  // the retrieval route at /idaas/<retrieval-path>/<id>, consumers resolve the pointers with it
+  private String retrievalPath = "content";
+
+  /*
+   * Bearer token the consumers send to the retrieval route, set from a secret. The claim-check
+   * does not start without it, a pointer nothing can resolve is not published.
+   */
+  private String retrievalToken;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getThresholdBytes() {
+    return thresholdBytes;
+  }
+
+  public void setThresholdBytes(int thresholdBytes) {
+    this.thresholdBytes = thresholdBytes;
+  }
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  public int getChunkSizeBytes() {
+    return chunkSizeBytes;
+  }
+
+  public void setChunkSizeBytes(int chunkSizeBytes) {
+    this.chunkSizeBytes = chunkSizeBytes;
+  }
+
+  public String getRetrievalPath() {
+    return retrievalPath;
+  }
+
+  public void setRetrievalPath(String retrievalPath) {
+    this.retrievalPath = retrievalPath;
+  }
+
+  public String getRetrievalToken() {
+    return retrievalToken;
+  }
+
+  public void setRetrievalToken(String retrievalToken) {
+    this.retrievalToken = retrievalToken;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * The claim-check retrieval route, GET <retrieval-path>/<id> answers the document a reference
+ * pointer points to, streamed from the ContentStore a chunk at a time.
+ *
+ * Consumers authenticate with the retrieval token as a bearer token (Authorization: Bearer
+ * <token>). A request without it, or with another token, is answered 401 before the store is
+ * looked at, an unknown id 404.
+ */
+public class ContentRetrievalProcessor implements Processor {
+  private static final String BEARER = "Bearer ";
+
+  private final ContentStore store;
+  private final byte[] token;
+  private final LongAdder served = new LongAdder();
+  private final LongAdder unauthorized = new LongAdder();
+
+  public ContentRetrievalProcessor(ContentStore store, String token) {
+    if (token == null || token.isEmpty()) {
+      throw new IllegalArgumentException("The claim-check retrieval needs a token");
+    }
+    this.store = store;
+    this.token = token.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    String authorization = exchange.getIn().getHeader("Authorization", String.class);
+    String path = exchange.getIn().getHeader(Exchange.HTTP_PATH, "", String.class);
+    // nothing of the request is echoed back
+    exchange.getIn().removeHeaders("*");
+    if (!authorized(authorization)) {
+      unauthorized.increment();
+      exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, 401);
+      exchange.getIn().setHeader("WWW-Authenticate", "Bearer realm=\"iDAAS content\"");
+      // not null, a null body is read again from the request
+      exchange.getIn().setBody(new byte[0]);
+      return;
+    }
+    ContentStore.Document document = store.open(path.substring(path.lastIndexOf('/') + 1));
+    if (document == null) {
+      exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, 404);
+      exchange.getIn().setBody(new byte[0]);
+      return;
+    }
+    served.increment();
+    exchange.getIn().setHeader(Exchange.CONTENT_TYPE, "application/octet-stream");
+    exchange.getIn().setHeader("ETag", "\"" + document.getId() + "\"");
+    exchange.getIn().setBody(document.newInputStream());
+  }
+
+  public long getServedCount() {
+    return served.sum();
+  }
+
+  public long getUnauthorizedCount() {
+    return unauthorized.sum();
+  }
+
+  private boolean authorized(String authorization) {
+    if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+      return false;
+    }
+    // in constant time, the comparison does not tell how much of the token matched
+    return MessageDigest.isEqual(token, authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8));
+  }
+}
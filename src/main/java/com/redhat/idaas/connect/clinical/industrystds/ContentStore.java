@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Local content-addressed store behind the claim-check. A document is kept under the hex
+ * SHA-256 of its bytes, its id, as a manifest listing the SHA-256 of its chunks, and every
+ * chunk under its own hash. Documents are streamed in, only one chunk is held at a time.
+ * Storing a document that is already there writes nothing, and a chunk two documents share
+ * is written once.
+ *
+ * Layout, with the first two hex digits as a directory level:
+ *   objects/ab/<id>    int magic | int version | long length | int chunk count | 32 byte hashes
+ *   chunks/cd/<hash>   the chunk bytes
+ * Every file is written to a temporary file, forced and moved in place, and the chunks before
+ * their manifest, so a document with a manifest is complete. Nothing is ever deleted here.
+ */
+@Component
+public class ContentStore {
+  private static final int MANIFEST_MAGIC = 0x49444343;
+  private static final int MANIFEST_VERSION = 1;
+  private static final int MANIFEST_HEADER_SIZE = 20;
+  private static final int HASH_LENGTH = 32;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Path objects;
+  private final Path chunks;
+  private final int chunkSize;
+  private final LongAdder stored = new LongAdder();
+  private final LongAdder deduplicated = new LongAdder();
+  private final LongAdder storedBytes = new LongAdder();
+  private final LongAdder chunksWritten = new LongAdder();
+
+  public ContentStore(ClaimCheckSettings settings) {
+    Path directory = Paths.get(settings.getDirectory());
+    this.objects = directory.resolve("objects");
+    this.chunks = directory.resolve("chunks");
+    this.chunkSize = Math.max(4096, settings.getChunkSizeBytes());
+  }
+
+  /*
+   * Stores the document read from the stream, a chunk at a time, and returns its id. The
+   * chunks are written as they are read, the id is only known at the end, so a document
+   * stored again rewrites none of its chunks but is read through once more.
+   */
+  public String store(InputStream document) throws IOException {
+    MessageDigest documentDigest = sha256();
+    MessageDigest chunkDigest = sha256();
+    byte[] chunk = new byte[chunkSize];
+    ByteArrayOutputStream hashes = new ByteArrayOutputStream();
+    long length = 0;
+    int chunkLength;
+    while ((chunkLength = readChunk(document, chunk)) > 0) {
+      documentDigest.update(chunk, 0, chunkLength);
+      chunkDigest.update(chunk, 0, chunkLength);
+      byte[] hash = chunkDigest.digest();
+      hashes.write(hash);
+      Path chunkFile = path(chunks, hex(hash));
+      if (!Files.exists(chunkFile)) {
+        write(chunkFile, ByteBuffer.wrap(chunk, 0, chunkLength));
+        chunksWritten.increment();
+      }
+      length += chunkLength;
+    }
+    String id = hex(documentDigest.digest());
+    Path manifest = path(objects, id);
+    if (Files.exists(manifest)) {
+      deduplicated.increment();
+      return id;
+    }
+    ByteBuffer manifestBytes = ByteBuffer.allocate(MANIFEST_HEADER_SIZE + hashes.size())
+        .putInt(MANIFEST_MAGIC).putInt(MANIFEST_VERSION).putLong(length).putInt(hashes.size() / HASH_LENGTH);
+    manifestBytes.put(hashes.toByteArray());
+    manifestBytes.flip();
+    write(manifest, manifestBytes);
+    stored.increment();
+    storedBytes.add(length);
+    return id;
+  }
+
+  /*
+   * The document with this id, null when there is none or the id is not one
+   */
+  public Document open(String id) throws IOException {
+    if (!isId(id)) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(path(objects, id)))) {
+      if (in.readInt() != MANIFEST_MAGIC || in.readInt() != MANIFEST_VERSION) {
+        throw new IOException("Not a content manifest: " + id);
+      }
+      long length = in.readLong();
+      Path[] parts = new Path[in.readInt()];
+      byte[] hash = new byte[HASH_LENGTH];
+      for (int i = 0; i < parts.length; i++) {
+        in.readFully(hash);
+        parts[i] = path(chunks, hex(hash));
+      }
+      return new Document(id, length, parts);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  public static boolean isId(String id) {
+    if (id == null || id.length() != HASH_LENGTH * 2) {
+      return false;
+    }
+    for (int i = 0; i < id.length(); i++) {
+      char c = id.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long getStoredCount() {
+    return stored.sum();
+  }
+
+  public long getDeduplicatedCount() {
+    return deduplicated.sum();
+  }
+
+  public long getStoredBytes() {
+    return storedBytes.sum();
+  }
+
+  public long getChunksWritten() {
+    return chunksWritten.sum();
+  }
+
+  // fills the chunk unless the stream ends first, returns the bytes read
+  private static int readChunk(InputStream in, byte[] chunk) throws IOException {
+    int length = 0;
+    int read;
+    while (length < chunk.length && (read = in.read(chunk, length, chunk.length - length)) > 0) {
+      length += read;
+    }
+    return length;
+  }
+
+  private static void write(Path file, ByteBuffer content) throws IOException {
+    Path directory = file.getParent();
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        while (content.hasRemaining()) {
+          channel.write(content);
+        }
+        channel.force(false);
+      }
+      // a document stored concurrently has the same bytes, whichever move lands last is kept
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static Path path(Path root, String hash) {
+    return root.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    char[] text = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      text[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+      text[i * 2 + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(text);
+  }
+
+  /*
+   * A stored document, read back chunk by chunk
+   */
+  public static final class Document {
+    private final String id;
+    private final long length;
+    private final Path[] parts;
+
+    private Document(String id, long length, Path[] parts) {
+      this.id = id;
+      this.length = length;
+      this.parts = parts;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    /*
+     * The document bytes, each chunk file is opened once the previous one was read
+     */
+    public InputStream newInputStream() {
+      return new SequenceInputStream(new Enumeration<InputStream>() {
+        private int next;
+
+        @Override
+        public boolean hasMoreElements() {
+          return next < parts.length;
+        }
+
+        @Override
+        public InputStream nextElement() {
+          try {
+            return Files.newInputStream(parts[next++]);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+    }
+  }
+}
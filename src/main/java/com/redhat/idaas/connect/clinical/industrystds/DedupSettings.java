@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+ * HL7 duplicate suppression settings, bound from the dedup-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "dedup-settings")
+public class DedupSettings {
+
+  /*
+   * When true the MLLP routes answer a message whose MSH-4 sending facility and MSH-10
+   * control id were already delivered with an AA, without sending or auditing it again
+   */
+  private boolean enabled = false;
+
+  // how long a delivered message is remembered, it is kept for between one and two of these
+  private long ttlSeconds = 3600;
+
+  // messages remembered at most, past it the oldest are forgotten before their ttl
+  private int maxEntries = 1_000_000;
+
+  /*
+   * Bloom filter in front of the cache, answering most new messages from a table a tenth
+   * the size. Worth it when max-entries makes the cache much larger than the CPU caches.
+   */
+  private boolean bloomFilter = false;
+
+  // written periodically and on shutdown, read on startup, empty keeps the cache in memory only
+  private String snapshotFile = "data/dedup/dedup.snapshot";
+
+  private long snapshotIntervalSeconds = 60;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getTtlSeconds() {
+    return ttlSeconds;
+  }
+
+  public void setTtlSeconds(long ttlSeconds) {
+    this.ttlSeconds = ttlSeconds;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public void setMaxEntries(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  public boolean isBloomFilter() {
+    return bloomFilter;
+  }
+
+  public void setBloomFilter(boolean bloomFilter) {
+    this.bloomFilter = bloomFilter;
+  }
+
+  public String getSnapshotFile() {
+    return snapshotFile;
+  }
+
+  public void setSnapshotFile(String snapshotFile) {
+    this.snapshotFile = snapshotFile;
+  }
+
+  public long getSnapshotIntervalSeconds() {
+    return snapshotIntervalSeconds;
+  }
+
+  public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+    this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * The limits shared by every FHIR servlet route: the requests in flight across all of them and
+ * how full the buffer in front of Kafka is. That is the producer's buffer.memory, or with the
+ * spool enabled the segments waiting to be forwarded out of max-segments.
+ *
+ * Reading the occupancy takes the producer's buffer pool lock (the spool's lock), so it is read
+ * at most once per OCCUPANCY_REFRESH and the requests in between use the last value.
+ *
+ * Once drained for a shutdown no request is admitted any more.
+ */
+@Component
+public class FhirAdmissionControl {
+  private static final long OCCUPANCY_REFRESH = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final FhirSettings settings;
+  private final SpoolSettings spoolSettings;
+  private final MessageSpool messageSpool;
+  private final KafkaProducerPool producerPool;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile double occupancy;
+  private volatile long occupancyReadAt = System.nanoTime() - OCCUPANCY_REFRESH;
+  // buffer-available-bytes / buffer-total-bytes of the ingest producer, resolved on first use
+  private volatile Metric bufferAvailable;
+  private volatile Metric bufferTotal;
+  private volatile boolean bufferResolved;
+  private volatile boolean draining;
+
+  public FhirAdmissionControl(FhirSettings settings, SpoolSettings spoolSettings, MessageSpool messageSpool,
+      KafkaProducerPool producerPool) {
+    this.settings = settings;
+    this.spoolSettings = spoolSettings;
+    this.messageSpool = messageSpool;
+    this.producerPool = producerPool;
+  }
+
+  /*
+   * Takes a global in-flight slot, false when max-in-flight are taken already
+   */
+  public boolean tryAcquire() {
+    int max = settings.getMaxInFlight();
+    if (max <= 0) {
+      inFlight.incrementAndGet();
+      return true;
+    }
+    while (true) {
+      int current = inFlight.get();
+      if (current >= max) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  /*
+   * Stops admitting requests, the ones admitted already run to their response
+   */
+  public void drain() {
+    draining = true;
+  }
+
+  public boolean isDraining() {
+    return draining;
+  }
+
+  // whether the buffer in front of Kafka is past max-buffer-occupancy
+  public boolean isBufferFull() {
+    double max = settings.getMaxBufferOccupancy();
+    return max > 0 && getBufferOccupancy() >= max;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /*
+   * Share of the buffer in front of Kafka in use, 0 to 1
+   */
+  public double getBufferOccupancy() {
+    long now = System.nanoTime();
+    if (now - occupancyReadAt >= OCCUPANCY_REFRESH) {
+      occupancyReadAt = now;
+      occupancy = readOccupancy();
+    }
+    return occupancy;
+  }
+
+  public int getRetryAfterSeconds() {
+    return settings.getRetryAfterSeconds();
+  }
+
+  private double readOccupancy() {
+    if (spoolSettings.isEnabled()) {
+      return spoolSettings.getMaxSegments() <= 0 ? 0
+          : Math.min(1, (double) messageSpool.getPendingSegments() / spoolSettings.getMaxSegments());
+    }
+    if (!bufferResolved) {
+      resolveBufferMetrics(producerPool.ingestProducer());
+    }
+    // a producer that is not a KafkaProducer has no buffer metrics
+    if (bufferAvailable == null || bufferTotal == null) {
+      return 0;
+    }
+    double total = ((Number) bufferTotal.metricValue()).doubleValue();
+    double available = ((Number) bufferAvailable.metricValue()).doubleValue();
+    return total <= 0 ? 0 : Math.max(0, Math.min(1, 1 - available / total));
+  }
+
+  private synchronized void resolveBufferMetrics(Producer<?, ?> producer) {
+    if (bufferResolved) {
+      return;
+    }
+    for (Map.Entry<MetricName, ? extends Metric> metric : producer.metrics().entrySet()) {
+      if (!"producer-metrics".equals(metric.getKey().group())) {
+        continue;
+      }
+      if ("buffer-available-bytes".equals(metric.getKey().name())) {
+        bufferAvailable = metric.getValue();
+      } else if ("buffer-total-bytes".equals(metric.getKey().name())) {
+        bufferTotal = metric.getValue();
+      }
+    }
+    bufferResolved = true;
+  }
+}
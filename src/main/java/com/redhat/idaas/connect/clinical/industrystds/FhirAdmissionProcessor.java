@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.support.SynchronizationAdapter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * First step of a FHIR servlet route, before the request body is read. A request is admitted
+ * when the buffer in front of Kafka has room and both the global and the route's in-flight
+ * limits have a slot, the slots are given back when its exchange completes. Anything else is
+ * answered 429 with Retry-After and an OperationOutcome right away, so a burst on one resource
+ * or a stalled broker fails fast instead of holding every container thread. While the platform
+ * drains for a shutdown every request is answered 503 with Retry-After, to go to another instance.
+ */
+public class FhirAdmissionProcessor implements Processor {
+  private static final String CONTENT_TYPE = "application/fhir+json";
+  private static final byte[] IN_FLIGHT_OUTCOME = operationOutcome("Too many requests in flight, retry later");
+  private static final byte[] BUFFER_OUTCOME = operationOutcome("The platform is waiting on Kafka, retry later");
+  private static final byte[] DRAINING_OUTCOME = operationOutcome("The platform is shutting down, retry later");
+
+  public enum Reason {
+    IN_FLIGHT,
+    BUFFER,
+    DRAINING
+  }
+
+  private final FhirAdmissionControl control;
+  // 0 for routes with only the global limit
+  private final int maxInFlight;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder rejectedInFlight = new LongAdder();
+  private final LongAdder rejectedBuffer = new LongAdder();
+  private final LongAdder rejectedDraining = new LongAdder();
+  private final SynchronizationAdapter release = new SynchronizationAdapter() {
+    @Override
+    public void onDone(Exchange exchange) {
+      inFlight.decrementAndGet();
+      control.release();
+    }
+  };
+
+  public FhirAdmissionProcessor(FhirAdmissionControl control, Integer maxInFlight) {
+    this.control = control;
+    this.maxInFlight = maxInFlight == null ? 0 : Math.max(0, maxInFlight);
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    if (control.isDraining()) {
+      reject(exchange, Reason.DRAINING);
+      return;
+    }
+    if (control.isBufferFull()) {
+      reject(exchange, Reason.BUFFER);
+      return;
+    }
+    if (inFlight.incrementAndGet() > maxInFlight && maxInFlight > 0) {
+      inFlight.decrementAndGet();
+      reject(exchange, Reason.IN_FLIGHT);
+      return;
+    }
+    if (!control.tryAcquire()) {
+      inFlight.decrementAndGet();
+      reject(exchange, Reason.IN_FLIGHT);
+      return;
+    }
+    admitted.increment();
+    exchange.addOnCompletion(release);
+  }
+
+  public long getAdmittedCount() {
+    return admitted.sum();
+  }
+
+  public long getRejectedCount(Reason reason) {
+    switch (reason) {
+      case BUFFER:
+        return rejectedBuffer.sum();
+      case DRAINING:
+        return rejectedDraining.sum();
+      default:
+        return rejectedInFlight.sum();
+    }
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  private void reject(Exchange exchange, Reason reason) {
+    byte[] outcome;
+    switch (reason) {
+      case BUFFER:
+        rejectedBuffer.increment();
+        outcome = BUFFER_OUTCOME;
+        break;
+      case DRAINING:
+        rejectedDraining.increment();
+        outcome = DRAINING_OUTCOME;
+        break;
+      default:
+        rejectedInFlight.increment();
+        outcome = IN_FLIGHT_OUTCOME;
+        break;
+    }
+    exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, reason == Reason.DRAINING ? 503 : 429);
+    exchange.getIn().setHeader("Retry-After", control.getRetryAfterSeconds());
+    exchange.getIn().setHeader(Exchange.CONTENT_TYPE, CONTENT_TYPE);
+    exchange.getIn().setBody(outcome);
+    exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+  }
+
+  private static byte[] operationOutcome(String diagnostics) {
+    return ("{\"resourceType\":\"OperationOutcome\",\"issue\":[{\"severity\":\"error\",\"code\":\"throttled\","
+        + "\"diagnostics\":\"" + diagnostics + "\"}]}").getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+ * Splits a FHIR Bundle (batch, transaction, collection, ...) into its entries and sends each
+ * resource to the topic of its resourceType from the fhir-settings route table, then replies
+ * with one batch-response / transaction-response Bundle holding a status per entry.
+ *
+ * The Bundle is read with the Jackson streaming parser, never as a tree: each entry's resource
+ * is copied out of the request bytes as it is reached and sent straight away. Up to
+ * maxInFlight entries wait on Kafka (or the spool) at a time, so the producer batches them
+ * across partitions while memory stays bounded by the request and that window.
+ *
+ * Entries are published independently, a transaction Bundle is not applied atomically: a
+ * failed entry is reported in its response and the others are still delivered. The Bundle
+ * resourceType has to come before its entries, as every FHIR JSON serializer writes it.
+ *
+ * sendTimeoutMs bounds the whole request: waiting for a slot in the window and for the last
+ * acknowledgements share one deadline. An entry's first result is final, an acknowledgement
+ * arriving after the entry timed out is only logged, so the response does not change while
+ * it is written.
+ */
+public class FhirBundleSplitter implements Processor {
+  private static final Logger log = LoggerFactory.getLogger(FhirBundleSplitter.class);
+  private static final String CONTENT_TYPE = "application/fhir+json";
+
+  /*
+   * Where entries go, the shared producer or the message spool. Bundle entries are sent
+   * without a key, the resources converted from HL7 with the key of their message.
+   */
+  public interface Sender {
+    void send(String topic, byte[] key, byte[] resource, Consumer<Exception> done) throws Exception;
+
+    static Sender kafka(Producer<byte[], byte[]> producer) {
+      return (topic, key, resource, done) ->
+          producer.send(new ProducerRecord<>(topic, key, resource), (metadata, exception) -> done.accept(exception));
+    }
+
+    static Sender spool(MessageSpool spool) {
+      return (topic, key, resource, done) -> spool.append(topic, key, resource, done);
+    }
+  }
+
+  // parse errors are returned to the client, without echoing the request in them
+  private final JsonFactory jsonFactory = new JsonFactory().disable(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION);
+  // FHIR resource type -> topic
+  private final Map<String, String> topics;
+  private final Sender sender;
+  private final int maxInFlight;
+  private final long sendTimeoutMs;
+  private final LongAdder delivered = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  public FhirBundleSplitter(Map<String, String> topics, Sender sender, int maxInFlight, long sendTimeoutMs) {
+    this.topics = topics;
+    this.sender = sender;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.sendTimeoutMs = sendTimeoutMs;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    byte[] body = exchange.getIn().getBody(byte[].class);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+    List<Entry> entries = new ArrayList<>();
+    Semaphore window = new Semaphore(maxInFlight);
+    String bundleType;
+    try {
+      bundleType = split(body, entries, window, deadline);
+    } catch (JsonProcessingException e) {
+      reject(exchange, window, deadline, e.getOriginalMessage());
+      return;
+    } catch (BundleException e) {
+      reject(exchange, window, deadline, e.getMessage());
+      return;
+    }
+    awaitAll(window, deadline);
+    // the results are final from here, entries still in flight are timed out
+    Result timedOut = Result.failed("504 Gateway Timeout", "timeout",
+        "Not acknowledged within " + sendTimeoutMs + " ms", null);
+    List<Result> results = new ArrayList<>(entries.size());
+    Exception firstFailure = null;
+    for (Entry entry : entries) {
+      entry.complete(timedOut);
+      Result result = entry.result.get();
+      results.add(result);
+      if (result.failure != null) {
+        failed.increment();
+        if (firstFailure == null) {
+          firstFailure = result.failure;
+        }
+      } else if (result.status.startsWith("2")) {
+        delivered.increment();
+      } else {
+        failed.increment();
+      }
+    }
+    if (firstFailure != null) {
+      // recorded for the route metrics like a failed single resource send, the entries were logged
+      exchange.setProperty(KafkaSendProcessor.DELIVERY_FAILURE, firstFailure);
+    }
+    reply(exchange, 200, response(bundleType, results));
+  }
+
+  private void reject(Exchange exchange, Semaphore window, long deadline, String reason) throws Exception {
+    rejected.increment();
+    // entries sent before the Bundle turned out to be malformed are still awaited
+    awaitAll(window, deadline);
+    reply(exchange, 400, operationOutcome("invalid", "Not a valid FHIR Bundle: " + reason));
+  }
+
+  public long getDeliveredCount() {
+    return delivered.sum();
+  }
+
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /*
+   * Reads the Bundle and sends its entries as they are reached, returns its type
+   */
+  private String split(byte[] body, List<Entry> entries, Semaphore window, long deadline)
+      throws IOException, InterruptedException {
+    if (body == null || body.length == 0) {
+      throw new BundleException("the request has no body");
+    }
+    String resourceType = null;
+    String bundleType = null;
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new BundleException("expected a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("resourceType".equals(field)) {
+          resourceType = parser.getText();
+          if (!"Bundle".equals(resourceType)) {
+            throw new BundleException("resourceType is " + resourceType);
+          }
+        } else if ("type".equals(field) && value == JsonToken.VALUE_STRING) {
+          bundleType = parser.getText();
+        } else if ("entry".equals(field) && value == JsonToken.START_ARRAY) {
+          if (resourceType == null) {
+            throw new BundleException("resourceType has to come before entry");
+          }
+          JsonToken token;
+          while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            Entry entry = readEntry(parser, body);
+            entries.add(entry);
+            send(entry, window, deadline);
+          }
+          expect(token, JsonToken.END_ARRAY);
+        } else {
+          parser.skipChildren();
+        }
+      }
+      expect(parser.currentToken(), JsonToken.END_OBJECT);
+    }
+    if (resourceType == null) {
+      throw new BundleException("resourceType is missing");
+    }
+    return bundleType;
+  }
+
+  /*
+   * The entry's resource as a slice of the request, the parser is left on the entry's END_OBJECT
+   */
+  private static Entry readEntry(JsonParser parser, byte[] body) throws IOException {
+    Entry entry = new Entry();
+    JsonToken token;
+    while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if ("resource".equals(field) && value == JsonToken.START_OBJECT) {
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        int depth = 1;
+        while (depth > 0) {
+          JsonToken next = parser.nextToken();
+          if (next == null) {
+            throw new BundleException("the Bundle is truncated");
+          }
+          if (next.isStructStart()) {
+            depth++;
+          } else if (next.isStructEnd()) {
+            depth--;
+          } else if (depth == 1 && next == JsonToken.VALUE_STRING && "resourceType".equals(parser.getCurrentName())) {
+            entry.resourceType = parser.getText();
+          }
+        }
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+        entry.resource = Arrays.copyOfRange(body, start, end);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    expect(token, JsonToken.END_OBJECT);
+    return entry;
+  }
+
+  private static void expect(JsonToken token, JsonToken expected) throws BundleException {
+    if (token != expected) {
+      throw new BundleException(token == null ? "the Bundle is truncated" : "unexpected " + token);
+    }
+  }
+
+  private void send(Entry entry, Semaphore window, long deadline) throws InterruptedException {
+    if (entry.resource == null) {
+      entry.complete(Result.failed("400 Bad Request", "required", "The entry has no resource", null));
+      return;
+    }
+    String topic = entry.resourceType != null ? topics.get(entry.resourceType) : null;
+    if (topic == null) {
+      entry.complete(Result.failed("400 Bad Request", "not-supported",
+          "No ingest route for resourceType " + entry.resourceType, null));
+      entry.resource = null;
+      return;
+    }
+    if (!window.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+      entry.complete(Result.failed("504 Gateway Timeout", "timeout",
+          "Kafka did not accept the entry within " + sendTimeoutMs + " ms", null));
+      entry.resource = null;
+      return;
+    }
+    try {
+      sender.send(topic, null, entry.resource, failure -> {
+        if (failure == null) {
+          entry.complete(Result.ACCEPTED);
+        } else if (entry.complete(Result.failed("503 Service Unavailable", "transient",
+            "Not delivered: " + failure.getMessage(), failure))) {
+          log.warn("Bundle entry for {} was not delivered", topic, failure);
+        } else {
+          log.warn("Bundle entry for {} was not delivered, after its request timed out", topic, failure);
+        }
+        window.release();
+      });
+    } catch (Exception e) {
+      window.release();
+      entry.complete(Result.failed("503 Service Unavailable", "transient", "Not delivered: " + e.getMessage(), e));
+    }
+    // only the producer or spool holds on to the bytes now
+    entry.resource = null;
+  }
+
+  /*
+   * Waits until every entry in flight has its result or the deadline passed
+   */
+  private void awaitAll(Semaphore window, long deadline) throws InterruptedException {
+    if (!window.tryAcquire(maxInFlight, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+      log.warn("{} Bundle entries were not acknowledged within {} ms", maxInFlight - window.availablePermits(), sendTimeoutMs);
+      return;
+    }
+    window.release(maxInFlight);
+  }
+
+  private byte[] response(String bundleType, List<Result> entries) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(64 + entries.size() * 48);
+    try (JsonGenerator json = jsonFactory.createGenerator(out)) {
+      json.writeStartObject();
+      json.writeStringField("resourceType", "Bundle");
+      json.writeStringField("type", "transaction".equals(bundleType) ? "transaction-response" : "batch-response");
+      json.writeArrayFieldStart("entry");
+      for (Result entry : entries) {
+        json.writeStartObject();
+        json.writeObjectFieldStart("response");
+        json.writeStringField("status", entry.status);
+        if (entry.diagnostics != null) {
+          json.writeFieldName("outcome");
+          writeOperationOutcome(json, entry.issueCode, entry.diagnostics);
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+      json.writeEndObject();
+    }
+    return out.toByteArray();
+  }
+
+  private byte[] operationOutcome(String code, String diagnostics) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+    try (JsonGenerator json = jsonFactory.createGenerator(out)) {
+      writeOperationOutcome(json, code, diagnostics);
+    }
+    return out.toByteArray();
+  }
+
+  private static void writeOperationOutcome(JsonGenerator json, String code, String diagnostics) throws IOException {
+    json.writeStartObject();
+    json.writeStringField("resourceType", "OperationOutcome");
+    json.writeArrayFieldStart("issue");
+    json.writeStartObject();
+    json.writeStringField("severity", "error");
+    json.writeStringField("code", code);
+    json.writeStringField("diagnostics", diagnostics);
+    json.writeEndObject();
+    json.writeEndArray();
+    json.writeEndObject();
+  }
+
+  private static void reply(Exchange exchange, int status, byte[] body) {
+    exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, status);
+    exchange.getIn().setHeader(Exchange.CONTENT_TYPE, CONTENT_TYPE);
+    exchange.getIn().setBody(body);
+  }
+
+  private static final class Entry {
+    private String resourceType;
+    private byte[] resource;
+    // set once, from the producer or spool callback or when the request times out
+    private final AtomicReference<Result> result = new AtomicReference<>();
+
+    /*
+     * false when the entry already had its result
+     */
+    private boolean complete(Result result) {
+      return this.result.compareAndSet(null, result);
+    }
+  }
+
+  private static final class Result {
+    private static final Result ACCEPTED = new Result("202 Accepted", null, null, null);
+
+    private final String status;
+    private final String issueCode;
+    private final String diagnostics;
+    private final Exception failure;
+
+    private Result(String status, String issueCode, String diagnostics, Exception failure) {
+      this.status = status;
+      this.issueCode = issueCode;
+      this.diagnostics = diagnostics;
+      this.failure = failure;
+    }
+
+    private static Result failed(String status, String issueCode, String diagnostics, Exception failure) {
+      return new Result(status, issueCode, diagnostics, failure);
+    }
+  }
+
+  private static final class BundleException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private BundleException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.ExchangePattern;
+import org.apache.camel.component.servlet.CamelHttpTransportServlet;
+import org.apache.camel.http.common.HttpCommonEndpoint;
+import org.apache.camel.http.common.HttpConsumer;
+import org.apache.camel.http.common.HttpHelper;
+import org.apache.camel.http.common.HttpMessage;
+import org.apache.camel.http.common.ServletResolveConsumerStrategy;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * The servlet of the /idaas/* routes. Blocking, it is the plain Camel servlet: the container
+ * thread runs the route and waits out the Kafka send.
+ *
+ * With fhir-settings.async-ingest the request is put in async mode and the route is run
+ * through its AsyncProcessor, the container thread returns as soon as the record is handed to
+ * the producer (or the spool). The producer callback finishes the route and the response is
+ * written from a container thread again, so Kafka's I/O thread never writes to a client
+ * socket. Threads are only held while a request is read and its response written, the requests
+ * waiting on Kafka are bounded by fhir-settings.max-in-flight instead of the thread pool.
+ *
+ * Camel's own async option only moves the blocking route to another container thread. Requests
+ * that do not reach a route (404, 405, suspended routes, OPTIONS and TRACE) still go through
+ * the Camel servlet unchanged.
+ *
+ * With startup-settings.fast-start the resource routes are only added on their first request,
+ * a request no consumer takes has LazyServletRoutes add the route of its path first. This is
+ * done in the servlet's consumer resolve strategy, which the Camel servlet also goes through.
+ */
+public class FhirIngestServlet extends CamelHttpTransportServlet {
+  private static final long serialVersionUID = 1L;
+  private static final String CONTEXT_PATH = "CamelServletContextPath";
+
+  private final boolean asyncIngest;
+  private final long asyncTimeoutMs;
+  private final int retryAfterSeconds;
+  // null without fast-start
+  private final transient LazyServletRoutes lazyRoutes;
+
+  public FhirIngestServlet(boolean asyncIngest, long asyncTimeoutMs, int retryAfterSeconds, LazyServletRoutes lazyRoutes) {
+    this.asyncIngest = asyncIngest;
+    this.asyncTimeoutMs = asyncTimeoutMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.lazyRoutes = lazyRoutes;
+  }
+
+  @Override
+  public void init(ServletConfig config) throws ServletException {
+    super.init(config);
+    // around the strategy the Camel servlet picked in init
+    if (lazyRoutes != null) {
+      setServletResolveConsumerStrategy(new LazyRouteResolveStrategy(getServletResolveConsumerStrategy()));
+    }
+  }
+
+  @Override
+  protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+    if (!asyncIngest) {
+      super.service(request, response);
+      return;
+    }
+    HttpConsumer consumer = getServletResolveConsumerStrategy().resolve(request, getConsumers());
+    if (consumer == null || consumer.isSuspended() || !isRouted(consumer.getEndpoint(), request.getMethod())) {
+      doService(request, response);
+      return;
+    }
+    Exchange exchange = consumer.getEndpoint().createExchange(ExchangePattern.InOut);
+    ClassLoader oldTccl = overrideTccl(exchange);
+    AsyncContext context = request.startAsync();
+    context.setTimeout(asyncTimeoutMs);
+    // the first of the route's completion and the timeout answers
+    AtomicBoolean answered = new AtomicBoolean();
+    context.addListener(new TimeoutListener(answered, retryAfterSeconds));
+    try {
+      HttpHelper.setCharsetFromContentType(request.getContentType(), exchange);
+      exchange.setIn(new HttpMessage(exchange, consumer.getEndpoint(), request, response));
+      String contextPath = consumer.getEndpoint().getPath();
+      exchange.getIn().setHeader(CONTEXT_PATH, contextPath);
+      String httpPath = exchange.getIn().getHeader(Exchange.HTTP_PATH, String.class);
+      if (contextPath != null && httpPath != null && httpPath.startsWith(contextPath)) {
+        exchange.getIn().setHeader(Exchange.HTTP_PATH, httpPath.substring(contextPath.length()));
+      }
+      consumer.createUoW(exchange);
+    } catch (Exception e) {
+      restoreTccl(exchange, oldTccl);
+      answered.set(true);
+      context.complete();
+      throw new ServletException(e);
+    }
+    try {
+      consumer.getAsyncProcessor().process(exchange, doneSync -> {
+        if (doneSync || answered.get()) {
+          respond(consumer, exchange, context, answered);
+          return;
+        }
+        try {
+          context.start(() -> respond(consumer, exchange, context, answered));
+        } catch (IllegalStateException e) {
+          // timed out in between, nothing is left to write
+          respond(consumer, exchange, context, answered);
+        }
+      });
+    } finally {
+      restoreTccl(exchange, oldTccl);
+    }
+  }
+
+  private void respond(HttpConsumer consumer, Exchange exchange, AsyncContext context, AtomicBoolean answered) {
+    try {
+      if (answered.compareAndSet(false, true)) {
+        consumer.getBinding().writeResponse(exchange, (HttpServletResponse) context.getResponse());
+        context.complete();
+      }
+    } catch (Exception e) {
+      log.warn("Unable to write the response of exchange {}", exchange.getExchangeId(), e);
+      context.complete();
+    } finally {
+      consumer.doneUoW(exchange);
+    }
+  }
+
+  private static boolean isRouted(HttpCommonEndpoint endpoint, String method) {
+    if ("OPTIONS".equals(method) || "TRACE".equals(method)) {
+      return false;
+    }
+    String restrict = endpoint.getHttpMethodRestrict();
+    return restrict == null || restrict.contains(method);
+  }
+
+  /*
+   * Resolves through the given strategy, and when no consumer takes the request while routes
+   * are still pending, starts the route of its path and resolves again
+   */
+  private final class LazyRouteResolveStrategy implements ServletResolveConsumerStrategy {
+    private final ServletResolveConsumerStrategy strategy;
+
+    LazyRouteResolveStrategy(ServletResolveConsumerStrategy strategy) {
+      this.strategy = strategy;
+    }
+
+    @Override
+    public HttpConsumer resolve(HttpServletRequest request, Map<String, HttpConsumer> consumers) {
+      HttpConsumer consumer = strategy.resolve(request, consumers);
+      if (consumer != null || lazyRoutes.getPendingCount() == 0) {
+        return consumer;
+      }
+      try {
+        lazyRoutes.start(request.getPathInfo());
+      } catch (Exception e) {
+        log.warn("Could not start the route of {}", request.getPathInfo(), e);
+        return null;
+      }
+      return strategy.resolve(request, consumers);
+    }
+
+    @Override
+    public boolean isHttpMethodAllowed(HttpServletRequest request, String method, Map<String, HttpConsumer> consumers) {
+      return strategy.isHttpMethodAllowed(request, method, consumers);
+    }
+  }
+
+  /*
+   * Answers 503 to a request still waiting on Kafka after async-timeout-ms, the route goes on
+   * and its late response is dropped
+   */
+  private static final class TimeoutListener implements AsyncListener {
+    private final AtomicBoolean answered;
+    private final int retryAfterSeconds;
+
+    TimeoutListener(AtomicBoolean answered, int retryAfterSeconds) {
+      this.answered = answered;
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+      if (answered.compareAndSet(false, true)) {
+        HttpServletResponse response = (HttpServletResponse) event.getAsyncContext().getResponse();
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      }
+      event.getAsyncContext().complete();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      answered.set(true);
+      event.getAsyncContext().complete();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      // answered by the route
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      // not restarted
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.validation.ResultSeverityEnum;
+import ca.uhn.fhir.validation.SingleValidationMessage;
+import ca.uhn.fhir.validation.ValidationResult;
+import org.hl7.fhir.r4.elementmodel.Manager;
+import org.hl7.fhir.r4.hapi.ctx.DefaultProfileValidationSupport;
+import org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext;
+import org.hl7.fhir.r4.hapi.validation.CachingValidationSupport;
+import org.hl7.fhir.r4.hapi.validation.ValidationSupportChain;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.TypeDetails;
+import org.hl7.fhir.r4.utils.FHIRPathEngine;
+import org.hl7.fhir.r4.utils.IResourceValidator;
+import org.hl7.fhir.r4.validation.InstanceValidator;
+import org.hl7.fhir.utilities.validation.ValidationMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * FHIR R4 validation shared by every validating route: one FhirContext and one worker context
+ * over a cached support chain of the R4 structure definitions, value sets and code systems.
+ * Building these loads and indexes several MB of definitions, seconds of work, so it is done
+ * once at startup and only when a route validates, with startup-settings.fast-start by the
+ * warm-up in the background instead (or the first resource to validate, whichever comes
+ * first). Each validated resource type is then validated once so its structure definition is
+ * resolved before the first request.
+ *
+ * HAPI's FhirInstanceValidator builds a new worker context, and with it an empty resource
+ * cache, for every resource, which costs around ten times the validation itself. Here the
+ * instance validator is still new per resource, it holds the state of one validation, but
+ * all of them share the worker context, which is only read once built.
+ *
+ * The body is validated as JSON straight from the bytes. Only errors and fatal issues fail
+ * a resource, information messages are dropped and best practice warnings not checked.
+ */
+@Component
+public class FhirResourceValidator {
+  private static final Logger log = LoggerFactory.getLogger(FhirResourceValidator.class);
+  private static final FHIRPathEngine.IEvaluationContext NO_HOST_SERVICES = new NoHostServices();
+
+  private final Collection<String> resources;
+  // null until built, and when no route validates
+  private volatile FhirContext context;
+  private volatile HapiWorkerContext workerContext;
+
+  @Autowired
+  public FhirResourceValidator(FhirSettings fhirSettings, StartupSettings startupSettings) {
+    this(validatedResources(fhirSettings), !startupSettings.isFastStart());
+  }
+
+  /*
+   * Validator pre-warmed for the given resource types, none leaves it off
+   */
+  public FhirResourceValidator(Collection<String> resources) {
+    this(resources, true);
+  }
+
+  private FhirResourceValidator(Collection<String> resources, boolean build) {
+    this.resources = resources;
+    if (build) {
+      build();
+    }
+  }
+
+  /*
+   * Builds the validator unless it was already, or no route validates
+   */
+  public synchronized void build() {
+    if (workerContext != null || resources.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    FhirContext context = FhirContext.forR4();
+    // caches the definition lookups of every validation on top of the classpath definitions
+    ValidationSupportChain supportChain = new ValidationSupportChain(new DefaultProfileValidationSupport());
+    this.context = context;
+    this.workerContext = new HapiWorkerContext(context, new CachingValidationSupport(supportChain));
+
+    Set<String> known = context.getResourceNames();
+    for (String resource : resources) {
+      if (!known.contains(resource)) {
+        log.warn("{} is not a resource type of the R4 definitions, its route can not pass validation", resource);
+        continue;
+      }
+      validate(("{\"resourceType\":\"" + resource + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+    log.info("FHIR R4 validation ready for {} in {} ms", resources,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  public boolean isEnabled() {
+    return !resources.isEmpty();
+  }
+
+  public FhirContext getContext() {
+    build();
+    return context;
+  }
+
+  /*
+   * Validates a JSON resource, a body that can not be read at all comes back as one fatal issue
+   */
+  public ValidationResult validate(byte[] body) {
+    if (workerContext == null) {
+      build();
+    }
+    List<ValidationMessage> messages = new ArrayList<>();
+    try {
+      InstanceValidator validator = new InstanceValidator(workerContext, NO_HOST_SERVICES);
+      validator.setBestPracticeWarningLevel(IResourceValidator.BestPracticeWarningLevel.Ignore);
+      validator.setAnyExtensionsAllowed(true);
+      validator.setResourceIdRule(IResourceValidator.IdStatus.OPTIONAL);
+      validator.validate(null, messages, new ByteArrayInputStream(body), Manager.FhirFormat.JSON);
+    } catch (Exception e) {
+      SingleValidationMessage message = new SingleValidationMessage();
+      message.setSeverity(ResultSeverityEnum.FATAL);
+      message.setMessage("Not a readable FHIR JSON resource: " + e.getMessage());
+      return new ValidationResult(context, Collections.singletonList(message));
+    }
+    List<SingleValidationMessage> issues = new ArrayList<>(messages.size());
+    for (ValidationMessage message : messages) {
+      ResultSeverityEnum severity = ResultSeverityEnum.fromCode(message.getLevel().toCode());
+      if (severity == ResultSeverityEnum.INFORMATION) {
+        continue;
+      }
+      SingleValidationMessage issue = new SingleValidationMessage();
+      issue.setSeverity(severity);
+      issue.setLocationString(message.getLocation());
+      issue.setLocationLine(message.getLine());
+      issue.setLocationCol(message.getCol());
+      issue.setMessage(message.getMessage());
+      issues.add(issue);
+    }
+    return new ValidationResult(context, issues);
+  }
+
+  /*
+   * The issues of a result as an OperationOutcome in JSON
+   */
+  public byte[] operationOutcome(ValidationResult result) {
+    return context.newJsonParser().encodeResourceToString(result.toOperationOutcome())
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static Set<String> validatedResources(FhirSettings fhirSettings) {
+    Set<String> resources = new LinkedHashSet<>();
+    for (IngestRouteSettings route : fhirSettings.getRoutes()) {
+      if (fhirSettings.validationMode(route) != FhirValidationProcessor.Mode.OFF) {
+        resources.add(route.getResource());
+      }
+    }
+    return resources;
+  }
+
+  /*
+   * FHIRPath host services for the invariants, none: no constants, functions or reference
+   * resolution beyond the resource itself
+   */
+  private static final class NoHostServices implements FHIRPathEngine.IEvaluationContext {
+    @Override
+    public Base resolveConstant(Object appContext, String name) {
+      return null;
+    }
+
+    @Override
+    public TypeDetails resolveConstantType(Object appContext, String name) {
+      return null;
+    }
+
+    @Override
+    public boolean log(String argument, List<Base> focus) {
+      return false;
+    }
+
+    @Override
+    public FunctionDetails resolveFunction(String functionName) {
+      return null;
+    }
+
+    @Override
+    public TypeDetails checkFunction(Object appContext, String functionName, List<TypeDetails> parameters) {
+      return null;
+    }
+
+    @Override
+    public List<Base> executeFunction(Object appContext, String functionName, List<List<Base>> parameters) {
+      return null;
+    }
+
+    @Override
+    public Base resolveReference(Object appContext, String url) {
+      return null;
+    }
+
+    @Override
+    public boolean conformsToProfile(Object appContext, Base item, String url) {
+      return false;
+    }
+  }
+}
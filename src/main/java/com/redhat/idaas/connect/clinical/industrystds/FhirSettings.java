@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * FHIR ingest settings, bound from the fhir-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "fhir-settings")
+public class FhirSettings {
+
+  // one servlet route is built per entry
+  private List<IngestRouteSettings> routes = new ArrayList<>();
+
+  /*
+   * Bundle ingest route at /idaas/<bundle-path>, splitting a Bundle onto the topics of the
+   * routes above by resourceType. Empty turns the route off.
+   */
+  private String bundlePath = "bundle";
+
+  // entries of one Bundle that can wait on Kafka (or the spool) at once
+  private int bundleMaxInFlight = 256;
+
+  // how long a Bundle request waits for its entries in all, the rest are answered 504
+  private long bundleSendTimeoutMs = 30000;
+
+  /*
+   * R4 validation of the resource routes, off, sampled (a share of the messages is validated
+   * and logged, all are forwarded) or strict (invalid resources are answered 422 and not
+   * forwarded). Routes can override it with their own validation entry.
+   */
+  private FhirValidationProcessor.Mode validation = FhirValidationProcessor.Mode.OFF;
+
+  // share of the messages validated on sampled routes
+  private double validationSampleRate = 0.01;
+
+  /*
+   * Admission control of the servlet routes: requests beyond max-in-flight across all of them,
+   * or while the producer buffer (the spool when enabled) is fuller than max-buffer-occupancy,
+   * are answered 429 with Retry-After instead of waiting on a container thread. Keep
+   * max-in-flight below the container's thread count. 0 turns a limit off.
+   */
+  private int maxInFlight = 150;
+
+  private double maxBufferOccupancy = 0.9;
+
+  private int retryAfterSeconds = 1;
+
+  /*
+   * Servlet 3 async ingest: the container thread is released while the Kafka send is out and
+   * the response is written once it completes. max-in-flight then bounds the requests waiting
+   * on Kafka rather than the threads, and can be raised well past the container's thread count.
+   */
+  private boolean asyncIngest = false;
+
+  // answered 503 when Kafka has not acknowledged by then
+  private long asyncTimeoutMs = 30000;
+
+  public List<IngestRouteSettings> getRoutes() {
+    return routes;
+  }
+
+  public void setRoutes(List<IngestRouteSettings> routes) {
+    this.routes = routes;
+  }
+
+  public String getBundlePath() {
+    return bundlePath;
+  }
+
+  public void setBundlePath(String bundlePath) {
+    this.bundlePath = bundlePath;
+  }
+
+  public int getBundleMaxInFlight() {
+    return bundleMaxInFlight;
+  }
+
+  public void setBundleMaxInFlight(int bundleMaxInFlight) {
+    this.bundleMaxInFlight = bundleMaxInFlight;
+  }
+
+  public long getBundleSendTimeoutMs() {
+    return bundleSendTimeoutMs;
+  }
+
+  public void setBundleSendTimeoutMs(long bundleSendTimeoutMs) {
+    this.bundleSendTimeoutMs = bundleSendTimeoutMs;
+  }
+
+  public FhirValidationProcessor.Mode getValidation() {
+    return validation;
+  }
+
+  public void setValidation(FhirValidationProcessor.Mode validation) {
+    this.validation = validation;
+  }
+
+  public double getValidationSampleRate() {
+    return validationSampleRate;
+  }
+
+  public void setValidationSampleRate(double validationSampleRate) {
+    this.validationSampleRate = validationSampleRate;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setMaxInFlight(int maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  public double getMaxBufferOccupancy() {
+    return maxBufferOccupancy;
+  }
+
+  public void setMaxBufferOccupancy(double maxBufferOccupancy) {
+    this.maxBufferOccupancy = maxBufferOccupancy;
+  }
+
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  public void setRetryAfterSeconds(int retryAfterSeconds) {
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public boolean isAsyncIngest() {
+    return asyncIngest;
+  }
+
+  public void setAsyncIngest(boolean asyncIngest) {
+    this.asyncIngest = asyncIngest;
+  }
+
+  public long getAsyncTimeoutMs() {
+    return asyncTimeoutMs;
+  }
+
+  public void setAsyncTimeoutMs(long asyncTimeoutMs) {
+    this.asyncTimeoutMs = asyncTimeoutMs;
+  }
+
+  /*
+   * The validation mode of a resource route, its own entry or the default above
+   */
+  public FhirValidationProcessor.Mode validationMode(IngestRouteSettings route) {
+    return route.getValidation() != null ? route.getValidation() : validation;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import ca.uhn.fhir.validation.ResultSeverityEnum;
+import ca.uhn.fhir.validation.ValidationResult;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Route step validating the FHIR resource in the body against R4 before it is sent.
+ *
+ * SAMPLED validates a share of the messages inline and only logs and counts the invalid ones,
+ * every message is still forwarded. STRICT validates every message and answers an invalid one
+ * with 422 and the issues as an OperationOutcome, the rest of the route is skipped so nothing
+ * reaches Kafka. Routes with validation OFF get no step at all.
+ */
+public class FhirValidationProcessor implements Processor {
+  private static final Logger log = LoggerFactory.getLogger(FhirValidationProcessor.class);
+  private static final String CONTENT_TYPE = "application/fhir+json";
+
+  public enum Mode {
+    OFF,
+    SAMPLED,
+    STRICT
+  }
+
+  private final FhirResourceValidator validator;
+  private final Mode mode;
+  private final double sampleRate;
+  private final LongAdder valid = new LongAdder();
+  private final LongAdder invalid = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  public FhirValidationProcessor(FhirResourceValidator validator, Mode mode, double sampleRate) {
+    this.validator = validator;
+    this.mode = mode;
+    this.sampleRate = sampleRate;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    if (mode == Mode.SAMPLED && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return;
+    }
+    ValidationResult result = validator.validate(exchange.getIn().getBody(byte[].class));
+    if (result.isSuccessful()) {
+      valid.increment();
+      return;
+    }
+    invalid.increment();
+    RouteMetadata metadata = exchange.getProperty(RouteMetadata.EXCHANGE_PROPERTY, RouteMetadata.class);
+    String routeId = metadata == null ? null : metadata.getRouteId();
+    if (mode == Mode.SAMPLED) {
+      log.warn("Route {} forwarded an invalid {} resource, {} issues, first: {}", routeId,
+          metadata == null ? null : metadata.getMessageTrigger(), result.getMessages().size(), firstIssue(result));
+      return;
+    }
+    rejected.increment();
+    log.debug("Route {} rejected an invalid resource, first issue: {}", routeId, firstIssue(result));
+    exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, 422);
+    exchange.getIn().setHeader(Exchange.CONTENT_TYPE, CONTENT_TYPE);
+    exchange.getIn().setBody(validator.operationOutcome(result));
+    exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public long getValidCount() {
+    return valid.sum();
+  }
+
+  public long getInvalidCount() {
+    return invalid.sum();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  private static String firstIssue(ValidationResult result) {
+    return result.getMessages().stream()
+        .filter(message -> message.getSeverity().ordinal() >= ResultSeverityEnum.ERROR.ordinal())
+        .findFirst()
+        .map(message -> message.getLocationString() + " " + message.getMessage())
+        .orElse(null);
+  }
+}
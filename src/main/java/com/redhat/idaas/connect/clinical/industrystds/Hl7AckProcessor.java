@@ -0,0 +1,292 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import ca.uhn.hl7v2.AcknowledgmentCode;
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.DataTypeException;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.primitive.CommonTS;
+import ca.uhn.hl7v2.parser.DefaultModelClassFactory;
+import ca.uhn.hl7v2.parser.ParserConfiguration;
+import ca.uhn.hl7v2.parser.UnexpectedSegmentBehaviourEnum;
+import ca.uhn.hl7v2.util.Terser;
+import ca.uhn.hl7v2.util.idgenerator.IDGenerator;
+import ca.uhn.hl7v2.validation.impl.ValidationContextFactory;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.GregorianCalendar;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Builds the HL7 AA acknowledgement for an inbound message from the MSH fields of its
+ * Hl7View, in place of HL7.ack() which parses the whole message into a HAPI Message.
+ *
+ * The ACK is the one HAPI's generateACK() produces: sending and receiving application and
+ * facility swapped, ACK^<trigger>[^ACK], a new control id, processing id and version copied,
+ * and MSA|AA|<inbound control id>. Only the first component of the copied fields is kept,
+ * as HAPI does. MSH-7 and MSH-10 come from the same CommonTS formatting and IDGenerator, so
+ * the output only differs from HAPI in those two generated values.
+ *
+ * Anything the scan does not handle exactly the way HAPI would (no MSH, missing control id
+ * or version, no trigger event, escape sequences in a copied field, a version HAPI rejects) falls back to the
+ * HAPI parse, so malformed messages behave as before. When the Kafka send reported a delivery
+ * failure the ACK is an AE from HAPI instead, and an AR when a step set a REJECTION.
+ */
+public class Hl7AckProcessor implements Processor {
+  // exchange property with the HL7Exception of a message the platform does not take
+  public static final String REJECTION = "idaasHl7Rejection";
+  private static final Logger log = LoggerFactory.getLogger(Hl7AckProcessor.class);
+
+  private static final byte CR = '\r';
+  private static final byte[] MSH = {'M', 'S', 'H'};
+  private static final byte[] ACK = {'A', 'C', 'K'};
+  private static final byte[] MSA = {'M', 'S', 'A'};
+  private static final byte[] AA = {'A', 'A'};
+  // MSH fields copied into the ACK
+  private static final int[] COPIED_FIELDS = {3, 4, 5, 6, 10, 11, 12};
+  // last MSH field the ACK needs, MSH-12 version id
+  private static final int LAST_FIELD = 12;
+
+  private final HapiContext hapiContext;
+  private final IDGenerator idGenerator;
+  private final String charset;
+  private final boolean produceString;
+  // MSH-12 value -> whether MSH-9.3 is set to ACK, empty for versions HAPI rejects
+  private final ConcurrentMap<String, Optional<Boolean>> ackStructureByVersion = new ConcurrentHashMap<>();
+  private final LongAdder fallbackCount = new LongAdder();
+  private volatile Timestamp timestamp = new Timestamp(-1L, null);
+
+  public Hl7AckProcessor(String charset, boolean produceString) {
+    // same parser setup as the camel-hl7 converter behind HL7.ack()
+    ParserConfiguration parserConfiguration = new ParserConfiguration();
+    parserConfiguration.setDefaultObx2Type("ST");
+    parserConfiguration.setInvalidObx2Type("ST");
+    parserConfiguration.setUnexpectedSegmentBehaviour(UnexpectedSegmentBehaviourEnum.ADD_INLINE);
+    this.hapiContext = new DefaultHapiContext(parserConfiguration, ValidationContextFactory.noValidation(),
+        new DefaultModelClassFactory());
+    // both paths draw control ids from the one generator
+    this.idGenerator = hapiContext.getParserConfiguration().getIdGenerator();
+    this.charset = charset;
+    this.produceString = produceString;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    // the view shared with the earlier steps, its buffer is the body as bytes
+    Hl7View view = Hl7View.of(exchange);
+    byte[] body = view == null ? null : view.buffer();
+    String messageCharset = exchange.getProperty(Exchange.CHARSET_NAME, charset, String.class);
+    Exception deliveryFailure = KafkaSendProcessor.deliveryFailure(exchange);
+    HL7Exception rejection = exchange.getProperty(REJECTION, HL7Exception.class);
+    byte[] ack;
+    if (rejection != null) {
+      ack = hapiAck(body, messageCharset, AcknowledgmentCode.AR, rejection);
+    } else if (deliveryFailure != null) {
+      // AE carries an ERR segment, built by HAPI, failures are rare enough not to need the fast path
+      ack = hapiAck(body, messageCharset, AcknowledgmentCode.AE,
+          new HL7Exception("Message could not be delivered: " + deliveryFailure.getMessage()));
+    } else {
+      ack = view == null ? null : buildAck(view);
+      if (ack == null) {
+        fallbackCount.increment();
+        log.debug("MSH not handled by the ACK scan, building the ACK from a HAPI parse");
+        ack = hapiAck(body, messageCharset, AcknowledgmentCode.AA, null);
+      }
+    }
+    exchange.getIn().setBody(produceString ? new String(ack, messageCharset) : ack);
+  }
+
+  public long getFallbackCount() {
+    return fallbackCount.sum();
+  }
+
+  /*
+   * Acknowledges a message of this HL7 version both ways, with the MSH scan and with HAPI, so
+   * the version's model classes are loaded and its ACK structure probed before a message needs it
+   */
+  public void warmUp(String versionId) throws Exception {
+    byte[] message = ("MSH|^~\\&|IDAAS|WARMUP|IDAAS|WARMUP|20200101000000||ADT^A01|WARMUP|P|" + versionId + "\r"
+        + "EVN|A01|20200101000000\r"
+        + "PID|1||WARMUP^^^IDAAS^MR||WARMUP^WARMUP\r").getBytes(StandardCharsets.ISO_8859_1);
+    buildAck(message);
+    hapiAck(message, charset, AcknowledgmentCode.AE, new HL7Exception("Warm-up"));
+  }
+
+  /*
+   * Returns the encoded ACK, or null when the message has to go through HAPI
+   */
+  byte[] buildAck(byte[] body) throws Exception {
+    return buildAck(new Hl7View(body));
+  }
+
+  byte[] buildAck(Hl7View view) throws Exception {
+    if (!view.segmentIs(0, "MSH")) {
+      return null;
+    }
+    byte[] body = view.buffer();
+    byte fieldSeparator = view.fieldSeparator();
+    // start and end offsets of MSH-2 .. MSH-12, fields past the end of the segment are empty
+    int[] starts = new int[LAST_FIELD + 1];
+    int[] ends = new int[LAST_FIELD + 1];
+    for (int f = 2; f <= LAST_FIELD; f++) {
+      starts[f] = view.fieldStart(0, f);
+      ends[f] = view.fieldEnd(0, f);
+    }
+    if (ends[2] - starts[2] != 4) {
+      return null;
+    }
+    byte component = view.componentSeparator();
+
+    // MSH-9.2 trigger event, read before the fields are narrowed
+    int triggerStart = view.valueEnd(starts[9], ends[9]);
+    int triggerEnd = triggerStart;
+    if (triggerStart < ends[9] && body[triggerStart] == component) {
+      triggerStart++;
+      triggerEnd = view.valueEnd(triggerStart, ends[9]);
+    }
+    // narrow each field to its first repetition, component and subcomponent
+    for (int f = 3; f <= LAST_FIELD; f++) {
+      ends[f] = view.valueEnd(starts[f], ends[f]);
+    }
+    if (ends[10] == starts[10] || ends[12] == starts[12] || triggerEnd == triggerStart
+        || view.hasEscape(triggerStart, triggerEnd)) {
+      return null;
+    }
+    for (int f : COPIED_FIELDS) {
+      if (view.hasEscape(starts[f], ends[f])) {
+        return null;
+      }
+    }
+    Boolean ackStructure = ackStructure(new String(body, starts[12], ends[12] - starts[12], StandardCharsets.ISO_8859_1));
+    if (ackStructure == null) {
+      return null;
+    }
+    byte[] time = timestamp();
+    byte[] controlId = idGenerator.getID().getBytes(StandardCharsets.ISO_8859_1);
+    int triggerLength = triggerEnd - triggerStart;
+
+    int size = 3 + 1 + 4
+        + 1 + (ends[5] - starts[5]) + 1 + (ends[6] - starts[6]) + 1 + (ends[3] - starts[3]) + 1 + (ends[4] - starts[4])
+        + 1 + time.length + 2 + ACK.length
+        + 1 + triggerLength + (ackStructure ? 1 + ACK.length : 0)
+        + 1 + controlId.length + 1 + (ends[11] - starts[11]) + 1 + (ends[12] - starts[12])
+        + 1 + MSA.length + 1 + AA.length + 1 + (ends[10] - starts[10]) + 1;
+    byte[] ack = new byte[size];
+    int pos = put(ack, 0, MSH, 0, MSH.length);
+    ack[pos++] = fieldSeparator;
+    pos = put(ack, pos, body, starts[2], ends[2]);
+    // the receiving application and facility become the sender and vice versa
+    pos = putField(ack, pos, fieldSeparator, body, starts[5], ends[5]);
+    pos = putField(ack, pos, fieldSeparator, body, starts[6], ends[6]);
+    pos = putField(ack, pos, fieldSeparator, body, starts[3], ends[3]);
+    pos = putField(ack, pos, fieldSeparator, body, starts[4], ends[4]);
+    pos = putField(ack, pos, fieldSeparator, time, 0, time.length);
+    ack[pos++] = fieldSeparator;
+    pos = putField(ack, pos, fieldSeparator, ACK, 0, ACK.length);
+    ack[pos++] = component;
+    pos = put(ack, pos, body, triggerStart, triggerEnd);
+    if (ackStructure) {
+      ack[pos++] = component;
+      pos = put(ack, pos, ACK, 0, ACK.length);
+    }
+    pos = putField(ack, pos, fieldSeparator, controlId, 0, controlId.length);
+    pos = putField(ack, pos, fieldSeparator, body, starts[11], ends[11]);
+    pos = putField(ack, pos, fieldSeparator, body, starts[12], ends[12]);
+    ack[pos++] = CR;
+    pos = put(ack, pos, MSA, 0, MSA.length);
+    pos = putField(ack, pos, fieldSeparator, AA, 0, AA.length);
+    pos = putField(ack, pos, fieldSeparator, body, starts[10], ends[10]);
+    ack[pos] = CR;
+    return ack;
+  }
+
+  private byte[] hapiAck(byte[] body, String messageCharset, AcknowledgmentCode code, HL7Exception error) throws Exception {
+    Message message = hapiContext.getGenericParser().parse(new String(body, messageCharset));
+    return message.generateACK(code, error).encode().getBytes(messageCharset);
+  }
+
+  /*
+   * Whether HAPI sets MSH-9.3 to ACK depends on the version and on the structure jars on the
+   * classpath, so it is read from one probe ACK per version and cached. Versions HAPI
+   * cannot acknowledge are cached as empty and left to the fallback.
+   */
+  private Boolean ackStructure(String versionId) {
+    Optional<Boolean> cached = ackStructureByVersion.get(versionId);
+    if (cached == null) {
+      Boolean ackStructure = null;
+      try {
+        Message probe = hapiContext.getGenericParser().parse("MSH|^~\\&|||||||ADT^A01|1|P|" + versionId + "\r");
+        Segment header = (Segment) probe.generateACK().get("MSH");
+        ackStructure = "ACK".equals(Terser.get(header, 9, 0, 3, 1));
+      } catch (HL7Exception | IOException e) {
+        log.debug("No HAPI acknowledgement for HL7 version {}", versionId, e);
+      }
+      cached = Optional.ofNullable(ackStructure);
+      if (ackStructureByVersion.size() < 64) {
+        ackStructureByVersion.put(versionId, cached);
+      }
+    }
+    return cached.orElse(null);
+  }
+
+  /*
+   * MSH-7 in HAPI's format, formatted once per millisecond
+   */
+  private byte[] timestamp() throws DataTypeException {
+    long now = System.currentTimeMillis();
+    Timestamp current = timestamp;
+    if (current.millis != now) {
+      GregorianCalendar calendar = new GregorianCalendar();
+      calendar.setTimeInMillis(now);
+      current = new Timestamp(now, CommonTS.toHl7TSFormat(calendar).getBytes(StandardCharsets.ISO_8859_1));
+      timestamp = current;
+    }
+    return current.value;
+  }
+
+  private static int putField(byte[] out, int pos, byte fieldSeparator, byte[] src, int from, int to) {
+    out[pos] = fieldSeparator;
+    return put(out, pos + 1, src, from, to);
+  }
+
+  private static int put(byte[] out, int pos, byte[] src, int from, int to) {
+    System.arraycopy(src, from, out, pos, to - from);
+    return pos + to - from;
+  }
+
+  private static final class Timestamp {
+    private final long millis;
+    private final byte[] value;
+
+    private Timestamp(long millis, byte[] value) {
+      this.millis = millis;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+/*
+ * Route steps of the MLLP duplicate suppression.
+ *
+ * CHECK, before the audit, looks the message's MSH-4 / MSH-10 fingerprint up in the cache
+ * and answers a message already delivered with its ACK again, the rest of the route is
+ * skipped so it is neither audited nor sent twice. RECORD, after the send, remembers the
+ * fingerprint once Kafka took the message; a failed send is not remembered so the sender's
+ * retry goes through. A resend arriving while the first copy is still being sent is not a
+ * duplicate yet and is delivered again, suppression stays at least once.
+ */
+public class Hl7DedupProcessor implements Processor {
+  private static final String FINGERPRINT = "idaasHl7Fingerprint";
+
+  public enum Stage {
+    CHECK,
+    RECORD
+  }
+
+  private final Hl7DuplicateCache cache;
+  private final Stage stage;
+  private final Processor ack;
+
+  public Hl7DedupProcessor(Hl7DuplicateCache cache, Stage stage, Processor ack) {
+    this.cache = cache;
+    this.stage = stage;
+    this.ack = ack;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    if (stage == Stage.RECORD) {
+      Long fingerprint = exchange.getProperty(FINGERPRINT, Long.class);
+      if (fingerprint != null && KafkaSendProcessor.deliveryFailure(exchange) == null) {
+        cache.add(fingerprint);
+      }
+      return;
+    }
+    long fingerprint = Hl7DuplicateCache.fingerprint(Hl7View.of(exchange));
+    if (fingerprint == 0L) {
+      return;
+    }
+    if (cache.contains(fingerprint)) {
+      ack.process(exchange);
+      RouteMeters.replied(exchange);
+      exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+      return;
+    }
+    exchange.setProperty(FINGERPRINT, fingerprint);
+  }
+}
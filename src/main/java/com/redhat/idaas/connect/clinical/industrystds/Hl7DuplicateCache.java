@@ -0,0 +1,545 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/*
+ * Recently delivered HL7 messages, by a 64 bit fingerprint of their MSH-4 sending facility
+ * and MSH-10 control id, for the dedup step of the MLLP routes.
+ *
+ * The cache is split into stripes by the fingerprint's low bits. Each stripe holds two
+ * generations, open addressing tables of fingerprints filled to at most half: the current
+ * one takes the inserts of this ttl period, the previous one is still read. When the period
+ * ends the current generation becomes the previous and the old previous is dropped whole, so
+ * nothing is expired entry by entry and a fingerprint is remembered for one to two ttls.
+ * A generation that reaches its share of max-entries rotates early, forgetting the oldest
+ * messages before their ttl rather than growing.
+ *
+ * Lookups and inserts are lock free (volatile reads and CAS on the tables), only the rotation
+ * of a stripe, once per ttl, takes the stripe's lock. With the Bloom filter on, each
+ * generation also keeps one 64 bit word of four bits per fingerprint in a table a tenth of its
+ * size, and lookups that miss it skip the probe of the large table.
+ *
+ * A false duplicate needs two messages with colliding 64 bit fingerprints within one ttl,
+ * around 1 in 10^7 for a full million entry cache. The epochs are wall clock based so the
+ * snapshot written on stop, and every snapshot-interval, can be restored after a restart.
+ */
+@Component
+public class Hl7DuplicateCache implements SmartLifecycle {
+  private static final Logger log = LoggerFactory.getLogger(Hl7DuplicateCache.class);
+  // start before and stop after the Camel context, like the spool
+  private static final int PHASE = Integer.MAX_VALUE - 100;
+  private static final int STRIPES = 16;
+  private static final int SNAPSHOT_MAGIC = 0x48374450;
+  private static final int SNAPSHOT_VERSION = 1;
+  // fingerprint 0 marks an empty slot and means "no fingerprint" to callers
+  private static final long EMPTY = 0L;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final DedupSettings settings;
+  private final long ttlMillis;
+  private final int generationLimit;
+  private final int tableSize;
+  private final int bloomWords;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evicted = new LongAdder();
+  private volatile boolean running;
+  private Thread snapshotThread;
+  // the wall clock, replaced by tests
+  LongSupplier clock = System::currentTimeMillis;
+
+  public Hl7DuplicateCache(DedupSettings settings) {
+    this.settings = settings;
+    this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1, settings.getTtlSeconds()));
+    // two generations per stripe share max-entries
+    this.generationLimit = Math.max(16, settings.getMaxEntries() / STRIPES / 2);
+    this.tableSize = Integer.highestOneBit(generationLimit * 2 - 1) << 1;
+    this.bloomWords = settings.isBloomFilter() ? Integer.highestOneBit(Math.max(1, generationLimit * 10 / 64)) << 1 : 0;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /*
+   * Fingerprint of MSH-4 and MSH-10 as they are on the wire, 0 when the message has no
+   * control id and so cannot be told apart from a resend
+   */
+  public static long fingerprint(Hl7View view) {
+    if (!view.segmentIs(0, "MSH")) {
+      return EMPTY;
+    }
+    int controlStart = view.fieldStart(0, 10);
+    int controlEnd = view.fieldEnd(0, 10);
+    if (controlEnd <= controlStart) {
+      return EMPTY;
+    }
+    byte[] body = view.buffer();
+    long hash = hash(FNV_OFFSET, body, view.fieldStart(0, 4), view.fieldEnd(0, 4));
+    // the field separator between the two keeps "A|BC" and "AB|C" apart
+    hash = (hash ^ view.fieldSeparator()) * FNV_PRIME;
+    hash = mix(hash(hash, body, controlStart, controlEnd));
+    return hash == EMPTY ? 1L : hash;
+  }
+
+  /*
+   * Whether the fingerprint was added within the ttl, counted as a hit or a miss
+   */
+  public boolean contains(long fingerprint) {
+    long epoch = epoch();
+    Stripe stripe = stripe(fingerprint);
+    Generation current = stripe.current(epoch);
+    boolean found = current.contains(fingerprint);
+    if (!found) {
+      Generation previous = stripe.previous;
+      found = previous.epoch >= epoch - 1 && previous.contains(fingerprint);
+    }
+    if (found) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return found;
+  }
+
+  public void add(long fingerprint) {
+    long epoch = epoch();
+    Stripe stripe = stripe(fingerprint);
+    while (true) {
+      Generation current = stripe.current(epoch);
+      int added = current.add(fingerprint);
+      if (added >= 0) {
+        if (added > generationLimit) {
+          stripe.rotate(current, current.epoch);
+        }
+        return;
+      }
+      // the generation filled up under concurrent adds and was rotated, retry on the new one
+      stripe.rotate(current, current.epoch);
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  // fingerprints forgotten before their ttl because max-entries was reached
+  public long getEvictedCount() {
+    return evicted.sum();
+  }
+
+  public long getSize() {
+    long epoch = epoch();
+    long size = 0;
+    for (Stripe stripe : stripes) {
+      Generation current = stripe.current;
+      Generation previous = stripe.previous;
+      size += current.epoch >= epoch - 1 ? current.size.get() : 0;
+      size += previous.epoch >= epoch - 1 ? previous.size.get() : 0;
+    }
+    return size;
+  }
+
+  @Override
+  public void start() {
+    if (!settings.isEnabled() || running) {
+      return;
+    }
+    Path file = snapshotFile();
+    if (file != null) {
+      try {
+        int restored = restore(file);
+        log.info("Restored {} delivered HL7 message fingerprints from {}", restored, file);
+      } catch (NoSuchFileException e) {
+        log.info("No dedup snapshot at {}, starting empty", file);
+      } catch (IOException e) {
+        log.warn("Unable to read the dedup snapshot {}, starting empty", file, e);
+      }
+    }
+    running = true;
+    if (file != null && settings.getSnapshotIntervalSeconds() > 0) {
+      snapshotThread = new Thread(this::snapshotLoop, "idaas-dedup-snapshot");
+      snapshotThread.setDaemon(true);
+      snapshotThread.start();
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    if (snapshotThread != null) {
+      snapshotThread.interrupt();
+      try {
+        snapshotThread.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    Path file = snapshotFile();
+    if (file != null) {
+      try {
+        int written = snapshot(file);
+        log.info("Dedup cache stopped: {} fingerprints written to {}, hits {}, misses {}",
+            written, file, getHitCount(), getMissCount());
+      } catch (IOException e) {
+        log.warn("Unable to write the dedup snapshot {}", file, e);
+      }
+    }
+  }
+
+  @Override
+  public void stop(Runnable callback) {
+    stop();
+    callback.run();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return true;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  /*
+   * Writes the live generations to the file, through a temporary file so a crash never
+   * leaves a partial snapshot. Returns the fingerprints written.
+   *
+   * ttl millis | stripes | per stripe and generation: epoch, count, fingerprints | CRC32
+   */
+  int snapshot(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    long epoch = epoch();
+    int written = 0;
+    CRC32 crc = new CRC32();
+    try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024), crc))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(SNAPSHOT_VERSION);
+      out.writeLong(ttlMillis);
+      out.writeInt(STRIPES);
+      for (Stripe stripe : stripes) {
+        Generation previous = stripe.previous;
+        Generation current = stripe.current;
+        written += writeGeneration(out, previous.epoch >= epoch - 1 ? previous : Generation.NONE);
+        written += writeGeneration(out, current.epoch >= epoch - 1 ? current : Generation.NONE);
+      }
+      out.flush();
+      out.writeLong(crc.getValue());
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return written;
+  }
+
+  /*
+   * Adds the fingerprints of a snapshot that are still within the ttl, returns their number
+   */
+  int restore(Path file) throws IOException {
+    CRC32 crc = new CRC32();
+    long[][] epochs;
+    long[][][] fingerprints;
+    try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+        new BufferedInputStream(Files.newInputStream(file), 64 * 1024), crc))) {
+      if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+        throw new IOException("Not a dedup snapshot");
+      }
+      if (in.readLong() != ttlMillis) {
+        log.info("Dedup ttl changed since the snapshot, its fingerprints are not restored");
+        return 0;
+      }
+      int stripeCount = in.readInt();
+      epochs = new long[stripeCount][2];
+      fingerprints = new long[stripeCount][2][];
+      for (int s = 0; s < stripeCount; s++) {
+        for (int g = 0; g < 2; g++) {
+          epochs[s][g] = in.readLong();
+          int count = in.readInt();
+          if (count < 0 || count > tableSize * 2) {
+            throw new IOException("Corrupt dedup snapshot");
+          }
+          long[] values = new long[count];
+          for (int i = 0; i < count; i++) {
+            values[i] = in.readLong();
+          }
+          fingerprints[s][g] = values;
+        }
+      }
+      long expected = crc.getValue();
+      if (in.readLong() != expected) {
+        throw new IOException("Dedup snapshot checksum mismatch");
+      }
+    }
+    long epoch = epoch();
+    int restored = 0;
+    for (int s = 0; s < epochs.length; s++) {
+      for (int g = 0; g < 2; g++) {
+        if (epochs[s][g] < epoch - 1) {
+          continue;
+        }
+        for (long fingerprint : fingerprints[s][g]) {
+          if (fingerprint != EMPTY && stripe(fingerprint).restore(fingerprint, epochs[s][g], epoch)) {
+            restored++;
+          }
+        }
+      }
+    }
+    return restored;
+  }
+
+  private void snapshotLoop() {
+    long intervalMillis = TimeUnit.SECONDS.toMillis(settings.getSnapshotIntervalSeconds());
+    while (running) {
+      try {
+        Thread.sleep(intervalMillis);
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        snapshot(snapshotFile());
+      } catch (IOException e) {
+        log.warn("Unable to write the dedup snapshot {}", settings.getSnapshotFile(), e);
+      }
+    }
+  }
+
+  private Path snapshotFile() {
+    String file = settings.getSnapshotFile();
+    return file == null || file.isEmpty() ? null : Paths.get(file);
+  }
+
+  private static int writeGeneration(DataOutputStream out, Generation generation) throws IOException {
+    // copied in one pass, adds racing the snapshot are left for the next one
+    AtomicLongArray slots = generation.slots;
+    long[] values = new long[Math.min(slots.length(), generation.size.get() + 64)];
+    int count = 0;
+    for (int i = 0; i < slots.length(); i++) {
+      long value = slots.get(i);
+      if (value != EMPTY) {
+        if (count == values.length) {
+          values = Arrays.copyOf(values, Math.min(slots.length(), count * 2));
+        }
+        values[count++] = value;
+      }
+    }
+    out.writeLong(generation.epoch);
+    out.writeInt(count);
+    for (int i = 0; i < count; i++) {
+      out.writeLong(values[i]);
+    }
+    return count;
+  }
+
+  private long epoch() {
+    return clock.getAsLong() / ttlMillis;
+  }
+
+  private Stripe stripe(long fingerprint) {
+    return stripes[(int) fingerprint & (STRIPES - 1)];
+  }
+
+  private static long hash(long hash, byte[] bytes, int from, int to) {
+    for (int i = from; i < to; i++) {
+      hash = (hash ^ (bytes[i] & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  // murmur3 finalizer, spreads FNV's weak low bits over the whole word
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private final class Stripe {
+    private volatile Generation current = Generation.NONE;
+    private volatile Generation previous = Generation.NONE;
+
+    /*
+     * The current generation, rotated when the epoch moved past it. A caller that read the
+     * clock before another thread rotated gets the newer generation, never an older one.
+     */
+    Generation current(long epoch) {
+      Generation generation = current;
+      if (generation.epoch < epoch) {
+        rotate(generation, epoch);
+        generation = current;
+      }
+      return generation;
+    }
+
+    /*
+     * Starts a new current generation unless another thread already replaced the expected one.
+     * Rotating within the same epoch means the generation is full, epochs only move forward.
+     */
+    synchronized void rotate(Generation expected, long epoch) {
+      if (current != expected || epoch < expected.epoch) {
+        return;
+      }
+      if (expected.epoch == epoch) {
+        if (previous.epoch >= epoch - 1) {
+          evicted.add(previous.size.get());
+        }
+        previous = expected;
+      } else {
+        previous = expected.epoch == epoch - 1 ? expected : Generation.NONE;
+      }
+      current = new Generation(epoch, tableSize, bloomWords);
+    }
+
+    /*
+     * Adds a snapshot fingerprint to the generation of its epoch, false when that is gone
+     */
+    synchronized boolean restore(long fingerprint, long fingerprintEpoch, long epoch) {
+      Generation generation = current(epoch);
+      if (fingerprintEpoch >= generation.epoch) {
+        return generation.add(fingerprint) >= 0;
+      }
+      if (fingerprintEpoch < generation.epoch - 1) {
+        return false;
+      }
+      if (previous == Generation.NONE) {
+        previous = new Generation(generation.epoch - 1, tableSize, bloomWords);
+      }
+      return previous.add(fingerprint) >= 0;
+    }
+  }
+
+  private static final class Generation {
+    // placeholder before the first add and for dropped generations
+    static final Generation NONE = new Generation(Long.MIN_VALUE, 1, 0);
+
+    private final long epoch;
+    private final AtomicLongArray slots;
+    private final AtomicLongArray bloom;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+
+    Generation(long epoch, int tableSize, int bloomWords) {
+      this.epoch = epoch;
+      this.slots = new AtomicLongArray(tableSize);
+      this.bloom = bloomWords == 0 ? null : new AtomicLongArray(bloomWords);
+      this.mask = tableSize - 1;
+    }
+
+    boolean contains(long fingerprint) {
+      if (bloom != null) {
+        long bits = bloomBits(fingerprint);
+        if ((bloom.get(bloomIndex(fingerprint)) & bits) != bits) {
+          return false;
+        }
+      }
+      // the stripe took the low bits, probe from the high ones
+      for (int i = (int) (fingerprint >>> 32) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        long value = slots.get(i);
+        if (value == fingerprint) {
+          return true;
+        }
+        if (value == EMPTY) {
+          return false;
+        }
+      }
+      return false;
+    }
+
+    /*
+     * The generation's size after the add, -1 when the table is full
+     */
+    int add(long fingerprint) {
+      if (mask == 0) {
+        return -1;
+      }
+      for (int i = (int) (fingerprint >>> 32) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        long value = slots.get(i);
+        if (value == fingerprint) {
+          return size.get();
+        }
+        if (value == EMPTY && slots.compareAndSet(i, EMPTY, fingerprint)) {
+          if (bloom != null) {
+            int word = bloomIndex(fingerprint);
+            long bits = bloomBits(fingerprint);
+            long old;
+            do {
+              old = bloom.get(word);
+            } while ((old & bits) != bits && !bloom.compareAndSet(word, old, old | bits));
+          }
+          return size.incrementAndGet();
+        }
+        if (slots.get(i) == fingerprint) {
+          return size.get();
+        }
+      }
+      return -1;
+    }
+
+    private int bloomIndex(long fingerprint) {
+      return (int) (fingerprint >>> 4) & (bloom.length() - 1);
+    }
+
+    // four bits of the word, picked by the fingerprint bits the index and stripe did not use
+    private static long bloomBits(long fingerprint) {
+      return 1L << (fingerprint >>> 58) | 1L << (fingerprint >>> 52) | 1L << (fingerprint >>> 46) | 1L << (fingerprint >>> 40);
+    }
+  }
+}
@@ -0,0 +1,782 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * HL7 v2 to FHIR R4 conversion over the raw message bytes. A mapping (see Hl7FhirMappings) is
+ * a tree of JSON properties whose values name HL7 fields as SEG-n, SEG-n.c or SEG-n.c.s, SEG-n
+ * being the first component like for the Kafka key fields. compile() turns each of them into
+ * an accessor once, a segment slot with the field, component and subcomponent numbers, so a
+ * message is converted in one pass over its segments with the Hl7View, reading only the
+ * fields the properties name. There is no HAPI parse and no intermediate model, the resources
+ * are written with the Jackson streaming generator.
+ *
+ * Each resource is written once per segment of its scope: a Patient per PID, an Observation
+ * per OBX. Fields of the scope segment are read from it, those of other segments from the
+ * closest one before it (the OBR of an OBX, the PID of the message) or else the first in the
+ * message. Inside a repeat over a field its components are read from the current repetition.
+ * Properties without a value are left out, and objects and arrays left empty with them.
+ *
+ * Timestamps without an offset are taken to be in the converter's zone, FHIR requires one as
+ * soon as there is a time of day. A converter is immutable and shared by the route threads.
+ */
+public final class Hl7FhirConverter {
+
+  /*
+   * One converted resource, resourceType and its JSON
+   */
+  public static final class Resource {
+    private final String type;
+    private final byte[] json;
+
+    private Resource(String type, byte[] json) {
+      this.type = type;
+      this.json = json;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public byte[] getJson() {
+      return json;
+    }
+  }
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+  // MSH-9.1 message types and their resources, looked up without building a String
+  private final String[] messageTypes;
+  private final ResourceMapping[][] mappings;
+  // segment names the accessors read from, by slot
+  private final String[] slots;
+  private final ZoneId zone;
+
+  private Hl7FhirConverter(String[] messageTypes, ResourceMapping[][] mappings, String[] slots, ZoneId zone) {
+    this.messageTypes = messageTypes;
+    this.mappings = mappings;
+    this.slots = slots;
+    this.zone = zone;
+  }
+
+  /*
+   * Compiles the mappings of each message type, MSH-9.1 -> the resources a message of that type
+   * converts to, in the order they are written
+   */
+  static Hl7FhirConverter compile(Map<String, List<ResourceMapping>> byMessageType, ZoneId zone) {
+    Map<String, Integer> slots = new LinkedHashMap<>();
+    String[] messageTypes = new String[byMessageType.size()];
+    ResourceMapping[][] mappings = new ResourceMapping[byMessageType.size()][];
+    int i = 0;
+    for (Map.Entry<String, List<ResourceMapping>> entry : byMessageType.entrySet()) {
+      messageTypes[i] = entry.getKey();
+      mappings[i] = entry.getValue().toArray(new ResourceMapping[0]);
+      for (ResourceMapping mapping : mappings[i]) {
+        mapping.bind(slots);
+      }
+      i++;
+    }
+    return new Hl7FhirConverter(messageTypes, mappings, slots.keySet().toArray(new String[0]), zone);
+  }
+
+  /*
+   * The resources of the message, none when its type has no mapping
+   */
+  public List<Resource> convert(Hl7View view) throws IOException {
+    ResourceMapping[] forType = view.hasHeader() ? mappings(view.field(0, 9).component(1)) : null;
+    if (forType == null) {
+      return Collections.emptyList();
+    }
+    Context context = new Context(view, slots, zone);
+    List<Resource> resources = new ArrayList<>();
+    for (int segment = 0, count = view.segmentCount(); segment < count; segment++) {
+      for (int slot = 0; slot < slots.length; slot++) {
+        if (view.segmentIs(segment, slots[slot])) {
+          context.last[slot] = segment;
+        }
+      }
+      for (ResourceMapping mapping : forType) {
+        if (view.segmentIs(segment, mapping.scope)) {
+          resources.add(mapping.write(context, jsonFactory));
+        }
+      }
+    }
+    return resources;
+  }
+
+  private ResourceMapping[] mappings(Hl7View.Slice messageType) {
+    for (int i = 0; i < messageTypes.length; i++) {
+      if (messageType.contentEquals(messageTypes[i])) {
+        return mappings[i];
+      }
+    }
+    return null;
+  }
+
+  // Mapping definitions
+
+  /*
+   * A resource written once per scope segment
+   */
+  static ResourceMapping resource(String type, String scope, Node... properties) {
+    return new ResourceMapping(type, scope, properties);
+  }
+
+  // the field as text, several fields joined with a space
+  static Node text(String name, String... fields) {
+    return new Leaf(name, Format.TEXT, fields(fields), null, null);
+  }
+
+  // FHIR date from the first field with a value (HL7 DT or TS)
+  static Node date(String name, String... fields) {
+    return new Leaf(name, Format.DATE, fields(fields), null, null);
+  }
+
+  // FHIR dateTime from the first field with a value, only as precise as the HL7 value
+  static Node dateTime(String name, String... fields) {
+    return new Leaf(name, Format.DATE_TIME, fields(fields), null, null);
+  }
+
+  // a JSON number, left out when the field is not one
+  static Node decimal(String name, String field) {
+    return new Leaf(name, Format.DECIMAL, fields(field), null, null);
+  }
+
+  // the field looked up in codes, otherwise when it is empty or not listed (null = left out)
+  static Node code(String name, String field, Map<String, String> codes, String otherwise) {
+    return new Leaf(name, Format.CODE, fields(field), codes, otherwise);
+  }
+
+  // written with its object, a constant alone does not make the object present
+  static Node constant(String name, String value) {
+    return new Leaf(name, Format.CONSTANT, new Field[0], null, value);
+  }
+
+  static Node object(String name, Node... properties) {
+    return new ObjectNode(name, properties);
+  }
+
+  static Node array(String name, Node... elements) {
+    return new ArrayNode(name, elements);
+  }
+
+  /*
+   * An array with the element for each repetition of the field
+   */
+  static Node repeat(String name, String field, Node element) {
+    return new RepeatNode(name, Field.parse(field), element);
+  }
+
+  /*
+   * The properties of the case matching the field's value, or of otherwise, written inline:
+   * value[x] by OBX-2
+   */
+  static Node choice(String field, Map<String, Node[]> cases, Node... otherwise) {
+    return new ChoiceNode(Field.parse(field), cases, otherwise);
+  }
+
+  static Map<String, String> codes(String... pairs) {
+    Map<String, String> codes = new HashMap<>();
+    for (int i = 0; i < pairs.length; i += 2) {
+      codes.put(pairs[i], pairs[i + 1]);
+    }
+    return codes;
+  }
+
+  private static Field[] fields(String... specs) {
+    Field[] fields = new Field[specs.length];
+    for (int i = 0; i < specs.length; i++) {
+      fields[i] = Field.parse(specs[i]);
+    }
+    return fields;
+  }
+
+  static final class ResourceMapping {
+    private final String type;
+    private final String scope;
+    private final Node[] properties;
+
+    private ResourceMapping(String type, String scope, Node[] properties) {
+      this.type = type;
+      this.scope = scope;
+      this.properties = properties;
+    }
+
+    private void bind(Map<String, Integer> slots) {
+      for (Node property : properties) {
+        property.bind(slots);
+      }
+    }
+
+    private Resource write(Context context, JsonFactory jsonFactory) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+      try (JsonGenerator json = jsonFactory.createGenerator(out)) {
+        json.writeStartObject();
+        json.writeStringField("resourceType", type);
+        for (Node property : properties) {
+          if (property.present(context)) {
+            property.write(context, json);
+          }
+        }
+        json.writeEndObject();
+      }
+      return new Resource(type, out.toByteArray());
+    }
+  }
+
+  /*
+   * Per message state: the view, where each slot's segment was last seen and the repetition
+   * a repeat is on
+   */
+  private static final class Context {
+    private final Hl7View view;
+    private final String[] slots;
+    private final ZoneId zone;
+    private final int[] last;
+    // -2 until looked up, -1 when the message has no such segment
+    private final int[] first;
+    private Field repeated;
+    private Hl7View.Slice repetition;
+
+    private Context(Hl7View view, String[] slots, ZoneId zone) {
+      this.view = view;
+      this.slots = slots;
+      this.zone = zone;
+      this.last = new int[slots.length];
+      this.first = new int[slots.length];
+      Arrays.fill(last, -1);
+      Arrays.fill(first, -2);
+    }
+
+    private int segment(int slot) {
+      if (last[slot] >= 0) {
+        return last[slot];
+      }
+      if (first[slot] == -2) {
+        first[slot] = view.segmentIndex(slots[slot]);
+      }
+      return first[slot];
+    }
+  }
+
+  /*
+   * SEG-n[.c[.s]] compiled to a slot and numbers, component and subcomponent 0 = the whole
+   * repetition (repeat and choice fields)
+   */
+  private static final class Field {
+    private final String text;
+    private final String segment;
+    private final int field;
+    private final int component;
+    private final int subcomponent;
+    private int slot = -1;
+
+    private Field(String text, String segment, int field, int component, int subcomponent) {
+      this.text = text;
+      this.segment = segment;
+      this.field = field;
+      this.component = component;
+      this.subcomponent = subcomponent;
+    }
+
+    static Field parse(String text) {
+      String spec = text.trim().toUpperCase(Locale.ROOT);
+      String[] numbers = spec.length() > 4 && spec.charAt(3) == '-' ? spec.substring(4).split("\\.") : new String[0];
+      try {
+        if (numbers.length < 1 || numbers.length > 3) {
+          throw new IllegalArgumentException();
+        }
+        int field = Integer.parseInt(numbers[0]);
+        int component = numbers.length > 1 ? Integer.parseInt(numbers[1]) : 1;
+        int subcomponent = numbers.length > 2 ? Integer.parseInt(numbers[2]) : 1;
+        // MSH-1 and MSH-2 are the delimiters themselves
+        if (field < 1 || component < 1 || subcomponent < 1 || (spec.startsWith("MSH") && field < 3)) {
+          throw new IllegalArgumentException();
+        }
+        return new Field(spec, spec.substring(0, 3), field, component, subcomponent);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("HL7 field " + text + " is not of the form SEG-n, SEG-n.c or SEG-n.c.s");
+      }
+    }
+
+    private void bind(Map<String, Integer> slots) {
+      slot = slots.computeIfAbsent(segment, name -> slots.size());
+    }
+
+    private boolean sameField(Field other) {
+      return other != null && other.slot == slot && other.field == field;
+    }
+
+    /*
+     * The field's first repetition, or the current one inside a repeat over it, null when the
+     * message has no such segment
+     */
+    private Hl7View.Slice repetition(Context context) {
+      if (sameField(context.repeated)) {
+        return context.repetition;
+      }
+      int segment = context.segment(slot);
+      return segment < 0 ? null : context.view.field(segment, field).repetition(1);
+    }
+
+    private Hl7View.Slice value(Context context) {
+      Hl7View.Slice repetition = repetition(context);
+      return repetition == null ? null : repetition.component(component).subcomponent(subcomponent);
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+
+  private enum Format {
+    TEXT, DATE, DATE_TIME, DECIMAL, CODE, CONSTANT
+  }
+
+  /*
+   * A JSON property, or an array element when it has no name
+   */
+  abstract static class Node {
+    private final String name;
+
+    private Node(String name) {
+      this.name = name;
+    }
+
+    abstract void bind(Map<String, Integer> slots);
+
+    abstract boolean present(Context context);
+
+    // written whenever the enclosing object is, without making it present
+    boolean constant() {
+      return false;
+    }
+
+    abstract void write(Context context, JsonGenerator json) throws IOException;
+
+    void writeName(JsonGenerator json) throws IOException {
+      if (name != null) {
+        json.writeFieldName(name);
+      }
+    }
+  }
+
+  private static final class Leaf extends Node {
+    private final Format format;
+    private final Field[] fields;
+    private final Map<String, String> codes;
+    private final String otherwise;
+
+    private Leaf(String name, Format format, Field[] fields, Map<String, String> codes, String otherwise) {
+      super(name);
+      this.format = format;
+      this.fields = fields;
+      this.codes = codes;
+      this.otherwise = otherwise;
+    }
+
+    @Override
+    void bind(Map<String, Integer> slots) {
+      for (Field field : fields) {
+        field.bind(slots);
+      }
+    }
+
+    @Override
+    boolean present(Context context) {
+      return format != Format.CONSTANT && value(context) != null;
+    }
+
+    @Override
+    boolean constant() {
+      return format == Format.CONSTANT;
+    }
+
+    @Override
+    void write(Context context, JsonGenerator json) throws IOException {
+      String value = value(context);
+      if (value == null) {
+        return;
+      }
+      writeName(json);
+      if (format == Format.DECIMAL) {
+        json.writeNumber(new BigDecimal(value));
+      } else {
+        json.writeString(value);
+      }
+    }
+
+    private String value(Context context) {
+      switch (format) {
+        case CONSTANT:
+          return otherwise;
+        case TEXT:
+          return text(context);
+        case CODE: {
+          Hl7View.Slice value = fields[0].value(context);
+          String mapped = value == null || value.isEmpty() ? null : codes.get(value.toString());
+          return mapped != null ? mapped : otherwise;
+        }
+        case DECIMAL: {
+          Hl7View.Slice value = fields[0].value(context);
+          return value == null || value.isEmpty() ? null : Hl7FhirConverter.decimal(value.toString());
+        }
+        default:
+          for (Field field : fields) {
+            Hl7View.Slice value = field.value(context);
+            if (value != null && !value.isEmpty()) {
+              return format == Format.DATE ? Hl7FhirConverter.date(value.toString())
+                  : Hl7FhirConverter.dateTime(value.toString(), context.zone);
+            }
+          }
+          return null;
+      }
+    }
+
+    private String text(Context context) {
+      if (fields.length == 1) {
+        Hl7View.Slice value = fields[0].value(context);
+        return value == null || value.isEmpty() ? null : value.decode();
+      }
+      StringBuilder joined = null;
+      for (Field field : fields) {
+        Hl7View.Slice value = field.value(context);
+        if (value != null && !value.isEmpty()) {
+          joined = joined == null ? new StringBuilder() : joined.append(' ');
+          joined.append(value.decode());
+        }
+      }
+      return joined == null ? null : joined.toString();
+    }
+  }
+
+  private static final class ObjectNode extends Node {
+    private final Node[] properties;
+
+    private ObjectNode(String name, Node[] properties) {
+      super(name);
+      this.properties = properties;
+    }
+
+    @Override
+    void bind(Map<String, Integer> slots) {
+      for (Node property : properties) {
+        property.bind(slots);
+      }
+    }
+
+    @Override
+    boolean present(Context context) {
+      for (Node property : properties) {
+        if (property.present(context)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    void write(Context context, JsonGenerator json) throws IOException {
+      writeName(json);
+      json.writeStartObject();
+      for (Node property : properties) {
+        if (property.constant() || property.present(context)) {
+          property.write(context, json);
+        }
+      }
+      json.writeEndObject();
+    }
+  }
+
+  private static final class ArrayNode extends Node {
+    private final Node[] elements;
+
+    private ArrayNode(String name, Node[] elements) {
+      super(name);
+      this.elements = elements;
+    }
+
+    @Override
+    void bind(Map<String, Integer> slots) {
+      for (Node element : elements) {
+        element.bind(slots);
+      }
+    }
+
+    @Override
+    boolean present(Context context) {
+      for (Node element : elements) {
+        if (element.present(context)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    void write(Context context, JsonGenerator json) throws IOException {
+      writeName(json);
+      json.writeStartArray();
+      for (Node element : elements) {
+        if (element.present(context)) {
+          element.write(context, json);
+        }
+      }
+      json.writeEndArray();
+    }
+  }
+
+  private static final class RepeatNode extends Node {
+    private final Field field;
+    private final Node element;
+
+    private RepeatNode(String name, Field field, Node element) {
+      super(name);
+      this.field = field;
+      this.element = element;
+    }
+
+    @Override
+    void bind(Map<String, Integer> slots) {
+      field.bind(slots);
+      element.bind(slots);
+    }
+
+    @Override
+    boolean present(Context context) {
+      int segment = context.segment(field.slot);
+      if (segment < 0) {
+        return false;
+      }
+      Hl7View.Slice value = context.view.field(segment, field.field);
+      for (int n = 1; ; n++) {
+        Hl7View.Slice repetition = value.repetition(n);
+        if (elementPresent(context, repetition)) {
+          return true;
+        }
+        if (repetition.end() >= value.end()) {
+          return false;
+        }
+      }
+    }
+
+    @Override
+    void write(Context context, JsonGenerator json) throws IOException {
+      writeName(json);
+      json.writeStartArray();
+      Hl7View.Slice value = context.view.field(context.segment(field.slot), field.field);
+      for (int n = 1; ; n++) {
+        Hl7View.Slice repetition = value.repetition(n);
+        if (elementPresent(context, repetition)) {
+          Field outerField = context.repeated;
+          Hl7View.Slice outer = context.repetition;
+          on(context, field, repetition);
+          try {
+            element.write(context, json);
+          } finally {
+            on(context, outerField, outer);
+          }
+        }
+        if (repetition.end() >= value.end()) {
+          break;
+        }
+      }
+      json.writeEndArray();
+    }
+
+    private boolean elementPresent(Context context, Hl7View.Slice repetition) {
+      Field outerField = context.repeated;
+      Hl7View.Slice outer = context.repetition;
+      on(context, field, repetition);
+      try {
+        return element.present(context);
+      } finally {
+        on(context, outerField, outer);
+      }
+    }
+
+    private static void on(Context context, Field field, Hl7View.Slice repetition) {
+      context.repeated = field;
+      context.repetition = repetition;
+    }
+  }
+
+  private static final class ChoiceNode extends Node {
+    private final Field field;
+    private final Map<String, Node[]> cases;
+    private final Node[] otherwise;
+
+    private ChoiceNode(Field field, Map<String, Node[]> cases, Node[] otherwise) {
+      super(null);
+      this.field = field;
+      this.cases = cases;
+      this.otherwise = otherwise;
+    }
+
+    @Override
+    void bind(Map<String, Integer> slots) {
+      field.bind(slots);
+      for (Node[] properties : cases.values()) {
+        for (Node property : properties) {
+          property.bind(slots);
+        }
+      }
+      for (Node property : otherwise) {
+        property.bind(slots);
+      }
+    }
+
+    @Override
+    boolean present(Context context) {
+      for (Node property : selected(context)) {
+        if (property.present(context)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    void write(Context context, JsonGenerator json) throws IOException {
+      for (Node property : selected(context)) {
+        if (property.present(context)) {
+          property.write(context, json);
+        }
+      }
+    }
+
+    private Node[] selected(Context context) {
+      Hl7View.Slice value = field.value(context);
+      Node[] selected = value == null ? null : cases.get(value.toString());
+      return selected != null ? selected : otherwise;
+    }
+  }
+
+  // Value formats
+
+  /*
+   * The number in JSON form, null when it is not one (HL7 NM allows a leading + and a bare .5)
+   */
+  static String decimal(String value) {
+    String number = value.trim();
+    if (number.startsWith("+")) {
+      number = number.substring(1);
+    }
+    try {
+      return new BigDecimal(number).toString();
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /*
+   * YYYY[MM[DD]] as YYYY[-MM[-DD]], a time of day is dropped, null when it does not start with a date
+   */
+  static String date(String value) {
+    int digits = leadingDigits(value);
+    if (digits < 4) {
+      return null;
+    }
+    StringBuilder date = new StringBuilder(10).append(value, 0, 4);
+    if (digits >= 6) {
+      date.append('-').append(value, 4, 6);
+    }
+    if (digits >= 8) {
+      date.append('-').append(value, 6, 8);
+    }
+    return date.toString();
+  }
+
+  /*
+   * YYYY[MM[DD[HH[MM[SS[.S+]]]]]][+/-ZZZZ] as a FHIR dateTime. With a time of day the seconds
+   * and the offset are filled in, the offset from the zone when the value has none.
+   */
+  static String dateTime(String value, ZoneId zone) {
+    int digits = leadingDigits(value);
+    if (digits < 10) {
+      return date(value);
+    }
+    int hour = Integer.parseInt(value.substring(8, 10));
+    int minute = digits >= 12 ? Integer.parseInt(value.substring(10, 12)) : 0;
+    int second = digits >= 14 ? Integer.parseInt(value.substring(12, 14)) : 0;
+    int at = Math.min(digits, 14);
+    String fraction = "";
+    if (digits >= 14 && at < value.length() && value.charAt(at) == '.') {
+      int end = at + 1;
+      while (end < value.length() && Character.isDigit(value.charAt(end))) {
+        end++;
+      }
+      fraction = end > at + 1 ? value.substring(at, end) : "";
+      at = end;
+    }
+    LocalDateTime local;
+    try {
+      local = LocalDateTime.of(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(4, 6)),
+          Integer.parseInt(value.substring(6, 8)), hour, minute, second);
+    } catch (RuntimeException e) {
+      return null;
+    }
+    ZoneOffset offset;
+    if (at + 5 <= value.length() && (value.charAt(at) == '+' || value.charAt(at) == '-')
+        && leadingDigits(value.substring(at + 1)) >= 4) {
+      int hours = Integer.parseInt(value.substring(at + 1, at + 3));
+      int minutes = Integer.parseInt(value.substring(at + 3, at + 5));
+      try {
+        offset = value.charAt(at) == '-' ? ZoneOffset.ofHoursMinutes(-hours, -minutes)
+            : ZoneOffset.ofHoursMinutes(hours, minutes);
+      } catch (RuntimeException e) {
+        // out of range, such as +2500 or +0160
+        return null;
+      }
+    } else {
+      offset = zone.getRules().getOffset(local);
+    }
+    return new StringBuilder(32).append(value, 0, 4).append('-').append(value, 4, 6).append('-').append(value, 6, 8)
+        .append('T').append(value, 8, 10).append(':').append(twoDigits(minute)).append(':').append(twoDigits(second))
+        .append(fraction).append(offset.getId()).toString();
+  }
+
+  private static String twoDigits(int value) {
+    return value < 10 ? "0" + value : String.valueOf(value);
+  }
+
+  private static int leadingDigits(String value) {
+    int digits = 0;
+    while (digits < value.length() && Character.isDigit(value.charAt(digits))) {
+      digits++;
+    }
+    return digits;
+  }
+}
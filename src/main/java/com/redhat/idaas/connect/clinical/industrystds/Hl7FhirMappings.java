@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.array;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.choice;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.code;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.codes;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.constant;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.date;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.dateTime;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.decimal;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.object;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.repeat;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.resource;
+import static com.redhat.idaas.connect.clinical.industrystds.Hl7FhirConverter.text;
+
+/*
+ * The HL7 v2 to FHIR R4 mappings, by MSH-9.1 message type, after the HL7 v2-to-FHIR
+ * mapping tables for the fields the routes carry:
+ *
+ *  - ADT  a Patient per PID and an Encounter per PV1
+ *  - ORU  a DiagnosticReport per OBR and an Observation per OBX
+ *  - VXU  an Immunization per RXA
+ *
+ * Resources carry no id. Subjects reference the patient by identifier (PID-3.1), which the
+ * Kafka key of the HL7 message is taken from as well by default.
+ */
+public final class Hl7FhirMappings {
+  private static final Map<String, String> CODING_SYSTEMS = codes(
+      "LN", "http://loinc.org",
+      "SCT", "http://snomed.info/sct",
+      "SNM", "http://snomed.info/sct",
+      "CVX", "http://hl7.org/fhir/sid/cvx",
+      "NDC", "http://hl7.org/fhir/sid/ndc",
+      "I9", "http://hl7.org/fhir/sid/icd-9-cm",
+      "I9C", "http://hl7.org/fhir/sid/icd-9-cm",
+      "I10", "http://hl7.org/fhir/sid/icd-10",
+      "UCUM", "http://unitsofmeasure.org",
+      "MVX", "http://hl7.org/fhir/sid/mvx");
+
+  private Hl7FhirMappings() {
+  }
+
+  public static List<String> messageTypes() {
+    return Arrays.asList("ADT", "ORU", "VXU");
+  }
+
+  /*
+   * The converter for the given message types, timestamps without an offset taken in zone
+   */
+  public static Hl7FhirConverter compile(List<String> messageTypes, ZoneId zone) {
+    Map<String, List<Hl7FhirConverter.ResourceMapping>> mappings = new LinkedHashMap<>();
+    for (String messageType : messageTypes) {
+      String type = messageType.trim().toUpperCase(Locale.ROOT);
+      mappings.put(type, forMessageType(type));
+    }
+    return Hl7FhirConverter.compile(mappings, zone);
+  }
+
+  private static List<Hl7FhirConverter.ResourceMapping> forMessageType(String messageType) {
+    switch (messageType) {
+      case "ADT":
+        return Arrays.asList(patient(), encounter());
+      case "ORU":
+        return Arrays.asList(diagnosticReport(), observation());
+      case "VXU":
+        return Collections.singletonList(immunization());
+      default:
+        throw new IllegalArgumentException("No FHIR mapping for HL7 message type " + messageType
+            + ", there are " + messageTypes());
+    }
+  }
+
+  private static Hl7FhirConverter.ResourceMapping patient() {
+    return resource("Patient", "PID",
+        repeat("identifier", "PID-3", object(null,
+            text("value", "PID-3.1"),
+            object("type", text("text", "PID-3.5")),
+            object("assigner", text("display", "PID-3.4")))),
+        repeat("name", "PID-5", object(null,
+            text("family", "PID-5.1"),
+            array("given", text(null, "PID-5.2"), text(null, "PID-5.3")),
+            array("suffix", text(null, "PID-5.4")),
+            array("prefix", text(null, "PID-5.5")))),
+        repeat("telecom", "PID-13", object(null,
+            constant("system", "phone"),
+            text("value", "PID-13.1"),
+            constant("use", "home"))),
+        code("gender", "PID-8", codes("M", "male", "F", "female", "O", "other", "A", "other", "U", "unknown",
+            "N", "unknown"), null),
+        date("birthDate", "PID-7"),
+        dateTime("deceasedDateTime", "PID-29"),
+        repeat("address", "PID-11", object(null,
+            array("line", text(null, "PID-11.1"), text(null, "PID-11.2")),
+            text("city", "PID-11.3"),
+            text("state", "PID-11.4"),
+            text("postalCode", "PID-11.5"),
+            text("country", "PID-11.6"))),
+        object("maritalStatus", array("coding", object(null,
+            constant("system", "http://terminology.hl7.org/CodeSystem/v3-MaritalStatus"),
+            text("code", "PID-16.1")))));
+  }
+
+  private static Hl7FhirConverter.ResourceMapping encounter() {
+    return resource("Encounter", "PV1",
+        array("identifier", object(null, text("value", "PV1-19.1"))),
+        code("status", "MSH-9.2", codes("A01", "in-progress", "A02", "in-progress", "A03", "finished",
+            "A04", "arrived", "A05", "planned", "A06", "in-progress", "A07", "in-progress", "A11", "cancelled",
+            "A12", "in-progress", "A13", "in-progress", "A14", "planned", "A27", "cancelled"), "unknown"),
+        object("class",
+            constant("system", "http://terminology.hl7.org/CodeSystem/v3-ActCode"),
+            code("code", "PV1-2", codes("I", "IMP", "O", "AMB", "E", "EMER", "P", "PRENC"), null)),
+        patientReference("subject"),
+        repeat("participant", "PV1-7", object(null,
+            object("individual",
+                constant("type", "Practitioner"),
+                object("identifier", text("value", "PV1-7.1")),
+                text("display", "PV1-7.3", "PV1-7.2")))),
+        object("period", dateTime("start", "PV1-44"), dateTime("end", "PV1-45")),
+        array("location", object(null, object("location", text("display", "PV1-3.1", "PV1-3.2", "PV1-3.3")))));
+  }
+
+  private static Hl7FhirConverter.ResourceMapping diagnosticReport() {
+    return resource("DiagnosticReport", "OBR",
+        array("identifier", object(null,
+            text("value", "OBR-3.1"),
+            object("assigner", text("display", "OBR-3.2")))),
+        code("status", "OBR-25", codes("O", "registered", "I", "registered", "S", "registered", "A", "partial",
+            "P", "preliminary", "R", "preliminary", "F", "final", "C", "corrected", "X", "cancelled"), "unknown"),
+        codeableConcept("code", "OBR-4"),
+        patientReference("subject"),
+        dateTime("effectiveDateTime", "OBR-7"),
+        dateTime("issued", "OBR-22"));
+  }
+
+  private static Hl7FhirConverter.ResourceMapping observation() {
+    Map<String, Hl7FhirConverter.Node[]> values = new HashMap<>();
+    Hl7FhirConverter.Node[] quantity = {object("valueQuantity",
+        decimal("value", "OBX-5"),
+        text("unit", "OBX-6.1"),
+        code("system", "OBX-6.3", CODING_SYSTEMS, null))};
+    values.put("NM", quantity);
+    // structured numeric, comparator ^ number without a range
+    values.put("SN", new Hl7FhirConverter.Node[] {object("valueQuantity",
+        decimal("value", "OBX-5.2"),
+        code("comparator", "OBX-5.1", codes("<", "<", "<=", "<=", ">=", ">=", ">", ">"), null),
+        text("unit", "OBX-6.1"))});
+    values.put("CE", new Hl7FhirConverter.Node[] {codeableConcept("valueCodeableConcept", "OBX-5")});
+    values.put("CWE", new Hl7FhirConverter.Node[] {codeableConcept("valueCodeableConcept", "OBX-5")});
+    values.put("DT", new Hl7FhirConverter.Node[] {dateTime("valueDateTime", "OBX-5")});
+    values.put("TS", new Hl7FhirConverter.Node[] {dateTime("valueDateTime", "OBX-5")});
+    values.put("DTM", new Hl7FhirConverter.Node[] {dateTime("valueDateTime", "OBX-5")});
+    // encapsulated documents are not copied into the resource
+    values.put("ED", new Hl7FhirConverter.Node[0]);
+    return resource("Observation", "OBX",
+        code("status", "OBX-11", codes("F", "final", "P", "preliminary", "R", "preliminary", "C", "corrected",
+            "I", "registered", "X", "cancelled", "D", "entered-in-error", "W", "entered-in-error"), "unknown"),
+        codeableConcept("code", "OBX-3"),
+        patientReference("subject"),
+        dateTime("effectiveDateTime", "OBX-14", "OBR-7"),
+        choice("OBX-2", values, text("valueString", "OBX-5")),
+        array("interpretation", object(null, array("coding", object(null,
+            constant("system", "http://terminology.hl7.org/CodeSystem/v3-ObservationInterpretation"),
+            text("code", "OBX-8"))))),
+        array("referenceRange", object(null, text("text", "OBX-7"))));
+  }
+
+  private static Hl7FhirConverter.ResourceMapping immunization() {
+    Map<String, Hl7FhirConverter.Node[]> doses = new HashMap<>();
+    // 999 is an unknown amount
+    doses.put("999", new Hl7FhirConverter.Node[0]);
+    return resource("Immunization", "RXA",
+        code("status", "RXA-20", codes("CP", "completed", "PA", "completed", "RE", "not-done", "NA", "not-done"),
+            "completed"),
+        codeableConcept("vaccineCode", "RXA-5"),
+        patientReference("patient"),
+        dateTime("occurrenceDateTime", "RXA-3"),
+        text("lotNumber", "RXA-15"),
+        date("expirationDate", "RXA-16"),
+        object("manufacturer", text("display", "RXA-17.2")),
+        choice("RXA-6", doses, object("doseQuantity",
+            decimal("value", "RXA-6"),
+            text("unit", "RXA-7.1"),
+            code("system", "RXA-7.3", CODING_SYSTEMS, null))));
+  }
+
+  /*
+   * A CE / CWE field as a CodeableConcept with one coding
+   */
+  private static Hl7FhirConverter.Node codeableConcept(String name, String field) {
+    return object(name, array("coding", object(null,
+        code("system", field + ".3", CODING_SYSTEMS, null),
+        text("code", field + ".1"),
+        text("display", field + ".2"))));
+  }
+
+  private static Hl7FhirConverter.Node patientReference(String name) {
+    return object(name,
+        constant("type", "Patient"),
+        object("identifier", text("value", "PID-3.1")));
+  }
+}
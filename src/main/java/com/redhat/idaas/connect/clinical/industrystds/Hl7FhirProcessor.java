@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * HL7 route step after the send, converting the message with the Hl7FhirConverter and
+ * sending the resources to the topic of their FHIR route (FHIRSvr_<resource> when there is
+ * none), keyed like the HL7 message so a patient's resources stay in order as well.
+ *
+ * Only messages Kafka (or the spool) accepted are converted, one answered AE is resent and
+ * converted then. The ACK does not wait for the resources: the route thread only takes the key
+ * and hands the message to a worker, which converts it on a view of its own and sends the
+ * resources. Each worker runs one conversion at a time and messages with the same key go to
+ * the same worker, so their resources are still sent in order. When a worker's queue is full
+ * the route thread converts the message itself, slowing the route rather than dropping it,
+ * and may then send before the messages still queued. A conversion or a send that fails is
+ * logged and counted, the HL7 message itself was delivered.
+ */
+public class Hl7FhirProcessor implements Processor {
+  private static final Logger log = LoggerFactory.getLogger(Hl7FhirProcessor.class);
+
+  private final Hl7FhirConverter converter;
+  // resource type -> topic
+  private final Map<String, String> topics;
+  private final FhirBundleSplitter.Sender sender;
+  // single threaded, picked by key
+  private final List<? extends Executor> workers;
+  // messages handed to the workers and not converted and sent yet
+  private final AtomicInteger pending = new AtomicInteger();
+  private final LongAdder converted = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder delivered = new LongAdder();
+  private final LongAdder undelivered = new LongAdder();
+
+  public Hl7FhirProcessor(Hl7FhirConverter converter, Map<String, String> topics, FhirBundleSplitter.Sender sender,
+      List<? extends Executor> workers) {
+    this.converter = converter;
+    this.topics = topics;
+    this.sender = sender;
+    this.workers = workers;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    if (KafkaSendProcessor.deliveryFailure(exchange) != null) {
+      return;
+    }
+    Hl7View view = Hl7View.of(exchange);
+    if (view == null) {
+      return;
+    }
+    RouteMetadata metadata = RouteMetadata.of(exchange);
+    byte[] key = metadata != null ? metadata.recordKey(exchange) : null;
+    // the route's view keeps indexing on the route thread, the workers index a copy
+    Hl7View message = view.copy();
+    String exchangeId = exchange.getExchangeId();
+    pending.incrementAndGet();
+    Runnable conversion = () -> {
+      try {
+        convertAndSend(exchangeId, message, key);
+      } finally {
+        pending.decrementAndGet();
+      }
+    };
+    try {
+      workers.get(worker(key)).execute(conversion);
+    } catch (RejectedExecutionException e) {
+      conversion.run();
+    }
+  }
+
+  private int worker(byte[] key) {
+    return (Arrays.hashCode(key) & Integer.MAX_VALUE) % workers.size();
+  }
+
+  private void convertAndSend(String exchangeId, Hl7View message, byte[] key) {
+    List<Hl7FhirConverter.Resource> resources;
+    try {
+      resources = converter.convert(message);
+    } catch (Exception e) {
+      failed.increment();
+      log.warn("Message {} could not be converted to FHIR", exchangeId, e);
+      return;
+    }
+    if (resources.isEmpty()) {
+      return;
+    }
+    converted.increment();
+    for (Hl7FhirConverter.Resource resource : resources) {
+      String topic = topics.getOrDefault(resource.getType(), "FHIRSvr_" + resource.getType());
+      try {
+        sender.send(topic, key, resource.getJson(), failure -> {
+          if (failure == null) {
+            delivered.increment();
+          } else {
+            undelivered(exchangeId, resource, failure);
+          }
+        });
+      } catch (Exception e) {
+        undelivered(exchangeId, resource, e);
+      }
+    }
+  }
+
+  private void undelivered(String exchangeId, Hl7FhirConverter.Resource resource, Exception failure) {
+    undelivered.increment();
+    log.warn("{} converted from message {} was not delivered", resource.getType(), exchangeId, failure);
+  }
+
+  /*
+   * Messages waiting for or in a conversion, which the shutdown drain waits for
+   */
+  public int getPendingCount() {
+    return pending.get();
+  }
+
+  public long getConvertedCount() {
+    return converted.sum();
+  }
+
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  public long getDeliveredCount() {
+    return delivered.sum();
+  }
+
+  public long getUndeliveredCount() {
+    return undelivered.sum();
+  }
+}
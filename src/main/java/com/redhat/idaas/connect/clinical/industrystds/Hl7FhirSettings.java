@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * HL7 v2 to FHIR conversion settings, bound from the hl7-fhir-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "hl7-fhir-settings")
+public class Hl7FhirSettings {
+
+  /*
+   * When true the HL7 routes convert the messages Kafka accepted to FHIR resources and send
+   * them to the topics of the FHIR routes, besides the HL7 message itself
+   */
+  private boolean enabled = false;
+
+  // MSH-9.1 message types converted, of ADT, ORU and VXU
+  private List<String> messageTypes = new ArrayList<>(Hl7FhirMappings.messageTypes());
+
+  // zone of the HL7 timestamps without an offset, empty = the JVM's
+  private String timeZone = "";
+
+  // resource type -> topic, for resources without a FHIR route or to send them elsewhere
+  private Map<String, String> topics = new HashMap<>();
+
+  // threads converting and sending off the route threads, a message key always goes to the same one
+  private int workerThreads = 2;
+
+  // messages waiting for the workers, shared out between them, past it the route thread converts them itself
+  private int queueCapacity = 1000;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public List<String> getMessageTypes() {
+    return messageTypes;
+  }
+
+  public void setMessageTypes(List<String> messageTypes) {
+    this.messageTypes = messageTypes;
+  }
+
+  public String getTimeZone() {
+    return timeZone;
+  }
+
+  public void setTimeZone(String timeZone) {
+    this.timeZone = timeZone;
+  }
+
+  public Map<String, String> getTopics() {
+    return topics;
+  }
+
+  public void setTopics(Map<String, String> topics) {
+    this.topics = topics;
+  }
+
+  public int getWorkerThreads() {
+    return workerThreads;
+  }
+
+  public void setWorkerThreads(int workerThreads) {
+    this.workerThreads = workerThreads;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+}
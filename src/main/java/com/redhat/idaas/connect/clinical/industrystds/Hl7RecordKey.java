@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Kafka record key for an HL7 message, taken from the first configured field that has a
+ * value, e.g. PID-3 then MSH-10. Records with the same key land on the same partition, so
+ * keying on the patient identifier keeps each patient's messages in order while the topic
+ * is spread over many partitions.
+ *
+ * Fields are given as SEG-n or SEG-n.c and read from the message's Hl7View, no HAPI
+ * parse. Only the first repetition is read and SEG-n means its first component, so PID-3
+ * is the CX.1 id number. The value is used as it is on the wire, escape sequences are not
+ * decoded, which is enough for a key.
+ */
+public final class Hl7RecordKey {
+  private final FieldSpec[] fields;
+
+  private Hl7RecordKey(FieldSpec[] fields) {
+    this.fields = fields;
+  }
+
+  /*
+   * null when no key fields are configured, the records are then sent without a key
+   */
+  public static Hl7RecordKey of(List<String> fields) {
+    if (fields == null || fields.isEmpty()) {
+      return null;
+    }
+    List<FieldSpec> specs = new ArrayList<>(fields.size());
+    for (String field : fields) {
+      specs.add(FieldSpec.parse(field));
+    }
+    return new Hl7RecordKey(specs.toArray(new FieldSpec[0]));
+  }
+
+  /*
+   * The key bytes, or null when none of the fields has a value
+   */
+  public byte[] extract(Hl7View view) {
+    if (!view.hasHeader()) {
+      return null;
+    }
+    for (FieldSpec field : fields) {
+      byte[] key = field.extract(view);
+      if (key != null) {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(fields);
+  }
+
+  private static final class FieldSpec {
+    private final String segment;
+    private final int field;
+    private final int component;
+    private final String text;
+
+    private FieldSpec(String segment, int field, int component, String text) {
+      this.segment = segment;
+      this.field = field;
+      this.component = component;
+      this.text = text;
+    }
+
+    static FieldSpec parse(String text) {
+      String spec = text.trim().toUpperCase(Locale.ROOT);
+      int dash = spec.indexOf('-');
+      int dot = spec.indexOf('.', dash);
+      try {
+        if (dash != 3) {
+          throw new IllegalArgumentException();
+        }
+        int field = Integer.parseInt(dot < 0 ? spec.substring(dash + 1) : spec.substring(dash + 1, dot));
+        int component = dot < 0 ? 1 : Integer.parseInt(spec.substring(dot + 1));
+        // MSH-1 and MSH-2 are the delimiters themselves
+        if (field < 1 || component < 1 || (spec.startsWith("MSH") && field < 3)) {
+          throw new IllegalArgumentException();
+        }
+        return new FieldSpec(spec.substring(0, 3), field, component, spec);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Kafka key field " + text + " is not of the form SEG-n or SEG-n.c, e.g. PID-3");
+      }
+    }
+
+    byte[] extract(Hl7View view) {
+      int index = view.segmentIndex(segment);
+      if (index < 0) {
+        return null;
+      }
+      Hl7View.Slice value = view.field(index, field).repetition(1).component(component);
+      int end = view.valueEnd(value.start(), value.end());
+      return end == value.start() ? null : Arrays.copyOfRange(view.buffer(), value.start(), end);
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import ca.uhn.hl7v2.ErrorCode;
+import ca.uhn.hl7v2.HL7Exception;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * First step of the unified MLLP listener, taking every message type on one port. It reads
+ * the MSH-9 message type from the message's Hl7View, which only indexes the MSH segment, and
+ * runs the step that attaches the metadata of that type's route, so the message goes to the
+ * same topic with the same audit details, record key and meters as on the route's own port.
+ *
+ * Message types are three letters (HL7 table 0076), the table has a slot for each of the
+ * 26^3 codes and a lookup is an index computed from the three bytes. A message type with no
+ * route, or a message that does not start with an MSH (a batch), is answered with an AR and
+ * not sent or audited.
+ */
+public class Hl7TriggerDispatcher implements Processor {
+  private static final Logger log = LoggerFactory.getLogger(Hl7TriggerDispatcher.class);
+  private static final int CODE_LENGTH = 3;
+  private static final int LETTERS = 26;
+
+  private final Processor[] routes = new Processor[LETTERS * LETTERS * LETTERS];
+  private final String charset;
+  private final Processor ack;
+  private final LongAdder dispatched = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  public Hl7TriggerDispatcher(String charset, Processor ack) {
+    this.charset = charset;
+    this.ack = ack;
+  }
+
+  /*
+   * Routes the message type to the step, false when the type already has one
+   */
+  public boolean register(String messageType, Processor attachMetadata) {
+    byte[] code = messageType.getBytes(StandardCharsets.US_ASCII);
+    int index = code.length == CODE_LENGTH ? index(code, 0, CODE_LENGTH) : -1;
+    if (index < 0) {
+      throw new IllegalArgumentException("MLLP trigger " + messageType + " is not a three letter HL7 message type,"
+          + " it can not be routed by the unified listener");
+    }
+    if (routes[index] != null) {
+      return false;
+    }
+    routes[index] = attachMetadata;
+    return true;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    // before the view is built, it decodes with the route charset
+    exchange.setProperty(Exchange.CHARSET_NAME, charset);
+    Hl7View view = Hl7View.of(exchange);
+    Processor route = view == null ? null : route(view);
+    if (route != null) {
+      dispatched.increment();
+      route.process(exchange);
+      return;
+    }
+    rejected.increment();
+    String messageType = view != null && view.hasHeader() ? view.field(0, 9).decode() : null;
+    log.debug("Unified MLLP listener has no route for message type {}", messageType);
+    exchange.setProperty(Hl7AckProcessor.REJECTION,
+        new HL7Exception("No route for message type " + messageType, ErrorCode.UNSUPPORTED_MESSAGE_TYPE));
+    ack.process(exchange);
+    exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+  }
+
+  public long getDispatchedCount() {
+    return dispatched.sum();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  private Processor route(Hl7View view) {
+    if (!view.segmentIs(0, "MSH")) {
+      return null;
+    }
+    // MSH-9.1, the message code
+    int start = view.fieldStart(0, 9);
+    int end = view.valueEnd(start, view.fieldEnd(0, 9));
+    int index = end - start == CODE_LENGTH ? index(view.buffer(), start, end) : -1;
+    return index < 0 ? null : routes[index];
+  }
+
+  private static int index(byte[] code, int start, int end) {
+    int index = 0;
+    for (int i = start; i < end; i++) {
+      int letter = code[i] - 'A';
+      if (letter < 0 || letter >= LETTERS) {
+        return -1;
+      }
+      index = index * LETTERS + letter;
+    }
+    return index;
+  }
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Read only index over the raw bytes of an HL7 v2 message, for the steps that need a few
+ * fields (MSH-9, MSH-10, PID-3, ...) and not the HAPI object model.
+ *
+ * Nothing is parsed up front. Segments are found as far as the lookups need, so reading
+ * MSH never scans past it, and the field separators of a segment are indexed the first
+ * time one of its fields is read. Fields come back as offsets into the buffer or as a
+ * Slice over it, narrowed to a repetition, component or subcomponent on demand. Values
+ * stay escaped until Slice.decode() is called.
+ *
+ * The delimiters are read from MSH-1 and MSH-2 (or FHS / BHS for batches). Field numbers
+ * follow HL7, so MSH-1 is the field separator itself and MSH-2 the encoding characters.
+ * A view can be reset onto another message to reuse its index arrays. Slices are only
+ * valid until then.
+ */
+public final class Hl7View {
+  public static final String EXCHANGE_PROPERTY = "idaasHl7View";
+
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  private byte[] buffer;
+  private int offset;
+  private int limit;
+  private Charset charset;
+  private boolean header;
+  private byte fieldSeparator;
+  private byte componentSeparator;
+  private byte repetitionSeparator;
+  private byte escapeCharacter;
+  private byte subcomponentSeparator;
+
+  // segments found so far, scanPosition is where the search for the next one resumes
+  private int segmentCount;
+  private int scanPosition;
+  private int[] segmentStarts = new int[8];
+  private int[] segmentEnds = new int[8];
+  // per segment, the first entry in separators or -1 before its fields are indexed
+  private int[] firstSeparator = new int[8];
+  private int[] separatorCounts = new int[8];
+  private int[] separators = new int[32];
+  private int separatorCount;
+
+  public Hl7View() {
+  }
+
+  public Hl7View(byte[] message) {
+    reset(message, 0, message.length, StandardCharsets.ISO_8859_1);
+  }
+
+  /*
+   * The view of the exchange body, built on first use and kept as an exchange property so
+   * every step of the route shares one index. null when there is no body.
+   */
+  public static Hl7View of(Exchange exchange) {
+    Hl7View view = exchange.getProperty(EXCHANGE_PROPERTY, Hl7View.class);
+    if (view == null) {
+      byte[] body = exchange.getIn().getBody(byte[].class);
+      if (body == null) {
+        return null;
+      }
+      String charsetName = exchange.getProperty(Exchange.CHARSET_NAME, String.class);
+      view = new Hl7View().reset(body, 0, body.length,
+          charsetName != null ? Charset.forName(charsetName) : StandardCharsets.ISO_8859_1);
+      exchange.setProperty(EXCHANGE_PROPERTY, view);
+    }
+    return view;
+  }
+
+  public Hl7View reset(byte[] message, int offset, int length, Charset charset) {
+    this.buffer = message;
+    this.offset = offset;
+    this.limit = offset + length;
+    this.charset = charset;
+    this.segmentCount = 0;
+    this.scanPosition = offset;
+    this.separatorCount = 0;
+    this.header = length >= 4 && isHeaderName(message, offset);
+    this.fieldSeparator = header ? message[offset + 3] : (byte) '|';
+    // delimiters MSH-2 leaves out are not used, the field separator never occurs inside a field
+    byte[] encoding = {'^', '~', '\\', '&'};
+    if (header) {
+      Arrays.fill(encoding, fieldSeparator);
+      for (int i = 0; i < encoding.length && offset + 4 + i < limit; i++) {
+        byte c = message[offset + 4 + i];
+        if (c == fieldSeparator || c == CR || c == LF) {
+          break;
+        }
+        encoding[i] = c;
+      }
+    }
+    componentSeparator = encoding[0];
+    repetitionSeparator = encoding[1];
+    escapeCharacter = encoding[2];
+    subcomponentSeparator = encoding[3];
+    return this;
+  }
+
+  /*
+   * A new view over the same message with an index of its own, for reading it on another
+   * thread than the one using this view
+   */
+  public Hl7View copy() {
+    return new Hl7View().reset(buffer, offset, limit - offset, charset);
+  }
+
+  /*
+   * Whether the message starts with an MSH (or FHS / BHS) header the delimiters came from
+   */
+  public boolean hasHeader() {
+    return header;
+  }
+
+  public byte[] buffer() {
+    return buffer;
+  }
+
+  public byte fieldSeparator() {
+    return fieldSeparator;
+  }
+
+  public byte componentSeparator() {
+    return componentSeparator;
+  }
+
+  public byte repetitionSeparator() {
+    return repetitionSeparator;
+  }
+
+  public byte escapeCharacter() {
+    return escapeCharacter;
+  }
+
+  public byte subcomponentSeparator() {
+    return subcomponentSeparator;
+  }
+
+  /*
+   * Number of segments, finding all of them
+   */
+  public int segmentCount() {
+    while (nextSegment()) {
+      // index the rest of the message
+    }
+    return segmentCount;
+  }
+
+  /*
+   * Index of the first segment with this name at or after from, -1 when there is none
+   */
+  public int segmentIndex(String name, int from) {
+    for (int s = from; s < segmentCount || nextSegment(); s++) {
+      if (nameEquals(s, name)) {
+        return s;
+      }
+    }
+    return -1;
+  }
+
+  public int segmentIndex(String name) {
+    return segmentIndex(name, 0);
+  }
+
+  public boolean segmentIs(int segment, String name) {
+    return found(segment) && nameEquals(segment, name);
+  }
+
+  public String segmentName(int segment) {
+    checkSegment(segment);
+    int start = segmentStarts[segment];
+    return new String(buffer, start, Math.min(3, segmentEnds[segment] - start), StandardCharsets.US_ASCII);
+  }
+
+  public int segmentStart(int segment) {
+    checkSegment(segment);
+    return segmentStarts[segment];
+  }
+
+  public int segmentEnd(int segment) {
+    checkSegment(segment);
+    return segmentEnds[segment];
+  }
+
+  /*
+   * Number of fields in the segment, not counting the name
+   */
+  public int fieldCount(int segment) {
+    checkSegment(segment);
+    indexFields(segment);
+    return isHeader(segment) ? separatorCounts[segment] + 1 : separatorCounts[segment];
+  }
+
+  /*
+   * Buffer offset where the field starts, a field past the end of the segment is empty at
+   * the segment end
+   */
+  public int fieldStart(int segment, int field) {
+    int index = fieldIndex(segment, field);
+    if (index < 0) {
+      return segmentStarts[segment] + 3;
+    }
+    return index < separatorCounts[segment] ? separators[firstSeparator[segment] + index] + 1 : segmentEnds[segment];
+  }
+
+  public int fieldEnd(int segment, int field) {
+    int index = fieldIndex(segment, field);
+    if (index < 0) {
+      return segmentStarts[segment] + 4;
+    }
+    return index + 1 < separatorCounts[segment] ? separators[firstSeparator[segment] + index + 1] : segmentEnds[segment];
+  }
+
+  public Slice field(int segment, int field) {
+    return new Slice(fieldStart(segment, field), fieldEnd(segment, field));
+  }
+
+  /*
+   * The field of the first segment with this name, empty when there is no such segment
+   */
+  public Slice field(String segmentName, int field) {
+    int segment = segmentIndex(segmentName);
+    return segment < 0 ? new Slice(limit, limit) : field(segment, field);
+  }
+
+  /*
+   * End of the first value in from..to, i.e. of its first repetition, component and subcomponent
+   */
+  public int valueEnd(int from, int to) {
+    for (int i = from; i < to; i++) {
+      byte c = buffer[i];
+      if (c == componentSeparator || c == repetitionSeparator || c == subcomponentSeparator) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  public boolean hasEscape(int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer[i] == escapeCharacter) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Position of field in the segment's separators, -1 for MSH-1
+   */
+  private int fieldIndex(int segment, int field) {
+    checkSegment(segment);
+    if (field < 1) {
+      throw new IllegalArgumentException("HL7 fields are numbered from 1");
+    }
+    indexFields(segment);
+    if (isHeader(segment)) {
+      // the separator after the name is MSH-1, MSH-2 starts after it
+      return field - 2;
+    }
+    return field - 1;
+  }
+
+  /*
+   * Whether the message has this segment, finding the segments up to it
+   */
+  private boolean found(int segment) {
+    while (segment >= segmentCount) {
+      if (!nextSegment()) {
+        return false;
+      }
+    }
+    return segment >= 0;
+  }
+
+  private void checkSegment(int segment) {
+    if (!found(segment)) {
+      throw new IndexOutOfBoundsException("Segment " + segment + " of " + segmentCount);
+    }
+  }
+
+  private boolean nextSegment() {
+    int i = scanPosition;
+    while (i < limit && (buffer[i] == CR || buffer[i] == LF)) {
+      i++;
+    }
+    if (i >= limit) {
+      scanPosition = limit;
+      return false;
+    }
+    int start = i;
+    while (i < limit && buffer[i] != CR && buffer[i] != LF) {
+      i++;
+    }
+    if (segmentCount == segmentStarts.length) {
+      int capacity = segmentCount * 2;
+      segmentStarts = Arrays.copyOf(segmentStarts, capacity);
+      segmentEnds = Arrays.copyOf(segmentEnds, capacity);
+      firstSeparator = Arrays.copyOf(firstSeparator, capacity);
+      separatorCounts = Arrays.copyOf(separatorCounts, capacity);
+    }
+    segmentStarts[segmentCount] = start;
+    segmentEnds[segmentCount] = i;
+    firstSeparator[segmentCount] = -1;
+    segmentCount++;
+    scanPosition = i;
+    return true;
+  }
+
+  private void indexFields(int segment) {
+    if (firstSeparator[segment] >= 0) {
+      return;
+    }
+    int first = separatorCount;
+    int end = segmentEnds[segment];
+    for (int i = segmentStarts[segment]; i < end; i++) {
+      if (buffer[i] == fieldSeparator) {
+        if (separatorCount == separators.length) {
+          separators = Arrays.copyOf(separators, separatorCount * 2);
+        }
+        separators[separatorCount++] = i;
+      }
+    }
+    firstSeparator[segment] = first;
+    separatorCounts[segment] = separatorCount - first;
+  }
+
+  private boolean nameEquals(int segment, String name) {
+    int start = segmentStarts[segment];
+    int length = name.length();
+    if (segmentEnds[segment] - start < length
+        || (start + length < segmentEnds[segment] && buffer[start + length] != fieldSeparator)) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (buffer[start + i] != name.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isHeader(int segment) {
+    return segmentEnds[segment] - segmentStarts[segment] >= 4 && isHeaderName(buffer, segmentStarts[segment]);
+  }
+
+  private static boolean isHeaderName(byte[] message, int at) {
+    byte a = message[at];
+    byte b = message[at + 1];
+    byte c = message[at + 2];
+    return (a == 'M' && b == 'S' && c == 'H') || ((a == 'F' || a == 'B') && b == 'H' && c == 'S');
+  }
+
+  /*
+   * A field or part of one, start and end are offsets into the view's buffer
+   */
+  public final class Slice {
+    private final int start;
+    private final int end;
+
+    private Slice(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    public int start() {
+      return start;
+    }
+
+    public int end() {
+      return end;
+    }
+
+    public int length() {
+      return end - start;
+    }
+
+    public boolean isEmpty() {
+      return end == start;
+    }
+
+    // repetitions, components and subcomponents are numbered from 1, missing ones are empty.
+    // Narrow a repeating field to a repetition before taking its components.
+
+    public Slice repetition(int n) {
+      return part(n, repetitionSeparator);
+    }
+
+    public Slice component(int n) {
+      return part(n, componentSeparator);
+    }
+
+    public Slice subcomponent(int n) {
+      return part(n, subcomponentSeparator);
+    }
+
+    public boolean hasEscape() {
+      return Hl7View.this.hasEscape(start, end);
+    }
+
+    /*
+     * Compares the raw bytes with an ASCII value, without building a String
+     */
+    public boolean contentEquals(String value) {
+      if (value.length() != end - start) {
+        return false;
+      }
+      for (int i = start; i < end; i++) {
+        if (buffer[i] != value.charAt(i - start)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    public byte[] toBytes() {
+      return Arrays.copyOfRange(buffer, start, end);
+    }
+
+    /*
+     * The value as it is on the wire, escape sequences included
+     */
+    @Override
+    public String toString() {
+      return new String(buffer, start, end - start, charset);
+    }
+
+    /*
+     * The value with the delimiter escapes (\F\ \S\ \T\ \R\ \E\) and hex data (\Xhh..\)
+     * decoded. Formatting and character set escapes are left as they are.
+     */
+    public String decode() {
+      if (!hasEscape()) {
+        return toString();
+      }
+      byte[] out = new byte[end - start];
+      int length = 0;
+      int i = start;
+      while (i < end) {
+        byte c = buffer[i];
+        int close = c == escapeCharacter ? indexOf(escapeCharacter, i + 1) : -1;
+        if (close < 0) {
+          out[length++] = c;
+          i++;
+          continue;
+        }
+        int decoded = decodeEscape(i + 1, close, out, length);
+        if (decoded < 0) {
+          // not one we decode, copied through with its escape characters
+          System.arraycopy(buffer, i, out, length, close + 1 - i);
+          length += close + 1 - i;
+        } else {
+          length = decoded;
+        }
+        i = close + 1;
+      }
+      return new String(out, 0, length, charset);
+    }
+
+    private int decodeEscape(int from, int to, byte[] out, int length) {
+      if (to - from == 1) {
+        switch (buffer[from]) {
+          case 'F':
+            out[length] = fieldSeparator;
+            return length + 1;
+          case 'S':
+            out[length] = componentSeparator;
+            return length + 1;
+          case 'T':
+            out[length] = subcomponentSeparator;
+            return length + 1;
+          case 'R':
+            out[length] = repetitionSeparator;
+            return length + 1;
+          case 'E':
+            out[length] = escapeCharacter;
+            return length + 1;
+          default:
+            return -1;
+        }
+      }
+      if (buffer[from] == 'X' && (to - from - 1) % 2 == 0 && to - from > 1) {
+        int pos = length;
+        for (int i = from + 1; i < to; i += 2) {
+          int high = Character.digit(buffer[i], 16);
+          int low = Character.digit(buffer[i + 1], 16);
+          if (high < 0 || low < 0) {
+            return -1;
+          }
+          out[pos++] = (byte) (high << 4 | low);
+        }
+        return pos;
+      }
+      return -1;
+    }
+
+    private int indexOf(byte value, int from) {
+      for (int i = from; i < end; i++) {
+        if (buffer[i] == value) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private Slice part(int n, byte separator) {
+      if (n < 1) {
+        throw new IllegalArgumentException("HL7 repetitions and components are numbered from 1");
+      }
+      int from = start;
+      for (int i = start; i < end; i++) {
+        if (buffer[i] == separator) {
+          if (--n == 0) {
+            return new Slice(from, i);
+          }
+          from = i + 1;
+        }
+      }
+      return n == 1 ? new Slice(from, end) : new Slice(end, end);
+    }
+  }
+}
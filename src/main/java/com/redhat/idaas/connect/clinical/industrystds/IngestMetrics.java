@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Micrometer instrumentation of the ingest routes, scraped from the management port at
+ * /actuator/prometheus. Every route gets its RouteMeters when the routes are built, the
+ * audit pipeline and the spool counters are read by the registry on scrape.
+ */
+@Component
+public class IngestMetrics {
+
+  private final MeterRegistry registry;
+  // route id -> meters, for the audit lag reported by the audit writer threads
+  private final Map<String, RouteMeters> routes = new ConcurrentHashMap<>();
+
+  public IngestMetrics(MeterRegistry registry, AuditPublisher auditPublisher, MessageSpool messageSpool) {
+    this.registry = registry;
+
+    FunctionCounter.builder("idaas.audit.events", auditPublisher, AuditPublisher::getQueuedCount)
+        .description("Audit events queued").tag("result", "queued").register(registry);
+    FunctionCounter.builder("idaas.audit.events", auditPublisher, AuditPublisher::getFlushedCount)
+        .description("Audit events acknowledged by Kafka").tag("result", "flushed").register(registry);
+    FunctionCounter.builder("idaas.audit.events", auditPublisher, AuditPublisher::getFailedCount)
+        .description("Audit events Kafka did not take").tag("result", "failed").register(registry);
+    FunctionCounter.builder("idaas.audit.events", auditPublisher, AuditPublisher::getDroppedCount)
+        .description("Audit events dropped on overflow").tag("result", "dropped").register(registry);
+    FunctionCounter.builder("idaas.audit.events", auditPublisher, AuditPublisher::getSpilledCount)
+        .description("Audit events spilled to disk on overflow").tag("result", "spilled").register(registry);
+    Gauge.builder("idaas.audit.buffered", auditPublisher, AuditPublisher::getBufferedCount)
+        .description("Audit events waiting in the ring buffer").register(registry);
+    auditPublisher.setDeliveryListener((event, lagMillis) -> {
+      RouteMeters meters = event.getComponent() == null ? null : routes.get(event.getComponent());
+      if (meters != null) {
+        meters.auditDelivered(lagMillis);
+      }
+    });
+
+    FunctionCounter.builder("idaas.spool.messages", messageSpool, MessageSpool::getAppendedCount)
+        .description("Messages appended to the spool").tag("result", "appended").register(registry);
+    FunctionCounter.builder("idaas.spool.messages", messageSpool, MessageSpool::getForwardedCount)
+        .description("Messages forwarded from the spool to Kafka").tag("result", "forwarded").register(registry);
+    FunctionCounter.builder("idaas.spool.forward.retries", messageSpool, MessageSpool::getForwardRetryCount)
+        .description("Spool forward batches retried").register(registry);
+    Gauge.builder("idaas.spool.segments.pending", messageSpool, MessageSpool::getPendingSegments)
+        .description("Spool segments not yet forwarded").register(registry);
+  }
+
+  public RouteMeters forRoute(RouteMetadata metadata) {
+    return routes.computeIfAbsent(metadata.getRouteId(), routeId -> new RouteMeters(registry, metadata));
+  }
+
+  public void bindAckFallbacks(Hl7AckProcessor ackProcessor) {
+    FunctionCounter.builder("idaas.hl7.ack.fallbacks", ackProcessor, Hl7AckProcessor::getFallbackCount)
+        .description("HL7 ACKs built with a full HAPI parse instead of from the MSH bytes").register(registry);
+  }
+
+  public void bindBundleSplitter(FhirBundleSplitter splitter) {
+    FunctionCounter.builder("idaas.fhir.bundle.entries", splitter, FhirBundleSplitter::getDeliveredCount)
+        .description("FHIR Bundle entries delivered to their topic").tag("result", "delivered").register(registry);
+    FunctionCounter.builder("idaas.fhir.bundle.entries", splitter, FhirBundleSplitter::getFailedCount)
+        .description("FHIR Bundle entries answered with an error").tag("result", "failed").register(registry);
+    FunctionCounter.builder("idaas.fhir.bundle.rejected", splitter, FhirBundleSplitter::getRejectedCount)
+        .description("FHIR Bundles that could not be read").register(registry);
+  }
+
+  public void bindFhirValidation(String routeId, FhirValidationProcessor validation) {
+    String mode = validation.getMode().name().toLowerCase(Locale.ROOT);
+    FunctionCounter.builder("idaas.fhir.validation", validation, FhirValidationProcessor::getValidCount)
+        .description("FHIR resources validated").tags("route", routeId, "mode", mode, "result", "valid").register(registry);
+    FunctionCounter.builder("idaas.fhir.validation", validation, FhirValidationProcessor::getInvalidCount)
+        .description("FHIR resources validated").tags("route", routeId, "mode", mode, "result", "invalid").register(registry);
+    FunctionCounter.builder("idaas.fhir.validation.rejected", validation, FhirValidationProcessor::getRejectedCount)
+        .description("Invalid FHIR resources answered 422 and not forwarded").tag("route", routeId).register(registry);
+  }
+
+  public void bindDedup(Hl7DuplicateCache cache) {
+    FunctionCounter.builder("idaas.hl7.dedup", cache, Hl7DuplicateCache::getHitCount)
+        .description("HL7 messages looked up in the duplicate cache").tag("result", "hit").register(registry);
+    FunctionCounter.builder("idaas.hl7.dedup", cache, Hl7DuplicateCache::getMissCount)
+        .description("HL7 messages looked up in the duplicate cache").tag("result", "miss").register(registry);
+    FunctionCounter.builder("idaas.hl7.dedup.evicted", cache, Hl7DuplicateCache::getEvictedCount)
+        .description("Fingerprints forgotten before their ttl as the cache was full").register(registry);
+    Gauge.builder("idaas.hl7.dedup.entries", cache, Hl7DuplicateCache::getSize)
+        .description("Delivered HL7 messages remembered").register(registry);
+  }
+
+  public void bindHl7Dispatch(Hl7TriggerDispatcher dispatcher) {
+    FunctionCounter.builder("idaas.hl7.unified.messages", dispatcher, Hl7TriggerDispatcher::getDispatchedCount)
+        .description("Messages of the unified MLLP listener").tag("result", "dispatched").register(registry);
+    FunctionCounter.builder("idaas.hl7.unified.messages", dispatcher, Hl7TriggerDispatcher::getRejectedCount)
+        .description("Messages of the unified MLLP listener").tag("result", "rejected").register(registry);
+  }
+
+  public void bindClaimCheck(ContentStore store) {
+    FunctionCounter.builder("idaas.claimcheck.documents", store, ContentStore::getStoredCount)
+        .description("Documents moved to the content store").tag("result", "stored").register(registry);
+    FunctionCounter.builder("idaas.claimcheck.documents", store, ContentStore::getDeduplicatedCount)
+        .description("Documents moved to the content store").tag("result", "deduplicated").register(registry);
+    FunctionCounter.builder("idaas.claimcheck.bytes", store, ContentStore::getStoredBytes)
+        .description("Bytes of the documents newly stored").baseUnit("bytes").register(registry);
+    FunctionCounter.builder("idaas.claimcheck.chunks", store, ContentStore::getChunksWritten)
+        .description("Chunk files written, a chunk already stored is not written again").register(registry);
+  }
+
+  public void bindContentRetrieval(ContentRetrievalProcessor retrieval) {
+    FunctionCounter.builder("idaas.claimcheck.retrievals", retrieval, ContentRetrievalProcessor::getServedCount)
+        .description("Documents read back through the retrieval route").tag("result", "served").register(registry);
+    FunctionCounter.builder("idaas.claimcheck.retrievals", retrieval, ContentRetrievalProcessor::getUnauthorizedCount)
+        .description("Documents read back through the retrieval route").tag("result", "unauthorized").register(registry);
+  }
+
+  public void bindHl7Fhir(Hl7FhirProcessor conversion) {
+    FunctionCounter.builder("idaas.hl7.fhir.messages", conversion, Hl7FhirProcessor::getConvertedCount)
+        .description("HL7 messages converted to FHIR").tag("result", "converted").register(registry);
+    FunctionCounter.builder("idaas.hl7.fhir.messages", conversion, Hl7FhirProcessor::getFailedCount)
+        .description("HL7 messages converted to FHIR").tag("result", "failed").register(registry);
+    FunctionCounter.builder("idaas.hl7.fhir.resources", conversion, Hl7FhirProcessor::getDeliveredCount)
+        .description("FHIR resources converted from HL7 and sent").tag("result", "delivered").register(registry);
+    FunctionCounter.builder("idaas.hl7.fhir.resources", conversion, Hl7FhirProcessor::getUndeliveredCount)
+        .description("FHIR resources converted from HL7 and sent").tag("result", "failed").register(registry);
+    Gauge.builder("idaas.hl7.fhir.pending", conversion, Hl7FhirProcessor::getPendingCount)
+        .description("HL7 messages waiting for their FHIR conversion").register(registry);
+  }
+
+  public void bindBodyLog(BodyLogProcessor bodyLog) {
+    FunctionCounter.builder("idaas.body.log", bodyLog, BodyLogProcessor::getLoggedCount)
+        .description("Message bodies logged").tag("result", "logged").register(registry);
+    FunctionCounter.builder("idaas.body.log", bodyLog, BodyLogProcessor::getTruncatedCount)
+        .description("Message bodies logged").tag("result", "truncated").register(registry);
+  }
+
+  public void bindFhirAdmissionControl(FhirAdmissionControl control) {
+    Gauge.builder("idaas.fhir.inflight", control, FhirAdmissionControl::getInFlight)
+        .description("FHIR requests admitted and not yet answered").register(registry);
+    Gauge.builder("idaas.fhir.buffer.occupancy", control, FhirAdmissionControl::getBufferOccupancy)
+        .description("Share of the producer buffer, or of the spool, in use").register(registry);
+  }
+
+  public void bindFhirAdmission(String routeId, FhirAdmissionProcessor admission) {
+    FunctionCounter.builder("idaas.fhir.admitted", admission, FhirAdmissionProcessor::getAdmittedCount)
+        .description("FHIR requests admitted").tag("route", routeId).register(registry);
+    for (FhirAdmissionProcessor.Reason reason : FhirAdmissionProcessor.Reason.values()) {
+      FunctionCounter.builder("idaas.fhir.rejected", admission, processor -> processor.getRejectedCount(reason))
+          .description("FHIR requests refused, 429 or 503 while shutting down").tags("route", routeId, "reason", reason.name().toLowerCase(Locale.ROOT))
+          .register(registry);
+    }
+  }
+}
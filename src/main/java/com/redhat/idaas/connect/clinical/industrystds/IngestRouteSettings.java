@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.util.List;
+
+/*
+ * One row of the route table in application.yml, either an MLLP listener
+ * (mllp-settings.routes) or a FHIR servlet resource (fhir-settings.routes)
+ *
+ * Only the trigger / resource is required for FHIR rows, the rest defaults from it:
+ *  route-id  FHIR<resource>
+ *  path      <resource> in lower case, served under /idaas/
+ *  topic     FHIRSvr_<resource>
+ * and validation to fhir-settings.validation. max-in-flight caps the requests of a single
+ * FHIR row on top of fhir-settings.max-in-flight, unset leaves only the global limit.
+ * log-sample-rate defaults to body-log-settings.sample-rate for either kind.
+ * MLLP rows must give the route-id, port and topic, kafka-key-fields defaults to
+ * mllp-settings.kafka-key-fields.
+ */
+public class IngestRouteSettings {
+
+  private String routeId;
+  // HL7 message trigger (ADT, ORU, ...) for MLLP rows
+  private String trigger;
+  // FHIR resource type for servlet rows
+  private String resource;
+  private Integer port;
+  private String path;
+  private String topic;
+  private String auditDetails;
+  // HL7 fields for the Kafka record key of MLLP rows
+  private List<String> kafkaKeyFields;
+  // R4 validation of FHIR rows
+  private FhirValidationProcessor.Mode validation;
+  // in-flight requests of FHIR rows
+  private Integer maxInFlight;
+  // share of the bodies logged
+  private Double logSampleRate;
+
+  public String getRouteId() {
+    return routeId;
+  }
+
+  public void setRouteId(String routeId) {
+    this.routeId = routeId;
+  }
+
+  public String getTrigger() {
+    return trigger;
+  }
+
+  public void setTrigger(String trigger) {
+    this.trigger = trigger;
+  }
+
+  public String getResource() {
+    return resource;
+  }
+
+  public void setResource(String resource) {
+    this.resource = resource;
+  }
+
+  public Integer getPort() {
+    return port;
+  }
+
+  public void setPort(Integer port) {
+    this.port = port;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  public String getTopic() {
+    return topic;
+  }
+
+  public void setTopic(String topic) {
+    this.topic = topic;
+  }
+
+  public String getAuditDetails() {
+    return auditDetails;
+  }
+
+  public void setAuditDetails(String auditDetails) {
+    this.auditDetails = auditDetails;
+  }
+
+  public List<String> getKafkaKeyFields() {
+    return kafkaKeyFields;
+  }
+
+  public void setKafkaKeyFields(List<String> kafkaKeyFields) {
+    this.kafkaKeyFields = kafkaKeyFields;
+  }
+
+  public FhirValidationProcessor.Mode getValidation() {
+    return validation;
+  }
+
+  public void setValidation(FhirValidationProcessor.Mode validation) {
+    this.validation = validation;
+  }
+
+  public Integer getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setMaxInFlight(Integer maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  public Double getLogSampleRate() {
+    return logSampleRate;
+  }
+
+  public void setLogSampleRate(Double logSampleRate) {
+    this.logSampleRate = logSampleRate;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * One Kafka producer per distinct producer config, shared by every route and by the audit
+ * pipeline. KafkaProducer is thread safe and batches per partition, so sharing it is what
+ * lets linger.ms and batch.size actually fill batches across the routes. The producers
+ * are closed when the context shuts down, after the routes and the audit writers stopped,
+ * all within shutdown-settings.producer-close-timeout-ms. Flushes on shutdown are bounded
+ * the same way, a producer that can not reach its brokers would otherwise hold them forever.
+ *
+ * With startup-settings.fast-start the pool hands out LazyProducers instead, the producers are
+ * then created by the warm-up (createProducers) or the first send, off the startup path.
+ *
+ * The producers are KafkaProducers. Only code can register another ProducerFactory bean, no
+ * setting does, so a deployment can not be configured to acknowledge HL7 without a broker.
+ */
+@Component
+public class KafkaProducerPool implements DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(KafkaProducerPool.class);
+  private static final ProducerFactory KAFKA = KafkaProducer::new;
+
+  private final KafkaSettings settings;
+  private final ShutdownSettings shutdownSettings;
+  private final StartupSettings startupSettings;
+  private final ProducerFactory factory;
+  private final ConcurrentMap<Map<String, Object>, Producer<?, ?>> producers = new ConcurrentHashMap<>();
+  // with fast-start, the producers handed out before they exist
+  private final ConcurrentMap<Map<String, Object>, LazyProducer<?, ?>> lazyProducers = new ConcurrentHashMap<>();
+
+  @Autowired
+  public KafkaProducerPool(KafkaSettings settings, ShutdownSettings shutdownSettings, StartupSettings startupSettings,
+                           ObjectProvider<ProducerFactory> factory) {
+    this(settings, shutdownSettings, startupSettings, factory.getIfAvailable(() -> KAFKA));
+  }
+
+  public KafkaProducerPool(KafkaSettings settings, ShutdownSettings shutdownSettings, StartupSettings startupSettings) {
+    this(settings, shutdownSettings, startupSettings, KAFKA);
+  }
+
+  public KafkaProducerPool(KafkaSettings settings, ShutdownSettings shutdownSettings, StartupSettings startupSettings,
+                           ProducerFactory factory) {
+    this.settings = settings;
+    this.shutdownSettings = shutdownSettings;
+    this.startupSettings = startupSettings;
+    this.factory = factory;
+  }
+
+  /*
+   * The producer for the kafka-settings config, byte[] keys and values
+   */
+  public Producer<byte[], byte[]> ingestProducer() {
+    return acquire(settings.producerConfig());
+  }
+
+  @SuppressWarnings("unchecked")
+  public <K, V> Producer<K, V> acquire(Map<String, Object> config) {
+    Map<String, Object> key = Collections.unmodifiableMap(new HashMap<>(config));
+    if (startupSettings.isFastStart()) {
+      return (Producer<K, V>) lazyProducers.computeIfAbsent(key,
+          lazyKey -> new LazyProducer<>(() -> (Producer<Object, Object>) producers.computeIfAbsent(lazyKey, this::create)));
+    }
+    return (Producer<K, V>) producers.computeIfAbsent(key, this::create);
+  }
+
+  /*
+   * Creates the producers handed out so far that were not created yet
+   */
+  public void createProducers() {
+    for (LazyProducer<?, ?> producer : lazyProducers.values()) {
+      producer.create();
+    }
+  }
+
+  public int size() {
+    return producers.size();
+  }
+
+  /*
+   * Flushes every producer, false when they did not all complete their sends within the timeout
+   */
+  public boolean flush(long timeoutMillis) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    boolean flushed = true;
+    for (Producer<?, ?> producer : producers.values()) {
+      flushed &= flush(producer, remainingMillis(deadline));
+    }
+    return flushed;
+  }
+
+  /*
+   * Flushes the producer within producer-close-timeout-ms, false when it did not
+   */
+  public boolean flush(Producer<?, ?> producer) {
+    return flush(producer, shutdownSettings.getProducerCloseTimeoutMs());
+  }
+
+  @Override
+  public void destroy() {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownSettings.getProducerCloseTimeoutMs());
+    for (Map.Entry<Map<String, Object>, Producer<?, ?>> entry : producers.entrySet()) {
+      Producer<?, ?> producer = entry.getValue();
+      // 0 once the time is up, the producer then fails what it still holds instead of waiting
+      long timeoutMillis = remainingMillis(deadline);
+      if (!runWithin(() -> producer.close(timeoutMillis, TimeUnit.MILLISECONDS), "close", timeoutMillis)) {
+        log.warn("Kafka producer {} did not close in time and was abandoned", entry.getKey().get(ProducerConfig.CLIENT_ID_CONFIG));
+      }
+    }
+    // the closed producers stay, a late acquire gets one that refuses sends rather than a new one
+  }
+
+  private static boolean flush(Producer<?, ?> producer, long timeoutMillis) {
+    return runWithin(producer::flush, "flush", timeoutMillis);
+  }
+
+  /*
+   * Runs the task on a daemon thread and waits for it up to the timeout, false when it did not
+   * complete. Neither flush nor close can be trusted to return: an idempotent producer that
+   * never reached a broker keeps waiting for its producer id, through a forced close as well.
+   */
+  private static boolean runWithin(Runnable task, String action, long timeoutMillis) {
+    Thread thread = new Thread(() -> {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        log.warn("Unable to {} Kafka producer", action, e);
+      }
+    }, "idaas-kafka-" + action);
+    thread.setDaemon(true);
+    thread.start();
+    try {
+      // with some time over for a close given no time at all
+      thread.join(timeoutMillis + 100);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return !thread.isAlive();
+  }
+
+  private static long remainingMillis(long deadline) {
+    return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+  }
+
+  private Producer<?, ?> create(Map<String, Object> config) {
+    if (factory != KAFKA) {
+      log.warn("Creating Kafka producer {} with {} instead of a KafkaProducer for {}", config.get("client.id"),
+          factory.getClass().getName(), config.get("bootstrap.servers"));
+      return factory.create(config);
+    }
+    log.info("Creating Kafka producer {} for {}", config.get("client.id"), config.get("bootstrap.servers"));
+    return KAFKA.create(config);
+  }
+
+  /*
+   * Creates the producers of the pool, a test or a benchmark may give it one without a broker
+   */
+  public interface ProducerFactory {
+    Producer<?, ?> create(Map<String, Object> config);
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.netty.channel.ChannelHandlerContext;
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.Exchange;
+import org.apache.camel.component.netty4.NettyConstants;
+import org.apache.camel.util.AsyncProcessorHelper;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Sends the message body to the topic of the route's RouteMetadata on the shared producer,
+ * in place of one camel-kafka endpoint (and producer) per route.
+ *
+ * Blocking, it waits for the broker acknowledgement like the kafka endpoint did, so a failed
+ * send fails the exchange and no ACK is returned to the sender.
+ *
+ * Asynchronous, the calling thread is released as soon as the record is handed to the producer
+ * and the rest of the route continues once the broker answers. A failed delivery is then
+ * recorded under DELIVERY_FAILURE instead of failing the exchange, so the HL7 ACK step can
+ * answer AE rather than leaving the sender without a reply. The producer callback runs on the
+ * producer's network thread, which a blocking step would stall for every route, so the rest
+ * of the route is handed back to the connection's MLLP handler thread (keeping the replies of
+ * a connection in order) or, for the other routes, to the continuations executor.
+ */
+public class KafkaSendProcessor implements AsyncProcessor {
+  private static final Logger log = LoggerFactory.getLogger(KafkaSendProcessor.class);
+  public static final String DELIVERY_FAILURE = "idaasKafkaDeliveryFailure";
+
+  private final Producer<byte[], byte[]> producer;
+  private final boolean async;
+  private final Executor continuations;
+
+  public KafkaSendProcessor(Producer<byte[], byte[]> producer, boolean async, Executor continuations) {
+    this.producer = producer;
+    this.async = async;
+    this.continuations = continuations;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    if (async) {
+      AsyncProcessorHelper.process(this, exchange);
+      return;
+    }
+    try {
+      producer.send(record(exchange)).get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  @Override
+  public boolean process(Exchange exchange, AsyncCallback callback) {
+    if (!async) {
+      try {
+        process(exchange);
+      } catch (Exception e) {
+        exchange.setException(e);
+      }
+      callback.done(true);
+      return true;
+    }
+    try {
+      producer.send(record(exchange), (metadata, exception) -> {
+        if (exception != null) {
+          deliveryFailed(exchange, exception);
+        }
+        resume(exchange, callback, continuations);
+      });
+    } catch (Exception e) {
+      // rejected before it reached the producer buffer, answered on the calling thread
+      deliveryFailed(exchange, e);
+      callback.done(true);
+      return true;
+    }
+    return false;
+  }
+
+  public static Exception deliveryFailure(Exchange exchange) {
+    return exchange.getProperty(DELIVERY_FAILURE, Exception.class);
+  }
+
+  /*
+   * Continues the route of an exchange whose send completed on another thread: on the
+   * executor of the Netty handler the message came in on, which is the MLLP handler thread
+   * (or the event loop with handler-threads 0) the connection is pinned to, otherwise on the
+   * given executor. When the executor is shut down or full the route continues on this thread.
+   */
+  static void resume(Exchange exchange, AsyncCallback callback, Executor executor) {
+    ChannelHandlerContext context = exchange.getIn().getHeader(NettyConstants.NETTY_CHANNEL_HANDLER_CONTEXT,
+        ChannelHandlerContext.class);
+    try {
+      (context != null ? context.executor() : executor).execute(() -> callback.done(false));
+    } catch (RejectedExecutionException e) {
+      callback.done(false);
+    }
+  }
+
+  static void deliveryFailed(Exchange exchange, Exception exception) {
+    log.warn("Message {} was not delivered", exchange.getExchangeId(), exception);
+    exchange.setProperty(DELIVERY_FAILURE, exception);
+  }
+
+  private static ProducerRecord<byte[], byte[]> record(Exchange exchange) {
+    RouteMetadata metadata = RouteMetadata.of(exchange);
+    if (metadata == null) {
+      throw new IllegalStateException("No route metadata on exchange " + exchange.getExchangeId());
+    }
+    byte[] body = exchange.getIn().getBody(byte[].class);
+    return new ProducerRecord<>(metadata.getTopic(), metadata.recordKey(exchange), body);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Kafka producer settings shared by every ingest route, bound from the kafka-settings
+ * block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "kafka-settings")
+public class KafkaSettings {
+
+  private String brokers = "localhost:9092";
+  private String clientId = "idaas-ingest";
+  // 0 | 1 | all, idempotence needs all
+  private String acks = "all";
+  private boolean enableIdempotence = true;
+  // none | gzip | snappy | lz4
+  private String compressionType = "lz4";
+  private int batchSize = 65536;
+  private int lingerMs = 5;
+  // kept at 5 or less so idempotent sends stay ordered
+  private int maxInFlightRequestsPerConnection = 5;
+  // any other producer config, passed through as is
+  private Map<String, String> properties = new HashMap<>();
+
+  /*
+   * Producer config for the raw byte[] payloads, routes with the same config share one producer
+   */
+  public Map<String, Object> producerConfig() {
+    Map<String, Object> config = new LinkedHashMap<>();
+    config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers);
+    config.put(ProducerConfig.CLIENT_ID_CONFIG, clientId);
+    config.put(ProducerConfig.ACKS_CONFIG, acks);
+    config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, String.valueOf(enableIdempotence));
+    config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+    config.put(ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(batchSize));
+    config.put(ProducerConfig.LINGER_MS_CONFIG, String.valueOf(lingerMs));
+    config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, String.valueOf(maxInFlightRequestsPerConnection));
+    config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+    config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+    config.putAll(properties);
+    return config;
+  }
+
+  public String getBrokers() {
+    return brokers;
+  }
+
+  public void setBrokers(String brokers) {
+    this.brokers = brokers;
+  }
+
+  public String getClientId() {
+    return clientId;
+  }
+
+  public void setClientId(String clientId) {
+    this.clientId = clientId;
+  }
+
+  public String getAcks() {
+    return acks;
+  }
+
+  public void setAcks(String acks) {
+    this.acks = acks;
+  }
+
+  public boolean isEnableIdempotence() {
+    return enableIdempotence;
+  }
+
+  public void setEnableIdempotence(boolean enableIdempotence) {
+    this.enableIdempotence = enableIdempotence;
+  }
+
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  public void setCompressionType(String compressionType) {
+    this.compressionType = compressionType;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public int getLingerMs() {
+    return lingerMs;
+  }
+
+  public void setLingerMs(int lingerMs) {
+    this.lingerMs = lingerMs;
+  }
+
+  public int getMaxInFlightRequestsPerConnection() {
+    return maxInFlightRequestsPerConnection;
+  }
+
+  public void setMaxInFlightRequestsPerConnection(int maxInFlightRequestsPerConnection) {
+    this.maxInFlightRequestsPerConnection = maxInFlightRequestsPerConnection;
+  }
+
+  public Map<String, String> getProperties() {
+    return properties;
+  }
+
+  public void setProperties(Map<String, String> properties) {
+    this.properties = properties;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Producer handed out by KafkaProducerPool with startup-settings.fast-start, the pooled producer
+ * behind it is only created on the first call that needs it, or by create(). Flushing or closing
+ * one that was never created has nothing to do.
+ */
+final class LazyProducer<K, V> implements Producer<K, V> {
+  private final Supplier<Producer<K, V>> factory;
+  private volatile Producer<K, V> producer;
+
+  LazyProducer(Supplier<Producer<K, V>> factory) {
+    this.factory = factory;
+  }
+
+  Producer<K, V> create() {
+    Producer<K, V> created = producer;
+    if (created == null) {
+      synchronized (this) {
+        created = producer;
+        if (created == null) {
+          created = factory.get();
+          producer = created;
+        }
+      }
+    }
+    return created;
+  }
+
+  @Override
+  public void initTransactions() {
+    create().initTransactions();
+  }
+
+  @Override
+  public void beginTransaction() {
+    create().beginTransaction();
+  }
+
+  @Override
+  public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets, String consumerGroupId) {
+    create().sendOffsetsToTransaction(offsets, consumerGroupId);
+  }
+
+  @Override
+  public void commitTransaction() {
+    create().commitTransaction();
+  }
+
+  @Override
+  public void abortTransaction() {
+    create().abortTransaction();
+  }
+
+  @Override
+  public Future<RecordMetadata> send(ProducerRecord<K, V> record) {
+    return create().send(record);
+  }
+
+  @Override
+  public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+    return create().send(record, callback);
+  }
+
+  @Override
+  public void flush() {
+    Producer<K, V> created = producer;
+    if (created != null) {
+      created.flush();
+    }
+  }
+
+  @Override
+  public List<PartitionInfo> partitionsFor(String topic) {
+    return create().partitionsFor(topic);
+  }
+
+  @Override
+  public Map<MetricName, ? extends Metric> metrics() {
+    return create().metrics();
+  }
+
+  @Override
+  public void close() {
+    Producer<K, V> created = producer;
+    if (created != null) {
+      created.close();
+    }
+  }
+
+  @Override
+  public void close(long timeout, TimeUnit unit) {
+    Producer<K, V> created = producer;
+    if (created != null) {
+      created.close(timeout, unit);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.RoutesBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*
+ * Servlet routes added to the Camel context on their first request instead of at startup, by
+ * path under the servlet, used for the FHIR resource routes with startup-settings.fast-start.
+ * FhirIngestServlet asks for the route when no consumer takes a request. The first request to
+ * a path pays for creating and starting its route, tens of milliseconds.
+ */
+@Component
+public class LazyServletRoutes {
+  private final CamelContext camelContext;
+  // builds the routes of a path, called again after an attempt that failed
+  private final Map<String, Supplier<? extends RoutesBuilder>> pending = new ConcurrentHashMap<>();
+
+  public LazyServletRoutes(CamelContext camelContext) {
+    this.camelContext = camelContext;
+  }
+
+  public void add(String path, Supplier<? extends RoutesBuilder> routes) {
+    pending.put(path, routes);
+  }
+
+  /*
+   * Adds the route of the request path, returns once it is started, or right away when there is
+   * none to add. Requests racing to the same path wait for the first to add it. A route that
+   * fails to be added stays pending, the next request to its path tries again.
+   */
+  public synchronized void start(String requestPath) throws Exception {
+    if (requestPath == null || !camelContext.getStatus().isStarted()) {
+      return;
+    }
+    String path = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
+    Supplier<? extends RoutesBuilder> routes = pending.get(path);
+    if (routes != null) {
+      camelContext.addRoutes(routes.get());
+      pending.remove(path);
+    }
+  }
+
+  public int getPendingCount() {
+    return pending.size();
+  }
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+ * Local write-ahead spool in front of the Kafka producer
+ *
+ * Routes append messages to the active memory-mapped SpoolSegment. A sync thread forces
+ * the segment to disk for everything appended since its last pass (group commit) and only
+ * then completes the appenders' callbacks, which is when the route replies to the sender.
+ * The callbacks run on the sync thread and only hand the route over to another thread, the
+ * next group commit waits for them.
+ * A forwarder thread reads the durable records in order and sends them to their topics a
+ * batch at a time, waiting for every acknowledgement before it moves its checkpoint on, so
+ * while Kafka is down it keeps retrying the same batch and nothing is lost or reordered.
+ * Delivery is at least once: a batch that partly failed is sent again as a whole.
+ *
+ * Segments rotate when full and are deleted once forwarded (retainForwardedSegments keeps
+ * the last few). On startup the segments after the checkpoint are replayed and new
+ * messages go to a fresh segment.
+ */
+@Component
+public class MessageSpool implements SmartLifecycle {
+  private static final Logger log = LoggerFactory.getLogger(MessageSpool.class);
+  // start before and stop after the Camel context, like the audit pipeline
+  private static final int PHASE = Integer.MAX_VALUE - 100;
+  private static final String CHECKPOINT = "checkpoint";
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final SpoolSettings settings;
+  private final KafkaProducerPool producerPool;
+  private final Object lock = new Object();
+  // segments not yet forwarded, oldest first, the last one is the active segment
+  private final TreeMap<Long, SpoolSegment> segments = new TreeMap<>();
+  // forwarded segments kept for retention, forwarder thread only
+  private final Deque<Path> forwardedSegments = new ArrayDeque<>();
+  private final LongAdder appended = new LongAdder();
+  private final LongAdder forwarded = new LongAdder();
+  private final LongAdder forwardRetries = new LongAdder();
+  private List<Consumer<Exception>> pending = new ArrayList<>();
+  private SpoolSegment active;
+  private volatile Durable durable;
+  private volatile boolean running;
+  private Path directory;
+  private FileChannel checkpointChannel;
+  private Producer<byte[], byte[]> producer;
+  private Thread syncThread;
+  private Thread forwarderThread;
+  // forwarder position, forwarder thread only once started
+  private long cursorSegment;
+  private int cursorOffset;
+
+  public MessageSpool(SpoolSettings settings, KafkaProducerPool producerPool) {
+    this.settings = settings;
+    this.producerPool = producerPool;
+  }
+
+  /*
+   * Appends the message with its Kafka record key (null for none). The callback runs on the sync
+   * thread once it is on disk, with null or the reason it could not be made durable, and must not
+   * block. Throws when the message cannot be appended.
+   */
+  public void append(String topic, byte[] key, byte[] body, Consumer<Exception> durableCallback) throws IOException {
+    byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+    if (key != null && key.length > SpoolSegment.MAX_KEY_LENGTH) {
+      throw new IOException("Record key of " + key.length + " bytes is too long for the spool");
+    }
+    synchronized (lock) {
+      if (!running) {
+        throw new IOException("Message spool is not running");
+      }
+      if (!active.append(topicBytes, key, body)) {
+        rotate();
+        if (!active.append(topicBytes, key, body)) {
+          throw new IOException("Message of " + body.length + " bytes does not fit in a spool segment");
+        }
+      }
+      pending.add(durableCallback);
+      if (pending.size() == 1) {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  public long getAppendedCount() {
+    return appended.sum();
+  }
+
+  public long getForwardedCount() {
+    return forwarded.sum();
+  }
+
+  public long getForwardRetryCount() {
+    return forwardRetries.sum();
+  }
+
+  public int getPendingSegments() {
+    synchronized (lock) {
+      return segments.size();
+    }
+  }
+
+  @Override
+  public void start() {
+    if (!settings.isEnabled() || running) {
+      return;
+    }
+    try {
+      open();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to open the message spool in " + settings.getDirectory(), e);
+    }
+    running = true;
+    syncThread = new Thread(this::sync, "idaas-spool-sync");
+    forwarderThread = new Thread(this::forward, "idaas-spool-forwarder");
+    syncThread.setDaemon(true);
+    forwarderThread.setDaemon(true);
+    syncThread.start();
+    forwarderThread.start();
+    log.info("Message spool started in {}: {} segment(s) to forward from {}:{}",
+        directory, segments.size(), cursorSegment, cursorOffset);
+  }
+
+  @Override
+  public void stop() {
+    synchronized (lock) {
+      if (!running) {
+        return;
+      }
+      running = false;
+      lock.notifyAll();
+    }
+    join(syncThread);
+    forwarderThread.interrupt();
+    join(forwarderThread);
+    synchronized (lock) {
+      for (SpoolSegment segment : segments.values()) {
+        closeQuietly(segment);
+      }
+      try {
+        checkpointChannel.close();
+      } catch (IOException e) {
+        log.warn("Unable to close the spool checkpoint", e);
+      }
+      log.info("Message spool stopped: appended {}, forwarded {}, retries {}, {} segment(s) left to forward",
+          getAppendedCount(), getForwardedCount(), getForwardRetryCount(), segments.size());
+      segments.clear();
+    }
+  }
+
+  @Override
+  public void stop(Runnable callback) {
+    stop();
+    callback.run();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return true;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  private void open() throws IOException {
+    directory = Paths.get(settings.getDirectory());
+    Files.createDirectories(directory);
+    checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long[] checkpoint = readCheckpoint();
+    long lastId = 0;
+    for (Path file : listSegments()) {
+      long id = SpoolSegment.idOf(file);
+      lastId = Math.max(lastId, id);
+      if (checkpoint != null && id < checkpoint[0]) {
+        forwardedSegments.add(file);
+        continue;
+      }
+      try {
+        segments.put(id, SpoolSegment.open(file));
+      } catch (IOException e) {
+        log.warn("Skipping unreadable spool segment {}", file, e);
+      }
+    }
+    trimForwarded();
+    active = SpoolSegment.create(directory, lastId + 1, settings.getSegmentSizeBytes());
+    segments.put(active.id(), active);
+    durable = new Durable(active.id(), SpoolSegment.HEADER_SIZE);
+    if (checkpoint != null && segments.containsKey(checkpoint[0])) {
+      cursorSegment = checkpoint[0];
+      cursorOffset = (int) checkpoint[1];
+    } else {
+      cursorSegment = segments.firstKey();
+      cursorOffset = SpoolSegment.HEADER_SIZE;
+    }
+    producer = producerPool.ingestProducer();
+  }
+
+  // holding the lock
+  private void rotate() throws IOException {
+    if (segments.size() >= settings.getMaxSegments()) {
+      throw new IOException("Message spool is full, " + segments.size() + " segments are waiting for Kafka");
+    }
+    active.force();
+    SpoolSegment next = SpoolSegment.create(directory, active.id() + 1, settings.getSegmentSizeBytes());
+    segments.put(next.id(), next);
+    active = next;
+  }
+
+  /*
+   * Group commit: one force for everything appended while the previous one ran
+   */
+  private void sync() {
+    for (;;) {
+      List<Consumer<Exception>> batch;
+      SpoolSegment segment;
+      int position;
+      synchronized (lock) {
+        while (pending.isEmpty()) {
+          if (!running) {
+            return;
+          }
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+        batch = pending;
+        pending = new ArrayList<>();
+        segment = active;
+        position = segment.writePosition();
+      }
+      Exception failure = null;
+      try {
+        segment.force();
+        durable = new Durable(segment.id(), position);
+        appended.add(batch.size());
+      } catch (RuntimeException e) {
+        log.error("Unable to force spool segment {} to disk", segment.id(), e);
+        failure = e;
+      }
+      for (Consumer<Exception> callback : batch) {
+        try {
+          callback.accept(failure);
+        } catch (RuntimeException e) {
+          log.warn("Spool callback failed", e);
+        }
+      }
+      LockSupport.unpark(forwarderThread);
+    }
+  }
+
+  private void forward() {
+    int batchSize = Math.max(1, settings.getForwardBatchSize());
+    List<SpoolSegment.SpoolRecord> batch = new ArrayList<>(batchSize);
+    long backoffMs = 0;
+    while (running) {
+      SpoolSegment segment;
+      synchronized (lock) {
+        segment = segments.get(cursorSegment);
+      }
+      Durable limit = durable;
+      boolean sealed = segment.id() < limit.segmentId;
+      int end = sealed ? Integer.MAX_VALUE : limit.position;
+      int offset = cursorOffset;
+      batch.clear();
+      while (batch.size() < batchSize && offset < end) {
+        SpoolSegment.SpoolRecord record = segment.read(offset);
+        if (record == null) {
+          break;
+        }
+        batch.add(record);
+        offset = record.next;
+      }
+      if (batch.isEmpty()) {
+        if (sealed) {
+          finishSegment(segment);
+        } else {
+          LockSupport.parkNanos(IDLE_NANOS);
+        }
+        continue;
+      }
+      try {
+        send(batch);
+      } catch (InterruptedException e) {
+        break;
+      } catch (Exception e) {
+        if (!running) {
+          break;
+        }
+        forwardRetries.increment();
+        if (backoffMs == 0) {
+          log.warn("Kafka is unavailable, holding {} spooled message(s) and retrying", batch.size(), e);
+        }
+        backoffMs = Math.min(Math.max(100, backoffMs * 2), settings.getRetryBackoffMaxMs());
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs));
+        continue;
+      }
+      if (backoffMs > 0) {
+        log.info("Kafka is available again, forwarding the spool");
+        backoffMs = 0;
+      }
+      forwarded.add(batch.size());
+      cursorOffset = offset;
+      writeCheckpoint(cursorSegment, cursorOffset);
+    }
+  }
+
+  private void send(List<SpoolSegment.SpoolRecord> batch) throws InterruptedException, ExecutionException {
+    List<Future<RecordMetadata>> acknowledgements = new ArrayList<>(batch.size());
+    for (SpoolSegment.SpoolRecord record : batch) {
+      acknowledgements.add(producer.send(new ProducerRecord<byte[], byte[]>(record.topic, record.key, record.body)));
+    }
+    for (Future<RecordMetadata> acknowledgement : acknowledgements) {
+      acknowledgement.get();
+    }
+  }
+
+  private void finishSegment(SpoolSegment segment) {
+    Long next;
+    synchronized (lock) {
+      segments.remove(segment.id());
+      next = segments.higherKey(segment.id());
+    }
+    // a sealed segment always has the active segment after it
+    cursorSegment = next;
+    cursorOffset = SpoolSegment.HEADER_SIZE;
+    writeCheckpoint(cursorSegment, cursorOffset);
+    closeQuietly(segment);
+    forwardedSegments.add(directory.resolve(SpoolSegment.fileName(segment.id())));
+    trimForwarded();
+  }
+
+  private void trimForwarded() {
+    while (forwardedSegments.size() > Math.max(0, settings.getRetainForwardedSegments())) {
+      Path file = forwardedSegments.poll();
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        log.warn("Unable to delete forwarded spool segment {}", file, e);
+      }
+    }
+  }
+
+  /*
+   * segment id, offset and a CRC32 of both, a torn checkpoint replays from the oldest segment
+   */
+  private void writeCheckpoint(long segmentId, int offset) {
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    buffer.putLong(segmentId).putInt(offset);
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 0, 12);
+    buffer.putInt((int) crc.getValue());
+    buffer.flip();
+    try {
+      checkpointChannel.write(buffer, 0);
+      checkpointChannel.force(false);
+    } catch (IOException e) {
+      log.warn("Unable to write the spool checkpoint, forwarded messages may be sent again after a restart", e);
+    }
+  }
+
+  private long[] readCheckpoint() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    while (buffer.hasRemaining() && checkpointChannel.read(buffer, buffer.position()) > 0) {
+      // read the whole checkpoint
+    }
+    if (buffer.hasRemaining()) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 0, 12);
+    buffer.flip();
+    long segmentId = buffer.getLong();
+    int offset = buffer.getInt();
+    if (buffer.getInt() != (int) crc.getValue()) {
+      log.warn("Spool checkpoint is corrupt, replaying every segment");
+      return null;
+    }
+    return new long[] {segmentId, offset};
+  }
+
+  private List<Path> listSegments() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SpoolSegment.PREFIX + "*" + SpoolSegment.SUFFIX)) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    // zero padded ids keep name order equal to append order
+    Collections.sort(files);
+    return files;
+  }
+
+  private static void join(Thread thread) {
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void closeQuietly(SpoolSegment segment) {
+    try {
+      segment.close();
+    } catch (IOException e) {
+      log.debug("Unable to close spool segment {}", segment.id(), e);
+    }
+  }
+
+  // how far the active segment is known to be on disk
+  private static final class Durable {
+    private final long segmentId;
+    private final int position;
+
+    private Durable(long segmentId, int position) {
+      this.segmentId = segmentId;
+      this.position = position;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.apache.camel.component.netty4.DefaultChannelHandlerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * First handler of every MLLP connection's pipeline, keeping the open connections of all the
+ * listeners so a shutdown can drain them. Once drained, no connection reads another frame and
+ * new connections are closed as soon as they are accepted, while the frames already read run
+ * to their ACK. A sender gets no ACK for what it sent after that and sends it again, to the
+ * next instance.
+ */
+@Component
+public class MllpConnections extends DefaultChannelHandlerFactory {
+  private static final Logger log = LoggerFactory.getLogger(MllpConnections.class);
+
+  private final ChannelGroup connections = new DefaultChannelGroup("idaas-mllp", GlobalEventExecutor.INSTANCE);
+  private final LongAdder refused = new LongAdder();
+  private final ChannelHandler handler = new Tracker();
+  private volatile boolean draining;
+
+  @Override
+  public ChannelHandler newChannelHandler() {
+    return handler;
+  }
+
+  /*
+   * Stops reading from every connection and accepting new ones, returns the connections paused
+   */
+  public int drain() {
+    draining = true;
+    int paused = 0;
+    for (Channel connection : connections) {
+      connection.config().setAutoRead(false);
+      paused++;
+    }
+    return paused;
+  }
+
+  public boolean isDraining() {
+    return draining;
+  }
+
+  public int getOpenCount() {
+    return connections.size();
+  }
+
+  public long getRefusedCount() {
+    return refused.sum();
+  }
+
+  @ChannelHandler.Sharable
+  private final class Tracker extends ChannelInboundHandlerAdapter {
+    @Override
+    public void channelActive(ChannelHandlerContext context) throws Exception {
+      Channel channel = context.channel();
+      // the group forgets the connection when it closes
+      connections.add(channel);
+      if (draining) {
+        refused.increment();
+        log.debug("Closing MLLP connection from {}, shutting down", channel.remoteAddress());
+        context.close();
+        return;
+      }
+      super.channelActive(context);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The Netty event loops shared by every MLLP listener. Left to itself each netty4 consumer
+ * builds its own boss and worker groups, one boss and two workers per CPU for every port,
+ * so eight listeners on a one CPU pod run two dozen mostly idle selector threads. Here one
+ * boss thread accepts for all the ports and io-threads workers serve all the connections.
+ *
+ * The groups use the Linux epoll transport when native-transport is on and the native
+ * library loads (it ships in netty-all for x86_64), NIO otherwise. Camel does not shut
+ * down groups it was given, they are closed here once the routes have stopped.
+ */
+@Component
+public class MllpEventLoops implements DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(MllpEventLoops.class);
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+  private final boolean nativeTransport;
+  private final EventLoopGroup bossGroup;
+  private final EventLoopGroup workerGroup;
+
+  public MllpEventLoops(MllpSettings settings) {
+    int ioThreads = settings.getIoThreads() > 0 ? settings.getIoThreads() : Runtime.getRuntime().availableProcessors();
+    nativeTransport = settings.isNativeTransport() && Epoll.isAvailable();
+    if (settings.isNativeTransport() && !nativeTransport) {
+      log.info("Epoll transport not available, MLLP listeners use NIO: {}", String.valueOf(Epoll.unavailabilityCause()));
+    }
+    bossGroup = newGroup(1, new DefaultThreadFactory("idaas-mllp-boss", true));
+    workerGroup = newGroup(ioThreads, new DefaultThreadFactory("idaas-mllp-io", true));
+    log.info("MLLP listeners share {} {} io threads", ioThreads, nativeTransport ? "epoll" : "NIO");
+  }
+
+  // true when the groups are epoll ones, the listener channels have to match them
+  public boolean isNativeTransport() {
+    return nativeTransport;
+  }
+
+  public EventLoopGroup getBossGroup() {
+    return bossGroup;
+  }
+
+  public EventLoopGroup getWorkerGroup() {
+    return workerGroup;
+  }
+
+  @Override
+  public void destroy() {
+    // no quiet period, the listeners are already closed when the context shuts down
+    bossGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    workerGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .awaitUninterruptibly(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private EventLoopGroup newGroup(int threads, ThreadFactory threadFactory) {
+    return nativeTransport ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import org.apache.camel.component.netty4.DefaultChannelHandlerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Handler of an MLLP connection's pipeline, after the connection tracking (#mllpConnections)
+ * and ahead of the HL7 decoder, closing the connection once nothing was read or written on it
+ * for the idle timeout, so senders that went away without a FIN do not hold a socket and its
+ * buffers forever. A sender reconnects on its next message.
+ */
+public class MllpIdleTimeout extends DefaultChannelHandlerFactory {
+  private static final Logger log = LoggerFactory.getLogger(MllpIdleTimeout.class);
+
+  private final long idleSeconds;
+
+  public MllpIdleTimeout(long idleSeconds) {
+    this.idleSeconds = idleSeconds;
+  }
+
+  @Override
+  public ChannelHandler newChannelHandler() {
+    // the handler keeps the connection's timer, one per connection
+    return new IdleStateHandler(0, 0, idleSeconds, TimeUnit.SECONDS) {
+      @Override
+      protected void channelIdle(ChannelHandlerContext context, IdleStateEvent event) {
+        log.debug("Closing MLLP connection from {}, idle for {}s", context.channel().remoteAddress(), idleSeconds);
+        context.close();
+      }
+    };
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.component.netty4.NettyConstants;
+import org.apache.camel.support.SynchronizationAdapter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Bounds the messages one MLLP connection can have in flight while Kafka sends complete
+ * asynchronously. When a connection reaches the bound, Netty stops reading from its socket
+ * (autoRead off) so further frames wait in the sender's TCP window rather than in our heap,
+ * and reading resumes as soon as one of its exchanges completes. Memory stays flat for as
+ * long as the broker is stalled. Reading does not resume on a connection MllpConnections
+ * drained for a shutdown.
+ */
+public class MllpInFlightLimiter implements Processor {
+  private static final AttributeKey<AtomicInteger> IN_FLIGHT = AttributeKey.valueOf("idaasInFlight");
+
+  private final int maxInFlight;
+  private final MllpConnections connections;
+
+  public MllpInFlightLimiter(int maxInFlight, MllpConnections connections) {
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.connections = connections;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    ChannelHandlerContext context = exchange.getIn().getHeader(NettyConstants.NETTY_CHANNEL_HANDLER_CONTEXT, ChannelHandlerContext.class);
+    if (context == null) {
+      return;
+    }
+    Channel channel = context.channel();
+    AtomicInteger inFlight = channel.attr(IN_FLIGHT).get();
+    if (inFlight == null) {
+      AtomicInteger created = new AtomicInteger();
+      inFlight = channel.attr(IN_FLIGHT).setIfAbsent(created);
+      if (inFlight == null) {
+        inFlight = created;
+      }
+    }
+    if (inFlight.incrementAndGet() >= maxInFlight) {
+      channel.config().setAutoRead(false);
+    }
+    // this exchange's own completion always re-enables reading, so a connection cannot stay paused
+    AtomicInteger counter = inFlight;
+    exchange.addOnCompletion(new SynchronizationAdapter() {
+      @Override
+      public void onDone(Exchange exchange) {
+        if (counter.decrementAndGet() < maxInFlight && !connections.isDraining()) {
+          channel.config().setAutoRead(true);
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * MLLP listener settings, bound from the mllp-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "mllp-settings")
+public class MllpSettings {
+
+  /*
+   * When true the HL7 routes carry the raw MLLP frame as a byte[] through to the
+   * Kafka producer (ByteArraySerializer) instead of converting it to a String
+   * on every hop. Set to false to get the previous String based ingest.
+   */
+  private boolean zeroCopy = true;
+
+  /*
+   * When true the Kafka send completes asynchronously and the ACK (AA, or AE when delivery
+   * failed) is written back from the producer callback instead of holding a Netty thread
+   * for the broker round trip. A connection's ACKs then follow the order the sends complete
+   * in, not the order of its messages, so only senders that match ACKs by MSA-2 can use it.
+   */
+  private boolean asyncAck = false;
+
+  // frames one connection can have in flight with async-ack before its socket stops being read
+  private int maxInFlightPerConnection = 64;
+
+  /*
+   * HL7 fields the Kafka record key is taken from, the first one with a value wins. Keying on
+   * the patient identifier keeps a patient's messages in order on one partition while the
+   * topic has many. Routes can override it with their own kafka-key-fields, empty sends
+   * the records without a key.
+   */
+  private List<String> kafkaKeyFields = new ArrayList<>(Arrays.asList("PID-3", "MSH-10"));
+
+  /*
+   * Event loop threads shared by all the MLLP listeners for their socket reads and writes,
+   * 0 is one per CPU. The route steps run on the handler threads.
+   */
+  private int ioThreads = 0;
+
+  /*
+   * Threads the route steps run on, shared by all the listeners, so a step waiting on Kafka
+   * does not hold an event loop. 0 runs the steps on the event loop, only safe with async-ack
+   * and the spool off, when no step blocks.
+   */
+  private int handlerThreads = 16;
+
+  // epoll instead of NIO on Linux when the native library loads
+  private boolean nativeTransport = true;
+
+  // connections the kernel queues for each port until they are accepted
+  private int backlog = 256;
+
+  private boolean tcpNoDelay = true;
+
+  private int receiveBufferSize = 65536;
+
+  // a connection nothing was read or written on for this long is closed, 0 keeps it open
+  private long idleTimeoutSeconds = 0;
+
+  /*
+   * Port of a listener taking every trigger of the route table, dispatched on MSH-9 to the
+   * topic and audit details of the trigger's route. The route ports keep listening next to
+   * it. Not set, no unified listener.
+   */
+  private Integer unifiedPort;
+
+  private String unifiedRouteId = "hl7Unified";
+
+  // one MLLP listener route is built per entry
+  private List<IngestRouteSettings> routes = new ArrayList<>();
+
+  public boolean isZeroCopy() {
+    return zeroCopy;
+  }
+
+  public void setZeroCopy(boolean zeroCopy) {
+    this.zeroCopy = zeroCopy;
+  }
+
+  public boolean isAsyncAck() {
+    return asyncAck;
+  }
+
+  public void setAsyncAck(boolean asyncAck) {
+    this.asyncAck = asyncAck;
+  }
+
+  public int getMaxInFlightPerConnection() {
+    return maxInFlightPerConnection;
+  }
+
+  public void setMaxInFlightPerConnection(int maxInFlightPerConnection) {
+    this.maxInFlightPerConnection = maxInFlightPerConnection;
+  }
+
+  public List<String> getKafkaKeyFields() {
+    return kafkaKeyFields;
+  }
+
+  public void setKafkaKeyFields(List<String> kafkaKeyFields) {
+    this.kafkaKeyFields = kafkaKeyFields;
+  }
+
+  public int getIoThreads() {
+    return ioThreads;
+  }
+
+  public void setIoThreads(int ioThreads) {
+    this.ioThreads = ioThreads;
+  }
+
+  public int getHandlerThreads() {
+    return handlerThreads;
+  }
+
+  public void setHandlerThreads(int handlerThreads) {
+    this.handlerThreads = handlerThreads;
+  }
+
+  public boolean isNativeTransport() {
+    return nativeTransport;
+  }
+
+  public void setNativeTransport(boolean nativeTransport) {
+    this.nativeTransport = nativeTransport;
+  }
+
+  public int getBacklog() {
+    return backlog;
+  }
+
+  public void setBacklog(int backlog) {
+    this.backlog = backlog;
+  }
+
+  public boolean isTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  public void setTcpNoDelay(boolean tcpNoDelay) {
+    this.tcpNoDelay = tcpNoDelay;
+  }
+
+  public int getReceiveBufferSize() {
+    return receiveBufferSize;
+  }
+
+  public void setReceiveBufferSize(int receiveBufferSize) {
+    this.receiveBufferSize = receiveBufferSize;
+  }
+
+  public long getIdleTimeoutSeconds() {
+    return idleTimeoutSeconds;
+  }
+
+  public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+    this.idleTimeoutSeconds = idleTimeoutSeconds;
+  }
+
+  public Integer getUnifiedPort() {
+    return unifiedPort;
+  }
+
+  public void setUnifiedPort(Integer unifiedPort) {
+    this.unifiedPort = unifiedPort;
+  }
+
+  public String getUnifiedRouteId() {
+    return unifiedRouteId;
+  }
+
+  public void setUnifiedRouteId(String unifiedRouteId) {
+    this.unifiedRouteId = unifiedRouteId;
+  }
+
+  public List<IngestRouteSettings> getRoutes() {
+    return routes;
+  }
+
+  public void setRoutes(List<IngestRouteSettings> routes) {
+    this.routes = routes;
+  }
+}
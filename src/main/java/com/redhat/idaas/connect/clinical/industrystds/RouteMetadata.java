@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Everything that is constant for an ingest route, worked out once when the routes are
+ * built and attached to each exchange as a single property. This replaces the dozen
+ * constant setProperty steps every route used to run per message.
+ */
+public final class RouteMetadata {
+  public static final String EXCHANGE_PROPERTY = "idaasRouteMetadata";
+  public static final String APP_NAME = "iDAAS-ConnectClinical-IndustryStd";
+  public static final String PROCESSING_TYPE = "data";
+  public static final String PROCESS_NAME = "Input";
+  public static final String ACK_DETAILS = "ACK Processed";
+
+  private final String routeId;
+  private final AuditEvent.IndustryStandard industryStandard;
+  private final String messageTrigger;
+  private final String topic;
+  private final String receivedDetails;
+  private final Hl7RecordKey recordKey;
+
+  public RouteMetadata(String routeId, AuditEvent.IndustryStandard industryStandard, String messageTrigger,
+                       String topic, String receivedDetails) {
+    this(routeId, industryStandard, messageTrigger, topic, receivedDetails, null);
+  }
+
+  public RouteMetadata(String routeId, AuditEvent.IndustryStandard industryStandard, String messageTrigger,
+                       String topic, String receivedDetails, Hl7RecordKey recordKey) {
+    this.routeId = routeId;
+    this.industryStandard = industryStandard;
+    this.messageTrigger = messageTrigger;
+    this.topic = topic;
+    this.receivedDetails = receivedDetails;
+    this.recordKey = recordKey;
+  }
+
+  /*
+   * defaultKeyFields are used when the row does not list its own kafka-key-fields
+   */
+  public static RouteMetadata forHl7(IngestRouteSettings settings, List<String> defaultKeyFields) {
+    require(settings.getTrigger(), "trigger", settings);
+    require(settings.getRouteId(), "route-id", settings);
+    require(settings.getTopic(), "topic", settings);
+    require(settings.getPort(), "port", settings);
+    List<String> keyFields = settings.getKafkaKeyFields() != null ? settings.getKafkaKeyFields() : defaultKeyFields;
+    return new RouteMetadata(settings.getRouteId(), AuditEvent.IndustryStandard.HL7, settings.getTrigger(),
+        settings.getTopic(), detailsOrDefault(settings, settings.getTrigger()), Hl7RecordKey.of(keyFields));
+  }
+
+  public static RouteMetadata forFhir(IngestRouteSettings settings) {
+    String resource = require(settings.getResource(), "resource", settings);
+    return new RouteMetadata(
+        settings.getRouteId() != null ? settings.getRouteId() : "FHIR" + resource,
+        AuditEvent.IndustryStandard.FHIR, resource,
+        settings.getTopic() != null ? settings.getTopic() : "FHIRSvr_" + resource,
+        detailsOrDefault(settings, resource));
+  }
+
+  /*
+   * The Bundle route, its entries go to the topics of the FHIR resource routes
+   */
+  public static RouteMetadata forFhirBundle() {
+    return new RouteMetadata("FHIRBundle", AuditEvent.IndustryStandard.FHIR, "Bundle", null, "Bundle message received");
+  }
+
+  /*
+   * Servlet path for a FHIR row, relative to the /idaas/* mapping
+   */
+  public static String fhirPath(IngestRouteSettings settings) {
+    return settings.getPath() != null ? settings.getPath() : settings.getResource().toLowerCase(Locale.ROOT);
+  }
+
+  public static RouteMetadata of(Exchange exchange) {
+    return exchange.getProperty(EXCHANGE_PROPERTY, RouteMetadata.class);
+  }
+
+  public String getRouteId() {
+    return routeId;
+  }
+
+  public AuditEvent.IndustryStandard getIndustryStandard() {
+    return industryStandard;
+  }
+
+  public String getMessageTrigger() {
+    return messageTrigger;
+  }
+
+  public String getTopic() {
+    return topic;
+  }
+
+  public String getReceivedDetails() {
+    return receivedDetails;
+  }
+
+  /*
+   * Kafka record key for the message, null when the route sends without a key
+   */
+  public byte[] recordKey(Exchange exchange) {
+    if (recordKey == null) {
+      return null;
+    }
+    Hl7View view = Hl7View.of(exchange);
+    return view == null ? null : recordKey.extract(view);
+  }
+
+  @Override
+  public String toString() {
+    return routeId + " (" + industryStandard + " " + messageTrigger + " -> " + topic
+        + (recordKey != null ? " keyed on " + recordKey : "") + ")";
+  }
+
+  private static String detailsOrDefault(IngestRouteSettings settings, String trigger) {
+    return settings.getAuditDetails() != null ? settings.getAuditDetails() : trigger + " message received";
+  }
+
+  private static <T> T require(T value, String name, IngestRouteSettings settings) {
+    if (value == null) {
+      throw new IllegalArgumentException("Route table entry " + settings.getRouteId() + "/"
+          + (settings.getTrigger() != null ? settings.getTrigger() : settings.getResource()) + " is missing " + name);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.camel.Exchange;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Meters of one ingest route, registered once when the routes are built so the route threads
+ * only touch prebuilt counters and timers, never the registry. The receive time travels with
+ * the exchange under EXCHANGE_PROPERTY.
+ *
+ * Latencies are published as a short fixed set of Prometheus histogram buckets and the
+ * percentiles computed on the Prometheus side with histogram_quantile. Micrometer's percentile
+ * histogram has over a hundred buckets in that range and scans them on every record.
+ */
+public final class RouteMeters {
+  static final String EXCHANGE_PROPERTY = "idaasRouteMeters";
+  private static final Duration[] LATENCY_BUCKETS = {
+      Duration.ofNanos(250_000), Duration.ofNanos(500_000), Duration.ofMillis(1), Duration.ofNanos(2_500_000),
+      Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50),
+      Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+      Duration.ofMillis(2500), Duration.ofSeconds(5), Duration.ofSeconds(10)};
+
+  private final Counter messages;
+  private final Counter bytesIn;
+  private final Counter bytesOut;
+  private final Timer kafkaDelivered;
+  private final Timer kafkaFailed;
+  private final Timer ackAccepted;
+  private final Timer ackError;
+  private final Timer auditLag;
+
+  RouteMeters(MeterRegistry registry, RouteMetadata metadata) {
+    Tags tags = Tags.of("route", metadata.getRouteId(),
+        "industrystd", metadata.getIndustryStandard().name(),
+        "trigger", metadata.getMessageTrigger());
+    messages = Counter.builder("idaas.ingest.messages")
+        .description("Messages received")
+        .tags(tags).register(registry);
+    // totals rather than size distributions, a summary costs ten times a counter per record
+    bytesIn = Counter.builder("idaas.ingest.bytes.in")
+        .description("Bytes received")
+        .baseUnit("bytes").tags(tags).register(registry);
+    bytesOut = Counter.builder("idaas.ingest.bytes.out")
+        .description("Bytes replied, the HL7 ACKs or the HTTP responses")
+        .baseUnit("bytes").tags(tags).register(registry);
+    kafkaDelivered = latency("idaas.ingest.kafka.ack", "Time from receipt until Kafka, or the spool when it is enabled, acknowledged the message",
+        tags.and("outcome", "delivered"), registry);
+    kafkaFailed = latency("idaas.ingest.kafka.ack", "Time from receipt until Kafka, or the spool when it is enabled, acknowledged the message",
+        tags.and("outcome", "failed"), registry);
+    ackAccepted = latency("idaas.ingest.ack", "Time from receipt until the reply was ready",
+        tags.and("code", "AA"), registry);
+    ackError = latency("idaas.ingest.ack", "Time from receipt until the reply was ready",
+        tags.and("code", "AE"), registry);
+    auditLag = latency("idaas.audit.lag", "Time from an audit event being raised until Kafka acknowledged it",
+        tags, registry);
+  }
+
+  /*
+   * Counts the message and starts its clock, called from the first step of the route
+   */
+  void received(Exchange exchange) {
+    exchange.setProperty(EXCHANGE_PROPERTY, new Received(this, System.nanoTime()));
+    messages.increment();
+    int size = bodySize(exchange);
+    if (size >= 0) {
+      bytesIn.increment(size);
+    }
+  }
+
+  static void kafkaAcknowledged(Exchange exchange) {
+    Received received = exchange.getProperty(EXCHANGE_PROPERTY, Received.class);
+    if (received != null) {
+      RouteMeters meters = received.meters;
+      Timer timer = KafkaSendProcessor.deliveryFailure(exchange) == null ? meters.kafkaDelivered : meters.kafkaFailed;
+      timer.record(System.nanoTime() - received.nanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  static void replied(Exchange exchange) {
+    Received received = exchange.getProperty(EXCHANGE_PROPERTY, Received.class);
+    if (received != null) {
+      RouteMeters meters = received.meters;
+      Timer timer = KafkaSendProcessor.deliveryFailure(exchange) == null ? meters.ackAccepted : meters.ackError;
+      timer.record(System.nanoTime() - received.nanos, TimeUnit.NANOSECONDS);
+      int size = bodySize(exchange);
+      if (size >= 0) {
+        meters.bytesOut.increment(size);
+      }
+    }
+  }
+
+  void auditDelivered(long lagMillis) {
+    auditLag.record(lagMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private static Timer latency(String name, String description, Tags tags, MeterRegistry registry) {
+    return Timer.builder(name)
+        .description(description)
+        .tags(tags)
+        .sla(LATENCY_BUCKETS)
+        .register(registry);
+  }
+
+  /*
+   * Size of a byte[] or String body without converting it, -1 for anything else
+   */
+  private static int bodySize(Exchange exchange) {
+    Object body = exchange.hasOut() ? exchange.getOut().getBody() : exchange.getIn().getBody();
+    if (body instanceof byte[]) {
+      return ((byte[]) body).length;
+    }
+    if (body instanceof String) {
+      return ((String) body).length();
+    }
+    return -1;
+  }
+
+  private static final class Received {
+    private final RouteMeters meters;
+    private final long nanos;
+
+    private Received(RouteMeters meters, long nanos) {
+      this.meters = meters;
+      this.nanos = nanos;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+/*
+ * Route step recording the RouteMeters of the exchange, placed right after the Kafka send
+ * (it runs once the send completed, on the producer callback with async-ack) and after the
+ * reply is built. A no-op for exchanges without meters.
+ */
+public class RouteMetricsProcessor implements Processor {
+
+  public enum Stage {
+    KAFKA_ACK,
+    REPLY
+  }
+
+  private final Stage stage;
+
+  public RouteMetricsProcessor(Stage stage) {
+    this.stage = stage;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    if (stage == Stage.KAFKA_ACK) {
+      RouteMeters.kafkaAcknowledged(exchange);
+    } else {
+      RouteMeters.replied(exchange);
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.CamelContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+/*
+ * Drains the platform before it stops, so a rolling deploy loses nothing it answered for. It
+ * runs on the ContextClosedEvent the shutdown hook (SIGTERM) publishes, before any lifecycle
+ * stops: the Camel context stops first of those and would close the MLLP connections with
+ * their messages still in flight.
+ *
+ *  1. The MLLP connections stop reading and new ones are closed, FHIR requests are answered
+ *     503, so nothing new is taken
+ *  2. the exchanges in flight, those in Camel's inflight repository, run to their ACK or response
+ *  3. the HL7 to FHIR conversions handed off by those exchanges finish
+ *  4. the audit buffer empties into its producer
+ *  5. the Kafka producers are flushed
+ *
+ * all within shutdown-settings.drain-timeout-ms, and what was drained and what was left
+ * behind is logged. With the spool enabled the messages on disk and not forwarded yet are not
+ * waited for, the spool forwards them on the next start.
+ */
+@Component
+public class ShutdownCoordinator implements ApplicationListener<ContextClosedEvent> {
+  private static final Logger log = LoggerFactory.getLogger(ShutdownCoordinator.class);
+  private static final long POLL_MILLIS = 10;
+
+  private final ShutdownSettings settings;
+  private final ApplicationContext applicationContext;
+  private final CamelContext camelContext;
+  private final MllpConnections mllpConnections;
+  private final FhirAdmissionControl admissionControl;
+  private final AuditPublisher auditPublisher;
+  private final KafkaProducerPool producerPool;
+  private final SpoolSettings spoolSettings;
+  private final MessageSpool messageSpool;
+  private final AtomicBoolean drained = new AtomicBoolean();
+  private volatile Hl7FhirProcessor hl7Fhir;
+  private volatile Report report;
+
+  public ShutdownCoordinator(ShutdownSettings settings, ApplicationContext applicationContext, CamelContext camelContext,
+      MllpConnections mllpConnections, FhirAdmissionControl admissionControl, AuditPublisher auditPublisher,
+      KafkaProducerPool producerPool, SpoolSettings spoolSettings, MessageSpool messageSpool) {
+    this.settings = settings;
+    this.applicationContext = applicationContext;
+    this.camelContext = camelContext;
+    this.mllpConnections = mllpConnections;
+    this.admissionControl = admissionControl;
+    this.auditPublisher = auditPublisher;
+    this.producerPool = producerPool;
+    this.spoolSettings = spoolSettings;
+    this.messageSpool = messageSpool;
+  }
+
+  @Override
+  public void onApplicationEvent(ContextClosedEvent event) {
+    // the management server's child context closes first and its event reaches us as well
+    if (event.getApplicationContext() != applicationContext || settings.getDrainTimeoutMs() <= 0
+        || !drained.compareAndSet(false, true)) {
+      return;
+    }
+    report = drain();
+    log.info("Drained for shutdown in {} ms: {}", report.getMillis(), report);
+  }
+
+  /*
+   * The HL7 to FHIR conversion whose pending messages the drain waits for, when enabled
+   */
+  public void bindHl7Fhir(Hl7FhirProcessor hl7Fhir) {
+    this.hl7Fhir = hl7Fhir;
+  }
+
+  /*
+   * What the last drain did, null before the shutdown
+   */
+  public Report getReport() {
+    return report;
+  }
+
+  private Report drain() {
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.getDrainTimeoutMs());
+    int connections = mllpConnections.drain();
+    admissionControl.drain();
+    int inFlight = camelContext.getInflightRepository().size();
+    log.info("Draining for shutdown: {} MLLP connection(s) paused, {} exchange(s) in flight, {} audit event(s) buffered",
+        connections, inFlight, auditPublisher.getBufferedCount());
+
+    int exchangesLeft = await(() -> camelContext.getInflightRepository().size(), deadline);
+    Hl7FhirProcessor conversion = hl7Fhir;
+    int conversionsLeft = conversion != null ? await(conversion::getPendingCount, deadline) : 0;
+    int auditLeft = await(auditPublisher::getBufferedCount, deadline);
+    boolean flushed = producerPool.flush(remainingMillis(deadline));
+    long spooled = spoolSettings.isEnabled() ? messageSpool.getAppendedCount() - messageSpool.getForwardedCount() : 0;
+    return new Report(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), connections,
+        mllpConnections.getRefusedCount(), inFlight, exchangesLeft, conversionsLeft, auditLeft, flushed, spooled);
+  }
+
+  /*
+   * Polls until the count is 0 or the deadline, returns the count left
+   */
+  private static int await(IntSupplier count, long deadline) {
+    int left = count.getAsInt();
+    while (left > 0 && System.nanoTime() < deadline) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      left = count.getAsInt();
+    }
+    return left;
+  }
+
+  private static long remainingMillis(long deadline) {
+    return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+  }
+
+  /*
+   * Outcome of a drain: the exchanges in flight when it started and those still in flight at
+   * the deadline, which the Camel context then stops under
+   */
+  public static final class Report {
+    private final long millis;
+    private final int connectionsPaused;
+    private final long connectionsRefused;
+    private final int exchangesInFlight;
+    private final int exchangesLeft;
+    private final int conversionsLeft;
+    private final int auditEventsLeft;
+    private final boolean producersFlushed;
+    private final long spooledNotForwarded;
+
+    Report(long millis, int connectionsPaused, long connectionsRefused, int exchangesInFlight, int exchangesLeft,
+        int conversionsLeft, int auditEventsLeft, boolean producersFlushed, long spooledNotForwarded) {
+      this.millis = millis;
+      this.connectionsPaused = connectionsPaused;
+      this.connectionsRefused = connectionsRefused;
+      this.exchangesInFlight = exchangesInFlight;
+      this.exchangesLeft = exchangesLeft;
+      this.conversionsLeft = conversionsLeft;
+      this.auditEventsLeft = auditEventsLeft;
+      this.producersFlushed = producersFlushed;
+      this.spooledNotForwarded = spooledNotForwarded;
+    }
+
+    public long getMillis() {
+      return millis;
+    }
+
+    public int getConnectionsPaused() {
+      return connectionsPaused;
+    }
+
+    public long getConnectionsRefused() {
+      return connectionsRefused;
+    }
+
+    public int getExchangesInFlight() {
+      return exchangesInFlight;
+    }
+
+    public int getExchangesDrained() {
+      return Math.max(0, exchangesInFlight - exchangesLeft);
+    }
+
+    public int getExchangesLeft() {
+      return exchangesLeft;
+    }
+
+    public int getConversionsLeft() {
+      return conversionsLeft;
+    }
+
+    public int getAuditEventsLeft() {
+      return auditEventsLeft;
+    }
+
+    public boolean isProducersFlushed() {
+      return producersFlushed;
+    }
+
+    public long getSpooledNotForwarded() {
+      return spooledNotForwarded;
+    }
+
+    @Override
+    public String toString() {
+      return getExchangesDrained() + " of " + exchangesInFlight + " exchange(s) in flight completed, "
+          + exchangesLeft + " left, " + conversionsLeft + " HL7 to FHIR conversion(s) left, " + auditEventsLeft + " audit event(s) left in the buffer, producers "
+          + (producersFlushed ? "flushed" : "not flushed in time") + ", " + connectionsPaused
+          + " MLLP connection(s) paused and " + connectionsRefused + " refused, "
+          + spooledNotForwarded + " spooled message(s) left to forward on the next start";
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+ * Graceful shutdown settings, bound from the shutdown-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "shutdown-settings")
+public class ShutdownSettings {
+
+  /*
+   * How long a shutdown waits, once the listeners stopped taking new messages, for the messages
+   * in flight, the audit buffer and the Kafka producers, 0 = stop without draining. Keep it
+   * below the pod's termination grace period (30s by default).
+   */
+  private long drainTimeoutMs = 20000;
+
+  // how long the producers get to close after the drain, past it what they still hold is abandoned
+  private long producerCloseTimeoutMs = 5000;
+
+  public long getDrainTimeoutMs() {
+    return drainTimeoutMs;
+  }
+
+  public void setDrainTimeoutMs(long drainTimeoutMs) {
+    this.drainTimeoutMs = drainTimeoutMs;
+  }
+
+  public long getProducerCloseTimeoutMs() {
+    return producerCloseTimeoutMs;
+  }
+
+  public void setProducerCloseTimeoutMs(long producerCloseTimeoutMs) {
+    this.producerCloseTimeoutMs = producerCloseTimeoutMs;
+  }
+}
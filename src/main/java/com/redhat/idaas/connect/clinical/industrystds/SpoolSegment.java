@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/*
+ * One memory-mapped segment file of the message spool.
+ *
+ * Layout: an 8 byte header (magic, version) followed by records of
+ *   int payload length | int CRC32 of the payload | short topic length | topic
+ *   | short key length | key | body
+ * A key length of 0xFFFF is a record without a key. Version 1 segments, written before
+ * records had keys, have no key fields and are still read so they can be forwarded.
+ * A zero length, a length running past the end or a CRC mismatch marks the end of the
+ * segment, so a record torn by a crash is never forwarded. The length is written last.
+ */
+final class SpoolSegment implements Closeable {
+  static final String PREFIX = "spool-";
+  static final String SUFFIX = ".seg";
+  static final int HEADER_SIZE = 8;
+  private static final int MAGIC = 0x49445350;
+  private static final int VERSION = 2;
+  private static final int UNKEYED_VERSION = 1;
+  private static final int NO_KEY = 0xFFFF;
+  static final int MAX_KEY_LENGTH = NO_KEY - 1;
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  private final long id;
+  private final int version;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  // only touched by the appending thread, under the spool lock
+  private int writePosition;
+
+  private SpoolSegment(long id, int version, FileChannel channel, MappedByteBuffer buffer, int writePosition) {
+    this.id = id;
+    this.version = version;
+    this.channel = channel;
+    this.buffer = buffer;
+    this.writePosition = writePosition;
+  }
+
+  static SpoolSegment create(Path directory, long id, int size) throws IOException {
+    Path path = directory.resolve(fileName(id));
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    return new SpoolSegment(id, VERSION, channel, buffer, HEADER_SIZE);
+  }
+
+  /*
+   * A segment left by a previous run, read only: new records always go to a new segment
+   */
+  static SpoolSegment open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    int version = buffer.capacity() < HEADER_SIZE ? 0 : buffer.getInt(4);
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || (version != VERSION && version != UNKEYED_VERSION)) {
+      channel.close();
+      throw new IOException("Not a spool segment: " + path);
+    }
+    return new SpoolSegment(idOf(path), version, channel, buffer, buffer.capacity());
+  }
+
+  static String fileName(long id) {
+    return String.format("%s%020d%s", PREFIX, id, SUFFIX);
+  }
+
+  static long idOf(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+
+  long id() {
+    return id;
+  }
+
+  int writePosition() {
+    return writePosition;
+  }
+
+  /*
+   * Returns false when the record does not fit in what is left of the segment
+   */
+  boolean append(byte[] topic, byte[] key, byte[] body) {
+    int payloadLength = 2 + topic.length + 2 + (key == null ? 0 : key.length) + body.length;
+    long end = (long) writePosition + RECORD_HEADER_SIZE + payloadLength;
+    if (end > buffer.capacity()) {
+      return false;
+    }
+    ByteBuffer payload = buffer.duplicate();
+    payload.position(writePosition + RECORD_HEADER_SIZE);
+    payload.putShort((short) topic.length);
+    payload.put(topic);
+    if (key == null) {
+      payload.putShort((short) NO_KEY);
+    } else {
+      payload.putShort((short) key.length);
+      payload.put(key);
+    }
+    payload.put(body);
+    payload.flip();
+    payload.position(writePosition + RECORD_HEADER_SIZE);
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    buffer.putInt(writePosition + 4, (int) crc.getValue());
+    buffer.putInt(writePosition, payloadLength);
+    writePosition = (int) end;
+    return true;
+  }
+
+  /*
+   * The record at offset, or null when there is no complete record there
+   */
+  SpoolRecord read(int offset) {
+    if (offset + RECORD_HEADER_SIZE > buffer.capacity()) {
+      return null;
+    }
+    int payloadLength = buffer.getInt(offset);
+    int start = offset + RECORD_HEADER_SIZE;
+    if (payloadLength < 2 || (long) start + payloadLength > buffer.capacity()) {
+      return null;
+    }
+    ByteBuffer payload = buffer.duplicate();
+    payload.limit(start + payloadLength);
+    payload.position(start);
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+      return null;
+    }
+    payload.position(start);
+    byte[] topic = new byte[payload.getShort() & 0xFFFF];
+    payload.get(topic);
+    byte[] key = null;
+    if (version != UNKEYED_VERSION) {
+      int keyLength = payload.getShort() & 0xFFFF;
+      if (keyLength != NO_KEY) {
+        key = new byte[keyLength];
+        payload.get(key);
+      }
+    }
+    byte[] body = new byte[payload.remaining()];
+    payload.get(body);
+    return new SpoolRecord(new String(topic, StandardCharsets.UTF_8), key, body, start + payloadLength);
+  }
+
+  void force() {
+    buffer.force();
+  }
+
+  @Override
+  public void close() throws IOException {
+    // the mapping itself is released when the buffer is collected
+    channel.close();
+  }
+
+  static final class SpoolRecord {
+    final String topic;
+    final byte[] key;
+    final byte[] body;
+    final int next;
+
+    SpoolRecord(String topic, byte[] key, byte[] body, int next) {
+      this.topic = topic;
+      this.key = key;
+      this.body = body;
+      this.next = next;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.Exchange;
+import org.apache.camel.util.AsyncProcessorHelper;
+
+import java.util.concurrent.Executor;
+
+/*
+ * Appends the message body to the local MessageSpool for the topic of the route's
+ * RouteMetadata and continues the route once it is on disk, the spool forwarder takes
+ * it on to Kafka. Failures are handled like KafkaSendProcessor: with acknowledgeFailures
+ * they are recorded for an AE, otherwise they fail the exchange. The route does not continue
+ * on the spool's sync thread, which would hold up the next group commit, but on the
+ * connection's handler thread or the continuations executor, as KafkaSendProcessor does.
+ */
+public class SpoolSendProcessor implements AsyncProcessor {
+
+  private final MessageSpool spool;
+  private final boolean acknowledgeFailures;
+  private final Executor continuations;
+
+  public SpoolSendProcessor(MessageSpool spool, boolean acknowledgeFailures, Executor continuations) {
+    this.spool = spool;
+    this.acknowledgeFailures = acknowledgeFailures;
+    this.continuations = continuations;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    AsyncProcessorHelper.process(this, exchange);
+  }
+
+  @Override
+  public boolean process(Exchange exchange, AsyncCallback callback) {
+    RouteMetadata metadata = RouteMetadata.of(exchange);
+    try {
+      if (metadata == null) {
+        throw new IllegalStateException("No route metadata on exchange " + exchange.getExchangeId());
+      }
+      byte[] body = exchange.getIn().getBody(byte[].class);
+      spool.append(metadata.getTopic(), metadata.recordKey(exchange), body, failure -> {
+        if (failure != null) {
+          failed(exchange, failure);
+        }
+        KafkaSendProcessor.resume(exchange, callback, continuations);
+      });
+    } catch (Exception e) {
+      failed(exchange, e);
+      callback.done(true);
+      return true;
+    }
+    return false;
+  }
+
+  private void failed(Exchange exchange, Exception failure) {
+    if (acknowledgeFailures) {
+      KafkaSendProcessor.deliveryFailed(exchange, failure);
+    } else {
+      exchange.setException(failure);
+    }
+  }
+}
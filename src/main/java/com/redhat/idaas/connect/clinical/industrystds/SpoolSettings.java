@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+ * Local write-ahead spool settings, bound from the spool-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "spool-settings")
+public class SpoolSettings {
+
+  /*
+   * When true the ingest routes append to the local spool and reply once the message is
+   * on disk, a forwarder thread moves it on to Kafka. When false they send to Kafka directly.
+   */
+  private boolean enabled = false;
+  // should be a persistent volume, the spool survives restarts only as long as this directory does
+  private String directory = "data/spool";
+  private int segmentSizeBytes = 64 * 1024 * 1024;
+  // appends are refused (AE / HTTP 500) once this many segments are waiting to be forwarded
+  private int maxSegments = 32;
+  // forwarded segments kept on disk after the forwarder is done with them
+  private int retainForwardedSegments = 0;
+  // records the forwarder sends before waiting for their acknowledgements and checkpointing
+  private int forwardBatchSize = 500;
+  // upper bound of the retry back off while Kafka is unavailable
+  private long retryBackoffMaxMs = 5000;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  public int getSegmentSizeBytes() {
+    return segmentSizeBytes;
+  }
+
+  public void setSegmentSizeBytes(int segmentSizeBytes) {
+    this.segmentSizeBytes = segmentSizeBytes;
+  }
+
+  public int getMaxSegments() {
+    return maxSegments;
+  }
+
+  public void setMaxSegments(int maxSegments) {
+    this.maxSegments = maxSegments;
+  }
+
+  public int getRetainForwardedSegments() {
+    return retainForwardedSegments;
+  }
+
+  public void setRetainForwardedSegments(int retainForwardedSegments) {
+    this.retainForwardedSegments = retainForwardedSegments;
+  }
+
+  public int getForwardBatchSize() {
+    return forwardBatchSize;
+  }
+
+  public void setForwardBatchSize(int forwardBatchSize) {
+    this.forwardBatchSize = forwardBatchSize;
+  }
+
+  public long getRetryBackoffMaxMs() {
+    return retryBackoffMaxMs;
+  }
+
+  public void setRetryBackoffMaxMs(long retryBackoffMaxMs) {
+    this.retryBackoffMaxMs = retryBackoffMaxMs;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Startup settings, bound from the startup-settings block in application.yml
+ */
+@Component
+@ConfigurationProperties(prefix = "startup-settings")
+public class StartupSettings {
+
+  /*
+   * When true only the MLLP listeners, the Bundle and content routes start with the context. A
+   * FHIR resource route is added on its first request, the Kafka producers are created by the
+   * warm-up or their first send and the FHIR validator by the warm-up or its first resource.
+   */
+  private boolean fastStart = false;
+
+  /*
+   * When true the HL7 ACK path, the HAPI parser, the Kafka producers and the FHIR validator are
+   * exercised in the background once the context started, and the health endpoint answers
+   * OUT_OF_SERVICE until that is done
+   */
+  private boolean warmUp = true;
+
+  // HL7 versions the warm-up parses and acknowledges a message of
+  private List<String> warmUpHl7Versions = new ArrayList<>(Arrays.asList("2.3", "2.4", "2.5", "2.5.1", "2.6"));
+
+  // stop once warmed up, for the run the build records the class list of the CDS archive from
+  private boolean exitAfterWarmUp = false;
+
+  public boolean isFastStart() {
+    return fastStart;
+  }
+
+  public void setFastStart(boolean fastStart) {
+    this.fastStart = fastStart;
+  }
+
+  public boolean isWarmUp() {
+    return warmUp;
+  }
+
+  public void setWarmUp(boolean warmUp) {
+    this.warmUp = warmUp;
+  }
+
+  public List<String> getWarmUpHl7Versions() {
+    return warmUpHl7Versions;
+  }
+
+  public void setWarmUpHl7Versions(List<String> warmUpHl7Versions) {
+    this.warmUpHl7Versions = warmUpHl7Versions;
+  }
+
+  public boolean isExitAfterWarmUp() {
+    return exitAfterWarmUp;
+  }
+
+  public void setExitAfterWarmUp(boolean exitAfterWarmUp) {
+    this.exitAfterWarmUp = exitAfterWarmUp;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Warms up the platform in the background once the context started. Unwarmed, the first HL7
+ * message of a version pays for loading HAPI's model classes and probing its ACK structure,
+ * the first send for creating the Kafka producer with fast-start, and the first validated
+ * resource for the R4 definitions, seconds in all.
+ *
+ * The steps run on one thread of their own while the listeners already take messages, and the
+ * health endpoint (the readiness probe) answers OUT_OF_SERVICE until they are done. Steps are
+ * added by the code owning what they warm before the context started, the Kafka producers and
+ * the FHIR validator come last. A step that fails is logged and does not hold readiness back.
+ */
+@Component
+public class WarmUp implements HealthIndicator, ApplicationListener<ApplicationReadyEvent> {
+  private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+  /*
+   * One warm-up step, run once
+   */
+  public interface Step {
+    void run() throws Exception;
+  }
+
+  private final StartupSettings settings;
+  private final KafkaProducerPool producerPool;
+  private final FhirResourceValidator fhirValidator;
+  private final Map<String, Step> steps = new LinkedHashMap<>();
+  private final AtomicBoolean started = new AtomicBoolean();
+  // -1 until every step ran
+  private volatile long millis = -1;
+
+  public WarmUp(StartupSettings settings, KafkaProducerPool producerPool, FhirResourceValidator fhirValidator) {
+    this.settings = settings;
+    this.producerPool = producerPool;
+    this.fhirValidator = fhirValidator;
+  }
+
+  public synchronized void add(String name, Step step) {
+    steps.put(name, step);
+  }
+
+  @Override
+  public void onApplicationEvent(ApplicationReadyEvent event) {
+    if (!settings.isWarmUp() || !started.compareAndSet(false, true)) {
+      return;
+    }
+    Thread thread = new Thread(() -> run(event.getApplicationContext()), "idaas-warm-up");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public Health health() {
+    if (!settings.isWarmUp()) {
+      return Health.up().build();
+    }
+    long warmedUpIn = millis;
+    return warmedUpIn < 0 ? Health.outOfService().build() : Health.up().withDetail("millis", warmedUpIn).build();
+  }
+
+  /*
+   * How long the warm-up took, -1 until it is done
+   */
+  public long getMillis() {
+    return millis;
+  }
+
+  private void run(ConfigurableApplicationContext context) {
+    List<Map.Entry<String, Step>> toRun;
+    synchronized (this) {
+      toRun = new ArrayList<>(steps.entrySet());
+    }
+    Map<String, Step> last = new LinkedHashMap<>();
+    last.put("Kafka producers", producerPool::createProducers);
+    if (fhirValidator.isEnabled()) {
+      last.put("FHIR validation", fhirValidator::build);
+    }
+    toRun.addAll(last.entrySet());
+
+    long start = System.nanoTime();
+    StringJoiner timings = new StringJoiner(", ");
+    for (Map.Entry<String, Step> step : toRun) {
+      long stepStart = System.nanoTime();
+      try {
+        step.getValue().run();
+        timings.add(step.getKey() + " " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart) + " ms");
+      } catch (Exception e) {
+        log.warn("Warm-up of {} failed", step.getKey(), e);
+        timings.add(step.getKey() + " failed");
+      }
+    }
+    millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    log.info("Warmed up in {} ms: {}", millis, timings);
+    if (settings.isExitAfterWarmUp()) {
+      log.info("Exiting after the warm-up (startup-settings.exit-after-warm-up)");
+      System.exit(SpringApplication.exit(context));
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AuditEventTest {
+  private static final String EXCHANGE_ID = "ID-idaas-ingest-7d9f8c6b5-x2x4q-1601234567890-0-12345";
+
+  @Test
+  public void eventWithoutBodyRoundTrips() {
+    AuditEvent event = adtEvent(adtBody(), false).build();
+    AuditEvent decoded = AuditEventDeserializer.decode(AuditEventSerializer.encode(event));
+    assertEquals(event, decoded);
+    assertNull(decoded.getBody());
+    assertEquals(adtBody().length, decoded.getBodyLength());
+    assertEquals(AuditEvent.hash(adtBody()), decoded.getBodyHash());
+  }
+
+  @Test
+  public void eventWithBodyRoundTrips() {
+    AuditEvent event = adtEvent(adtBody(), true).build();
+    AuditEvent decoded = AuditEventDeserializer.decode(AuditEventSerializer.encode(event));
+    assertEquals(event, decoded);
+    assertArrayEquals(adtBody(), decoded.getBody());
+  }
+
+  @Test
+  public void unknownValuesAndIdsRoundTripAsLiterals() {
+    AuditEvent event = adtEvent(new byte[0], false)
+        .industryStandard("EDI")
+        .messageTrigger("ZZ1")
+        .auditDetails("ZZ1 message received")
+        .internalMsgId("ID-other-1")
+        .build();
+    AuditEvent decoded = AuditEventDeserializer.decode(AuditEventSerializer.encode(event));
+    assertEquals(event, decoded);
+    assertEquals(AuditEvent.IndustryStandard.UNKNOWN, decoded.getIndustryStandard());
+    assertEquals("ZZ1", decoded.getMessageTrigger());
+    assertEquals("ID-other-1", decoded.getInternalMsgId());
+  }
+
+  @Test
+  public void referenceIsAFractionOfTheMessage() {
+    // a 2 KB ADT audited by reference, the body was copied whole before
+    byte[] body = adtBody();
+    byte[] encoded = AuditEventSerializer.encode(adtEvent(body, false).build());
+    assertTrue(encoded.length + " bytes", encoded.length <= 128);
+    assertTrue(encoded.length * 5 < body.length);
+  }
+
+  private static AuditEvent.Builder adtEvent(byte[] body, boolean includeBody) {
+    return AuditEvent.builder()
+        .timestamp(1601234567890L)
+        .industryStandard(AuditEvent.IndustryStandard.HL7)
+        .messageTrigger("ADT")
+        .processingType(RouteMetadata.PROCESSING_TYPE)
+        .processName(RouteMetadata.PROCESS_NAME)
+        .component("hl7Admissions")
+        .auditDetails("ADT message received")
+        .camelId("idaas-ingest")
+        .exchangeId(EXCHANGE_ID)
+        .internalMsgId(EXCHANGE_ID)
+        .body(body, includeBody);
+  }
+
+  // an ADT of about 2 KB
+  private static byte[] adtBody() {
+    StringBuilder message = new StringBuilder("MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|MSG00001|P|2.5\r");
+    for (int i = 1; message.length() < 2048; i++) {
+      message.append("OBX|").append(i).append("|ST|NOTE||Patient reports mild chest pain since morning|||||F\r");
+    }
+    return message.toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+}
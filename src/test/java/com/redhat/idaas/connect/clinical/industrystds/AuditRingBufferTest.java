@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AuditRingBufferTest {
+
+  @Test
+  public void roundsTheCapacityUpToAPowerOfTwo() {
+    assertEquals(2, new AuditRingBuffer<Integer>(2).capacity());
+    assertEquals(8, new AuditRingBuffer<Integer>(5).capacity());
+    assertEquals(1024, new AuditRingBuffer<Integer>(1024).capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsACapacityBelowTwo() {
+    new AuditRingBuffer<Integer>(1);
+  }
+
+  @Test
+  public void keepsTheOrderAndRefusesWhenFull() {
+    AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 4; i++) {
+        assertTrue(buffer.offer(round * 4 + i));
+      }
+      assertFalse(buffer.offer(-1));
+      assertEquals(4, buffer.size());
+      List<Integer> drained = new ArrayList<>();
+      assertEquals(3, buffer.drainTo(drained, 3));
+      assertEquals((Integer) (round * 4 + 3), buffer.poll());
+      for (int i = 0; i < 3; i++) {
+        assertEquals((Integer) (round * 4 + i), drained.get(i));
+      }
+      assertNull(buffer.poll());
+      assertEquals(0, buffer.size());
+    }
+  }
+
+  @Test
+  public void everyEventOfConcurrentProducersIsTakenOnce() throws Exception {
+    int producers = 4;
+    int consumers = 3;
+    int perProducer = 100_000;
+    AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(64);
+    AtomicIntegerArray taken = new AtomicIntegerArray(producers * perProducer);
+    AtomicLong remaining = new AtomicLong(producers * perProducer);
+    CountDownLatch done = new CountDownLatch(producers + consumers);
+    for (int p = 0; p < producers; p++) {
+      int first = p * perProducer;
+      start(() -> {
+        for (int i = first; i < first + perProducer; i++) {
+          while (!buffer.offer(i)) {
+            Thread.yield();
+          }
+        }
+      }, done);
+    }
+    for (int c = 0; c < consumers; c++) {
+      start(() -> {
+        while (remaining.get() > 0) {
+          Integer event = buffer.poll();
+          if (event == null) {
+            Thread.yield();
+            continue;
+          }
+          taken.incrementAndGet(event);
+          remaining.decrementAndGet();
+        }
+      }, done);
+    }
+    assertTrue(done.await(60, TimeUnit.SECONDS));
+    for (int i = 0; i < taken.length(); i++) {
+      assertEquals("event " + i, 1, taken.get(i));
+    }
+    assertEquals(0, buffer.size());
+  }
+
+  private static void start(Runnable work, CountDownLatch done) {
+    Thread thread = new Thread(() -> {
+      try {
+        work.run();
+      } finally {
+        done.countDown();
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class BodyLogProcessorTest {
+  private static final String ADT = "MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|MSG00001|P|2.5\r"
+      + "PID|1||12345^^^MRN||Doe^John~Roe^Jack||19700101|M|||1 Main St^^Boston\r"
+      + "NK1|1|Doe^Jane|SPO\r";
+
+  @Test
+  public void masksTheConfiguredFieldsOnOneLine() {
+    BodyLogProcessor processor = processor(Integer.MAX_VALUE, "PID-5", "PID-11", "NK1-2", "MSH-10");
+    assertEquals("MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|***|P|2.5\\r"
+        + "PID|1||12345^^^MRN||***||19700101|M|||***\\r"
+        + "NK1|1|***|SPO\\r", processor.render(ADT));
+  }
+
+  @Test
+  public void leavesEmptyFieldsAndOtherSegmentsAlone() {
+    BodyLogProcessor processor = processor(Integer.MAX_VALUE, "PID-4", "EVN-1");
+    assertEquals("MSH|^~\\&|MMS\\r\\nPID|1||12345||Doe\\r\\n",
+        processor.render("MSH|^~\\&|MMS\r\nPID|1||12345||Doe\r\n"));
+  }
+
+  @Test
+  public void masksWithTheSeparatorOfTheHeader() {
+    BodyLogProcessor processor = processor(Integer.MAX_VALUE, "PID-3");
+    assertEquals("MSH#$%*@#MMS\\rPID#1##***#X\\r", processor.render("MSH#$%*@#MMS\rPID#1##12345$$$MRN#X\r"));
+  }
+
+  @Test
+  public void otherBodiesAreOnlyPutOnOneLine() {
+    BodyLogProcessor processor = processor(Integer.MAX_VALUE, "PID-5");
+    assertEquals("{\"resourceType\":\"Patient\",\\n\"id\":\"1\"}",
+        processor.render("{\"resourceType\":\"Patient\",\n\"id\":\"1\"}"));
+  }
+
+  @Test
+  public void countsLoggedAndTruncatedBodies() throws Exception {
+    BodyLogProcessor processor = processor(64, "PID-5");
+    processor.process(exchange(ADT));
+    processor.process(exchange("MSH|^~\\&|MMS\r"));
+    assertEquals(2, processor.getLoggedCount());
+    assertEquals(1, processor.getTruncatedCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAMalformedMaskField() {
+    processor(100, "PID5");
+  }
+
+  private static BodyLogProcessor processor(int maxBytes, String... maskFields) {
+    return new BodyLogProcessor(Collections.emptyMap(), 1.0, maxBytes, Arrays.asList(maskFields));
+  }
+
+  private static Exchange exchange(String body) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setBody(body.getBytes(StandardCharsets.ISO_8859_1));
+    return exchange;
+  }
+}
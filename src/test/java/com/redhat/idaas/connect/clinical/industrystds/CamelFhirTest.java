@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * camel-fhir against the HAPI FHIR version the pom pins for the R4 validator, which is not
+ * necessarily the one camel-fhir was built with: its data format and its client, on R4.
+ */
+public class CamelFhirTest {
+  private HttpServer server;
+  private final List<String> requests = new CopyOnWriteArrayList<>();
+  private final DefaultCamelContext camelContext = new DefaultCamelContext();
+  private ProducerTemplate template;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " "
+          + read(exchange.getRequestBody()));
+      byte[] body = "{\"resourceType\":\"Patient\",\"id\":\"1\",\"meta\":{\"versionId\":\"1\"}}"
+          .getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/fhir+json");
+      exchange.getResponseHeaders().add("Location", serverUrl() + "/Patient/1/_history/1");
+      exchange.sendResponseHeaders(201, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+
+    camelContext.addRoutes(new RouteBuilder() {
+      @Override
+      public void configure() {
+        from("direct:marshal").marshal().fhirJson("R4");
+        from("direct:unmarshal").unmarshal().fhirJson("R4");
+        from("direct:create")
+            .to("fhir://create/resource?inBody=resource&fhirVersion=R4&encoding=JSON&validationMode=NEVER"
+                + "&serverUrl=" + serverUrl());
+      }
+    });
+    camelContext.start();
+    template = camelContext.createProducerTemplate();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    camelContext.stop();
+    server.stop(0);
+  }
+
+  @Test
+  public void dataFormatReadsBackTheResourceItWrote() {
+    String json = template.requestBody("direct:marshal", patient(), String.class);
+    assertTrue(json, json.contains("\"family\":\"Chalmers\""));
+
+    Patient patient = template.requestBody("direct:unmarshal", json, Patient.class);
+    assertEquals("Chalmers", patient.getNameFirstRep().getFamily());
+    assertEquals("Peter", patient.getNameFirstRep().getGivenAsSingleString());
+  }
+
+  @Test
+  public void clientCreatesAResourceOnTheServer() {
+    MethodOutcome outcome = template.requestBody("direct:create", patient(), MethodOutcome.class);
+
+    assertEquals("1", outcome.getId().getIdPart());
+    assertEquals("Patient", outcome.getId().getResourceType());
+    assertEquals(1, requests.size());
+    assertTrue(requests.get(0), requests.get(0).startsWith("POST /Patient {\"resourceType\":\"Patient\""));
+  }
+
+  private String serverUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  private static Patient patient() {
+    Patient patient = new Patient();
+    patient.addName(new HumanName().setFamily("Chalmers").addGiven("Peter"));
+    return patient;
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int read; (read = in.read(buffer)) > 0; ) {
+      body.write(buffer, 0, read);
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The claim-check stores the decoded ED data and leaves what it can not decode in the message.
+ */
+public class ClaimCheckProcessorTest {
+  private static final int THRESHOLD = 1024;
+  private static final String HEADER =
+      "MSH|^~\\&|LAB|HOSP|IDAAS|IDAAS|20200101120000||ORU^R01^ORU_R01|7|T|2.5\r"
+      + "PID|1||42^^^HOSP^MR\r"
+      + "OBR|1||||\r";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ContentStore store;
+  private ClaimCheckProcessor processor;
+
+  @Before
+  public void setUp() {
+    store = new ContentStore(settings(folder.getRoot()));
+    processor = new ClaimCheckProcessor(store, THRESHOLD, new Hl7AckProcessor("ISO-8859-1", false));
+  }
+
+  @Test
+  public void base64DocumentIsStoredDecoded() throws Exception {
+    byte[] pdf = ContentStoreTest.random(3000, 1);
+    Exchange exchange = exchange(obx("ED", "LAB^application^pdf^Base64^" + Base64.getEncoder().encodeToString(pdf))
+        + "OBX|2|NM|GLU||5.4\r");
+    processor.process(exchange);
+
+    String[] segments = body(exchange).split("\r");
+    String[] fields = segments[3].split("\\|");
+    assertEquals("RP", fields[2]);
+    String[] pointer = fields[5].split("\\^");
+    assertEquals("iDAAS", pointer[1]);
+    assertEquals("application", pointer[2]);
+    assertEquals("pdf", pointer[3]);
+    assertEquals("OBX|2|NM|GLU||5.4", segments[4]);
+    ContentStore.Document document = store.open(pointer[0]);
+    assertNotNull(document);
+    assertArrayEquals(pdf, ContentStoreTest.readAll(document.newInputStream()));
+  }
+
+  @Test
+  public void hexDocumentIsStoredDecoded() throws Exception {
+    byte[] image = ContentStoreTest.random(2000, 2);
+    StringBuilder hex = new StringBuilder();
+    for (byte b : image) {
+      hex.append(String.format("%02X", b));
+    }
+    Exchange exchange = exchange(obx("ED", "LAB^image^jpeg^Hex^" + hex));
+    processor.process(exchange);
+
+    String pointer = body(exchange).split("\r")[3].split("\\|")[5];
+    assertArrayEquals(image, ContentStoreTest.readAll(store.open(pointer.split("\\^")[0]).newInputStream()));
+  }
+
+  @Test
+  public void laterRepetitionsOfObx5AreKept() throws Exception {
+    byte[] first = ContentStoreTest.random(3000, 6);
+    String second = "LAB^application^pdf^Base64^" + Base64.getEncoder().encodeToString(ContentStoreTest.random(3000, 7));
+    String third = "LAB^text^plain^A^short";
+    Exchange exchange = exchange(obx("ED", "LAB^application^pdf^Base64^" + Base64.getEncoder().encodeToString(first)
+        + "~" + second + "~" + third));
+    processor.process(exchange);
+
+    String[] repetitions = body(exchange).split("\r")[3].split("\\|")[5].split("~");
+    assertEquals(3, repetitions.length);
+    assertEquals(second, repetitions[1]);
+    assertEquals(third, repetitions[2]);
+    String[] pointer = repetitions[0].split("\\^");
+    assertEquals("iDAAS", pointer[1]);
+    assertArrayEquals(first, ContentStoreTest.readAll(store.open(pointer[0]).newInputStream()));
+    assertEquals(1, store.getStoredCount());
+  }
+
+  @Test
+  public void largeLaterRepetitionAloneIsLeftAlone() throws Exception {
+    String large = "LAB^application^pdf^Base64^" + Base64.getEncoder().encodeToString(ContentStoreTest.random(3000, 8));
+    Exchange exchange = exchange(obx("ED", "LAB^text^plain^A^short~" + large));
+    byte[] body = exchange.getIn().getBody(byte[].class);
+    processor.process(exchange);
+
+    assertSame(body, exchange.getIn().getBody(byte[].class));
+    assertEquals(0, store.getStoredCount());
+  }
+
+  @Test
+  public void undecodableDocumentsStayInTheMessage() throws Exception {
+    String base64 = Base64.getEncoder().encodeToString(ContentStoreTest.random(3000, 3));
+    String[] values = {
+        "LAB^text^plain^A^" + repeat("Report line\\X0D\\", 200),
+        // an escape inside the data is not Base64
+        "LAB^application^pdf^Base64^" + base64.substring(0, 2000) + "\\F\\" + base64.substring(2000),
+        "LAB^image^jpeg^Hex^" + repeat("0G", 1000)};
+    for (String value : values) {
+      Exchange exchange = exchange(obx("ED", value));
+      byte[] body = exchange.getIn().getBody(byte[].class);
+      processor.process(exchange);
+      assertSame(body, exchange.getIn().getBody(byte[].class));
+    }
+    assertEquals(0, store.getStoredCount());
+  }
+
+  @Test
+  public void smallOrNonEdValuesAreLeftAlone() throws Exception {
+    String base64 = Base64.getEncoder().encodeToString(ContentStoreTest.random(3000, 4));
+    for (String message : new String[] {
+        obx("ED", "LAB^application^pdf^Base64^" + base64.substring(0, 100)) + repeat("NTE|1||padding\r", 100),
+        obx("TX", base64)}) {
+      Exchange exchange = exchange(message);
+      byte[] body = exchange.getIn().getBody(byte[].class);
+      processor.process(exchange);
+      assertSame(body, exchange.getIn().getBody(byte[].class));
+    }
+    assertEquals(0, store.getStoredCount());
+  }
+
+  @Test
+  public void storeFailureIsAnsweredWithAnError() throws Exception {
+    File notADirectory = folder.newFile();
+    processor = new ClaimCheckProcessor(new ContentStore(settings(notADirectory)), THRESHOLD,
+        new Hl7AckProcessor("ISO-8859-1", false));
+    Exchange exchange = exchange(obx("ED", "LAB^application^pdf^Base64^"
+        + Base64.getEncoder().encodeToString(ContentStoreTest.random(3000, 5))));
+    processor.process(exchange);
+
+    assertTrue(body(exchange), body(exchange).contains("MSA|AE|7"));
+    assertEquals(Boolean.TRUE, exchange.getProperty(Exchange.ROUTE_STOP));
+  }
+
+  private static ClaimCheckSettings settings(File directory) {
+    ClaimCheckSettings settings = new ClaimCheckSettings();
+    settings.setDirectory(directory.getPath());
+    return settings;
+  }
+
+  private static String obx(String type, String value) {
+    return HEADER + "OBX|1|" + type + "|DOC^Report||" + value + "||||||F\r";
+  }
+
+  private static String repeat(String part, int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(part);
+    }
+    return builder.toString();
+  }
+
+  private static Exchange exchange(String message) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setBody(message.getBytes(StandardCharsets.ISO_8859_1));
+    return exchange;
+  }
+
+  private static String body(Exchange exchange) {
+    return new String(exchange.getIn().getBody(byte[].class), StandardCharsets.ISO_8859_1);
+  }
+}
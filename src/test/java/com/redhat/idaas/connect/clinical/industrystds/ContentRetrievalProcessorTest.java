@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ContentRetrievalProcessorTest {
+  private static final String TOKEN = "s3cr3t-retrieval-token";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ContentStore store;
+  private ContentRetrievalProcessor retrieval;
+
+  @Before
+  public void setUp() {
+    ClaimCheckSettings settings = new ClaimCheckSettings();
+    settings.setDirectory(folder.getRoot().getPath());
+    settings.setChunkSizeBytes(4096);
+    store = new ContentStore(settings);
+    retrieval = new ContentRetrievalProcessor(store, TOKEN);
+  }
+
+  @Test
+  public void streamsTheDocumentToABearerOfTheToken() throws Exception {
+    byte[] document = ContentStoreTest.random(10000, 1);
+    String id = store.store(new ByteArrayInputStream(document));
+    Exchange exchange = request("/" + id, "Bearer " + TOKEN);
+    retrieval.process(exchange);
+
+    assertNull(exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    assertEquals("\"" + id + "\"", exchange.getIn().getHeader("ETag"));
+    assertNull(exchange.getIn().getHeader("Authorization"));
+    assertArrayEquals(document, ContentStoreTest.readAll(exchange.getIn().getBody(InputStream.class)));
+    assertEquals(1, retrieval.getServedCount());
+  }
+
+  @Test
+  public void requestsWithoutTheTokenAreUnauthorized() throws Exception {
+    String id = store.store(new ByteArrayInputStream(ContentStoreTest.random(100, 2)));
+    for (String authorization : new String[] {null, "", "Bearer", "Bearer wrong", "Basic " + TOKEN, TOKEN}) {
+      Exchange exchange = request("/" + id, authorization);
+      retrieval.process(exchange);
+      assertEquals(authorization, 401, exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+      assertEquals(0, exchange.getIn().getBody(byte[].class).length);
+    }
+    assertEquals(6, retrieval.getUnauthorizedCount());
+    assertEquals(0, retrieval.getServedCount());
+  }
+
+  @Test
+  public void unknownIdsAreNotFound() throws Exception {
+    for (String path : new String[] {"/" + repeat('a', 64), "/../objects", "/"}) {
+      Exchange exchange = request(path, "bearer " + TOKEN);
+      retrieval.process(exchange);
+      assertEquals(path, 404, exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void aTokenIsRequired() {
+    new ContentRetrievalProcessor(store, "");
+  }
+
+  private static Exchange request(String path, String authorization) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setHeader(Exchange.HTTP_PATH, path);
+    if (authorization != null) {
+      exchange.getIn().setHeader("Authorization", authorization);
+    }
+    return exchange;
+  }
+
+  private static String repeat(char c, int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+}
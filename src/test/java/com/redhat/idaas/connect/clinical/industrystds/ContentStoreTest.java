@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ContentStoreTest {
+  private static final int CHUNK_SIZE = 4096;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ContentStore store;
+
+  @Before
+  public void setUp() {
+    ClaimCheckSettings settings = new ClaimCheckSettings();
+    settings.setDirectory(folder.getRoot().getPath());
+    settings.setChunkSizeBytes(CHUNK_SIZE);
+    store = new ContentStore(settings);
+  }
+
+  @Test
+  public void documentReadsBackAsStored() throws IOException {
+    for (int length : new int[] {0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 3 * CHUNK_SIZE + 17}) {
+      byte[] document = random(length, length);
+      String id = store.store(new ByteArrayInputStream(document));
+      ContentStore.Document stored = store.open(id);
+      assertNotNull(stored);
+      assertEquals(length, stored.getLength());
+      assertArrayEquals(document, readAll(stored.newInputStream()));
+    }
+  }
+
+  @Test
+  public void documentIsReadInChunksFromShortReads() throws IOException {
+    byte[] document = random(2 * CHUNK_SIZE + 5, 1);
+    // at most 100 bytes per read, as a decoding stream may return
+    InputStream trickle = new ByteArrayInputStream(document) {
+      @Override
+      public synchronized int read(byte[] buffer, int offset, int length) {
+        return super.read(buffer, offset, Math.min(length, 100));
+      }
+    };
+    String id = store.store(trickle);
+    assertEquals(id, store.store(new ByteArrayInputStream(document)));
+    assertEquals(3, store.getChunksWritten());
+    assertArrayEquals(document, readAll(store.open(id).newInputStream()));
+  }
+
+  @Test
+  public void storedDocumentAndSharedChunksAreWrittenOnce() throws IOException {
+    byte[] first = random(2 * CHUNK_SIZE, 2);
+    byte[] second = first.clone();
+    second[second.length - 1]++;
+    String id = store.store(new ByteArrayInputStream(first));
+    assertEquals(id, store.store(new ByteArrayInputStream(first)));
+    assertEquals(1, store.getDeduplicatedCount());
+    assertEquals(2, store.getChunksWritten());
+
+    // only the last chunk differs
+    store.store(new ByteArrayInputStream(second));
+    assertEquals(3, store.getChunksWritten());
+    assertEquals(2, store.getStoredCount());
+  }
+
+  @Test
+  public void unknownOrInvalidIdOpensNothing() throws IOException {
+    String id = store.store(new ByteArrayInputStream(random(10, 3)));
+    assertNull(store.open(id.replace(id.charAt(0), id.charAt(0) == 'a' ? 'b' : 'a')));
+    assertNull(store.open("../" + id));
+    assertNull(store.open(""));
+  }
+
+  static byte[] random(int length, long seed) {
+    byte[] bytes = new byte[length];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+
+  static byte[] readAll(InputStream in) throws IOException {
+    try (InputStream stream = in) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1000];
+      for (int read; (read = stream.read(buffer)) >= 0; ) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.spi.Synchronization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FhirAdmissionProcessorTest {
+  private final DefaultCamelContext camelContext = new DefaultCamelContext();
+  private KafkaProducerPool pool;
+  private FhirAdmissionControl control;
+
+  @Before
+  public void setUp() {
+    pool = new KafkaProducerPool(new KafkaSettings(), new ShutdownSettings(), new StartupSettings(),
+        new MockProducerFactory());
+    FhirSettings settings = new FhirSettings();
+    settings.setMaxInFlight(3);
+    settings.setRetryAfterSeconds(2);
+    control = new FhirAdmissionControl(settings, new SpoolSettings(), null, pool);
+  }
+
+  @After
+  public void tearDown() {
+    pool.destroy();
+  }
+
+  @Test
+  public void routeLimitRejectsWith429UntilARequestCompletes() throws Exception {
+    FhirAdmissionProcessor route = new FhirAdmissionProcessor(control, 2);
+    Exchange first = admit(route);
+    admit(route);
+    Exchange rejected = exchange();
+    route.process(rejected);
+
+    assertEquals(429, rejected.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    assertEquals(2, rejected.getIn().getHeader("Retry-After"));
+    assertEquals(Boolean.TRUE, rejected.getProperty(Exchange.ROUTE_STOP));
+    assertEquals(1, route.getRejectedCount(FhirAdmissionProcessor.Reason.IN_FLIGHT));
+    assertEquals(2, control.getInFlight());
+
+    for (Synchronization completion : first.handoverCompletions()) {
+      completion.onComplete(first);
+    }
+    assertEquals(1, route.getInFlight());
+    assertEquals(1, control.getInFlight());
+    admit(route);
+  }
+
+  @Test
+  public void globalLimitIsSharedByTheRoutes() throws Exception {
+    List<FhirAdmissionProcessor> routes = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      routes.add(new FhirAdmissionProcessor(control, null));
+      admit(routes.get(i));
+    }
+    FhirAdmissionProcessor fourth = new FhirAdmissionProcessor(control, null);
+    Exchange rejected = exchange();
+    fourth.process(rejected);
+
+    assertEquals(429, rejected.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    assertEquals(0, fourth.getInFlight());
+    assertEquals(3, control.getInFlight());
+  }
+
+  @Test
+  public void drainingRejectsWith503() throws Exception {
+    FhirAdmissionProcessor route = new FhirAdmissionProcessor(control, 2);
+    control.drain();
+    Exchange rejected = exchange();
+    route.process(rejected);
+
+    assertEquals(503, rejected.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    assertEquals("application/fhir+json", rejected.getIn().getHeader(Exchange.CONTENT_TYPE));
+    assertEquals(1, route.getRejectedCount(FhirAdmissionProcessor.Reason.DRAINING));
+    assertEquals(0, control.getInFlight());
+  }
+
+  private Exchange admit(FhirAdmissionProcessor route) throws Exception {
+    Exchange exchange = exchange();
+    long admitted = route.getAdmittedCount();
+    route.process(exchange);
+    assertNull(exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    assertEquals(admitted + 1, route.getAdmittedCount());
+    return exchange;
+  }
+
+  private Exchange exchange() {
+    return new DefaultExchange(camelContext);
+  }
+}
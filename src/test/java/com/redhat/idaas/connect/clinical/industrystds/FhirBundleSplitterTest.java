@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FhirBundleSplitterTest {
+  private static final ObjectMapper JSON = new ObjectMapper();
+  private static final Map<String, String> TOPICS = new HashMap<>();
+
+  static {
+    TOPICS.put("Patient", "FHIRSvr_Patient");
+    TOPICS.put("Observation", "FHIRSvr_Observation");
+  }
+
+  private final List<String> sent = new ArrayList<>();
+
+  @Test
+  public void sendsEachEntryToTheTopicOfItsResourceType() throws Exception {
+    FhirBundleSplitter splitter = new FhirBundleSplitter(TOPICS, (topic, key, resource, done) -> {
+      sent.add(topic + " " + new String(resource, StandardCharsets.UTF_8));
+      done.accept(null);
+    }, 2, 1000);
+    Exchange exchange = exchange("{\"resourceType\":\"Bundle\",\"type\":\"transaction\",\"entry\":["
+        + "{\"fullUrl\":\"urn:uuid:1\",\"resource\":{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Doe\"}]}},"
+        + "{\"resource\":{\"resourceType\":\"Observation\",\"status\":\"final\"},\"request\":{\"method\":\"POST\"}},"
+        + "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"2\"}}]}");
+    splitter.process(exchange);
+
+    assertEquals(200, exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    assertEquals(3, sent.size());
+    assertEquals("FHIRSvr_Patient {\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Doe\"}]}", sent.get(0));
+    assertEquals("FHIRSvr_Observation {\"resourceType\":\"Observation\",\"status\":\"final\"}", sent.get(1));
+    assertEquals("FHIRSvr_Patient {\"resourceType\":\"Patient\",\"id\":\"2\"}", sent.get(2));
+    JsonNode response = response(exchange);
+    assertEquals("transaction-response", response.path("type").asText());
+    for (JsonNode entry : response.path("entry")) {
+      assertEquals("202 Accepted", entry.path("response").path("status").asText());
+    }
+    assertEquals(3, splitter.getDeliveredCount());
+    assertNull(KafkaSendProcessor.deliveryFailure(exchange));
+  }
+
+  @Test
+  public void reportsEntriesThatCannotBeSent() throws Exception {
+    IOException unavailable = new IOException("broker unavailable");
+    FhirBundleSplitter splitter = new FhirBundleSplitter(TOPICS, (topic, key, resource, done) ->
+        done.accept(topic.endsWith("Observation") ? unavailable : null), 4, 1000);
+    Exchange exchange = exchange("{\"resourceType\":\"Bundle\",\"type\":\"batch\",\"entry\":["
+        + "{\"resource\":{\"resourceType\":\"Patient\"}},"
+        + "{\"resource\":{\"resourceType\":\"Medication\"}},"
+        + "{\"request\":{\"method\":\"DELETE\"}},"
+        + "{\"resource\":{\"resourceType\":\"Observation\"}}]}");
+    splitter.process(exchange);
+
+    JsonNode entries = response(exchange).path("entry");
+    assertEquals("batch-response", response(exchange).path("type").asText());
+    assertEquals("202 Accepted", entries.get(0).path("response").path("status").asText());
+    assertEquals("400 Bad Request", entries.get(1).path("response").path("status").asText());
+    assertEquals("not-supported", entries.get(1).path("response").path("outcome").path("issue").get(0).path("code").asText());
+    assertEquals("400 Bad Request", entries.get(2).path("response").path("status").asText());
+    assertEquals("503 Service Unavailable", entries.get(3).path("response").path("status").asText());
+    assertEquals(1, splitter.getDeliveredCount());
+    assertEquals(3, splitter.getFailedCount());
+    assertEquals(unavailable, KafkaSendProcessor.deliveryFailure(exchange));
+  }
+
+  @Test
+  public void timesOutEntriesKafkaDoesNotAcknowledge() throws Exception {
+    FhirBundleSplitter splitter = new FhirBundleSplitter(TOPICS, (topic, key, resource, done) -> { }, 1, 50);
+    Exchange exchange = exchange("{\"resourceType\":\"Bundle\",\"entry\":["
+        + "{\"resource\":{\"resourceType\":\"Patient\"}},{\"resource\":{\"resourceType\":\"Patient\"}}]}");
+    splitter.process(exchange);
+
+    JsonNode entries = response(exchange).path("entry");
+    assertEquals("504 Gateway Timeout", entries.get(0).path("response").path("status").asText());
+    assertEquals("504 Gateway Timeout", entries.get(1).path("response").path("status").asText());
+    assertEquals(2, splitter.getFailedCount());
+  }
+
+  @Test
+  public void bundleTimesOutOnceWhenTheSenderNeverCallsBack() throws Exception {
+    List<Consumer<Exception>> callbacks = new ArrayList<>();
+    FhirBundleSplitter splitter = new FhirBundleSplitter(TOPICS, (topic, key, resource, done) -> callbacks.add(done),
+        2, 200);
+    StringBuilder bundle = new StringBuilder("{\"resourceType\":\"Bundle\",\"type\":\"batch\",\"entry\":[");
+    for (int i = 0; i < 20; i++) {
+      bundle.append(i == 0 ? "" : ",").append("{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"").append(i).append("\"}}");
+    }
+    Exchange exchange = exchange(bundle.append("]}").toString());
+    long start = System.nanoTime();
+    splitter.process(exchange);
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // one deadline for the request, not one per entry waiting for the window
+    assertTrue(elapsedMs + " ms", elapsedMs < 1000);
+    assertEquals(2, callbacks.size());
+    byte[] reply = exchange.getIn().getBody(byte[].class);
+    JsonNode entries = response(exchange).path("entry");
+    assertEquals(20, entries.size());
+    for (JsonNode entry : entries) {
+      assertEquals("504 Gateway Timeout", entry.path("response").path("status").asText());
+    }
+    assertEquals(20, splitter.getFailedCount());
+
+    // acknowledgements after the timeout change neither the reply nor the counts
+    callbacks.forEach(done -> done.accept(null));
+    assertArrayEquals(reply, exchange.getIn().getBody(byte[].class));
+    assertEquals(0, splitter.getDeliveredCount());
+    assertEquals(20, splitter.getFailedCount());
+  }
+
+  @Test
+  public void rejectsWhatIsNotABundle() throws Exception {
+    FhirBundleSplitter splitter = new FhirBundleSplitter(TOPICS, (topic, key, resource, done) -> {
+      sent.add(topic);
+      done.accept(null);
+    }, 2, 1000);
+    assertRejected(splitter, "", "the request has no body");
+    assertRejected(splitter, "[]", "expected a JSON object");
+    assertRejected(splitter, "{\"resourceType\":\"Patient\"}", "resourceType is Patient");
+    assertRejected(splitter, "{\"entry\":[]}", "resourceType has to come before entry");
+    assertRejected(splitter, "{\"type\":\"batch\"}", "resourceType is missing");
+    // the entry before the truncation was already sent
+    assertRejected(splitter, "{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":{\"resourceType\":\"Patient\"}},{\"resource\":{",
+        "Not a valid FHIR Bundle");
+    assertRejected(splitter, "{\"resourceType\":\"Bundle\",", "Not a valid FHIR Bundle");
+    assertEquals(7, splitter.getRejectedCount());
+    assertEquals(1, sent.size());
+  }
+
+  private void assertRejected(FhirBundleSplitter splitter, String body, String reason) throws Exception {
+    Exchange exchange = exchange(body);
+    splitter.process(exchange);
+    assertEquals(400, exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    JsonNode outcome = response(exchange);
+    assertEquals("OperationOutcome", outcome.path("resourceType").asText());
+    String diagnostics = outcome.path("issue").get(0).path("diagnostics").asText();
+    assertTrue(diagnostics, diagnostics.contains(reason));
+    // the request is not echoed back
+    assertTrue(diagnostics, body.length() < 20 || !diagnostics.contains(body));
+  }
+
+  private static Exchange exchange(String body) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setBody(body.getBytes(StandardCharsets.UTF_8));
+    return exchange;
+  }
+
+  private static JsonNode response(Exchange exchange) throws IOException {
+    assertEquals("application/fhir+json", exchange.getIn().getHeader(Exchange.CONTENT_TYPE));
+    JsonNode response = JSON.readTree(exchange.getIn().getBody(byte[].class));
+    assertNotNull(response);
+    return response;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FhirValidationProcessorTest {
+  private static final String PATIENT = "{\"resourceType\":\"Patient\",\"id\":\"example\",\"active\":true,"
+      + "\"name\":[{\"use\":\"official\",\"family\":\"Chalmers\",\"given\":[\"Peter\",\"James\"]}],"
+      + "\"gender\":\"male\",\"birthDate\":\"1974-12-25\"}";
+  private static final String PATIENT_INVALID = PATIENT
+      .replace("\"gender\":\"male\"", "\"gender\":\"unknown-code\"")
+      .replace("\"birthDate\":\"1974-12-25\"", "\"birthDate\":\"25/12/1974\"");
+
+  private static FhirResourceValidator validator;
+
+  @BeforeClass
+  public static void buildValidator() {
+    validator = new FhirResourceValidator(Collections.singletonList("Patient"));
+  }
+
+  @Test
+  public void validResourcePassesUnchanged() throws Exception {
+    FhirValidationProcessor step = new FhirValidationProcessor(validator, FhirValidationProcessor.Mode.STRICT, 1.0);
+    Exchange exchange = exchange(PATIENT);
+    step.process(exchange);
+
+    assertArrayEquals(PATIENT.getBytes(StandardCharsets.UTF_8), exchange.getIn().getBody(byte[].class));
+    assertNull(exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    assertNull(exchange.getProperty(Exchange.ROUTE_STOP));
+    assertEquals(1, step.getValidCount());
+  }
+
+  @Test
+  public void strictRejectsAnInvalidResourceWithItsIssues() throws Exception {
+    FhirValidationProcessor step = new FhirValidationProcessor(validator, FhirValidationProcessor.Mode.STRICT, 1.0);
+    Exchange exchange = exchange(PATIENT_INVALID);
+    step.process(exchange);
+
+    assertEquals(422, exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    assertEquals("application/fhir+json", exchange.getIn().getHeader(Exchange.CONTENT_TYPE));
+    assertEquals(Boolean.TRUE, exchange.getProperty(Exchange.ROUTE_STOP));
+    JsonNode outcome = new ObjectMapper().readTree(exchange.getIn().getBody(byte[].class));
+    assertEquals("OperationOutcome", outcome.path("resourceType").asText());
+    String issues = outcome.path("issue").toString();
+    assertTrue(issues, issues.contains("Patient.gender"));
+    assertTrue(issues, issues.contains("Patient.birthDate"));
+    assertEquals(1, step.getRejectedCount());
+  }
+
+  @Test
+  public void sampledForwardsAnInvalidResource() throws Exception {
+    FhirValidationProcessor step = new FhirValidationProcessor(validator, FhirValidationProcessor.Mode.SAMPLED, 1.0);
+    Exchange exchange = exchange(PATIENT_INVALID);
+    step.process(exchange);
+
+    assertArrayEquals(PATIENT_INVALID.getBytes(StandardCharsets.UTF_8), exchange.getIn().getBody(byte[].class));
+    assertNull(exchange.getProperty(Exchange.ROUTE_STOP));
+    assertEquals(1, step.getInvalidCount());
+    assertEquals(0, step.getRejectedCount());
+  }
+
+  @Test
+  public void unreadableBodyFails() {
+    assertFalse(validator.validate("{\"resourceType\":".getBytes(StandardCharsets.UTF_8)).isSuccessful());
+  }
+
+  private static Exchange exchange(String body) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setBody(body.getBytes(StandardCharsets.UTF_8));
+    return exchange;
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import ca.uhn.hl7v2.AcknowledgmentCode;
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.DefaultModelClassFactory;
+import ca.uhn.hl7v2.parser.ParserConfiguration;
+import ca.uhn.hl7v2.parser.UnexpectedSegmentBehaviourEnum;
+import ca.uhn.hl7v2.validation.impl.ValidationContextFactory;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The MSH-scan ACK against the one HAPI's generateACK() builds for the same message. MSH-7
+ * and MSH-10 are generated on both sides and left out of the comparison.
+ */
+public class Hl7AckProcessorTest {
+  private static final String ADT =
+      "MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|MSG00001|P|2.5\r"
+      + "EVN|A01|20200101120000\r"
+      + "PID|1||123456^^^MMS^MR||DOE^JANE\r";
+
+  private Hl7AckProcessor processor;
+  private HapiContext hapiContext;
+
+  @Before
+  public void setUp() {
+    processor = new Hl7AckProcessor("ISO-8859-1", false);
+    ParserConfiguration parserConfiguration = new ParserConfiguration();
+    parserConfiguration.setDefaultObx2Type("ST");
+    parserConfiguration.setInvalidObx2Type("ST");
+    parserConfiguration.setUnexpectedSegmentBehaviour(UnexpectedSegmentBehaviourEnum.ADD_INLINE);
+    hapiContext = new DefaultHapiContext(parserConfiguration, ValidationContextFactory.noValidation(),
+        new DefaultModelClassFactory());
+  }
+
+  @Test
+  public void acceptMatchesHapi() throws Exception {
+    assertMatchesHapi(ADT);
+    assertMatchesHapi("MSH|^~\\&|LAB|HOSP|IDAAS|IDAAS|20200101120000||ORU^R01^ORU_R01|7|T|2.5\r"
+        + "PID|1||42^^^HOSP^MR\r"
+        + "OBR|1||||\r"
+        + "OBX|1|ST|GLU||5.4\r");
+    assertEquals(0, processor.getFallbackCount());
+  }
+
+  @Test
+  public void acceptKeepsFirstComponentLikeHapi() throws Exception {
+    assertMatchesHapi("MSH|^~\\&|MMS^1.2.3^ISO~OTHER|DH&SUB|LABADT||20200101120000||ADT^A04|CTRL^X|P^T|2.5\r"
+        + "PID|1||123456\r");
+    assertEquals(0, processor.getFallbackCount());
+  }
+
+  @Test
+  public void acceptMatchesHapiWithCustomSeparators() throws Exception {
+    String message = "MSH#$%*@#MMS#DH#LABADT#DH#20200101120000##ADT$A01#MSG00002#P#2.5\r"
+        + "PID#1##123456$$$MMS$MR##DOE$JANE\r";
+    String ack = assertMatchesHapi(message);
+    assertTrue(ack, ack.startsWith("MSH#$%*@#LABADT#DH#MMS#DH#"));
+    assertEquals(0, processor.getFallbackCount());
+  }
+
+  @Test
+  public void messagesTheAckScanCannotHandleFallBackToHapi() throws Exception {
+    // an escape sequence in a copied field and a message without a trigger event are left to HAPI
+    assertMatchesHapi("MSH|^~\\&|M\\T\\S|DH|LABADT|DH|20200101120000||ADT^A01|MSG00003|P|2.5\r"
+        + "PID|1||123456\r");
+    assertEquals(1, processor.getFallbackCount());
+    assertNull(processor.buildAck("MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT|MSG00004|P|2.5\r"
+        .getBytes(StandardCharsets.ISO_8859_1)));
+    assertNull(processor.buildAck("MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01||P|2.5\r"
+        .getBytes(StandardCharsets.ISO_8859_1)));
+    assertNull(processor.buildAck("PID|1||123456\r".getBytes(StandardCharsets.ISO_8859_1)));
+  }
+
+  @Test
+  public void deliveryFailureIsAnApplicationError() throws Exception {
+    Exchange exchange = exchange(ADT);
+    KafkaSendProcessor.deliveryFailed(exchange, new IOException("broker unavailable"));
+    processor.process(exchange);
+    String ack = ack(exchange);
+    assertEquals(normalize(hapiAck(ADT, AcknowledgmentCode.AE,
+        new HL7Exception("Message could not be delivered: broker unavailable"))), normalize(ack));
+    assertEquals("AE", field(ack, "MSA", 1));
+    assertEquals("MSG00001", field(ack, "MSA", 2));
+    assertNotNull(segment(ack, "ERR"));
+  }
+
+  @Test
+  public void rejectionIsAnApplicationReject() throws Exception {
+    Exchange exchange = exchange(ADT);
+    HL7Exception rejection = new HL7Exception("Unsupported message type");
+    exchange.setProperty(Hl7AckProcessor.REJECTION, rejection);
+    processor.process(exchange);
+    String ack = ack(exchange);
+    assertEquals(normalize(hapiAck(ADT, AcknowledgmentCode.AR, rejection)), normalize(ack));
+    assertEquals("AR", field(ack, "MSA", 1));
+    assertEquals("MSG00001", field(ack, "MSA", 2));
+  }
+
+  @Test
+  public void producesStringWhenAsked() throws Exception {
+    Exchange exchange = exchange(ADT);
+    new Hl7AckProcessor("ISO-8859-1", true).process(exchange);
+    assertTrue(exchange.getIn().getBody() instanceof String);
+    assertEquals(normalize(hapiAck(ADT, AcknowledgmentCode.AA, null)), normalize(ack(exchange)));
+  }
+
+  private String assertMatchesHapi(String message) throws Exception {
+    Exchange exchange = exchange(message);
+    processor.process(exchange);
+    String ack = ack(exchange);
+    assertEquals(normalize(hapiAck(message, AcknowledgmentCode.AA, null)), normalize(ack));
+    return ack;
+  }
+
+  private String hapiAck(String message, AcknowledgmentCode code, HL7Exception error) throws Exception {
+    Message parsed = hapiContext.getGenericParser().parse(message);
+    return parsed.generateACK(code, error).encode();
+  }
+
+  private static Exchange exchange(String message) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setBody(message.getBytes(StandardCharsets.ISO_8859_1));
+    return exchange;
+  }
+
+  private static String ack(Exchange exchange) {
+    Object body = exchange.getIn().getBody();
+    return body instanceof String ? (String) body : new String((byte[]) body, StandardCharsets.ISO_8859_1);
+  }
+
+  /*
+   * Segments and fields of an ACK, with the generated MSH-7 timestamp and MSH-10 control id blanked
+   */
+  private static List<List<String>> normalize(String ack) {
+    String separator = Pattern.quote(ack.substring(3, 4));
+    List<List<String>> segments = new ArrayList<>();
+    for (String segment : ack.split("\r")) {
+      List<String> fields = new ArrayList<>(Arrays.asList(segment.split(separator, -1)));
+      if (segment.startsWith("MSH")) {
+        fields.set(6, "");
+        fields.set(9, "");
+      }
+      segments.add(fields);
+    }
+    return segments;
+  }
+
+  private static String segment(String ack, String name) {
+    for (String segment : ack.split("\r")) {
+      if (segment.startsWith(name)) {
+        return segment;
+      }
+    }
+    return null;
+  }
+
+  private static String field(String ack, String name, int field) {
+    return segment(ack, name).split(Pattern.quote(ack.substring(3, 4)), -1)[field];
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Hl7DuplicateCacheTest {
+  private static final long TTL_MILLIS = 60_000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final AtomicLong now = new AtomicLong(1000 * TTL_MILLIS);
+
+  @Test
+  public void fingerprintIsSendingFacilityAndControlId() {
+    long fingerprint = Hl7DuplicateCache.fingerprint(view("MSH|^~\\&|APP|FAC|||20200101||ADT^A01|123|P|2.5\r"));
+    assertNotEquals(0L, fingerprint);
+    // other fields do not matter
+    assertEquals(fingerprint, Hl7DuplicateCache.fingerprint(view("MSH|^~\\&|OTHER|FAC|||20200102||ADT^A08|123|T|2.5\r")));
+    assertNotEquals(fingerprint, Hl7DuplicateCache.fingerprint(view("MSH|^~\\&|APP|FAC2|||20200101||ADT^A01|123|P|2.5\r")));
+    assertNotEquals(fingerprint, Hl7DuplicateCache.fingerprint(view("MSH|^~\\&|APP|FAC|||20200101||ADT^A01|124|P|2.5\r")));
+    // no control id, no fingerprint
+    assertEquals(0L, Hl7DuplicateCache.fingerprint(view("MSH|^~\\&|APP|FAC|||20200101||ADT^A01||P|2.5\r")));
+    assertEquals(0L, Hl7DuplicateCache.fingerprint(view("PID|1||123\r")));
+  }
+
+  @Test
+  public void remembersFingerprintsForOneToTwoTtls() {
+    Hl7DuplicateCache cache = cache(settings(false));
+    cache.add(42L);
+    assertTrue(cache.contains(42L));
+    assertFalse(cache.contains(43L));
+    now.addAndGet(TTL_MILLIS);
+    assertTrue(cache.contains(42L));
+    now.addAndGet(TTL_MILLIS);
+    assertFalse(cache.contains(42L));
+    assertEquals(1, cache.getHitCount() - 1);
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void staleEpochDoesNotRotateBack() {
+    // one stripe, the stripe is picked by the low bits
+    long first = 42L;
+    long second = 42L + 16;
+    long third = 42L + 32;
+    Hl7DuplicateCache cache = cache(settings(false));
+    cache.add(first);
+    now.addAndGet(TTL_MILLIS);
+    cache.add(second);
+    // a thread that read the clock just before the rotation
+    now.addAndGet(-TTL_MILLIS);
+    cache.add(third);
+    assertTrue(cache.contains(second));
+    now.addAndGet(TTL_MILLIS);
+    assertTrue(cache.contains(first));
+    assertTrue(cache.contains(second));
+    assertTrue(cache.contains(third));
+    assertEquals(3, cache.getSize());
+  }
+
+  @Test
+  public void forgetsTheOldestPastMaxEntries() {
+    DedupSettings settings = settings(true);
+    settings.setMaxEntries(16 * 2 * 16);
+    Hl7DuplicateCache cache = cache(settings);
+    for (long i = 1; i <= 10_000; i++) {
+      cache.add(i << 32 | i);
+    }
+    assertTrue(cache.getEvictedCount() > 0);
+    assertTrue(cache.getSize() <= settings.getMaxEntries() + 16);
+    assertTrue(cache.contains(10_000L << 32 | 10_000L));
+    assertFalse(cache.contains(1L << 32 | 1L));
+  }
+
+  @Test
+  public void snapshotRestoresTheLiveFingerprints() throws Exception {
+    DedupSettings settings = settings(true);
+    Hl7DuplicateCache cache = cache(settings);
+    for (long i = 1; i <= 500; i++) {
+      cache.add(mix(i));
+    }
+    now.addAndGet(TTL_MILLIS);
+    for (long i = 501; i <= 1000; i++) {
+      cache.add(mix(i));
+    }
+    Path file = folder.getRoot().toPath().resolve("dedup.snapshot");
+    assertEquals(1000, cache.snapshot(file));
+
+    Hl7DuplicateCache restored = cache(settings);
+    assertEquals(1000, restored.restore(file));
+    assertEquals(1000, restored.getSize());
+    for (long i = 1; i <= 1000; i++) {
+      assertTrue(restored.contains(mix(i)));
+    }
+    // the first 500 expire a ttl before the others
+    now.addAndGet(TTL_MILLIS);
+    assertEquals(500, restored.getSize());
+    assertFalse(restored.contains(mix(1)));
+    assertTrue(restored.contains(mix(1000)));
+  }
+
+  @Test
+  public void snapshotOfAnotherTtlIsNotRestored() throws Exception {
+    Hl7DuplicateCache cache = cache(settings(false));
+    cache.add(42L);
+    Path file = folder.getRoot().toPath().resolve("dedup.snapshot");
+    cache.snapshot(file);
+    DedupSettings settings = settings(false);
+    settings.setTtlSeconds(120);
+    Hl7DuplicateCache restored = cache(settings);
+    assertEquals(0, restored.restore(file));
+    assertFalse(restored.contains(42L));
+  }
+
+  private Hl7DuplicateCache cache(DedupSettings settings) {
+    Hl7DuplicateCache cache = new Hl7DuplicateCache(settings);
+    cache.clock = now::get;
+    return cache;
+  }
+
+  private static DedupSettings settings(boolean bloomFilter) {
+    DedupSettings settings = new DedupSettings();
+    settings.setEnabled(true);
+    settings.setTtlSeconds(TTL_MILLIS / 1000);
+    settings.setMaxEntries(100_000);
+    settings.setBloomFilter(bloomFilter);
+    return settings;
+  }
+
+  private static Hl7View view(String message) {
+    return new Hl7View(message.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static long mix(long value) {
+    long hash = value * 0x9e3779b97f4a7c15L;
+    return hash ^ (hash >>> 29) | 1L;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/*
+ * Golden files of the HL7 to FHIR conversion: src/test/resources/hl7-fhir/<sample>.json holds
+ * the resources <sample>.hl7 converts to, as a JSON array, compared ignoring formatting. The
+ * .hl7 files have one segment per line. After a mapping change rewrite the JSON files and
+ * review the diff:
+ *
+ *  mvn test -Dtest=Hl7FhirConverterTest -Dhl7-fhir.golden.write=true
+ *
+ * Timestamps without an offset are converted in America/New_York so the files do not depend
+ * on the host.
+ */
+public class Hl7FhirConverterTest {
+  private static final ZoneId ZONE = ZoneId.of("America/New_York");
+  private static final Path DIRECTORY = Paths.get("src/test/resources/hl7-fhir");
+  private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  private static Hl7FhirConverter converter;
+
+  @BeforeClass
+  public static void compile() {
+    converter = Hl7FhirMappings.compile(Hl7FhirMappings.messageTypes(), ZONE);
+  }
+
+  @Test
+  public void adtMatchesGoldenFile() throws IOException {
+    assertMatchesGoldenFile("adt");
+  }
+
+  @Test
+  public void oruMatchesGoldenFile() throws IOException {
+    assertMatchesGoldenFile("oru");
+  }
+
+  @Test
+  public void vxuMatchesGoldenFile() throws IOException {
+    assertMatchesGoldenFile("vxu");
+  }
+
+  @Test
+  public void otherMessageTypesConvertToNothing() throws IOException {
+    byte[] message = "MSH|^~\\&|LAB|HOSP|IDAAS|IDAAS|20200101120000||MDM^T02|7|T|2.5\rPID|1||42^^^HOSP^MR\r"
+        .getBytes(StandardCharsets.ISO_8859_1);
+    assertEquals(0, converter.convert(new Hl7View(message)).size());
+  }
+
+  @Test
+  public void outOfRangeOffsetLeavesOutOnlyItsProperty() throws IOException {
+    StringBuilder pv1 = new StringBuilder("PV1|1|I");
+    for (int field = 3; field <= 44; field++) {
+      pv1.append('|');
+    }
+    pv1.append("200007010800+2500|200007021000-0500");
+    byte[] message = ("MSH|^~\\&|MMS|DH|LABADT|DH|201301011226||ADT^A01|8|P|2.5\rPID|1||42^^^HOSP^MR\r" + pv1 + "\r")
+        .getBytes(StandardCharsets.ISO_8859_1);
+
+    JsonNode encounter = null;
+    for (Hl7FhirConverter.Resource resource : converter.convert(new Hl7View(message))) {
+      if ("Encounter".equals(resource.getType())) {
+        encounter = MAPPER.readTree(resource.getJson());
+      }
+    }
+    assertNotNull(encounter);
+    assertFalse(encounter.path("period").has("start"));
+    assertEquals("2000-07-02T10:00:00-05:00", encounter.path("period").path("end").asText());
+    assertNull(Hl7FhirConverter.dateTime("200007010800+0160", ZONE));
+  }
+
+  private static void assertMatchesGoldenFile(String sample) throws IOException {
+    byte[] message = new String(resource(sample + ".hl7"), StandardCharsets.ISO_8859_1).replace('\n', '\r')
+        .getBytes(StandardCharsets.ISO_8859_1);
+    ArrayNode actual = MAPPER.createArrayNode();
+    for (Hl7FhirConverter.Resource resource : converter.convert(new Hl7View(message))) {
+      actual.add(MAPPER.readTree(resource.getJson()));
+    }
+    if (Boolean.getBoolean("hl7-fhir.golden.write")) {
+      Files.write(DIRECTORY.resolve(sample + ".json"),
+          (MAPPER.writeValueAsString(actual) + "\n").getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+    JsonNode expected = MAPPER.readTree(resource(sample + ".json"));
+    assertEquals("The conversion of hl7-fhir/" + sample + ".hl7 differs from its golden file",
+        MAPPER.writeValueAsString(expected), MAPPER.writeValueAsString(actual));
+  }
+
+  private static byte[] resource(String name) throws IOException {
+    try (InputStream in = Hl7FhirConverterTest.class.getResourceAsStream("/hl7-fhir/" + name)) {
+      assertNotNull("No hl7-fhir/" + name + " on the classpath", in);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int read; (read = in.read(buffer)) >= 0; ) {
+        bytes.write(buffer, 0, read);
+      }
+      return bytes.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The conversion and its sends run on the workers, the route thread only hands the message over.
+ */
+public class Hl7FhirProcessorTest {
+  private static final String ADT =
+      "MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|MSG00001|P|2.5\r"
+      + "EVN|A01|20200101120000\r"
+      + "PID|1||123456^^^MMS^MR||DOE^JANE||19610615|F\r"
+      + "PV1|1|I|2000^2012^01\r";
+
+  private final List<Runnable> queued = new ArrayList<>();
+  private final List<String> sent = new ArrayList<>();
+  private Hl7FhirConverter converter;
+
+  @Before
+  public void setUp() {
+    converter = Hl7FhirMappings.compile(Hl7FhirMappings.messageTypes(), ZoneId.of("UTC"));
+  }
+
+  @Test
+  public void conversionRunsOnTheWorkers() throws Exception {
+    Hl7FhirProcessor processor = processor(queued::add);
+    Exchange exchange = exchange(ADT);
+    processor.process(exchange);
+    assertEquals(1, queued.size());
+    assertEquals(Collections.emptyList(), sent);
+    assertEquals(1, processor.getPendingCount());
+
+    // the route goes on with the ACK, which replaces the body
+    exchange.getIn().setBody("MSH|^~\\&|||||||ACK|1|P|2.5\rMSA|AA|MSG00001\r".getBytes(StandardCharsets.ISO_8859_1));
+    exchange.removeProperty(Hl7View.EXCHANGE_PROPERTY);
+    queued.get(0).run();
+    assertTrue(sent.toString(), sent.contains("FHIRSvr_Patient") && sent.contains("FHIRSvr_Encounter"));
+    assertEquals(0, processor.getPendingCount());
+    assertEquals(1, processor.getConvertedCount());
+    assertEquals(sent.size(), processor.getDeliveredCount());
+  }
+
+  @Test
+  public void messagesWithTheSameKeyGoToTheSameWorker() throws Exception {
+    List<List<Runnable>> workers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      workers.add(new ArrayList<>());
+    }
+    Hl7FhirProcessor processor = new Hl7FhirProcessor(converter, Collections.emptyMap(), this::send,
+        Arrays.asList(workers.get(0)::add, workers.get(1)::add, workers.get(2)::add, workers.get(3)::add));
+    RouteMetadata metadata = new RouteMetadata("hl7Admissions", AuditEvent.IndustryStandard.HL7, "ADT", "MCTN_MMS_ADT",
+        "ADT", Hl7RecordKey.of(Collections.singletonList("PID-3")));
+    for (int i = 0; i < 20; i++) {
+      Exchange exchange = exchange(ADT.replace("123456", "P" + i % 5));
+      exchange.setProperty(RouteMetadata.EXCHANGE_PROPERTY, metadata);
+      processor.process(exchange);
+    }
+    // 5 patients of 4 messages each, every patient on one worker
+    int used = 0;
+    for (List<Runnable> worker : workers) {
+      assertEquals(0, worker.size() % 4);
+      used += worker.isEmpty() ? 0 : 1;
+    }
+    assertTrue(used > 1);
+  }
+
+  @Test
+  public void fullWorkersConvertOnTheRouteThread() throws Exception {
+    Hl7FhirProcessor processor = processor(task -> {
+      throw new RejectedExecutionException("full");
+    });
+    processor.process(exchange(ADT));
+    assertTrue(sent.contains("FHIRSvr_Patient"));
+    assertEquals(0, processor.getPendingCount());
+  }
+
+  @Test
+  public void undeliveredMessageIsNotConverted() throws Exception {
+    Hl7FhirProcessor processor = processor(queued::add);
+    Exchange exchange = exchange(ADT);
+    KafkaSendProcessor.deliveryFailed(exchange, new IOException("broker down"));
+    processor.process(exchange);
+    assertEquals(0, queued.size());
+    assertEquals(0, processor.getPendingCount());
+  }
+
+  private Hl7FhirProcessor processor(Executor worker) {
+    return new Hl7FhirProcessor(converter, Collections.emptyMap(), this::send, Collections.singletonList(worker));
+  }
+
+  private void send(String topic, byte[] key, byte[] resource, Consumer<Exception> done) {
+    sent.add(topic);
+    done.accept(null);
+  }
+
+  private static Exchange exchange(String message) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setBody(message.getBytes(StandardCharsets.ISO_8859_1));
+    return exchange;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class Hl7RecordKeyTest {
+  private static final String MSH = "MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|MSG00001|P|2.5\r";
+
+  @Test
+  public void keysOnTheFirstIdOfPid3() {
+    Hl7RecordKey key = Hl7RecordKey.of(Arrays.asList("PID-3", "MSH-10"));
+    assertArrayEquals(bytes("12345"), key.extract(view(MSH + "PID|1||12345^^^MRN^MR~67890^^^SSN^SS\r")));
+  }
+
+  @Test
+  public void fallsBackToTheNextFieldWithAValue() {
+    Hl7RecordKey key = Hl7RecordKey.of(Arrays.asList("PID-3", "MSH-10"));
+    assertArrayEquals(bytes("MSG00001"), key.extract(view(MSH + "PID|1||^^^MRN\r")));
+    assertArrayEquals(bytes("MSG00001"), key.extract(view(MSH + "EVN|A01\r")));
+  }
+
+  @Test
+  public void readsAComponent() {
+    Hl7RecordKey key = Hl7RecordKey.of(Collections.singletonList("pid-3.4"));
+    assertArrayEquals(bytes("MRN"), key.extract(view(MSH + "PID|1||12345^^^MRN^MR\r")));
+  }
+
+  @Test
+  public void noKeyWithoutHeaderOrValue() {
+    Hl7RecordKey key = Hl7RecordKey.of(Collections.singletonList("PID-3"));
+    assertNull(key.extract(view("PID|1||12345\r")));
+    assertNull(key.extract(view(MSH)));
+    assertNull(Hl7RecordKey.of(Collections.emptyList()));
+  }
+
+  @Test
+  public void rejectsMalformedFields() {
+    for (String field : Arrays.asList("PID3", "PID-", "PID-0", "PID-3.x", "MSH-2", "PATIENT-3")) {
+      try {
+        Hl7RecordKey.of(Collections.singletonList(field));
+        fail(field);
+      } catch (IllegalArgumentException expected) {
+        // the message names the field
+      }
+    }
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  private static Hl7View view(String message) {
+    return new Hl7View(bytes(message));
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import ca.uhn.hl7v2.ErrorCode;
+import ca.uhn.hl7v2.HL7Exception;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class Hl7TriggerDispatcherTest {
+  private final List<String> routed = new ArrayList<>();
+  private final List<Exchange> acked = new ArrayList<>();
+  private final Hl7TriggerDispatcher dispatcher = new Hl7TriggerDispatcher("ISO-8859-1", acked::add);
+
+  @Test
+  public void dispatchesOnTheMessageCode() throws Exception {
+    register("ADT");
+    register("ORU");
+    dispatcher.process(exchange("MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|1|P|2.5\r"));
+    dispatcher.process(exchange("MSH|^~\\&|LAB|DH|IDAAS|DH|20200101120000||ORU^R01^ORU_R01|2|P|2.5\r"));
+    dispatcher.process(exchange("MSH#$%*@#MMS#DH#LABADT#DH#20200101120000##ADT$A04#3#P#2.5\r"));
+
+    assertEquals(3, routed.size());
+    assertEquals("ADT 1", routed.get(0));
+    assertEquals("ORU 2", routed.get(1));
+    assertEquals("ADT 3", routed.get(2));
+    assertEquals(3, dispatcher.getDispatchedCount());
+    assertTrue(acked.isEmpty());
+  }
+
+  @Test
+  public void rejectsMessageTypesWithoutARoute() throws Exception {
+    register("ADT");
+    Exchange vxu = exchange("MSH|^~\\&|MMS|DH|IIS|DH|20200101120000||VXU^V04|4|P|2.5\r");
+    dispatcher.process(vxu);
+    Exchange batch = exchange("BHS|^~\\&|MMS|DH\rMSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|5|P|2.5\r");
+    dispatcher.process(batch);
+
+    assertTrue(routed.isEmpty());
+    assertEquals(2, dispatcher.getRejectedCount());
+    assertEquals(2, acked.size());
+    HL7Exception rejection = vxu.getProperty(Hl7AckProcessor.REJECTION, HL7Exception.class);
+    assertEquals(ErrorCode.UNSUPPORTED_MESSAGE_TYPE.getCode(), rejection.getErrorCode());
+    assertTrue(rejection.getMessage(), rejection.getMessage().contains("VXU^V04"));
+    assertEquals(Boolean.TRUE, vxu.getProperty(Exchange.ROUTE_STOP));
+    assertEquals(Boolean.TRUE, batch.getProperty(Exchange.ROUTE_STOP));
+  }
+
+  @Test
+  public void registersEachTypeOnce() {
+    assertTrue(dispatcher.register("ADT", exchange -> { }));
+    assertFalse(dispatcher.register("ADT", exchange -> { }));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsTriggersThatAreNotMessageTypes() {
+    dispatcher.register("ADT^A01", exchange -> { });
+  }
+
+  @Test
+  public void noBodyIsRejected() throws Exception {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    dispatcher.process(exchange);
+    assertEquals(1, dispatcher.getRejectedCount());
+    assertNull(Hl7View.of(exchange));
+  }
+
+  private void register(String messageType) {
+    dispatcher.register(messageType, exchange ->
+        routed.add(messageType + " " + Hl7View.of(exchange).field("MSH", 10)));
+  }
+
+  private static Exchange exchange(String message) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setBody(message.getBytes(StandardCharsets.ISO_8859_1));
+    return exchange;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Hl7ViewTest {
+  private static final String ADT = "MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01^ADT_A01|MSG00001|P|2.5\r"
+      + "EVN|A01|20200101120000\r"
+      + "PID|1||12345^^^MRN^MR~67890^^^SSN^SS||Doe^John^Q||19700101|M\r"
+      + "NK1|1|Doe^Jane|SPO\r"
+      + "NK1|2|Doe^Jim|SON\r";
+
+  @Test
+  public void readsHeaderFieldsByHl7Number() {
+    Hl7View view = view(ADT);
+    assertTrue(view.hasHeader());
+    assertEquals("|", view.field("MSH", 1).toString());
+    assertEquals("^~\\&", view.field("MSH", 2).toString());
+    assertEquals("MMS", view.field("MSH", 3).toString());
+    assertEquals("A01", view.field("MSH", 9).component(2).toString());
+    assertTrue(view.field("MSH", 10).contentEquals("MSG00001"));
+    assertEquals(12, view.fieldCount(0));
+  }
+
+  @Test
+  public void narrowsFieldsToRepetitionsAndComponents() {
+    Hl7View view = view(ADT);
+    Hl7View.Slice identifiers = view.field("PID", 3);
+    assertEquals("12345", identifiers.repetition(1).component(1).toString());
+    assertEquals("SSN", identifiers.repetition(2).component(4).toString());
+    assertTrue(identifiers.repetition(3).isEmpty());
+    assertEquals("John", view.field("PID", 5).component(2).toString());
+    assertTrue(view.field("PID", 30).isEmpty());
+    assertTrue(view.field("ZZZ", 1).isEmpty());
+  }
+
+  @Test
+  public void findsRepeatedSegments() {
+    Hl7View view = view(ADT);
+    int first = view.segmentIndex("NK1");
+    int second = view.segmentIndex("NK1", first + 1);
+    assertEquals(3, first);
+    assertEquals(4, second);
+    assertEquals(-1, view.segmentIndex("NK1", second + 1));
+    assertEquals("SON", view.field(second, 3).toString());
+    assertEquals(5, view.segmentCount());
+    assertEquals("EVN", view.segmentName(1));
+  }
+
+  @Test
+  public void usesTheDelimitersOfTheHeader() {
+    Hl7View view = view("MSH#$%*@#MMS#DH#LABADT#DH#20200101120000##ADT$A01#MSG00002#P#2.5\r"
+        + "PID#1##12345$$$MRN%67890\r");
+    assertEquals("A01", view.field("MSH", 9).component(2).toString());
+    assertEquals("67890", view.field("PID", 3).repetition(2).toString());
+  }
+
+  @Test
+  public void acceptsLineFeedsBetweenSegments() {
+    Hl7View view = view(ADT.replace("\r", "\r\n"));
+    assertEquals(5, view.segmentCount());
+    assertEquals("MSG00001", view.field("MSH", 10).toString());
+    assertEquals("SPO", view.field(3, 3).toString());
+  }
+
+  @Test
+  public void decodesEscapesOnlyWhenAsked() {
+    Hl7View view = view("MSH|^~\\&|MMS\r"
+        + "OBX|1|ST|||A\\F\\B\\S\\C\\E\\D\\X414243\\ \\H\\bold\\N\\\r");
+    Hl7View.Slice value = view.field("OBX", 5);
+    assertTrue(value.hasEscape());
+    assertEquals("A\\F\\B\\S\\C\\E\\D\\X414243\\ \\H\\bold\\N\\", value.toString());
+    assertEquals("A|B^C\\DABC \\H\\bold\\N\\", value.decode());
+  }
+
+  @Test
+  public void copyReadsTheSameMessage() {
+    byte[] framed = ("\u000b" + ADT + "\u001c\r").getBytes(StandardCharsets.ISO_8859_1);
+    Hl7View view = new Hl7View().reset(framed, 1, framed.length - 3, StandardCharsets.ISO_8859_1);
+    Hl7View copy = view.copy();
+    assertTrue(copy.hasHeader());
+    assertArrayEquals(view.field("MSH", 10).toBytes(), copy.field("MSH", 10).toBytes());
+    assertEquals(5, copy.segmentCount());
+  }
+
+  @Test
+  public void messageWithoutHeaderUsesTheDefaultDelimiters() {
+    Hl7View view = view("PID|1||12345^^^MRN\r");
+    assertFalse(view.hasHeader());
+    assertEquals("MRN", view.field("PID", 3).component(4).toString());
+  }
+
+  private static Hl7View view(String message) {
+    return new Hl7View(message.getBytes(StandardCharsets.ISO_8859_1));
+  }
+}
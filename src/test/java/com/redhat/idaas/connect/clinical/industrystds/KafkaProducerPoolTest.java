@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/*
+ * The producers the platform starts with, from the settings in application.yml: every route
+ * shares the ingest producer and the audit pipeline adds the only other one.
+ */
+public class KafkaProducerPoolTest {
+  private KafkaSettings kafkaSettings;
+  private AuditSettings auditSettings;
+  private MockProducerFactory producers;
+  private KafkaProducerPool pool;
+  private AuditPublisher auditPublisher;
+
+  @Before
+  public void setUp() throws IOException {
+    StandardEnvironment environment = new StandardEnvironment();
+    new YamlPropertySourceLoader().load("application.yml", new ClassPathResource("application.yml"))
+        .forEach(environment.getPropertySources()::addLast);
+    Binder binder = new Binder(ConfigurationPropertySources.get(environment));
+    kafkaSettings = binder.bind("kafka-settings", KafkaSettings.class).get();
+    auditSettings = binder.bind("audit-settings", AuditSettings.class).get();
+    // no broker, the producers are still configured from the settings
+    producers = new MockProducerFactory();
+    pool = new KafkaProducerPool(kafkaSettings, new ShutdownSettings(), new StartupSettings(), producers);
+    auditPublisher = new AuditPublisher(auditSettings, kafkaSettings, pool);
+  }
+
+  @After
+  public void tearDown() {
+    auditPublisher.stop();
+    pool.destroy();
+  }
+
+  @Test
+  public void routesShareTheIngestProducerAndTheAuditHasItsOwn() {
+    Producer<byte[], byte[]> ingest = pool.ingestProducer();
+    for (int route = 0; route < 60; route++) {
+      assertSame(ingest, pool.ingestProducer());
+    }
+    auditPublisher.start();
+    assertEquals(2, pool.size());
+    Map<String, Long> clients = producers.recordCounts();
+    assertEquals(2, clients.size());
+    assertEquals(0L, (long) clients.get("idaas-ingest"));
+    assertEquals(0L, (long) clients.get("idaas-audit"));
+  }
+
+  @Test
+  public void ingestProducerIsDurableAndCompressed() {
+    Map<String, Object> config = kafkaSettings.producerConfig();
+    assertEquals("all", config.get(ProducerConfig.ACKS_CONFIG));
+    assertEquals("true", config.get(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG));
+    assertEquals("lz4", config.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+    assertEquals("5", config.get(ProducerConfig.LINGER_MS_CONFIG));
+  }
+
+  @Test
+  public void passThroughPropertiesMakeAnotherProducer() {
+    Producer<byte[], byte[]> ingest = pool.ingestProducer();
+    Map<String, Object> config = kafkaSettings.producerConfig();
+    config.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, "1000");
+    Producer<byte[], byte[]> other = pool.acquire(config);
+    assertNotSame(ingest, other);
+    assertSame(other, pool.acquire(config));
+    assertSame(ingest, pool.ingestProducer());
+    assertEquals(2, pool.size());
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import org.apache.camel.Exchange;
+import org.apache.camel.component.netty4.NettyConstants;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class KafkaSendProcessorTest {
+  private static final String ADT =
+      "MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|MSG00001|P|2.5\r"
+      + "PID|1||123456^^^MMS^MR||DOE^JANE\r";
+  private static final RouteMetadata METADATA = new RouteMetadata("hl7Admissions", AuditEvent.IndustryStandard.HL7,
+      "ADT", "MCTN_MMS_ADT", "ADT message received", Hl7RecordKey.of(Collections.singletonList("PID-3")));
+
+  private MockProducer<byte[], byte[]> producer;
+  private ExecutorService continuations;
+
+  @Before
+  public void setUp() {
+    producer = new MockProducer<>(false, new ByteArraySerializer(), new ByteArraySerializer());
+    continuations = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "continuations"));
+  }
+
+  @After
+  public void tearDown() {
+    continuations.shutdownNow();
+  }
+
+  @Test
+  public void blockingSendUsesTopicAndKeyOfTheRoute() throws Exception {
+    producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+    Exchange exchange = exchange();
+    new KafkaSendProcessor(producer, false, continuations).process(exchange);
+    ProducerRecord<byte[], byte[]> record = producer.history().get(0);
+    assertEquals("MCTN_MMS_ADT", record.topic());
+    assertArrayEquals("123456".getBytes(StandardCharsets.ISO_8859_1), record.key());
+    assertArrayEquals(ADT.getBytes(StandardCharsets.ISO_8859_1), record.value());
+  }
+
+  @Test
+  public void blockingSendFailureFailsTheExchange() throws Exception {
+    Exchange exchange = exchange();
+    KafkaSendProcessor processor = new KafkaSendProcessor(producer, false, continuations);
+    Thread completer = new Thread(() -> {
+      while (producer.history().isEmpty()) {
+        Thread.yield();
+      }
+      producer.errorNext(new TimeoutException("no broker"));
+    });
+    completer.start();
+    try {
+      processor.process(exchange);
+      fail("send did not fail");
+    } catch (TimeoutException expected) {
+      assertNull(KafkaSendProcessor.deliveryFailure(exchange));
+    }
+    completer.join();
+  }
+
+  @Test
+  public void asyncSendContinuesOnTheExecutor() throws Exception {
+    Exchange exchange = exchange();
+    AtomicReference<String> thread = new AtomicReference<>();
+    CountDownLatch done = new CountDownLatch(1);
+    boolean sync = new KafkaSendProcessor(producer, true, continuations).process(exchange, doneSync -> {
+      thread.set(Thread.currentThread().getName());
+      done.countDown();
+    });
+    assertFalse(sync);
+    assertTrue(producer.completeNext());
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals("continuations", thread.get());
+    assertNull(KafkaSendProcessor.deliveryFailure(exchange));
+  }
+
+  @Test
+  public void asyncSendContinuesOnTheNettyHandlerOfTheConnection() throws Exception {
+    EventExecutor handler = new DefaultEventExecutor(new DefaultThreadFactory("handler"));
+    try {
+      ChannelHandlerContext context = mock(ChannelHandlerContext.class);
+      when(context.executor()).thenReturn(handler);
+      Exchange exchange = exchange();
+      exchange.getIn().setHeader(NettyConstants.NETTY_CHANNEL_HANDLER_CONTEXT, context);
+      AtomicReference<String> thread = new AtomicReference<>();
+      CountDownLatch done = new CountDownLatch(1);
+      new KafkaSendProcessor(producer, true, continuations).process(exchange, doneSync -> {
+        thread.set(Thread.currentThread().getName());
+        done.countDown();
+      });
+      assertTrue(producer.completeNext());
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertTrue(thread.get(), thread.get().startsWith("handler"));
+    } finally {
+      handler.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void asyncDeliveryFailureIsAcknowledgedWithAnError() throws Exception {
+    Exchange exchange = exchange();
+    CountDownLatch done = new CountDownLatch(1);
+    new KafkaSendProcessor(producer, true, continuations).process(exchange, doneSync -> done.countDown());
+    TimeoutException failure = new TimeoutException("Failed to update metadata after 2000 ms.");
+    assertTrue(producer.errorNext(failure));
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertSame(failure, KafkaSendProcessor.deliveryFailure(exchange));
+    assertNull(exchange.getException());
+
+    new Hl7AckProcessor("ISO-8859-1", true).process(exchange);
+    String ack = exchange.getIn().getBody(String.class);
+    assertTrue(ack, ack.contains("\rMSA|AE|MSG00001"));
+    assertTrue(ack, ack.contains("\rERR|"));
+  }
+
+  @Test
+  public void asyncSendRejectedByTheProducerIsAnsweredOnTheCallingThread() throws Exception {
+    producer.close();
+    Exchange exchange = exchange();
+    AtomicReference<Boolean> doneSync = new AtomicReference<>();
+    boolean sync = new KafkaSendProcessor(producer, true, continuations).process(exchange, doneSync::set);
+    assertTrue(sync);
+    assertTrue(doneSync.get());
+    assertTrue(KafkaSendProcessor.deliveryFailure(exchange) instanceof IllegalStateException);
+  }
+
+  @Test
+  public void continuesOnTheCallingThreadOnceTheExecutorIsShutDown() throws Exception {
+    continuations.shutdown();
+    Exchange exchange = exchange();
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    new KafkaSendProcessor(producer, true, continuations).process(exchange, doneSync -> thread.set(Thread.currentThread()));
+    assertTrue(producer.completeNext());
+    assertSame(Thread.currentThread(), thread.get());
+  }
+
+  private static Exchange exchange() {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setBody(ADT.getBytes(StandardCharsets.ISO_8859_1));
+    exchange.setProperty(RouteMetadata.EXCHANGE_PROPERTY, METADATA);
+    return exchange;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class LazyServletRoutesTest {
+  private final DefaultCamelContext camelContext = new DefaultCamelContext();
+  private LazyServletRoutes lazyRoutes;
+
+  @Before
+  public void setUp() throws Exception {
+    camelContext.start();
+    lazyRoutes = new LazyServletRoutes(camelContext);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    camelContext.stop();
+  }
+
+  @Test
+  public void addsTheRouteOfThePathOnce() throws Exception {
+    lazyRoutes.add("patient", () -> route("patient"));
+    lazyRoutes.start("/other");
+    assertNull(camelContext.getRoute("patient"));
+    lazyRoutes.start("/patient");
+    assertNotNull(camelContext.getRoute("patient"));
+    assertEquals(0, lazyRoutes.getPendingCount());
+    // nothing left to add
+    lazyRoutes.start("/patient");
+  }
+
+  @Test
+  public void routeThatFailsToBeAddedStaysPending() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    lazyRoutes.add("observation", () -> new RouteBuilder() {
+      @Override
+      public void configure() {
+        if (attempts.incrementAndGet() == 1) {
+          throw new IllegalStateException("not yet");
+        }
+        from("direct:observation").routeId("observation").to("mock:observation");
+      }
+    });
+    try {
+      lazyRoutes.start("/observation");
+      fail();
+    } catch (IllegalStateException expected) {
+      // the first request fails
+    }
+    assertEquals(1, lazyRoutes.getPendingCount());
+    lazyRoutes.start("/observation");
+    assertNotNull(camelContext.getRoute("observation"));
+    assertEquals(0, lazyRoutes.getPendingCount());
+  }
+
+  private static RouteBuilder route(String path) {
+    return new RouteBuilder() {
+      @Override
+      public void configure() {
+        from("direct:" + path).routeId(path).to("mock:" + path);
+      }
+    };
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MessageSpoolTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<MessageSpool> spools = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    for (MessageSpool spool : spools) {
+      spool.stop();
+    }
+  }
+
+  @Test
+  public void forwardsDurableMessagesInOrder() throws Exception {
+    MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+    MessageSpool spool = start(settings(64 * 1024), producer);
+    List<Exception> results = appendAll(spool, 0, 500);
+    for (Exception result : results) {
+      assertNull(result);
+    }
+    awaitForwarded(spool, 500);
+    List<ProducerRecord<byte[], byte[]>> history = producer.history();
+    assertEquals(500, history.size());
+    for (int i = 0; i < 500; i++) {
+      assertEquals("MCTN_MMS_ADT", history.get(i).topic());
+      assertArrayEquals(key(i), history.get(i).key());
+      assertEquals(body(i), new String(history.get(i).value(), StandardCharsets.UTF_8));
+    }
+    // 64 KB segments, the forwarded ones are deleted
+    assertEquals(1, spool.getPendingSegments());
+  }
+
+  @Test
+  public void replaysWhatKafkaDidNotTakeAfterARestart() throws Exception {
+    SpoolSettings settings = settings(64 * 1024);
+    // Kafka never answers the first spool
+    MockProducer<byte[], byte[]> unavailable = new MockProducer<>(false, new ByteArraySerializer(), new ByteArraySerializer());
+    MessageSpool first = start(settings, unavailable);
+    appendAll(first, 0, 300);
+    assertEquals(0, first.getForwardedCount());
+    first.stop();
+
+    MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+    MessageSpool second = start(settings, producer);
+    appendAll(second, 300, 100);
+    awaitForwarded(second, 400);
+    List<ProducerRecord<byte[], byte[]>> history = producer.history();
+    assertEquals(400, history.size());
+    for (int i = 0; i < 400; i++) {
+      assertEquals(body(i), new String(history.get(i).value(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void refusesMessagesOnceFullAndWhenStopped() throws Exception {
+    SpoolSettings settings = settings(4096);
+    settings.setMaxSegments(2);
+    MessageSpool spool = start(settings, new MockProducer<>(false, new ByteArraySerializer(), new ByteArraySerializer()));
+    try {
+      appendAll(spool, 0, 1000);
+      fail("a full spool took every message");
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().contains("full"));
+    }
+    spool.stop();
+    try {
+      spool.append("MCTN_MMS_ADT", null, new byte[1], failure -> { });
+      fail("a stopped spool took a message");
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().contains("not running"));
+    }
+  }
+
+  private MessageSpool start(SpoolSettings settings, MockProducer<byte[], byte[]> producer) {
+    KafkaProducerPool producerPool = mock(KafkaProducerPool.class);
+    when(producerPool.ingestProducer()).thenReturn(producer);
+    MessageSpool spool = new MessageSpool(settings, producerPool);
+    spools.add(spool);
+    spool.start();
+    return spool;
+  }
+
+  private SpoolSettings settings(int segmentSizeBytes) throws IOException {
+    SpoolSettings settings = new SpoolSettings();
+    settings.setEnabled(true);
+    settings.setDirectory(folder.getRoot().toPath().resolve("spool").toString());
+    settings.setSegmentSizeBytes(segmentSizeBytes);
+    settings.setForwardBatchSize(50);
+    settings.setRetryBackoffMaxMs(100);
+    return settings;
+  }
+
+  /*
+   * Appends messages from..from+count and waits until every one is durable
+   */
+  static List<Exception> appendAll(MessageSpool spool, int from, int count) throws Exception {
+    List<Exception> results = new CopyOnWriteArrayList<>();
+    CountDownLatch durable = new CountDownLatch(count);
+    for (int i = from; i < from + count; i++) {
+      spool.append("MCTN_MMS_ADT", key(i), body(i).getBytes(StandardCharsets.UTF_8), failure -> {
+        if (failure != null) {
+          results.add(failure);
+        }
+        durable.countDown();
+      });
+    }
+    assertTrue("messages not made durable", durable.await(10, TimeUnit.SECONDS));
+    return results;
+  }
+
+  static void awaitForwarded(MessageSpool spool, long count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (spool.getForwardedCount() < count) {
+      if (System.nanoTime() > deadline) {
+        fail("forwarded " + spool.getForwardedCount() + " of " + count);
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  static byte[] key(int i) {
+    return String.valueOf(i % 7).getBytes(StandardCharsets.UTF_8);
+  }
+
+  static String body(int i) {
+    return "MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|" + i + "|P|2.5\rPID|1||" + i % 7 + "\r";
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * Producers for the tests without a broker, MockProducers that acknowledge every send at once
+ * and keep what they were given
+ */
+final class MockProducerFactory implements KafkaProducerPool.ProducerFactory {
+  private final List<Map.Entry<String, MockProducer<?, ?>>> producers = new CopyOnWriteArrayList<>();
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Producer<?, ?> create(Map<String, Object> config) {
+    ProducerConfig producerConfig = new ProducerConfig(config);
+    MockProducer<?, ?> producer = new MockProducer<>(true,
+        producerConfig.getConfiguredInstance(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, Serializer.class),
+        producerConfig.getConfiguredInstance(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, Serializer.class));
+    producers.add(new AbstractMap.SimpleImmutableEntry<>(
+        String.valueOf(config.get(ProducerConfig.CLIENT_ID_CONFIG)), producer));
+    return producer;
+  }
+
+  /*
+   * Records sent so far by each producer, by client id
+   */
+  Map<String, Long> recordCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (Map.Entry<String, MockProducer<?, ?>> producer : producers) {
+      counts.merge(producer.getKey(), (long) producer.getValue().history().size(), Long::sum);
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The route tables in application.yml, as CamelConfiguration reads them
+ */
+public class RouteTableTest {
+  private static MllpSettings mllpSettings;
+  private static FhirSettings fhirSettings;
+
+  @BeforeClass
+  public static void bind() throws IOException {
+    StandardEnvironment environment = new StandardEnvironment();
+    new YamlPropertySourceLoader().load("application.yml", new ClassPathResource("application.yml"))
+        .forEach(environment.getPropertySources()::addLast);
+    Binder binder = new Binder(ConfigurationPropertySources.get(environment));
+    mllpSettings = binder.bind("mllp-settings", MllpSettings.class).get();
+    fhirSettings = binder.bind("fhir-settings", FhirSettings.class).get();
+  }
+
+  @Test
+  public void mllpRoutesHaveTheirOwnIdAndPort() {
+    Set<String> routeIds = new HashSet<>();
+    Set<Integer> ports = new HashSet<>();
+    for (IngestRouteSettings route : mllpSettings.getRoutes()) {
+      RouteMetadata metadata = RouteMetadata.forHl7(route, mllpSettings.getKafkaKeyFields());
+      assertTrue("duplicate route id " + metadata.getRouteId(), routeIds.add(metadata.getRouteId()));
+      assertTrue("duplicate port " + route.getPort(), ports.add(route.getPort()));
+      assertEquals(route.getTrigger() + " message received", metadata.getReceivedDetails());
+    }
+    assertFalse(routeIds.isEmpty());
+  }
+
+  @Test
+  public void fhirRoutesHaveTheirOwnIdAndPath() {
+    Set<String> paths = new HashSet<>();
+    Map<String, RouteMetadata> byRouteId = new HashMap<>();
+    for (IngestRouteSettings route : fhirSettings.getRoutes()) {
+      RouteMetadata metadata = RouteMetadata.forFhir(route);
+      assertTrue("duplicate route id " + metadata.getRouteId(), byRouteId.put(metadata.getRouteId(), metadata) == null);
+      assertTrue("duplicate path " + RouteMetadata.fhirPath(route), paths.add(RouteMetadata.fhirPath(route)));
+      assertEquals(AuditEvent.IndustryStandard.FHIR, metadata.getIndustryStandard());
+      assertEquals(route.getResource() + " message received", metadata.getReceivedDetails());
+    }
+    // once a copy of the CodeSystem route id
+    assertEquals("ClinicalImpression", byRouteId.get("FHIRClinicalImpression").getMessageTrigger());
+    assertEquals("CodeSystem", byRouteId.get("FHIRCodeSystem").getMessageTrigger());
+  }
+
+  @Test
+  public void irregularNamesAreKept() {
+    RouteMetadata allergies = null;
+    for (IngestRouteSettings route : fhirSettings.getRoutes()) {
+      if ("AllergyIntollerance".equals(route.getResource())) {
+        allergies = RouteMetadata.forFhir(route);
+        assertEquals("alergyintollerance", RouteMetadata.fhirPath(route));
+      }
+    }
+    assertEquals("FHIRSvr_AllergyIntellorance", allergies.getTopic());
+  }
+
+  @Test
+  public void tablesOfTheYmlPassTheStartupCheck() {
+    CamelConfiguration.checkRouteTables(mllpSettings, fhirSettings);
+    CamelConfiguration.checkRouteTables(new MllpSettings(), fhirSettings);
+    CamelConfiguration.checkRouteTables(mllpSettings, new FhirSettings());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void startupFailsWithoutRouteTables() {
+    CamelConfiguration.checkRouteTables(new MllpSettings(), new FhirSettings());
+  }
+}
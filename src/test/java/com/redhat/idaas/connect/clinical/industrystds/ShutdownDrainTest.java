@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Closes the application, with MockProducers for Kafka, while MLLP connections keep sending,
+ * and checks every message answered with an AA reached Kafka. A message sent but not answered
+ * may have reached it as well, at most one per connection.
+ */
+public class ShutdownDrainTest {
+  private static final int CONNECTIONS = 8;
+  private static final int PORT = 10001;
+
+  @Test
+  public void noAcknowledgedMessageIsLostOnClose() throws Exception {
+    MockProducerFactory producers = new MockProducerFactory();
+    ConfigurableApplicationContext application = new SpringApplicationBuilder(Application.class)
+        .initializers(context -> context.getBeanFactory().registerSingleton("mockProducerFactory", producers))
+        .run("--server.port=0", "--management.server.port=0");
+    ShutdownCoordinator coordinator = application.getBean(ShutdownCoordinator.class);
+    String ingestClientId = application.getBean(KafkaSettings.class).getClientId();
+
+    List<Sender> senders = new ArrayList<>();
+    for (int i = 0; i < CONNECTIONS; i++) {
+      Sender sender = new Sender("C" + i + "-");
+      senders.add(sender);
+      sender.start();
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (senders.stream().mapToLong(sender -> sender.accepted).sum() < 500 && System.nanoTime() < deadline) {
+      Thread.sleep(50);
+    }
+    application.close();
+    for (Sender sender : senders) {
+      sender.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    long accepted = senders.stream().mapToLong(sender -> sender.accepted).sum();
+    long delivered = producers.recordCounts().getOrDefault(ingestClientId, 0L);
+    assertTrue("only " + accepted + " messages acknowledged before the close", accepted >= 500);
+    assertTrue(accepted + " acknowledged but " + delivered + " delivered", delivered >= accepted);
+    assertTrue(delivered + " delivered for " + accepted + " acknowledged", delivered - accepted <= CONNECTIONS);
+    ShutdownCoordinator.Report drain = coordinator.getReport();
+    assertNotNull(drain);
+    assertEquals(0, drain.getExchangesLeft());
+    assertTrue(drain.isProducersFlushed());
+  }
+
+  /*
+   * Sends ADT messages one at a time, each after the ACK of the one before, until its
+   * connection is closed or refused
+   */
+  private static final class Sender extends Thread {
+    private final String idPrefix;
+    private volatile long accepted;
+
+    Sender(String idPrefix) {
+      super("shutdown-test-" + idPrefix);
+      this.idPrefix = idPrefix;
+    }
+
+    @Override
+    public void run() {
+      try (Socket socket = new Socket("localhost", PORT)) {
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(10));
+        OutputStream out = socket.getOutputStream();
+        InputStream in = socket.getInputStream();
+        for (long sequence = 0; ; sequence++) {
+          out.write(0x0b);
+          out.write(("MSH|^~\\&|MMS|DH|LABADT|DH|20200101120000||ADT^A01|" + idPrefix + sequence + "|P|2.5\r"
+              + "EVN|A01|20200101120000\r"
+              + "PID|1||" + sequence + "^^^MMS^MR||DOE^JANE\r").getBytes(StandardCharsets.ISO_8859_1));
+          out.write(0x1c);
+          out.write(0x0d);
+          out.flush();
+          String ack = readAck(in);
+          if (ack == null) {
+            return;
+          }
+          if (ack.contains("MSA|AA|")) {
+            accepted++;
+          }
+        }
+      } catch (IOException e) {
+        // closed by the shutdown
+      }
+    }
+
+    private static String readAck(InputStream in) throws IOException {
+      ByteArrayOutputStream ack = new ByteArrayOutputStream();
+      for (int b; (b = in.read()) >= 0; ) {
+        if (b == 0x1c) {
+          in.read();
+          return new String(ack.toByteArray(), StandardCharsets.ISO_8859_1);
+        }
+        if (b != 0x0b) {
+          ack.write(b);
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.clinical.industrystds;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The spool against a Kafka broker that stops: the messages appended (and so acknowledged)
+ * while it is down, and across a restart of the spool, all reach the broker once it is back,
+ * in order.
+ */
+public class SpoolDurabilityTest {
+  private static final String TOPIC = "MCTN_MMS_ADT";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private EmbeddedKafkaBroker broker;
+  private final List<MessageSpool> spools = new ArrayList<>();
+  private final List<KafkaProducerPool> producerPools = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    for (MessageSpool spool : spools) {
+      spool.stop();
+    }
+    for (KafkaProducerPool producerPool : producerPools) {
+      producerPool.destroy();
+    }
+    if (broker != null) {
+      broker.destroy();
+    }
+  }
+
+  @Test
+  public void acknowledgedMessagesSurviveABrokerOutageAndARestart() throws Exception {
+    int port = freePort();
+    broker = startBroker(port, TOPIC);
+    SpoolSettings settings = new SpoolSettings();
+    settings.setEnabled(true);
+    settings.setDirectory(folder.getRoot().toPath().resolve("spool").toString());
+    settings.setSegmentSizeBytes(256 * 1024);
+    settings.setRetryBackoffMaxMs(500);
+
+    MessageSpool first = startSpool(settings, port);
+    assertTrue(MessageSpoolTest.appendAll(first, 0, 500).isEmpty());
+    MessageSpoolTest.awaitForwarded(first, 500);
+    assertEquals(range(0, 500), consume(500));
+
+    // the broker goes away: messages are still made durable, and so acknowledged, but wait in the spool
+    broker.destroy();
+    broker = null;
+    assertTrue(MessageSpoolTest.appendAll(first, 500, 1000).isEmpty());
+    first.stop();
+    MessageSpool second = startSpool(settings, port);
+    assertTrue(MessageSpoolTest.appendAll(second, 1500, 500).isEmpty());
+    assertEquals(0, second.getForwardedCount());
+    second.stop();
+
+    // a new, empty, broker on the same port gets everything acknowledged while the old one was down
+    // the topic is created on first use, the producer may get there before the broker is done starting
+    broker = startBroker(port);
+    MessageSpool third = startSpool(settings, port);
+    assertTrue(MessageSpoolTest.appendAll(third, 2000, 500).isEmpty());
+    MessageSpoolTest.awaitForwarded(third, 2000);
+    assertEquals(range(500, 2500), consume(2000));
+  }
+
+  private MessageSpool startSpool(SpoolSettings settings, int port) {
+    KafkaSettings kafkaSettings = new KafkaSettings();
+    kafkaSettings.setBrokers("127.0.0.1:" + port);
+    // batches expire and are retried from the spool soon after the broker went away
+    kafkaSettings.getProperties().put("request.timeout.ms", "2000");
+    kafkaSettings.getProperties().put("max.block.ms", "2000");
+    kafkaSettings.getProperties().put("reconnect.backoff.max.ms", "200");
+    ShutdownSettings shutdownSettings = new ShutdownSettings();
+    shutdownSettings.setProducerCloseTimeoutMs(1000);
+    KafkaProducerPool producerPool = new KafkaProducerPool(kafkaSettings, shutdownSettings, new StartupSettings());
+    producerPools.add(producerPool);
+    MessageSpool spool = new MessageSpool(settings, producerPool);
+    spools.add(spool);
+    spool.start();
+    return spool;
+  }
+
+  /*
+   * The message numbers on the topic, in the order of their first delivery, duplicates are allowed
+   */
+  private List<Integer> consume(int expected) {
+    Map<String, Object> config = KafkaTestUtils.consumerProps("durability-" + System.nanoTime(), "false", broker);
+    config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+    config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+    Set<Integer> received = new LinkedHashSet<>();
+    try (Consumer<byte[], byte[]> consumer = new KafkaConsumer<>(config)) {
+      // assigned rather than subscribed, no group coordinator needed
+      TopicPartition partition = new TopicPartition(TOPIC, 0);
+      consumer.assign(Collections.singletonList(partition));
+      consumer.seekToBeginning(Collections.singletonList(partition));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+      while (received.size() < expected && System.nanoTime() < deadline) {
+        for (ConsumerRecord<byte[], byte[]> record : consumer.poll(100)) {
+          String body = new String(record.value(), StandardCharsets.UTF_8);
+          received.add(Integer.valueOf(body.split("\\|")[9]));
+        }
+      }
+    }
+    return new ArrayList<>(received);
+  }
+
+  private static EmbeddedKafkaBroker startBroker(int port, String... topics) {
+    EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker(1, false, 1, topics).kafkaPorts(port);
+    broker.afterPropertiesSet();
+    return broker;
+  }
+
+  private static List<Integer> range(int from, int to) {
+    List<Integer> range = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      range.add(i);
+    }
+    return range;
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}